@@ -0,0 +1,209 @@
+package nl.pelagic.audio.conversion.flac2mp3.api;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Performance statistics of flac to mp3 conversions: a histogram per stage of
+ * the durations (in nanoseconds) of the stage, and a histogram per counter of
+ * the number of bytes per conversion.
+ * </p>
+ * <p>
+ * The statistics are thread-safe: conversions that run concurrently record
+ * into the same statistics.
+ * </p>
+ */
+public class ConversionStatistics {
+  /**
+   * The stages of a conversion
+   */
+  public enum Stage {
+    /** read the tag of the flac file */
+    READ_TAG,
+
+    /** create the directory of the mp3 file */
+    MKDIR,
+
+    /** decode the flac file and encode the mp3 file */
+    ENCODE,
+
+    /** write the tag of the mp3 file */
+    SET_TAG,
+
+    /** copy the timestamp of the flac file to the mp3 file */
+    UPDATE_TIMESTAMP
+  }
+
+  /**
+   * The byte counters of an encoding
+   */
+  public enum Counter {
+    /** the size of the flac file */
+    FLAC_BYTES,
+
+    /** the number of bytes of (decoded) audio that was piped into the encoder */
+    PCM_BYTES,
+
+    /** the size of the mp3 file */
+    MP3_BYTES
+  }
+
+  /**
+   * A histogram of recorded values. All values are kept so that the
+   * percentiles are exact; a conversion records only a few values.
+   */
+  public static class Histogram {
+    /** the initial capacity */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** the values, the first count values are valid */
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    /** the number of values */
+    private int count = 0;
+
+    /** the sum of the values */
+    private long total = 0;
+
+    /** true when the values are sorted */
+    private boolean sorted = true;
+
+    /**
+     * Record a value
+     *
+     * @param value the value
+     */
+    public synchronized void record(long value) {
+      if (count == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      if ((count > 0) && (value < values[count - 1])) {
+        sorted = false;
+      }
+      values[count++] = value;
+      total += value;
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public synchronized int getCount() {
+      return count;
+    }
+
+    /**
+     * @return the sum of the recorded values
+     */
+    public synchronized long getTotal() {
+      return total;
+    }
+
+    /**
+     * @return the largest recorded value, 0 when no values were recorded
+     */
+    public synchronized long getMax() {
+      return getPercentile(100);
+    }
+
+    /**
+     * Get a percentile of the recorded values (nearest rank)
+     *
+     * @param percentile the percentile, in the range [0, 100]
+     * @return the smallest recorded value of which at least the percentile of
+     *         the recorded values is smaller or equal, 0 when no values were
+     *         recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      if (!sorted) {
+        Arrays.sort(values, 0, count);
+        sorted = true;
+      }
+
+      double p = Math.max(0.0, Math.min(100.0, percentile));
+      int rank = (int) Math.ceil((p / 100.0) * count);
+      return values[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Remove all recorded values
+     */
+    public synchronized void reset() {
+      values = new long[INITIAL_CAPACITY];
+      count = 0;
+      total = 0;
+      sorted = true;
+    }
+  }
+
+  /** the histograms of the stages */
+  private final Map<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+
+  /** the histograms of the counters */
+  private final Map<Counter, Histogram> counters = new EnumMap<>(Counter.class);
+
+  /**
+   * Constructor
+   */
+  public ConversionStatistics() {
+    super();
+    for (Stage stage : Stage.values()) {
+      stages.put(stage, new Histogram());
+    }
+    for (Counter counter : Counter.values()) {
+      counters.put(counter, new Histogram());
+    }
+  }
+
+  /**
+   * Record the duration of a stage
+   *
+   * @param stage the stage
+   * @param nanos the duration, in nanoseconds
+   */
+  public void record(Stage stage, long nanos) {
+    stages.get(stage).record(nanos);
+  }
+
+  /**
+   * Record the number of bytes of a counter
+   *
+   * @param counter the counter
+   * @param bytes the number of bytes
+   */
+  public void record(Counter counter, long bytes) {
+    counters.get(counter).record(bytes);
+  }
+
+  /**
+   * @param stage the stage
+   * @return the histogram of the durations of the stage, in nanoseconds
+   */
+  public Histogram get(Stage stage) {
+    return stages.get(stage);
+  }
+
+  /**
+   * @param counter the counter
+   * @return the histogram of the number of bytes of the counter
+   */
+  public Histogram get(Counter counter) {
+    return counters.get(counter);
+  }
+
+  /**
+   * Remove all recorded values
+   */
+  public void reset() {
+    for (Histogram histogram : stages.values()) {
+      histogram.reset();
+    }
+    for (Histogram histogram : counters.values()) {
+      histogram.reset();
+    }
+  }
+}
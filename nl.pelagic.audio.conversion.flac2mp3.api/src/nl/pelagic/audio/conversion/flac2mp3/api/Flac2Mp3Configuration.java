@@ -1,5 +1,6 @@
 package nl.pelagic.audio.conversion.flac2mp3.api;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -11,6 +12,25 @@ import nl.pelagic.audio.conversion.flac2mp3.api.i18n.Messages;
  * lame processes that actually perform the conversion.
  */
 public class Flac2Mp3Configuration {
+  /**
+   * The transports of the decoded audio from the flac process to the lame
+   * process
+   */
+  public enum Transport {
+    /**
+     * Copy the audio through the JVM, with a thread per conversion. The audio
+     * can be tapped.
+     */
+    JVM,
+
+    /**
+     * Connect the flac process to the lame process with an OS (named) pipe, so
+     * that the audio doesn't pass through the JVM. Needs a POSIX shell and
+     * mkfifo; falls back to {@link #JVM} when they're not available.
+     */
+    OS
+  }
+
   /** default flac executable */
   public static final String DEFAULT_FLAC_EXECUTABLE = "flac"; //$NON-NLS-1$
 
@@ -23,6 +43,27 @@ public class Flac2Mp3Configuration {
   /** default lame options */
   public static final String DEFAULT_LAME_OPTIONS = "-S -h -b 320"; //$NON-NLS-1$
 
+  /** default concurrency: conversions are run one at a time */
+  public static final int DEFAULT_CONCURRENCY = 1;
+
+  /** default minimum concurrency of adaptive concurrency */
+  public static final int DEFAULT_MIN_CONCURRENCY = 1;
+
+  /** default transport */
+  public static final Transport DEFAULT_TRANSPORT = Transport.JVM;
+
+  /** default priority of conversions (background work) */
+  public static final int DEFAULT_PRIORITY = 0;
+
+  /** priority of conversions that were explicitly requested by a user */
+  public static final int USER_PRIORITY = 10;
+
+  /** default segment threshold: segmented conversion is disabled */
+  public static final int DEFAULT_SEGMENT_THRESHOLD = 0;
+
+  /** default number of segments: the number of available processors, at least 2 */
+  public static final int DEFAULT_SEGMENTS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
   /** flac executable */
   private String flacExecutable;
 
@@ -35,6 +76,48 @@ public class Flac2Mp3Configuration {
   /** lame options */
   private List<String> lameOptions = new LinkedList<>();
 
+  /**
+   * the lame options of the additional targets, an additional target is an
+   * additional mp3 file into which the same decoded audio is encoded
+   */
+  private List<List<String>> targetLameOptions = new LinkedList<>();
+
+  /** the maximum number of conversions that are run concurrently */
+  private int concurrency = DEFAULT_CONCURRENCY;
+
+  /**
+   * true to adapt the number of conversions that are run concurrently to the
+   * system load
+   */
+  private boolean adaptiveConcurrency = false;
+
+  /** the minimum number of conversions that are run concurrently when adaptive */
+  private int minConcurrency = DEFAULT_MIN_CONCURRENCY;
+
+  /** the transport of the decoded audio from flac to lame */
+  private Transport transport = DEFAULT_TRANSPORT;
+
+  /** the run journal, null for no journal */
+  private File journal = null;
+
+  /** the priority of queued conversions */
+  private int priority = DEFAULT_PRIORITY;
+
+  /**
+   * the duration (in seconds) above which a flac file is converted in segments,
+   * 0 to disable segmented conversion
+   */
+  private int segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+
+  /** the number of segments of a segmented conversion */
+  private int segments = DEFAULT_SEGMENTS;
+
+  /**
+   * true to analyse the ReplayGain of the decoded audio while it is converted
+   * and to write it into the tag of the mp3 file
+   */
+  private boolean replayGain = false;
+
   /**
    * Constructor. Sets default options.
    */
@@ -84,7 +167,11 @@ public class Flac2Mp3Configuration {
   /**
    * Validate the configuration. Currently only checks that the flac and lame
    * executables are actually executable by trying to execute them with a 'help'
-   * argument ("-h" and "--help" for flac and lame respectively)
+   * argument ("-h" and "--help" for flac and lame respectively), that the
+   * concurrency is at least 1, that the minimum concurrency is between 1 and
+   * the concurrency when the concurrency is adaptive, that the segment
+   * threshold is not negative and that there are at least 2 segments when
+   * segmented conversion is enabled
    * 
    * @return A list with errors, or null when validated
    */
@@ -105,6 +192,23 @@ public class Flac2Mp3Configuration {
       result.add(String.format(Messages.getString("Flac2Mp3Configuration.1"), lameExecutable)); //$NON-NLS-1$
     }
 
+    if (concurrency < 1) {
+      result.add(String.format(Messages.getString("Flac2Mp3Configuration.2"), Integer.valueOf(concurrency))); //$NON-NLS-1$
+    }
+
+    if (adaptiveConcurrency && ((minConcurrency < 1) || (minConcurrency > concurrency))) {
+      result.add(String.format(Messages.getString("Flac2Mp3Configuration.3"), Integer.valueOf(minConcurrency), //$NON-NLS-1$
+          Integer.valueOf(concurrency)));
+    }
+
+    if (segmentThreshold < 0) {
+      result.add(String.format(Messages.getString("Flac2Mp3Configuration.4"), Integer.valueOf(segmentThreshold))); //$NON-NLS-1$
+    }
+
+    if ((segmentThreshold > 0) && (segments < 2)) {
+      result.add(String.format(Messages.getString("Flac2Mp3Configuration.5"), Integer.valueOf(segments))); //$NON-NLS-1$
+    }
+
     if (result.size() == 0) {
       return null;
     }
@@ -169,4 +273,187 @@ public class Flac2Mp3Configuration {
   public void setLameOptions(String lameOptions) {
     this.lameOptions = Arrays.asList(lameOptions.trim().split("\\s+")); //$NON-NLS-1$
   }
+
+  /**
+   * @return the lame options of the additional targets
+   */
+  public List<List<String>> getTargetLameOptions() {
+    return targetLameOptions;
+  }
+
+  /**
+   * @param targetLameOptions the lame options of the additional targets to set,
+   *          in the order of the targets. Options are whitespace separated.
+   */
+  public void setTargetLameOptions(List<String> targetLameOptions) {
+    List<List<String>> options = new LinkedList<>();
+    for (String lameOptions : targetLameOptions) {
+      options.add(Arrays.asList(lameOptions.trim().split("\\s+"))); //$NON-NLS-1$
+    }
+    this.targetLameOptions = options;
+  }
+
+  /**
+   * @return the number of targets: 1 plus the number of additional targets
+   */
+  public int getTargets() {
+    return 1 + targetLameOptions.size();
+  }
+
+  /**
+   * @param target the target, 0 for the mp3 file and 1 and up for the
+   *          additional targets
+   * @return the lame options of the target, the lameOptions when the target
+   *         doesn't exist
+   */
+  public List<String> getLameOptions(int target) {
+    if ((target < 1) || (target > targetLameOptions.size())) {
+      return lameOptions;
+    }
+    return targetLameOptions.get(target - 1);
+  }
+
+  /**
+   * @return the maximum number of conversions that are run concurrently
+   */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * @param concurrency the maximum number of conversions that are run
+   *          concurrently to set. Must be at least 1.
+   */
+  public void setConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * @return true when the number of conversions that are run concurrently is
+   *         adapted to the system load, between the minimum concurrency and
+   *         the concurrency
+   */
+  public boolean isAdaptiveConcurrency() {
+    return adaptiveConcurrency;
+  }
+
+  /**
+   * @param adaptiveConcurrency true to adapt the number of conversions that are
+   *          run concurrently to the system load, between the minimum
+   *          concurrency and the concurrency
+   */
+  public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+    this.adaptiveConcurrency = adaptiveConcurrency;
+  }
+
+  /**
+   * @return the minimum number of conversions that are run concurrently when
+   *         the concurrency is adaptive
+   */
+  public int getMinConcurrency() {
+    return minConcurrency;
+  }
+
+  /**
+   * @param minConcurrency the minimum number of conversions that are run
+   *          concurrently when the concurrency is adaptive to set
+   */
+  public void setMinConcurrency(int minConcurrency) {
+    this.minConcurrency = minConcurrency;
+  }
+
+  /**
+   * @return the transport of the decoded audio from flac to lame
+   */
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * @param transport the transport of the decoded audio from flac to lame to
+   *          set. When null then the default transport is set.
+   */
+  public void setTransport(Transport transport) {
+    this.transport = (transport == null) ? DEFAULT_TRANSPORT : transport;
+  }
+
+  /**
+   * @return the run journal in which the conversions that are in progress are
+   *         recorded, null for no journal
+   */
+  public File getJournal() {
+    return journal;
+  }
+
+  /**
+   * @param journal the run journal in which the conversions that are in
+   *          progress are recorded to set, null for no journal. See
+   *          {@link FlacToMp3#resume(Flac2Mp3Configuration, boolean)}.
+   */
+  public void setJournal(File journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * @return the priority of queued (asynchronous) conversions. Conversions with
+   *         a higher priority are started before those with a lower priority.
+   */
+  public int getPriority() {
+    return priority;
+  }
+
+  /**
+   * @param priority the priority of queued (asynchronous) conversions to set
+   */
+  public void setPriority(int priority) {
+    this.priority = priority;
+  }
+
+  /**
+   * @return the duration (in seconds) above which a flac file is converted in
+   *         segments that are encoded concurrently, 0 when segmented conversion
+   *         is disabled
+   */
+  public int getSegmentThreshold() {
+    return segmentThreshold;
+  }
+
+  /**
+   * @param segmentThreshold the duration (in seconds) above which a flac file
+   *          is converted in segments that are encoded concurrently to set, 0
+   *          to disable segmented conversion
+   */
+  public void setSegmentThreshold(int segmentThreshold) {
+    this.segmentThreshold = segmentThreshold;
+  }
+
+  /**
+   * @return the number of segments of a segmented conversion
+   */
+  public int getSegments() {
+    return segments;
+  }
+
+  /**
+   * @param segments the number of segments of a segmented conversion to set
+   */
+  public void setSegments(int segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * @return true when the ReplayGain of the decoded audio is analysed while it
+   *         is converted and written into the tag of the mp3 file
+   */
+  public boolean isReplayGain() {
+    return replayGain;
+  }
+
+  /**
+   * @param replayGain true to analyse the ReplayGain of the decoded audio while
+   *          it is converted and to write it into the tag of the mp3 file
+   */
+  public void setReplayGain(boolean replayGain) {
+    this.replayGain = replayGain;
+  }
 }
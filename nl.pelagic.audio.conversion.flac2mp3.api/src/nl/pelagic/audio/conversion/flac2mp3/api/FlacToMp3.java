@@ -2,6 +2,8 @@ package nl.pelagic.audio.conversion.flac2mp3.api;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import aQute.bnd.annotation.ProviderType;
 
@@ -32,4 +34,190 @@ public interface FlacToMp3 {
    */
   boolean convert(Flac2Mp3Configuration configuration, File flac, File mp3, boolean simulate)
       throws FileNotFoundException;
+
+  /**
+   * <p>
+   * Convert a flac file into the mp3 files of several targets, decoding the
+   * flac file only once: its decoded audio is encoded by a lame process per
+   * target at the same time.
+   * </p>
+   * <p>
+   * Creates all directories up to the mp3 files. Apart from that it behaves
+   * like {@link #convert(Flac2Mp3Configuration, File, File, boolean)} for
+   * every target.
+   * </p>
+   * 
+   * @param configuration the configuration for the conversion process. If null
+   *          then the default configuration is used.
+   * @param flac the flac (source) file
+   * @param mp3s the mp3 (destination) files, by target: the mp3 file at index
+   *          i is encoded with the lame options of target i (see
+   *          {@link Flac2Mp3Configuration#getLameOptions(int)}). A null mp3
+   *          file skips its target.
+   * @param simulate true to simulate conversion
+   * @return true when the conversions of all targets were successful, false
+   *         otherwise
+   * @throws FileNotFoundException when:
+   *           <ul>
+   *           <li>the flac file is null, doesn't exist or is not a file</li>
+   *           <li>there are no mp3 files or an mp3 file exists but is not a
+   *           file</li>
+   *           </ul>
+   */
+  boolean convertTargets(Flac2Mp3Configuration configuration, File flac, List<File> mp3s, boolean simulate)
+      throws FileNotFoundException;
+
+  /**
+   * <p>
+   * Asynchronously convert a flac file into an mp3 file.
+   * </p>
+   * <p>
+   * The conversion is queued on a bounded conversion pool that runs at most
+   * {@link Flac2Mp3Configuration#getConcurrency()} conversions at once. Apart
+   * from that it behaves exactly like
+   * {@link #convert(Flac2Mp3Configuration, File, File, boolean)}.
+   * </p>
+   * <p>
+   * Queued conversions are started in order of their priority (see
+   * {@link Flac2Mp3Configuration#getPriority()}) and then longest first, by the
+   * size of the decoded audio of their flac file, so that a long recording
+   * doesn't end up as the only conversion that is still running at the end.
+   * </p>
+   * 
+   * @param configuration the configuration for the conversion process. If null
+   *          then the default configuration is used.
+   * @param flac the flac (source) file
+   * @param mp3 the mp3 (destination) file
+   * @param simulate true to simulate conversion
+   * @return a future that completes with true when conversion was successful,
+   *         with false otherwise. The future completes exceptionally with a
+   *         {@link FileNotFoundException} in the situations in which
+   *         {@link #convert(Flac2Mp3Configuration, File, File, boolean)} throws
+   *         it.
+   */
+  CompletableFuture<Boolean> convertAsync(Flac2Mp3Configuration configuration, File flac, File mp3, boolean simulate);
+
+  /**
+   * Asynchronously convert a flac file into the mp3 files of several targets,
+   * like {@link #convertAsync(Flac2Mp3Configuration, File, File, boolean)} but
+   * with the conversion of
+   * {@link #convertTargets(Flac2Mp3Configuration, File, List, boolean)}.
+   * 
+   * @param configuration the configuration for the conversion process. If null
+   *          then the default configuration is used.
+   * @param flac the flac (source) file
+   * @param mp3s the mp3 (destination) files, by target
+   * @param simulate true to simulate conversion
+   * @return a future that completes with true when the conversions of all
+   *         targets were successful, with false otherwise
+   */
+  CompletableFuture<Boolean> convertTargetsAsync(Flac2Mp3Configuration configuration, File flac, List<File> mp3s,
+      boolean simulate);
+
+  /**
+   * Convert a flac file into the mp3 files of several targets, like
+   * {@link #convertTargets(Flac2Mp3Configuration, File, List, boolean)}, as a
+   * track of an album. When the ReplayGain is analysed (see
+   * {@link Flac2Mp3Configuration#isReplayGain()}) then the ReplayGain of the
+   * track is added to the album. A track of which only the tag is updated is
+   * not analysed and is not added, so the album then never becomes complete.
+   * 
+   * @param configuration the configuration for the conversion process. If null
+   *          then the default configuration is used.
+   * @param flac the flac (source) file
+   * @param mp3s the mp3 (destination) files, by target
+   * @param simulate true to simulate conversion
+   * @param album the album of the track, may be null
+   * @return true when the conversions of all targets were successful, false
+   *         otherwise
+   * @throws FileNotFoundException see
+   *           {@link #convertTargets(Flac2Mp3Configuration, File, List, boolean)}
+   */
+  boolean convertTargets(Flac2Mp3Configuration configuration, File flac, List<File> mp3s, boolean simulate,
+      ReplayGainAlbum album) throws FileNotFoundException;
+
+  /**
+   * Asynchronously convert a flac file into the mp3 files of several targets
+   * as a track of an album, like
+   * {@link #convertTargets(Flac2Mp3Configuration, File, List, boolean, ReplayGainAlbum)}
+   * .
+   * 
+   * @param configuration the configuration for the conversion process. If null
+   *          then the default configuration is used.
+   * @param flac the flac (source) file
+   * @param mp3s the mp3 (destination) files, by target
+   * @param simulate true to simulate conversion
+   * @param album the album of the track, may be null
+   * @return a future that completes with true when the conversions of all
+   *         targets were successful, with false otherwise
+   */
+  CompletableFuture<Boolean> convertTargetsAsync(Flac2Mp3Configuration configuration, File flac, List<File> mp3s,
+      boolean simulate, ReplayGainAlbum album);
+
+  /**
+   * Write the ReplayGain of an album into the tags of the mp3 files of its
+   * tracks, keeping the timestamps of the mp3 files. Nothing is written when
+   * not all tracks of the album were added to it.
+   * 
+   * @param album the album
+   * @param simulate true to simulate writing
+   * @return true when successful (or when there was nothing to write), false
+   *         otherwise
+   */
+  boolean setAlbumReplayGain(ReplayGainAlbum album, boolean simulate);
+
+  /**
+   * <p>
+   * Finish the conversions that were in progress when a previous run was
+   * stopped or crashed, as recorded in the run journal of the configuration
+   * (see {@link Flac2Mp3Configuration#getJournal()}).
+   * </p>
+   * <p>
+   * Conversions write into a temporary file that is only renamed into the mp3
+   * file once it is complete, so the mp3 files of the interrupted conversions
+   * are either absent or still the ones from before the interrupted run. Their
+   * temporary files are removed and they are converted again, unless their
+   * flac file no longer exists.
+   * </p>
+   * 
+   * @param configuration the configuration for the conversion process. If null
+   *          or when it has no run journal then there is nothing to resume.
+   * @param simulate true to simulate conversion
+   * @return true when all resumed conversions were successful (or there were
+   *         none), false otherwise
+   */
+  boolean resume(Flac2Mp3Configuration configuration, boolean simulate);
+
+  /**
+   * Get the MD5 signature of the (unencoded) audio of a flac file. The
+   * signature identifies the audio, independent of the tag and of the name and
+   * location of the file.
+   * 
+   * @param flac the flac file
+   * @return null when the file could not be read, is not a flac file or has no
+   *         signature, the signature (32 lowercase hexadecimal characters)
+   *         otherwise
+   */
+  String getFlacAudioMd5(File flac);
+
+  /**
+   * Get the MD5 signature of the (unencoded) flac audio from which an mp3 file
+   * was converted. Only the tag of the mp3 file is read.
+   * 
+   * @param mp3 the mp3 file
+   * @return null when the file could not be read or has no signature (for
+   *         example because it was not converted by this converter), the
+   *         signature (see {@link #getFlacAudioMd5(File)}) otherwise
+   */
+  String getMp3AudioMd5(File mp3);
+
+  /**
+   * Get the performance statistics of the conversions. Conversions record the
+   * durations of their stages and the number of bytes they processed into the
+   * statistics, simulated stages are not recorded.
+   *
+   * @return the statistics of all conversions since the converter was started
+   *         or the statistics were reset
+   */
+  ConversionStatistics getStatistics();
 }
@@ -0,0 +1,141 @@
+package nl.pelagic.audio.conversion.flac2mp3.api;
+
+import java.util.List;
+
+/**
+ * <p>
+ * The ReplayGain (2.0) of the audio of a track or of an album: its gated
+ * loudness according to ITU-R BS.1770 and its sample peak.
+ * </p>
+ * <p>
+ * The loudness is kept as the (weighted) mean square energies of the gating
+ * blocks of the audio, 400ms blocks that overlap by 75%, so that the
+ * ReplayGain of an album can be determined from the ReplayGain of its tracks.
+ * </p>
+ */
+public class ReplayGain {
+  /** the loudness (in LUFS) to which the ReplayGain adjusts the audio */
+  public static final double REFERENCE_LOUDNESS = -18.0;
+
+  /** the absolute gate (in LUFS): quieter blocks are ignored */
+  static final double ABSOLUTE_GATE = -70.0;
+
+  /** the relative gate (in LU): blocks this much below the loudness are ignored */
+  static final double RELATIVE_GATE = -10.0;
+
+  /** the mean square energies of the gating blocks */
+  private final double[] blocks;
+
+  /** the sample peak, 1.0 being full scale */
+  private final double peak;
+
+  /**
+   * Constructor
+   * 
+   * @param blocks the (weighted) mean square energies of the gating blocks
+   * @param peak the sample peak, 1.0 being full scale
+   */
+  public ReplayGain(double[] blocks, double peak) {
+    super();
+    this.blocks = (blocks == null) ? new double[0] : blocks;
+    this.peak = peak;
+  }
+
+  /**
+   * @param tracks the ReplayGain of the tracks of an album
+   * @return the ReplayGain of the album, null when there are no tracks
+   */
+  public static ReplayGain album(List<ReplayGain> tracks) {
+    if ((tracks == null) || tracks.isEmpty()) {
+      return null;
+    }
+
+    int size = 0;
+    for (ReplayGain track : tracks) {
+      size += track.blocks.length;
+    }
+
+    double[] blocks = new double[size];
+    double peak = 0.0;
+    int offset = 0;
+    for (ReplayGain track : tracks) {
+      System.arraycopy(track.blocks, 0, blocks, offset, track.blocks.length);
+      offset += track.blocks.length;
+      peak = Math.max(peak, track.peak);
+    }
+
+    return new ReplayGain(blocks, peak);
+  }
+
+  /**
+   * @param energy a mean square energy
+   * @return the loudness (in LUFS) of the energy
+   */
+  static double loudness(double energy) {
+    return -0.691 + (10.0 * Math.log10(energy));
+  }
+
+  /**
+   * @param loudness a loudness (in LUFS)
+   * @return the mean square energy of the loudness
+   */
+  static double energy(double loudness) {
+    return Math.pow(10.0, (loudness + 0.691) / 10.0);
+  }
+
+  /**
+   * @param threshold the energy threshold
+   * @return the mean energy of the blocks above the threshold, 0 when there are
+   *         no such blocks
+   */
+  private double meanEnergy(double threshold) {
+    double sum = 0.0;
+    int count = 0;
+    for (double block : blocks) {
+      if (block > threshold) {
+        sum += block;
+        count++;
+      }
+    }
+
+    return (count == 0) ? 0.0 : (sum / count);
+  }
+
+  /**
+   * @return the gated loudness (in LUFS), negative infinity when the audio is
+   *         silent
+   */
+  public double getLoudness() {
+    double absoluteThreshold = energy(ABSOLUTE_GATE);
+    double mean = meanEnergy(absoluteThreshold);
+    if (mean <= 0.0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+
+    double relativeThreshold = Math.max(absoluteThreshold, mean * Math.pow(10.0, RELATIVE_GATE / 10.0));
+    return loudness(meanEnergy(relativeThreshold));
+  }
+
+  /**
+   * @return the gain (in dB) that adjusts the audio to the reference loudness,
+   *         0 when the audio is silent
+   */
+  public double getGain() {
+    double loudness = getLoudness();
+    return Double.isInfinite(loudness) ? 0.0 : (REFERENCE_LOUDNESS - loudness);
+  }
+
+  /**
+   * @return the sample peak, 1.0 being full scale
+   */
+  public double getPeak() {
+    return peak;
+  }
+
+  /**
+   * @return the number of gating blocks
+   */
+  public int getBlocks() {
+    return blocks.length;
+  }
+}
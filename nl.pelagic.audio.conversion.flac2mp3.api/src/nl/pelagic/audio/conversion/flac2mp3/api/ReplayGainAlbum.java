@@ -0,0 +1,71 @@
+package nl.pelagic.audio.conversion.flac2mp3.api;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * <p>
+ * Collects the ReplayGain of the tracks of an album while they are converted,
+ * together with the mp3 files into which they were converted, so that the
+ * ReplayGain of the album can be written into those mp3 files once all tracks
+ * are converted.
+ * </p>
+ * <p>
+ * The album is thread-safe: tracks that are converted concurrently are added
+ * to the same album.
+ * </p>
+ */
+public class ReplayGainAlbum {
+  /** the number of tracks of the album */
+  private final int tracks;
+
+  /** the ReplayGain of the tracks that were added */
+  private final List<ReplayGain> replayGains = new LinkedList<>();
+
+  /** the mp3 files of the tracks that were added */
+  private final List<File> mp3s = new LinkedList<>();
+
+  /**
+   * Constructor
+   * 
+   * @param tracks the number of tracks of the album
+   */
+  public ReplayGainAlbum(int tracks) {
+    super();
+    this.tracks = tracks;
+  }
+
+  /**
+   * Add a converted track
+   * 
+   * @param replayGain the ReplayGain of the track
+   * @param trackMp3s the mp3 files into which the track was converted
+   */
+  public synchronized void add(ReplayGain replayGain, List<File> trackMp3s) {
+    replayGains.add(replayGain);
+    mp3s.addAll(trackMp3s);
+  }
+
+  /**
+   * @return true when all tracks of the album were added
+   */
+  public synchronized boolean isComplete() {
+    return (tracks > 0) && (replayGains.size() == tracks);
+  }
+
+  /**
+   * @return the ReplayGain of the album, null when not all tracks of the album
+   *         were added
+   */
+  public synchronized ReplayGain getReplayGain() {
+    return isComplete() ? ReplayGain.album(replayGains) : null;
+  }
+
+  /**
+   * @return the mp3 files of the tracks that were added
+   */
+  public synchronized List<File> getMp3s() {
+    return new LinkedList<>(mp3s);
+  }
+}
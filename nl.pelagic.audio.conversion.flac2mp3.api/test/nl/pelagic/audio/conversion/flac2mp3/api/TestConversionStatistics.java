@@ -0,0 +1,110 @@
+package nl.pelagic.audio.conversion.flac2mp3.api;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "static-method"
+})
+public class TestConversionStatistics {
+
+  @Test
+  public void testHistogram_Empty() {
+    ConversionStatistics.Histogram histogram = new ConversionStatistics.Histogram();
+
+    assertThat(Integer.valueOf(histogram.getCount()), equalTo(Integer.valueOf(0)));
+    assertThat(Long.valueOf(histogram.getTotal()), equalTo(Long.valueOf(0)));
+    assertThat(Long.valueOf(histogram.getPercentile(50)), equalTo(Long.valueOf(0)));
+    assertThat(Long.valueOf(histogram.getMax()), equalTo(Long.valueOf(0)));
+  }
+
+  @Test
+  public void testHistogram_Percentiles() {
+    ConversionStatistics.Histogram histogram = new ConversionStatistics.Histogram();
+
+    /* 100 down to 1, more than the initial capacity and unsorted */
+    for (int i = 100; i >= 1; i--) {
+      histogram.record(i);
+    }
+
+    assertThat(Integer.valueOf(histogram.getCount()), equalTo(Integer.valueOf(100)));
+    assertThat(Long.valueOf(histogram.getTotal()), equalTo(Long.valueOf(5050)));
+    assertThat(Long.valueOf(histogram.getPercentile(0)), equalTo(Long.valueOf(1)));
+    assertThat(Long.valueOf(histogram.getPercentile(50)), equalTo(Long.valueOf(50)));
+    assertThat(Long.valueOf(histogram.getPercentile(95)), equalTo(Long.valueOf(95)));
+    assertThat(Long.valueOf(histogram.getPercentile(99)), equalTo(Long.valueOf(99)));
+    assertThat(Long.valueOf(histogram.getPercentile(99.5)), equalTo(Long.valueOf(100)));
+    assertThat(Long.valueOf(histogram.getPercentile(200)), equalTo(Long.valueOf(100)));
+    assertThat(Long.valueOf(histogram.getMax()), equalTo(Long.valueOf(100)));
+
+    /* recording after a percentile was determined */
+    histogram.record(0);
+    assertThat(Long.valueOf(histogram.getPercentile(0)), equalTo(Long.valueOf(0)));
+    assertThat(Long.valueOf(histogram.getMax()), equalTo(Long.valueOf(100)));
+
+    histogram.reset();
+    assertThat(Integer.valueOf(histogram.getCount()), equalTo(Integer.valueOf(0)));
+    assertThat(Long.valueOf(histogram.getTotal()), equalTo(Long.valueOf(0)));
+  }
+
+  @Test
+  public void testHistogram_Single() {
+    ConversionStatistics.Histogram histogram = new ConversionStatistics.Histogram();
+    histogram.record(42);
+
+    assertThat(Long.valueOf(histogram.getPercentile(50)), equalTo(Long.valueOf(42)));
+    assertThat(Long.valueOf(histogram.getPercentile(99)), equalTo(Long.valueOf(42)));
+  }
+
+  @Test
+  public void testRecord() {
+    ConversionStatistics statistics = new ConversionStatistics();
+    statistics.record(ConversionStatistics.Stage.ENCODE, 10);
+    statistics.record(ConversionStatistics.Stage.ENCODE, 30);
+    statistics.record(ConversionStatistics.Counter.MP3_BYTES, 1000);
+
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Stage.ENCODE).getCount()),
+        equalTo(Integer.valueOf(2)));
+    assertThat(Long.valueOf(statistics.get(ConversionStatistics.Stage.ENCODE).getTotal()),
+        equalTo(Long.valueOf(40)));
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Stage.READ_TAG).getCount()),
+        equalTo(Integer.valueOf(0)));
+    assertThat(Long.valueOf(statistics.get(ConversionStatistics.Counter.MP3_BYTES).getTotal()),
+        equalTo(Long.valueOf(1000)));
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Counter.FLAC_BYTES).getCount()),
+        equalTo(Integer.valueOf(0)));
+
+    statistics.reset();
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Stage.ENCODE).getCount()),
+        equalTo(Integer.valueOf(0)));
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Counter.MP3_BYTES).getCount()),
+        equalTo(Integer.valueOf(0)));
+  }
+
+  @Test(timeout = 10000)
+  public void testRecord_Concurrent() throws InterruptedException {
+    final ConversionStatistics statistics = new ConversionStatistics();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            statistics.record(ConversionStatistics.Stage.SET_TAG, 1);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Stage.SET_TAG).getCount()),
+        equalTo(Integer.valueOf(40000)));
+    assertThat(Long.valueOf(statistics.get(ConversionStatistics.Stage.SET_TAG).getTotal()),
+        equalTo(Long.valueOf(40000)));
+  }
+}
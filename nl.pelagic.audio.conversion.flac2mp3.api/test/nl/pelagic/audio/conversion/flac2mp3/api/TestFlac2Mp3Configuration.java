@@ -5,6 +5,7 @@ import static org.hamcrest.core.IsNull.notNullValue;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 
@@ -111,6 +112,72 @@ public class TestFlac2Mp3Configuration {
     assertThat(s, equalTo(String.format(Messages.getString("Flac2Mp3Configuration.1"), "null")));
   }
 
+  @Test
+  public void testValidate_Concurrency_Invalid() {
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setFlacExecutable("echo");
+    config.setLameExecutable("echo");
+    config.setConcurrency(0);
+
+    List<String> r = config.validate();
+
+    assertThat(r, notNullValue());
+    assertThat(Integer.valueOf(r.size()), equalTo(Integer.valueOf(1)));
+    String s = r.get(0);
+    assertThat(s, notNullValue());
+    assertThat(s, equalTo(String.format(Messages.getString("Flac2Mp3Configuration.2"), Integer.valueOf(0))));
+  }
+
+  @Test
+  public void testValidate_MinConcurrency_Invalid() {
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setFlacExecutable("echo");
+    config.setLameExecutable("echo");
+    config.setConcurrency(2);
+    config.setMinConcurrency(3);
+    assertThat(config.validate(), nullValue());
+
+    config.setAdaptiveConcurrency(true);
+    List<String> r = config.validate();
+
+    assertThat(r, notNullValue());
+    assertThat(Integer.valueOf(r.size()), equalTo(Integer.valueOf(1)));
+    assertThat(r.get(0), equalTo(String.format(Messages.getString("Flac2Mp3Configuration.3"), Integer.valueOf(3),
+        Integer.valueOf(2))));
+
+    config.setMinConcurrency(0);
+    r = config.validate();
+    assertThat(r, notNullValue());
+    assertThat(Integer.valueOf(r.size()), equalTo(Integer.valueOf(1)));
+
+    config.setMinConcurrency(2);
+    assertThat(config.validate(), nullValue());
+  }
+
+  @Test
+  public void testValidate_Segments_Invalid() {
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setFlacExecutable("echo");
+    config.setLameExecutable("echo");
+    config.setSegments(1);
+    assertThat(config.validate(), nullValue());
+
+    config.setSegmentThreshold(-1);
+    List<String> r = config.validate();
+    assertThat(r, notNullValue());
+    assertThat(Integer.valueOf(r.size()), equalTo(Integer.valueOf(1)));
+    assertThat(r.get(0), equalTo(String.format(Messages.getString("Flac2Mp3Configuration.4"), Integer.valueOf(-1))));
+
+    config.setSegmentThreshold(3600);
+    r = config.validate();
+    assertThat(r, notNullValue());
+    assertThat(Integer.valueOf(r.size()), equalTo(Integer.valueOf(1)));
+    assertThat(r.get(0), equalTo(String.format(Messages.getString("Flac2Mp3Configuration.5"), Integer.valueOf(1))));
+
+    config.setSegments(2);
+    assertThat(config.validate(), nullValue());
+  }
+
   @Test
   public void testValidate_Normal() {
     Flac2Mp3Configuration config = new Flac2Mp3Configuration();
@@ -134,6 +201,21 @@ public class TestFlac2Mp3Configuration {
     assertThat(fo, equalTo(dfo));
     assertThat(le, equalTo(Flac2Mp3Configuration.DEFAULT_LAME_EXECUTABLE));
     assertThat(lo, equalTo(dlo));
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getConcurrency()), equalTo(Integer.valueOf(1)));
+    assertThat(flac2Mp3Configuration.getTransport(), equalTo(Flac2Mp3Configuration.DEFAULT_TRANSPORT));
+    assertThat(flac2Mp3Configuration.getJournal(), nullValue());
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getPriority()),
+        equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_PRIORITY)));
+    assertThat(Boolean.valueOf(flac2Mp3Configuration.isAdaptiveConcurrency()), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getMinConcurrency()),
+        equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_MIN_CONCURRENCY)));
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getSegmentThreshold()),
+        equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_SEGMENT_THRESHOLD)));
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getSegments()),
+        equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_SEGMENTS)));
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getTargets()), equalTo(Integer.valueOf(1)));
+    assertThat(flac2Mp3Configuration.getLameOptions(1), equalTo(dlo));
+    assertThat(Boolean.valueOf(flac2Mp3Configuration.isReplayGain()), equalTo(Boolean.FALSE));
   }
 
   @Test
@@ -155,4 +237,66 @@ public class TestFlac2Mp3Configuration {
 
     assertThat(result, equalTo(expected));
   }
+
+  @Test
+  public void testSetTargetLameOptions() {
+    flac2Mp3Configuration.setLameOptions("-b 320");
+    flac2Mp3Configuration.setTargetLameOptions(Arrays.asList(" -V 2 ", "-b 128"));
+
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getTargets()), equalTo(Integer.valueOf(3)));
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getTargetLameOptions().size()), equalTo(Integer.valueOf(2)));
+    assertThat(flac2Mp3Configuration.getLameOptions(-1), equalTo(toList("-b 320")));
+    assertThat(flac2Mp3Configuration.getLameOptions(0), equalTo(toList("-b 320")));
+    assertThat(flac2Mp3Configuration.getLameOptions(1), equalTo(toList("-V 2")));
+    assertThat(flac2Mp3Configuration.getLameOptions(2), equalTo(toList("-b 128")));
+    assertThat(flac2Mp3Configuration.getLameOptions(3), equalTo(toList("-b 320")));
+  }
+
+  @Test
+  public void testSetConcurrency() {
+    flac2Mp3Configuration.setConcurrency(3);
+    int result = flac2Mp3Configuration.getConcurrency();
+
+    assertThat(Integer.valueOf(result), equalTo(Integer.valueOf(3)));
+  }
+
+  @Test
+  public void testSetTransport() {
+    flac2Mp3Configuration.setTransport(Flac2Mp3Configuration.Transport.OS);
+    assertThat(flac2Mp3Configuration.getTransport(), equalTo(Flac2Mp3Configuration.Transport.OS));
+
+    flac2Mp3Configuration.setTransport(null);
+    assertThat(flac2Mp3Configuration.getTransport(), equalTo(Flac2Mp3Configuration.DEFAULT_TRANSPORT));
+  }
+
+  @Test
+  public void testSetJournal() {
+    File journal = new File("testresources/journal");
+    flac2Mp3Configuration.setJournal(journal);
+    assertThat(flac2Mp3Configuration.getJournal(), equalTo(journal));
+
+    flac2Mp3Configuration.setJournal(null);
+    assertThat(flac2Mp3Configuration.getJournal(), nullValue());
+  }
+
+  @Test
+  public void testSetPriority() {
+    flac2Mp3Configuration.setPriority(Flac2Mp3Configuration.USER_PRIORITY);
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getPriority()),
+        equalTo(Integer.valueOf(Flac2Mp3Configuration.USER_PRIORITY)));
+  }
+
+  @Test
+  public void testSetSegments() {
+    flac2Mp3Configuration.setSegmentThreshold(3600);
+    flac2Mp3Configuration.setSegments(3);
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getSegmentThreshold()), equalTo(Integer.valueOf(3600)));
+    assertThat(Integer.valueOf(flac2Mp3Configuration.getSegments()), equalTo(Integer.valueOf(3)));
+  }
+
+  @Test
+  public void testSetReplayGain() {
+    flac2Mp3Configuration.setReplayGain(true);
+    assertThat(Boolean.valueOf(flac2Mp3Configuration.isReplayGain()), equalTo(Boolean.TRUE));
+  }
 }
@@ -0,0 +1,74 @@
+package nl.pelagic.audio.conversion.flac2mp3.api;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestReplayGain {
+
+  private static double[] blocks(double loudness, int count) {
+    double[] blocks = new double[count];
+    Arrays.fill(blocks, ReplayGain.energy(loudness));
+    return blocks;
+  }
+
+  private static long round(double value) {
+    return Math.round(value * 100.0);
+  }
+
+  @Test
+  public void testGetLoudness() {
+    ReplayGain replayGain = new ReplayGain(blocks(-23.0, 10), 0.5);
+    assertThat(Long.valueOf(round(replayGain.getLoudness())), equalTo(Long.valueOf(-2300)));
+    assertThat(Long.valueOf(round(replayGain.getGain())), equalTo(Long.valueOf(500)));
+    assertThat(Double.valueOf(replayGain.getPeak()), equalTo(Double.valueOf(0.5)));
+    assertThat(Integer.valueOf(replayGain.getBlocks()), equalTo(Integer.valueOf(10)));
+  }
+
+  @Test
+  public void testGetLoudness_Gates() {
+    double[] loud = blocks(-20.0, 10);
+    double[] quiet = blocks(-40.0, 10);
+    double[] silent = blocks(-80.0, 10);
+    double[] all = new double[30];
+    System.arraycopy(loud, 0, all, 0, 10);
+    System.arraycopy(quiet, 0, all, 10, 10);
+    System.arraycopy(silent, 0, all, 20, 10);
+
+    /* the quiet blocks are below the relative gate, the silent blocks below the absolute gate */
+    ReplayGain replayGain = new ReplayGain(all, 1.0);
+    assertThat(Long.valueOf(round(replayGain.getLoudness())), equalTo(Long.valueOf(-2000)));
+  }
+
+  @Test
+  public void testGetLoudness_Silent() {
+    ReplayGain replayGain = new ReplayGain(blocks(-80.0, 10), 0.0);
+    assertThat(Double.valueOf(replayGain.getLoudness()), equalTo(Double.valueOf(Double.NEGATIVE_INFINITY)));
+    assertThat(Double.valueOf(replayGain.getGain()), equalTo(Double.valueOf(0.0)));
+
+    replayGain = new ReplayGain(null, 0.0);
+    assertThat(Integer.valueOf(replayGain.getBlocks()), equalTo(Integer.valueOf(0)));
+    assertThat(Double.valueOf(replayGain.getGain()), equalTo(Double.valueOf(0.0)));
+  }
+
+  @Test
+  public void testAlbum() {
+    assertThat(ReplayGain.album(null), nullValue());
+    assertThat(ReplayGain.album(Collections.<ReplayGain> emptyList()), nullValue());
+
+    ReplayGain track1 = new ReplayGain(blocks(-20.0, 10), 0.5);
+    ReplayGain track2 = new ReplayGain(blocks(-20.0, 30), 0.8);
+    ReplayGain album = ReplayGain.album(Arrays.asList(track1, track2));
+    assertThat(Integer.valueOf(album.getBlocks()), equalTo(Integer.valueOf(40)));
+    assertThat(Long.valueOf(round(album.getLoudness())), equalTo(Long.valueOf(-2000)));
+    assertThat(Double.valueOf(album.getPeak()), equalTo(Double.valueOf(0.8)));
+  }
+}
@@ -0,0 +1,44 @@
+package nl.pelagic.audio.conversion.flac2mp3.api;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestReplayGainAlbum {
+
+  @Test
+  public void testAdd() {
+    ReplayGainAlbum album = new ReplayGainAlbum(2);
+    assertThat(Boolean.valueOf(album.isComplete()), equalTo(Boolean.FALSE));
+    assertThat(album.getReplayGain(), nullValue());
+
+    album.add(new ReplayGain(new double[] {
+      0.1
+    }, 0.5), Arrays.asList(new File("a.mp3"), new File("b/a.mp3")));
+    assertThat(Boolean.valueOf(album.isComplete()), equalTo(Boolean.FALSE));
+    assertThat(album.getReplayGain(), nullValue());
+
+    album.add(new ReplayGain(new double[] {
+      0.1
+    }, 0.8), Arrays.asList(new File("c.mp3")));
+    assertThat(Boolean.valueOf(album.isComplete()), equalTo(Boolean.TRUE));
+    assertThat(album.getReplayGain(), notNullValue());
+    assertThat(Double.valueOf(album.getReplayGain().getPeak()), equalTo(Double.valueOf(0.8)));
+    assertThat(album.getMp3s(), equalTo(Arrays.asList(new File("a.mp3"), new File("b/a.mp3"), new File("c.mp3"))));
+  }
+
+  @Test
+  public void testIsComplete_NoTracks() {
+    ReplayGainAlbum album = new ReplayGainAlbum(0);
+    assertThat(Boolean.valueOf(album.isComplete()), equalTo(Boolean.FALSE));
+  }
+}
@@ -0,0 +1,262 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.conversion.flac2mp3.i18n.Messages;
+
+/**
+ * <p>
+ * Adapts the number of conversions that are run concurrently to the pressure
+ * on the system, between a floor and a ceiling.
+ * </p>
+ * <p>
+ * At most once per interval, the controller samples the system load average,
+ * the fraction of CPU time spent waiting for disk I/O and the throughput of
+ * the conversions (the number of decoded audio bytes piped from flac to lame
+ * per second), and then moves the concurrency at most one step:
+ * </p>
+ * <ul>
+ * <li>the load that is not caused by the conversions themselves determines
+ * the number of processors that are available for conversions: the
+ * concurrency moves towards that number;</li>
+ * <li>when the disk wait is high then the concurrency is decreased, since more
+ * conversions would only wait for the disk;</li>
+ * <li>when the previous increase didn't increase the throughput then it is
+ * undone and the concurrency isn't increased again for a number of
+ * intervals.</li>
+ * </ul>
+ * <p>
+ * Unavailable measurements (for example the disk wait on systems without
+ * /proc/stat) are ignored. Every change is logged, with the measurements on
+ * which it was based.
+ * </p>
+ */
+class ConcurrencyController {
+  /** the minimum interval between decisions, in nanoseconds */
+  static final long INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+  /** the fraction of CPU time waiting for disk I/O above which disk wait is high */
+  static final double IOWAIT_HIGH = 0.25;
+
+  /** the minimum relative throughput gain for an increase to pay off */
+  static final double MIN_THROUGHPUT_GAIN = 1.05;
+
+  /** the number of intervals during which an increase is not retried */
+  static final int HOLD_INTERVALS = 12;
+
+  /** the file with the Linux CPU time counters */
+  private static final File PROC_STAT = new File("/proc/stat"); //$NON-NLS-1$
+
+  /** the logger */
+  private static final Logger logger = Logger.getLogger(ConcurrencyController.class.getName());
+
+  /** the number of processors */
+  private final int processors;
+
+  /** the floor of the concurrency */
+  private int min = 1;
+
+  /** the ceiling of the concurrency */
+  private int max = 1;
+
+  /** the concurrency */
+  private int concurrency = -1;
+
+  /** the time of the previous decision, in nanoseconds */
+  private long lastDecision = 0;
+
+  /** the number of bytes piped at the time of the previous decision */
+  private long lastBytes = 0;
+
+  /** the throughput in the previous interval, in bytes per second */
+  private double lastThroughput = 0.0;
+
+  /** true when the previous decision increased the concurrency */
+  private boolean lastIncreased = false;
+
+  /** the number of intervals during which the concurrency is not increased */
+  private int hold = 0;
+
+  /** the CPU time counters at the time of the previous decision */
+  private long[] lastCpuTimes = null;
+
+  /**
+   * Constructor
+   *
+   * @param processors the number of processors
+   */
+  ConcurrencyController(int processors) {
+    super();
+    this.processors = Math.max(1, processors);
+  }
+
+  /**
+   * Set the floor and the ceiling of the concurrency. The concurrency starts
+   * at the ceiling and is clamped between the floor and the ceiling.
+   *
+   * @param floor the floor (values below 1 are treated as 1)
+   * @param ceiling the ceiling (values below the floor are treated as the
+   *          floor)
+   */
+  synchronized void configure(int floor, int ceiling) {
+    min = Math.max(1, floor);
+    max = Math.max(min, ceiling);
+    if (concurrency < 0) {
+      concurrency = max;
+    }
+    concurrency = Math.min(max, Math.max(min, concurrency));
+  }
+
+  /**
+   * @return the concurrency
+   */
+  synchronized int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * @return the system load average over the last minute, negative when not
+   *         available
+   */
+  double getLoadAverage() {
+    return ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+  }
+
+  /**
+   * @return the CPU time counters (total and iowait), null when not available
+   */
+  long[] getCpuTimes() {
+    if (!PROC_STAT.isFile()) {
+      return null;
+    }
+
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(PROC_STAT), "US-ASCII"))) { //$NON-NLS-1$
+      String line = reader.readLine();
+      if ((line == null) || !line.startsWith("cpu ")) { //$NON-NLS-1$
+        return null;
+      }
+
+      /* cpu user nice system idle iowait irq softirq ... */
+      String[] fields = line.trim().split("\\s+"); //$NON-NLS-1$
+      if (fields.length < 6) {
+        return null;
+      }
+
+      long total = 0;
+      for (int i = 1; i < fields.length; i++) {
+        total += Long.parseLong(fields[i]);
+      }
+      return new long[] {
+          total, Long.parseLong(fields[5])
+      };
+    }
+    catch (IOException | NumberFormatException e) {
+      /* swallow, not available */
+      return null;
+    }
+  }
+
+  /**
+   * @param cpuTimes the current CPU time counters, null when not available
+   * @return the fraction of CPU time spent waiting for disk I/O since the
+   *         previous decision, negative when not available
+   */
+  private double ioWait(long[] cpuTimes) {
+    if ((cpuTimes == null) || (lastCpuTimes == null) || (cpuTimes[0] <= lastCpuTimes[0])) {
+      return -1.0;
+    }
+    return (cpuTimes[1] - lastCpuTimes[1]) / (double) (cpuTimes[0] - lastCpuTimes[0]);
+  }
+
+  /**
+   * Decide on the concurrency, at most once per interval
+   *
+   * @param now the current time, in nanoseconds
+   * @param bytes the total number of bytes piped by the conversions
+   * @param active the number of conversions that are in progress
+   * @return true when the concurrency was changed
+   */
+  synchronized boolean adjust(long now, long bytes, int active) {
+    if (concurrency < 0) {
+      return false;
+    }
+
+    long[] cpuTimes = getCpuTimes();
+    if (lastDecision == 0) {
+      /* the first sample only sets the baseline */
+      lastDecision = now;
+      lastBytes = bytes;
+      lastCpuTimes = cpuTimes;
+      return false;
+    }
+
+    long elapsed = now - lastDecision;
+    if (elapsed < INTERVAL) {
+      return false;
+    }
+
+    double load = getLoadAverage();
+    double ioWait = ioWait(cpuTimes);
+    double throughput = (bytes - lastBytes) / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+
+    int target = concurrency;
+    String reason = null;
+
+    if (load >= 0.0) {
+      /* the load that is not caused by the conversions themselves */
+      double otherLoad = Math.max(0.0, load - active);
+      int available = (int) Math.floor(processors - otherLoad);
+      if (available < concurrency) {
+        target = concurrency - 1;
+        reason = Messages.getString("ConcurrencyController.1"); //$NON-NLS-1$
+      } else if (available > concurrency) {
+        target = concurrency + 1;
+        reason = Messages.getString("ConcurrencyController.2"); //$NON-NLS-1$
+      }
+    }
+
+    if ((ioWait >= IOWAIT_HIGH) && (target >= concurrency)) {
+      target = concurrency - 1;
+      reason = Messages.getString("ConcurrencyController.3"); //$NON-NLS-1$
+    }
+
+    if (lastIncreased && (lastThroughput > 0.0) && (throughput < (lastThroughput * MIN_THROUGHPUT_GAIN))
+        && (target >= concurrency)) {
+      target = concurrency - 1;
+      hold = HOLD_INTERVALS;
+      reason = Messages.getString("ConcurrencyController.4"); //$NON-NLS-1$
+    } else if ((target > concurrency) && (hold > 0)) {
+      target = concurrency;
+    }
+
+    if (hold > 0) {
+      hold--;
+    }
+
+    target = Math.min(max, Math.max(min, target));
+    boolean changed = (target != concurrency);
+    if (changed) {
+      logger.log(Level.INFO, String.format(Messages.getString("ConcurrencyController.0"), //$NON-NLS-1$
+          Integer.valueOf(concurrency), Integer.valueOf(target), reason, Double.valueOf(load),
+          Double.valueOf(ioWait * 100.0), Double.valueOf(throughput / (1024.0 * 1024.0))));
+    }
+
+    lastIncreased = (target > concurrency);
+    concurrency = target;
+    lastDecision = now;
+    lastBytes = bytes;
+    lastThroughput = throughput;
+    lastCpuTimes = cpuTimes;
+
+    return changed;
+  }
+}
@@ -0,0 +1,116 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.pelagic.jaudiotagger.util.FlacUtils;
+
+/**
+ * <p>
+ * A queued (asynchronous) conversion.
+ * </p>
+ * <p>
+ * Jobs are ordered longest-job-first within their priority: a job with a
+ * higher priority comes before a job with a lower priority, then a job with a
+ * higher estimated cost comes before a job with a lower estimated cost and
+ * otherwise the job that was queued first comes first.
+ * </p>
+ * <p>
+ * A job runs its conversion at most once, also when it's run by more than one
+ * thread.
+ * </p>
+ */
+class ConversionJob implements Runnable, Comparable<ConversionJob> {
+  /** the sequence number of the next job */
+  private static final AtomicLong nextSequence = new AtomicLong(0);
+
+  /** the priority of the job */
+  private final int priority;
+
+  /** the estimated cost of the job */
+  private final long cost;
+
+  /** the sequence number of the job, in queueing order */
+  private final long sequence;
+
+  /** the conversion */
+  private final Runnable conversion;
+
+  /** true when the conversion was started */
+  private final AtomicBoolean started = new AtomicBoolean(false);
+
+  /**
+   * Constructor
+   *
+   * @param priority the priority of the job
+   * @param cost the estimated cost of the job
+   * @param conversion the conversion
+   */
+  ConversionJob(int priority, long cost, Runnable conversion) {
+    super();
+    this.priority = priority;
+    this.cost = cost;
+    this.sequence = nextSequence.getAndIncrement();
+    this.conversion = conversion;
+  }
+
+  /**
+   * Estimate the cost of converting a flac file: the size of its decoded audio
+   * when it's known, the size of the file otherwise (a lower bound of the size
+   * of the decoded audio). Only the start of the file is read.
+   *
+   * @param flac the flac file
+   * @return the estimated cost, 0 when the file doesn't exist
+   */
+  static long estimateCost(File flac) {
+    if (flac == null) {
+      return 0;
+    }
+
+    try {
+      long decodedSize = FlacUtils.getDecodedSize(flac);
+      if (decodedSize > 0) {
+        return decodedSize;
+      }
+    }
+    catch (IOException e) {
+      /* swallow, fall back to the file size */
+    }
+
+    return flac.length();
+  }
+
+  /**
+   * @return the priority of the job
+   */
+  int getPriority() {
+    return priority;
+  }
+
+  /**
+   * @return the estimated cost of the job
+   */
+  long getCost() {
+    return cost;
+  }
+
+  @Override
+  public void run() {
+    if (started.compareAndSet(false, true)) {
+      conversion.run();
+    }
+  }
+
+  @Override
+  public int compareTo(ConversionJob other) {
+    if (priority != other.priority) {
+      return (priority > other.priority) ? -1 : 1;
+    }
+    if (cost != other.cost) {
+      return (cost > other.cost) ? -1 : 1;
+    }
+    return Long.compare(sequence, other.sequence);
+  }
+}
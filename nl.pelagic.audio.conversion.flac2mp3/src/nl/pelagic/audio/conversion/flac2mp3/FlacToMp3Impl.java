@@ -2,36 +2,66 @@ package nl.pelagic.audio.conversion.flac2mp3;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics;
 import nl.pelagic.audio.conversion.flac2mp3.api.Flac2Mp3Configuration;
+import nl.pelagic.audio.conversion.flac2mp3.api.Flac2Mp3Configuration.Transport;
 import nl.pelagic.audio.conversion.flac2mp3.api.FlacToMp3;
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGain;
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGainAlbum;
 import nl.pelagic.audio.conversion.flac2mp3.i18n.Messages;
+import nl.pelagic.jaudiotagger.reader.TagReader;
+import nl.pelagic.jaudiotagger.util.FlacUtils;
 import nl.pelagic.jaudiotagger.util.TagUtils;
 import nl.pelagic.shell.script.listener.api.ShellScriptListener;
 import nl.pelagic.shutdownhook.api.ShutdownHookParticipant;
 import nl.pelagic.util.file.DirUtils;
 import nl.pelagic.util.string.StringUtils;
 
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
 import org.jaudiotagger.audio.mp3.MP3File;
 import org.jaudiotagger.tag.FieldDataInvalidException;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.KeyNotFoundException;
-import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagField;
 import org.jaudiotagger.tag.flac.FlacTag;
+import org.jaudiotagger.tag.id3.AbstractID3v2Frame;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
 import org.jaudiotagger.tag.id3.ID3v11Tag;
 import org.jaudiotagger.tag.id3.ID3v1Tag;
+import org.jaudiotagger.tag.id3.ID3v24Frame;
+import org.jaudiotagger.tag.id3.ID3v24Frames;
 import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.jaudiotagger.tag.id3.framebody.FrameBodyTXXX;
+import org.jaudiotagger.tag.id3.valuepair.TextEncoding;
 
 import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Reference;
@@ -62,12 +92,23 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
     this.shellScriptListener.compareAndSet(shellScriptListener, null);
   }
 
-  /** the pipeContainer between flac and lame */
-  private AtomicReference<Pipe> pipeContainer = new AtomicReference<>();
+  /** the pipes between flac and lame of all running conversions */
+  private Set<Pipe> pipes = ConcurrentHashMap.newKeySet();
+
+  /** the named pipes between flac and lame of all running conversions */
+  private Set<NamedPipe> namedPipes = ConcurrentHashMap.newKeySet();
+
+  /** the performance statistics of the conversions */
+  private final ConversionStatistics statistics = new ConversionStatistics();
+
+  @Override
+  public ConversionStatistics getStatistics() {
+    return statistics;
+  }
 
   /**
-   * Do the flac to mp3 conversion by executing flac and lame with a
-   * pipeContainer in between the 2 processes.
+   * Do the flac to mp3 conversion by executing flac and lame with a pipe in
+   * between the 2 processes that copies the audio through the JVM.
    * 
    * @param flac the flac (source) file
    * @param mp3 the mp3 (destination) file
@@ -76,32 +117,160 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
    * @return true when successful, false otherwise
    */
   boolean runConversionProcesses(File flac, File mp3, List<String> flacCommandList, List<String> lameCommandList) {
+    return runConversionProcesses(flac, mp3, flacCommandList, lameCommandList, Transport.JVM);
+  }
+
+  /**
+   * Do the flac to mp3 conversion by executing flac and lame with a pipe in
+   * between the 2 processes. The duration and the byte counts of a successful
+   * conversion are recorded in the statistics.
+   * 
+   * @param flac the flac (source) file
+   * @param mp3 the mp3 (destination) file
+   * @param flacCommandList the command list used to execute flac
+   * @param lameCommandList the command list used to execute lame
+   * @param transport the transport of the audio from flac to lame. The
+   *          {@link Transport#OS} transport falls back to the
+   *          {@link Transport#JVM} transport when no named pipe could be
+   *          created.
+   * @return true when successful, false otherwise
+   */
+  boolean runConversionProcesses(File flac, File mp3, List<String> flacCommandList, List<String> lameCommandList,
+      Transport transport) {
+    return runConversionProcesses(flac, mp3, flacCommandList, lameCommandList, transport, false);
+  }
+
+  /**
+   * Do the flac to mp3 conversion by executing flac and lame with a pipe in
+   * between the 2 processes.
+   * 
+   * @param flac the flac (source) file
+   * @param mp3 the mp3 (destination) file
+   * @param flacCommandList the command list used to execute flac
+   * @param lameCommandList the command list used to execute lame
+   * @param transport the transport of the audio from flac to lame. The
+   *          {@link Transport#OS} transport falls back to the
+   *          {@link Transport#JVM} transport when no named pipe could be
+   *          created.
+   * @param segment true when a segment of a segmented conversion is converted,
+   *          in which case only the decoded audio bytes are recorded in the
+   *          statistics
+   * @return true when successful, false otherwise
+   */
+  boolean runConversionProcesses(File flac, File mp3, List<String> flacCommandList, List<String> lameCommandList,
+      Transport transport, boolean segment) {
+    return runConversionProcesses(flac, Collections.singletonList(mp3), flacCommandList,
+        Collections.singletonList(lameCommandList), transport, segment, null)[0];
+  }
+
+  /**
+   * Do the flac to mp3 conversion of several targets by executing flac once and
+   * lame for every target, with a pipe in between that copies the audio from
+   * the flac process to all lame processes.
+   * 
+   * @param flac the flac (source) file
+   * @param mp3s the mp3 (destination) files
+   * @param flacCommandList the command list used to execute flac
+   * @param lameCommandLists the command lists used to execute lame, in the
+   *          same order as mp3s
+   * @param transport the transport of the audio from flac to lame. The
+   *          {@link Transport#OS} transport is only used when there is a
+   *          single lame process and falls back to the {@link Transport#JVM}
+   *          transport when no named pipe could be created.
+   * @param segment true when a segment of a segmented conversion is converted,
+   *          in which case only the decoded audio bytes are recorded in the
+   *          statistics
+   * @param tap the tap that receives a copy of the decoded audio, null for no
+   *          tap. A tap needs the audio to pass through the JVM, so the
+   *          {@link Transport#OS} transport is not used when there is a tap.
+   * @return the results, in the same order as mp3s: true when the conversion
+   *         into the mp3 file was successful, false otherwise
+   */
+  boolean[] runConversionProcesses(File flac, List<File> mp3s, List<String> flacCommandList,
+      List<List<String>> lameCommandLists, Transport transport, boolean segment, Pipe.Tap tap) {
+    int targets = lameCommandLists.size();
+
+    NamedPipe namedPipe = null;
+    if ((transport == Transport.OS) && (targets == 1) && (tap == null)) {
+      namedPipe = NamedPipe.create();
+      if (namedPipe == null) {
+        logger.log(Level.FINE, Messages.getString("FlacToMp3Impl.18")); //$NON-NLS-1$
+      }
+    }
+
     Process flacProcess = null;
-    Process lameProcess = null;
+    Process[] lameProcesses = new Process[targets];
+    Pipe pipe = null;
     int pipeRetval = -1;
+    long pcmBytes = -1;
+    long start = System.nanoTime();
     try {
-      ProcessBuilder flacProcessBuilder =
-          new ProcessBuilder(flacCommandList.toArray(new String[flacCommandList.size()]));
-      ProcessBuilder lameProcessBuilder =
-          new ProcessBuilder(lameCommandList.toArray(new String[lameCommandList.size()]));
+      if (namedPipe != null) {
+        ProcessBuilder flacProcessBuilder =
+            namedPipe.configure(new ProcessBuilder(namedPipe.sourceCommand(flacCommandList)));
+        ProcessBuilder lameProcessBuilder =
+            namedPipe.configure(new ProcessBuilder(namedPipe.destinationCommand(lameCommandLists.get(0))));
+
+        namedPipes.add(namedPipe);
+        if (state.get() != STATE_RUNNING) {
+          /* we were stopped before the named pipe was registered */
+          namedPipe.signalStop();
+        }
 
-      flacProcess = flacProcessBuilder.start();
-      lameProcess = lameProcessBuilder.start();
+        flacProcess = flacProcessBuilder.start();
+        lameProcesses[0] = lameProcessBuilder.start();
 
-      BufferedInputStream flacOutputStream = new BufferedInputStream(flacProcess.getInputStream());
-      BufferedOutputStream lameInputStream = new BufferedOutputStream(lameProcess.getOutputStream());
+        pipeRetval = namedPipe.run(flacProcess, lameProcesses[0]);
+      } else {
+        ProcessBuilder flacProcessBuilder =
+            new ProcessBuilder(flacCommandList.toArray(new String[flacCommandList.size()]));
+        flacProcess = flacProcessBuilder.start();
+
+        List<OutputStream> lameInputStreams = new ArrayList<>(targets);
+        for (int target = 0; target < targets; target++) {
+          List<String> lameCommandList = lameCommandLists.get(target);
+          ProcessBuilder lameProcessBuilder =
+              new ProcessBuilder(lameCommandList.toArray(new String[lameCommandList.size()]));
+          lameProcesses[target] = lameProcessBuilder.start();
+          lameInputStreams.add(new BufferedOutputStream(lameProcesses[target].getOutputStream()));
+        }
 
-      Pipe pipe = new Pipe(flacOutputStream, lameInputStream);
-      pipeContainer.set(pipe);
-      pipe.run();
-      pipeRetval = pipe.getExitValue();
+        BufferedInputStream flacOutputStream = new BufferedInputStream(flacProcess.getInputStream());
+
+        pipe = new Pipe(flacOutputStream, lameInputStreams.toArray(new OutputStream[targets]));
+        pipe.setTap(tap);
+        pipes.add(pipe);
+        if (state.get() != STATE_RUNNING) {
+          /* we were stopped before the pipe was registered */
+          pipe.signalStop();
+        }
+        pipe.run();
+        pipeRetval = pipe.getExitValue();
+        pcmBytes = pipe.getBytesPiped();
+      }
     }
     catch (Exception e) {
-      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.0"), flac.getPath(), mp3.getPath()), e); //$NON-NLS-1$
+      logger.log(Level.WARNING,
+          String.format(Messages.getString("FlacToMp3Impl.0"), flac.getPath(), mp3s.get(0).getPath()), e); //$NON-NLS-1$
       pipeRetval = -1;
+      if ((flacProcess != null) && (lameProcesses[targets - 1] == null)) {
+        /* not all lame processes could be started: don't let them wait */
+        flacProcess.destroy();
+        for (Process lameProcess : lameProcesses) {
+          if (lameProcess != null) {
+            lameProcess.destroy();
+          }
+        }
+      }
     }
     finally {
-      pipeContainer.set(null);
+      if (pipe != null) {
+        pipes.remove(pipe);
+      }
+      if (namedPipe != null) {
+        namedPipes.remove(namedPipe);
+        namedPipe.delete();
+      }
     }
 
     boolean complete = false;
@@ -115,21 +284,277 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
       }
     }
 
-    complete = false;
-    while (!complete && (lameProcess != null)) {
-      try {
-        lameProcess.waitFor();
-        complete = true;
-      }
-      catch (InterruptedException e) {
-        /* swallow & can't be covered by a test */
+    for (Process lameProcess : lameProcesses) {
+      complete = false;
+      while (!complete && (lameProcess != null)) {
+        try {
+          lameProcess.waitFor();
+          complete = true;
+        }
+        catch (InterruptedException e) {
+          /* swallow & can't be covered by a test */
+        }
       }
     }
 
     int flacRetval = (flacProcess != null) ? flacProcess.exitValue() : -1;
-    int lameRetval = (lameProcess != null) ? lameProcess.exitValue() : -1;
 
-    return ((flacRetval == 0) && (lameRetval == 0) && (pipeRetval == 0));
+    /* a failed write only fails the conversion of its own target */
+    if (pipe != null) {
+      pipeRetval &= ~Pipe.EXIT_ERROR_WRITE;
+    }
+
+    boolean[] result = new boolean[targets];
+    boolean anySuccessful = false;
+    long mp3Bytes = 0;
+    for (int target = 0; target < targets; target++) {
+      int lameRetval = (lameProcesses[target] != null) ? lameProcesses[target].exitValue() : -1;
+      result[target] =
+          (flacRetval == 0) && (lameRetval == 0) && (pipeRetval == 0)
+              && ((pipe == null) || !pipe.isWriteFailed(target));
+      if (result[target]) {
+        anySuccessful = true;
+        mp3Bytes += mp3s.get(target).length();
+      }
+    }
+
+    if (anySuccessful) {
+      if (!segment) {
+        statistics.record(ConversionStatistics.Stage.ENCODE, System.nanoTime() - start);
+        statistics.record(ConversionStatistics.Counter.FLAC_BYTES, flac.length());
+      }
+      if (pcmBytes >= 0) {
+        /* the audio doesn't pass through the JVM with a named pipe */
+        statistics.record(ConversionStatistics.Counter.PCM_BYTES, pcmBytes);
+      }
+      if (!segment) {
+        statistics.record(ConversionStatistics.Counter.MP3_BYTES, mp3Bytes);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * @param configuration the configuration
+   * @param flac the flac file
+   * @return the segmented conversion of the flac file, null when the flac file
+   *         is not converted in segments: when segmented conversion is
+   *         disabled, when the duration of the flac file is not above the
+   *         segment threshold or when it's unknown
+   */
+  static SegmentedConversion getSegmentedConversion(Flac2Mp3Configuration configuration, File flac) {
+    return getSegmentedConversion(configuration, flac, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param configuration the configuration
+   * @param flac the flac file
+   * @param concurrency the number of conversions that run concurrently, the
+   *          maximum number of segments
+   * @return the segmented conversion of the flac file, null when the flac file
+   *         is not converted in segments: when segmented conversion is
+   *         disabled, when less than 2 segments can be encoded concurrently,
+   *         when the duration of the flac file is not above the segment
+   *         threshold or when it's unknown
+   */
+  static SegmentedConversion getSegmentedConversion(Flac2Mp3Configuration configuration, File flac, int concurrency) {
+    int segments = Math.min(configuration.getSegments(), concurrency);
+    if ((configuration.getSegmentThreshold() <= 0) || (segments < 2)) {
+      return null;
+    }
+
+    try {
+      long totalSamples = FlacUtils.getTotalSamples(flac);
+      int sampleRate = FlacUtils.getSampleRate(flac);
+      if ((totalSamples <= 0) || (sampleRate <= 0)
+          || (totalSamples <= (((long) configuration.getSegmentThreshold()) * sampleRate))) {
+        return null;
+      }
+
+      SegmentedConversion segmented = new SegmentedConversion(totalSamples, sampleRate, segments);
+      return (segmented.getCount() < 2) ? null : segmented;
+    }
+    catch (IOException e) {
+      /* swallow, convert in one go */
+      return null;
+    }
+  }
+
+  /**
+   * The priority of the queued segments of a segmented conversion: above the
+   * priority of all conversions, so that a started segmented conversion is
+   * completed before other conversions are started
+   */
+  static final int SEGMENT_PRIORITY = Integer.MAX_VALUE;
+
+  /**
+   * Do the flac to mp3 conversion in segments that are encoded concurrently
+   * and then joined. Falls back to a conversion in one go when the segments
+   * can't be joined frame-accurately.
+   * 
+   * @param configuration the configuration
+   * @param flac the flac (source) file
+   * @param mp3 the mp3 file that is converted
+   * @param target the file into which the mp3 file is converted
+   * @param segmented the segmented conversion
+   * @param flacCommandList the command list used to execute flac for a
+   *          conversion in one go
+   * @param lameCommandList the command list used to execute lame for a
+   *          conversion in one go
+   * @param lameOptions the lame options of the target of the mp3 file
+   * @param simulate true to only report the commands
+   * @return true when successful, false otherwise
+   */
+  boolean runSegmentedConversion(Flac2Mp3Configuration configuration, final File flac, File mp3, File target,
+      SegmentedConversion segmented, List<String> flacCommandList, List<String> lameCommandList,
+      List<String> lameOptions, boolean simulate) {
+    int count = segmented.getCount();
+    List<File> segmentMp3s = new ArrayList<>(count);
+    List<List<String>> segmentFlacCommandLists = new ArrayList<>(count);
+    List<List<String>> segmentLameCommandLists = new ArrayList<>(count);
+
+    ShellScriptListener listener = shellScriptListener.get();
+    for (int segment = 0; segment < count; segment++) {
+      File segmentMp3 = SegmentedConversion.getSegmentMp3File(mp3, segment);
+
+      /* decode the segment, including its overlap */
+      List<String> segmentFlacCommandList = new LinkedList<>(flacCommandList);
+      int fileIndex = segmentFlacCommandList.size() - 1;
+      segmentFlacCommandList.add(fileIndex, "--skip=" + segmented.getDecodeStart(segment)); //$NON-NLS-1$
+      long decodeEnd = segmented.getDecodeEnd(segment);
+      if (decodeEnd >= 0) {
+        segmentFlacCommandList.add(fileIndex + 1, "--until=" + decodeEnd); //$NON-NLS-1$
+      }
+
+      /* only the first segment gets the tags and the Xing/Info frame */
+      List<String> segmentLameCommandList = new LinkedList<>();
+      if (segment == 0) {
+        segmentLameCommandList.addAll(lameCommandList);
+        segmentLameCommandList.set(segmentLameCommandList.size() - 1, segmentMp3.getPath());
+      } else {
+        segmentLameCommandList.add(configuration.getLameExecutable());
+        segmentLameCommandList.addAll(lameOptions);
+        segmentLameCommandList.add("-t"); //$NON-NLS-1$
+        segmentLameCommandList.add("-"); //$NON-NLS-1$
+        segmentLameCommandList.add(segmentMp3.getPath());
+      }
+      segmentLameCommandList.add(1, "--nores"); //$NON-NLS-1$
+
+      segmentMp3s.add(segmentMp3);
+      segmentFlacCommandLists.add(segmentFlacCommandList);
+      segmentLameCommandLists.add(segmentLameCommandList);
+
+      if (listener != null) {
+        listener.addCommand(String.format("%s | \\%n%s &", //$NON-NLS-1$
+            listener.commandListToString(segmentFlacCommandList, 0),
+            listener.commandListToString(segmentLameCommandList, 4)));
+      }
+    }
+
+    if (listener != null) {
+      listener.addCommand("wait"); //$NON-NLS-1$
+      listener.addMessage(String.format(Messages.getString("FlacToMp3Impl.21"), Integer.valueOf(count), //$NON-NLS-1$
+          target.getPath()));
+    }
+
+    if (simulate) {
+      return true;
+    }
+
+    final Transport transport = configuration.getTransport();
+    long start = System.nanoTime();
+    boolean result = false;
+    try {
+      /*
+       * the other segments are queued on the conversion pool ahead of all
+       * other queued conversions, so that the segments stay within the
+       * concurrency of the conversions. The first segment is encoded on this
+       * thread.
+       */
+      final AtomicInteger failures = new AtomicInteger(0);
+      final CountDownLatch segmentsDone = new CountDownLatch(count - 1);
+      ThreadPoolExecutor executor = getPool(getConcurrency(configuration));
+      List<ConversionJob> jobs = new LinkedList<>();
+      for (int segment = 1; segment < count; segment++) {
+        final File segmentMp3 = segmentMp3s.get(segment);
+        final List<String> segmentFlacCommandList = segmentFlacCommandLists.get(segment);
+        final List<String> segmentLameCommandList = segmentLameCommandLists.get(segment);
+        ConversionJob job = new ConversionJob(SEGMENT_PRIORITY, 0, new Runnable() {
+          @Override
+          public void run() {
+            try {
+              if (!runConversionProcesses(flac, segmentMp3, segmentFlacCommandList, segmentLameCommandList,
+                  transport, true)) {
+                failures.incrementAndGet();
+              }
+            }
+            finally {
+              segmentsDone.countDown();
+            }
+          }
+        });
+        jobs.add(job);
+        try {
+          executor.execute(job);
+        }
+        catch (RejectedExecutionException e) {
+          /* the pool was shut down, the segment is encoded on this thread */
+        }
+      }
+
+      result =
+          runConversionProcesses(flac, segmentMp3s.get(0), segmentFlacCommandLists.get(0),
+              segmentLameCommandLists.get(0), transport, true);
+
+      /*
+       * encode the segments that were not started by the pool on this thread,
+       * which also guarantees progress when all threads of the pool are busy
+       */
+      for (ConversionJob job : jobs) {
+        executor.remove(job);
+        job.run();
+      }
+
+      boolean complete = false;
+      while (!complete) {
+        try {
+          segmentsDone.await();
+          complete = true;
+        }
+        catch (InterruptedException e) {
+          /* swallow & can't be covered by a test */
+        }
+      }
+
+      result = result && (failures.get() == 0) && (state.get() == STATE_RUNNING);
+      if (result) {
+        if (segmented.join(segmentMp3s, target)) {
+          statistics.record(ConversionStatistics.Stage.ENCODE, System.nanoTime() - start);
+          statistics.record(ConversionStatistics.Counter.FLAC_BYTES, flac.length());
+          statistics.record(ConversionStatistics.Counter.MP3_BYTES, target.length());
+        } else {
+          logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.22"), flac.getPath())); //$NON-NLS-1$
+          result =
+              (state.get() == STATE_RUNNING)
+                  && runConversionProcesses(flac, target, flacCommandList, lameCommandList, transport);
+        }
+      }
+    }
+    catch (IOException e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.0"), flac.getPath(), target.getPath()), e); //$NON-NLS-1$
+      result = false;
+    }
+    finally {
+      for (File segmentMp3 : segmentMp3s) {
+        if (segmentMp3.exists() && !segmentMp3.delete()) {
+          /* can't be covered by a test */
+          logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.6"), segmentMp3.getPath())); //$NON-NLS-1$
+        }
+      }
+    }
+
+    return result;
   }
 
   /**
@@ -234,136 +659,462 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
     return mp3tag;
   }
 
+  /** the description of the (private) TXXX frame with the MD5 signature of the audio */
+  static final String AUDIO_MD5_DESCRIPTION = "FLAC2MP3_AUDIO_MD5"; //$NON-NLS-1$
+
   /**
-   * Update the tag of the mp3 file with tag information fetched from the
-   * corresponding flac file (tagInformation)
+   * Get the value of a user defined (TXXX) frame of a tag
    * 
-   * @param mp3 the mp3 file
-   * @param tagInformation the tag information (fetched from the flac file)
-   * @param overRide true to override the tag information in the mp3 file
-   * @return true upon success, false otherwise
+   * @param mp3tag the tag of the mp3 file
+   * @param description the description of the frame
+   * @return null when not present or empty, the value otherwise
    */
-  boolean setMp3Tag(File mp3, TagInformation tagInformation, boolean overRide) {
-    assert (mp3 != null);
-    assert (tagInformation != null);
-
-    boolean result = true;
+  static String getUserDefinedInfo(ID3v24Tag mp3tag, String description) {
+    assert (mp3tag != null);
 
-    try {
-      MP3File mp3file = new MP3File(mp3);
+    for (TagField field : mp3tag.getFields(ID3v24Frames.FRAME_ID_USER_DEFINED_INFO)) {
+      if (!(field instanceof AbstractID3v2Frame)) {
+        /* can't be covered by a test */
+        continue;
+      }
 
-      ID3v24Tag mp3tag;
-      if (mp3file.hasID3v2Tag()) {
-        mp3tag = mp3file.getID3v2TagAsv24();
-      } else {
-        if (mp3file.hasID3v1Tag()) {
-          mp3tag = convertFromId3V1(mp3file.getID3v1Tag());
-        } else {
-          /*
-           * Can't be covered by a test since mp3file.hasID3v2Tag() also covers
-           * the situation that the file has no tag. This line is here for
-           * safety.
-           */
-          mp3tag = new ID3v24Tag();
-        }
-        mp3file.setTag(mp3tag);
+      Object body = ((AbstractID3v2Frame) field).getBody();
+      if ((body instanceof FrameBodyTXXX) && description.equals(((FrameBodyTXXX) body).getDescription())) {
+        String value = ((FrameBodyTXXX) body).getFirstTextValue();
+        return ((value == null) || value.isEmpty()) ? null : value;
       }
+    }
 
-      result = /* result && */setMp3TagField(mp3, mp3tag, FieldKey.ALBUM, tagInformation.getAlbum(), overRide);
-      result = result && setMp3TagField(mp3, mp3tag, FieldKey.ALBUM_ARTIST, tagInformation.getAlbumArtist(), overRide);
-      result = result && setMp3TagField(mp3, mp3tag, FieldKey.ARTIST, tagInformation.getArtist(), overRide);
-      result = result && setMp3TagField(mp3, mp3tag, FieldKey.YEAR, tagInformation.getDate(), overRide);
+    return null;
+  }
 
-      String[] discNumberSplit = {
-          null, null
-      };
-      String discNumber = tagInformation.getDiscNumber();
-      if (discNumber != null) {
-        discNumber = discNumber.trim();
-        if (discNumber.matches("^\\d+\\s*/\\s*\\d+$")) { //$NON-NLS-1$
-          discNumberSplit = discNumber.split("\\s*/\\s*", 2); //$NON-NLS-1$
-        }
-      }
-      result =
-          result
-              && setMp3TagField(mp3, mp3tag, FieldKey.DISC_NO, (discNumberSplit.length >= 1)
-                  ? discNumberSplit[0]
-                  : null, overRide);
-      result =
-          result
-              && setMp3TagField(mp3, mp3tag, FieldKey.DISC_TOTAL, (discNumberSplit.length >= 2)
-                  ? discNumberSplit[1]
-                  : null, overRide);
+  /**
+   * Set a user defined (TXXX) frame of a tag. Replaces an existing frame with
+   * the same description.
+   * 
+   * @param mp3tag the tag of the mp3 file
+   * @param description the description of the frame
+   * @param value the value of the frame
+   * @throws FieldDataInvalidException when the frame could not be set
+   */
+  static void setUserDefinedInfo(ID3v24Tag mp3tag, String description, String value)
+      throws FieldDataInvalidException {
+    ID3v24Frame frame = new ID3v24Frame(ID3v24Frames.FRAME_ID_USER_DEFINED_INFO);
+    frame.setBody(new FrameBodyTXXX(TextEncoding.ISO_8859_1, description, value));
+    mp3tag.setField(frame);
+  }
 
-      result = result && setMp3TagField(mp3, mp3tag, FieldKey.GENRE, tagInformation.getGenre(), overRide);
-      result = result && setMp3TagField(mp3, mp3tag, FieldKey.TITLE, tagInformation.getTitle(), overRide);
-      result = result && setMp3TagField(mp3, mp3tag, FieldKey.TRACK, tagInformation.getTrackNumber(), overRide);
-      result = result && setMp3TagField(mp3, mp3tag, FieldKey.TRACK_TOTAL, tagInformation.getTrackTotal(), overRide);
+  /**
+   * Get the MD5 signature of the (unencoded) flac audio from which an mp3 file
+   * was converted.
+   * 
+   * @param mp3tag the tag of the mp3 file
+   * @return null when not present, the MD5 signature otherwise
+   */
+  static String getAudioMd5(ID3v24Tag mp3tag) {
+    return getUserDefinedInfo(mp3tag, AUDIO_MD5_DESCRIPTION);
+  }
 
-      if (result) {
-        mp3file.setID3v2Tag(mp3tag);
-        mp3file.commit();
-      }
-    }
-    catch (Throwable e) {
-      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.3"), mp3.getPath()), e); //$NON-NLS-1$
-      result = false;
+  /**
+   * Set the MD5 signature of the (unencoded) flac audio from which an mp3 file
+   * was converted. Replaces an existing signature.
+   * 
+   * @param mp3tag the tag of the mp3 file
+   * @param audioMd5 the MD5 signature. When null then an empty signature is
+   *          set, but only when a signature is already present.
+   * @throws FieldDataInvalidException when the signature could not be set
+   */
+  static void setAudioMd5(ID3v24Tag mp3tag, String audioMd5) throws FieldDataInvalidException {
+    assert (mp3tag != null);
+
+    if ((audioMd5 == null) && (getAudioMd5(mp3tag) == null)) {
+      return;
     }
 
-    return result;
+    setUserDefinedInfo(mp3tag, AUDIO_MD5_DESCRIPTION, (audioMd5 == null) ? "" : audioMd5); //$NON-NLS-1$
+  }
+
+  /** the description of the TXXX frame with the ReplayGain gain of the track */
+  static final String REPLAYGAIN_TRACK_GAIN = "REPLAYGAIN_TRACK_GAIN"; //$NON-NLS-1$
+
+  /** the description of the TXXX frame with the ReplayGain peak of the track */
+  static final String REPLAYGAIN_TRACK_PEAK = "REPLAYGAIN_TRACK_PEAK"; //$NON-NLS-1$
+
+  /** the description of the TXXX frame with the ReplayGain gain of the album */
+  static final String REPLAYGAIN_ALBUM_GAIN = "REPLAYGAIN_ALBUM_GAIN"; //$NON-NLS-1$
+
+  /** the description of the TXXX frame with the ReplayGain peak of the album */
+  static final String REPLAYGAIN_ALBUM_PEAK = "REPLAYGAIN_ALBUM_PEAK"; //$NON-NLS-1$
+
+  /**
+   * the room that is reserved in the ID3v2 tag that lame writes for the
+   * ReplayGain of the track and of the album
+   */
+  static final int REPLAYGAIN_TAG_SIZE = 256;
+
+  /**
+   * @param replayGain the ReplayGain
+   * @param album true for the gain and peak of the album, false for those of
+   *          the track
+   * @return the values of the TXXX frames with the gain and the peak
+   */
+  static String[] getReplayGainValues(ReplayGain replayGain, boolean album) {
+    return new String[] {
+        album ? REPLAYGAIN_ALBUM_GAIN : REPLAYGAIN_TRACK_GAIN,
+        String.format(Locale.ROOT, "%+.2f dB", Double.valueOf(replayGain.getGain())), //$NON-NLS-1$
+        album ? REPLAYGAIN_ALBUM_PEAK : REPLAYGAIN_TRACK_PEAK,
+        String.format(Locale.ROOT, "%.6f", Double.valueOf(replayGain.getPeak())) //$NON-NLS-1$
+    };
   }
 
   /**
-   * Update the timestamp on an mp3 file: copy the timestamp from the flac file.
-   * If this operation fails then that's ok: the mp3 file will have a newer
-   * timestamp than the flac file anyway.
+   * Set the ReplayGain in a tag
    * 
-   * @param flac the flac file
    * @param mp3 the mp3 file
-   * @return true
+   * @param mp3tag the tag of the mp3 file
+   * @param replayGain the ReplayGain
+   * @param album true to set the gain and peak of the album, false to set those
+   *          of the track
+   * @return true upon success, false otherwise
    */
-  boolean updateTimestamp(File flac, File mp3) {
-    if (!mp3.setLastModified(flac.lastModified())) {
+  boolean setReplayGain(File mp3, ID3v24Tag mp3tag, ReplayGain replayGain, boolean album) {
+    String[] values = getReplayGainValues(replayGain, album);
+    try {
+      for (int i = 0; i < values.length; i += 2) {
+        setUserDefinedInfo(mp3tag, values[i], values[i + 1]);
+      }
+    }
+    catch (FieldDataInvalidException e) {
       /* can't be covered by a test */
-      logger.log(Level.INFO, String.format(Messages.getString("FlacToMp3Impl.4"), mp3.getPath())); //$NON-NLS-1$
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.2"), mp3.getPath()), e); //$NON-NLS-1$
+      return false;
     }
 
     return true;
   }
 
   /**
-   * Read the tag information from a flac file
+   * Add the ReplayGain to an id3v2 shell command
    * 
-   * @param flacFile the flac file
-   * @return the tag information, or null when reading the tag information
-   *         failed or the tag is not a flac tag.
+   * @param commandList the command list of the id3v2 command
+   * @param replayGain the ReplayGain
+   * @param album true to add the gain and peak of the album, false to add those
+   *          of the track
    */
-  TagInformation readTag(File flacFile) {
-    AudioFile af;
+  static void addReplayGainCommand(List<String> commandList, ReplayGain replayGain, boolean album) {
+    String[] values = getReplayGainValues(replayGain, album);
+    for (int i = 0; i < values.length; i += 2) {
+      commandList.add("--TXXX"); //$NON-NLS-1$
+      commandList.add(values[i] + ":" + values[i + 1]); //$NON-NLS-1$
+    }
+  }
+
+  @Override
+  public String getFlacAudioMd5(File flac) {
     try {
-      af = AudioFileIO.read(flacFile);
+      return FlacUtils.getAudioMd5(flac);
     }
-    catch (Throwable e) {
-      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.5"), flacFile.getPath()), e); //$NON-NLS-1$
+    catch (IOException e) {
+      logger.log(Level.FINE, String.format(Messages.getString("FlacToMp3Impl.17"), flac.getPath()), e); //$NON-NLS-1$
       return null;
     }
+  }
 
-    Tag tag = af.getTag();
-    if (!(tag instanceof FlacTag)) {
-      /* can't be covered by a test */
+  @Override
+  public String getMp3AudioMd5(File mp3) {
+    try {
+      /* the signature is only written into ID3v2.4 tags */
+      AbstractID3v2Tag tag = TagReader.readId3v2Tag(mp3);
+      if (!(tag instanceof ID3v24Tag)) {
+        return null;
+      }
+
+      return getAudioMd5((ID3v24Tag) tag);
+    }
+    catch (Throwable e) {
+      logger.log(Level.FINE, String.format(Messages.getString("FlacToMp3Impl.14"), mp3.getPath()), e); //$NON-NLS-1$
       return null;
     }
-
-    return new TagInformation((FlacTag) tag);
   }
 
+  /** the minimum size of the padding of the ID3v2 tag that lame writes */
+  static final int ID3V2_PADDING_SIZE = 128;
+
   /**
-   * Remove an incomplete mp3 file.
+   * Set the tag fields of an mp3 tag from tag information fetched from the
+   * corresponding flac file (tagInformation)
    * 
-   * @param mp3 the incomplete mp3 file
-   */
-  void removeIncompleteMp3File(File mp3) {
-    if (mp3.exists()) {
+   * @param mp3 the mp3 file
+   * @param mp3tag the tag of the mp3 file
+   * @param tagInformation the tag information (fetched from the flac file)
+   * @param overRide true to override the tag information in the mp3 tag
+   * @return true upon success, false otherwise
+   */
+  boolean setMp3TagFields(File mp3, ID3v24Tag mp3tag, TagInformation tagInformation, boolean overRide) {
+    assert (mp3 != null);
+    assert (mp3tag != null);
+    assert (tagInformation != null);
+
+    boolean result = setMp3TagField(mp3, mp3tag, FieldKey.ALBUM, tagInformation.getAlbum(), overRide);
+    result = result && setMp3TagField(mp3, mp3tag, FieldKey.ALBUM_ARTIST, tagInformation.getAlbumArtist(), overRide);
+    result = result && setMp3TagField(mp3, mp3tag, FieldKey.ARTIST, tagInformation.getArtist(), overRide);
+    result = result && setMp3TagField(mp3, mp3tag, FieldKey.YEAR, tagInformation.getDate(), overRide);
+
+    String[] discNumberSplit = {
+        null, null
+    };
+    String discNumber = tagInformation.getDiscNumber();
+    if (discNumber != null) {
+      discNumber = discNumber.trim();
+      if (discNumber.matches("^\\d+\\s*/\\s*\\d+$")) { //$NON-NLS-1$
+        discNumberSplit = discNumber.split("\\s*/\\s*", 2); //$NON-NLS-1$
+      }
+    }
+    result =
+        result
+            && setMp3TagField(mp3, mp3tag, FieldKey.DISC_NO, (discNumberSplit.length >= 1)
+                ? discNumberSplit[0]
+                : null, overRide);
+    result =
+        result
+            && setMp3TagField(mp3, mp3tag, FieldKey.DISC_TOTAL, (discNumberSplit.length >= 2)
+                ? discNumberSplit[1]
+                : null, overRide);
+
+    result = result && setMp3TagField(mp3, mp3tag, FieldKey.GENRE, tagInformation.getGenre(), overRide);
+    result = result && setMp3TagField(mp3, mp3tag, FieldKey.TITLE, tagInformation.getTitle(), overRide);
+    result = result && setMp3TagField(mp3, mp3tag, FieldKey.TRACK, tagInformation.getTrackNumber(), overRide);
+    result = result && setMp3TagField(mp3, mp3tag, FieldKey.TRACK_TOTAL, tagInformation.getTrackTotal(), overRide);
+
+    return result;
+  }
+
+  /**
+   * Create the complete tag of an mp3 file from tag information fetched from
+   * the corresponding flac file (tagInformation)
+   * 
+   * @param mp3 the mp3 file
+   * @param tagInformation the tag information (fetched from the flac file)
+   * @return the tag, or null upon failure
+   */
+  ID3v24Tag createMp3Tag(File mp3, TagInformation tagInformation) {
+    ID3v24Tag mp3tag = new ID3v24Tag();
+
+    try {
+      if (!setMp3TagFields(mp3, mp3tag, tagInformation, true)) {
+        return null;
+      }
+
+      setAudioMd5(mp3tag, tagInformation.getAudioMd5());
+    }
+    catch (Throwable e) {
+      /* can't be covered by a test */
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.2"), mp3.getPath()), e); //$NON-NLS-1$
+      return null;
+    }
+
+    return mp3tag;
+  }
+
+  /**
+   * Get the size of a tag when it is written to an mp3 file
+   * 
+   * @param mp3tag the tag
+   * @return the size of the tag (in bytes), or 0 upon failure
+   */
+  static int getMp3TagSize(ID3v24Tag mp3tag) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      mp3tag.write(out);
+    }
+    catch (IOException e) {
+      /* can't be covered by a test */
+      return 0;
+    }
+
+    return out.size();
+  }
+
+  /**
+   * Write a (complete) tag into the existing (padded) ID3v2 tag of an mp3
+   * file, without rewriting the file. Only the existing tag is read.
+   * 
+   * @param mp3 the mp3 file
+   * @param mp3tag the tag to write
+   * @return true upon success, false when the mp3 file has no ID3v2 tag, when
+   *         the tag doesn't fit in the existing tag or when writing failed
+   */
+  boolean writeMp3TagInPlace(File mp3, ID3v24Tag mp3tag) {
+    assert (mp3 != null);
+    assert (mp3tag != null);
+
+    try {
+      long existingSize = AbstractID3v2Tag.getV2TagSizeIfExists(mp3);
+      int size = getMp3TagSize(mp3tag);
+      if ((existingSize <= 0) || (size <= 0) || (size > existingSize)) {
+        logger.log(Level.FINE, String.format(Messages.getString("FlacToMp3Impl.16"), mp3.getPath())); //$NON-NLS-1$
+        return false;
+      }
+
+      mp3tag.write(mp3, existingSize);
+    }
+    catch (Throwable e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.3"), mp3.getPath()), e); //$NON-NLS-1$
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Update the tag of the mp3 file with tag information fetched from the
+   * corresponding flac file (tagInformation)
+   * 
+   * @param mp3 the mp3 file
+   * @param tagInformation the tag information (fetched from the flac file)
+   * @param overRide true to override the tag information in the mp3 file
+   * @return true upon success, false otherwise
+   */
+  boolean setMp3Tag(File mp3, TagInformation tagInformation, boolean overRide) {
+    assert (mp3 != null);
+    assert (tagInformation != null);
+
+    boolean result = true;
+
+    try {
+      MP3File mp3file = new MP3File(mp3);
+
+      ID3v24Tag mp3tag;
+      if (mp3file.hasID3v2Tag()) {
+        mp3tag = mp3file.getID3v2TagAsv24();
+      } else {
+        if (mp3file.hasID3v1Tag()) {
+          mp3tag = convertFromId3V1(mp3file.getID3v1Tag());
+        } else {
+          /*
+           * Can't be covered by a test since mp3file.hasID3v2Tag() also covers
+           * the situation that the file has no tag. This line is here for
+           * safety.
+           */
+          mp3tag = new ID3v24Tag();
+        }
+        mp3file.setTag(mp3tag);
+      }
+
+      result = setMp3TagFields(mp3, mp3tag, tagInformation, overRide);
+
+      if (result) {
+        setAudioMd5(mp3tag, tagInformation.getAudioMd5());
+        mp3file.setID3v2Tag(mp3tag);
+        mp3file.commit();
+      }
+    }
+    catch (Throwable e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.3"), mp3.getPath()), e); //$NON-NLS-1$
+      result = false;
+    }
+
+    return result;
+  }
+
+  /**
+   * Update the timestamp on an mp3 file: copy the timestamp from the flac file.
+   * If this operation fails then that's ok: the mp3 file will have a newer
+   * timestamp than the flac file anyway.
+   * 
+   * @param flac the flac file
+   * @param mp3 the mp3 file
+   * @return true
+   */
+  boolean updateTimestamp(File flac, File mp3) {
+    long start = System.nanoTime();
+    if (!mp3.setLastModified(flac.lastModified())) {
+      /* can't be covered by a test */
+      logger.log(Level.INFO, String.format(Messages.getString("FlacToMp3Impl.4"), mp3.getPath())); //$NON-NLS-1$
+    }
+
+    statistics.record(ConversionStatistics.Stage.UPDATE_TIMESTAMP, System.nanoTime() - start);
+    return true;
+  }
+
+  /**
+   * Read the tag information from a flac file. Only the metadata of the flac
+   * file is read.
+   * 
+   * @param flacFile the flac file
+   * @return the tag information, or null when reading the tag information
+   *         failed or the tag is not a flac tag.
+   */
+  TagInformation readTag(File flacFile) {
+    long start = System.nanoTime();
+    FlacTag tag;
+    try {
+      tag = TagReader.readFlacTag(flacFile);
+    }
+    catch (Throwable e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.5"), flacFile.getPath()), e); //$NON-NLS-1$
+      return null;
+    }
+
+    TagInformation tagInformation = new TagInformation(tag);
+
+    try {
+      tagInformation.setAudioMd5(FlacUtils.getAudioMd5(flacFile));
+    }
+    catch (IOException e) {
+      /* can't be covered by a test */
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.5"), flacFile.getPath()), e); //$NON-NLS-1$
+    }
+
+    statistics.record(ConversionStatistics.Stage.READ_TAG, System.nanoTime() - start);
+    return tagInformation;
+  }
+
+  /** the prefix of the name of the temporary file into which an mp3 is converted */
+  static final String TEMPORARY_MP3_PREFIX = ".flac2mp3-"; //$NON-NLS-1$
+
+  /**
+   * @param mp3 the mp3 file
+   * @return the (hidden) temporary file next to the mp3 file into which the mp3
+   *         file is converted
+   */
+  static File getTemporaryMp3File(File mp3) {
+    return new File(mp3.getParentFile(), TEMPORARY_MP3_PREFIX + mp3.getName());
+  }
+
+  /**
+   * Sync a converted temporary mp3 file to disk and atomically rename it into
+   * the mp3 file, replacing the mp3 file when it exists.
+   * 
+   * @param temporaryMp3 the temporary mp3 file
+   * @param mp3 the mp3 file
+   * @return true when successful, false otherwise
+   */
+  boolean renameTemporaryMp3File(File temporaryMp3, File mp3) {
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryMp3.toPath(), StandardOpenOption.WRITE)) {
+        channel.force(true);
+      }
+
+      Files.move(temporaryMp3.toPath(), mp3.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      logger.log(Level.WARNING,
+          String.format(Messages.getString("FlacToMp3Impl.19"), temporaryMp3.getPath(), mp3.getPath()), e); //$NON-NLS-1$
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Remove an incomplete mp3 file.
+   * 
+   * @param mp3 the incomplete mp3 file
+   */
+  void removeIncompleteMp3File(File mp3) {
+    if (mp3.exists()) {
       boolean removed = mp3.delete();
       ShellScriptListener listener = shellScriptListener.get();
       if (listener != null) {
@@ -382,23 +1133,262 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
    * State
    */
 
-  /** idle state */
-  private static final int STATE_IDLE = 0;
-
   /** running state */
   private static final int STATE_RUNNING = 1;
 
   /** stopping state */
   private static final int STATE_STOPPING = 2;
 
-  /** the state of the conversion */
-  private AtomicInteger state = new AtomicInteger(STATE_IDLE);
+  /** the state of the converter */
+  private AtomicInteger state = new AtomicInteger(STATE_RUNNING);
+
+  /** the number of conversions that are in progress */
+  private AtomicInteger activeConversions = new AtomicInteger(0);
+
+  /*
+   * Run journals
+   */
+
+  /** the run journals, by (absolute) journal file */
+  private Map<File, RunJournal> journals = new ConcurrentHashMap<>();
+
+  /**
+   * Get the run journal of a configuration, loading it when needed
+   * 
+   * @param configuration the configuration
+   * @return the run journal, null when the configuration has no run journal
+   */
+  RunJournal getJournal(Flac2Mp3Configuration configuration) {
+    File file = configuration.getJournal();
+    if (file == null) {
+      return null;
+    }
+
+    File key = file.getAbsoluteFile();
+    RunJournal journal = journals.get(key);
+    if (journal == null) {
+      RunJournal newJournal = new RunJournal(key);
+      journal = journals.putIfAbsent(key, newJournal);
+      if (journal == null) {
+        journal = newJournal;
+      }
+    }
+
+    return journal;
+  }
+
+  /*
+   * Conversion pool
+   */
+
+  /** the prefix of the names of the threads of the conversion pool */
+  private static final String THREAD_NAME_PREFIX = "flac2mp3-"; //$NON-NLS-1$
+
+  /** the conversion pool, created upon the first asynchronous conversion */
+  private AtomicReference<ThreadPoolExecutor> pool = new AtomicReference<>();
+
+  /**
+   * Get the conversion pool, creating it when needed. The pool is resized when
+   * its size differs from the requested concurrency. Queued conversions are
+   * started in {@link ConversionJob} order.
+   * 
+   * @param concurrency the number of conversions to run concurrently (values
+   *          below 1 are treated as 1)
+   * @return the conversion pool
+   */
+  ThreadPoolExecutor getPool(int concurrency) {
+    int size = Math.max(1, concurrency);
+
+    ThreadPoolExecutor executor = pool.get();
+    if (executor == null) {
+      final AtomicInteger threadCount = new AtomicInteger(0);
+      ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      };
+
+      ThreadPoolExecutor newExecutor =
+          new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+              threadFactory);
+      if (pool.compareAndSet(null, newExecutor)) {
+        return newExecutor;
+      }
+
+      /* another thread created the pool before us */
+      newExecutor.shutdown();
+      executor = pool.get();
+    }
+
+    synchronized (executor) {
+      if (size > executor.getMaximumPoolSize()) {
+        executor.setMaximumPoolSize(size);
+        executor.setCorePoolSize(size);
+      } else if (size < executor.getMaximumPoolSize()) {
+        executor.setCorePoolSize(size);
+        executor.setMaximumPoolSize(size);
+      }
+    }
+
+    return executor;
+  }
+
+  /** the controller of the adaptive concurrency */
+  private final ConcurrencyController concurrencyController = new ConcurrencyController(Runtime.getRuntime()
+      .availableProcessors());
+
+  /**
+   * @param configuration the configuration
+   * @return the number of conversions to run concurrently: the one determined
+   *         by the concurrency controller when the concurrency is adaptive, the
+   *         configured concurrency otherwise
+   */
+  int getConcurrency(Flac2Mp3Configuration configuration) {
+    if (!configuration.isAdaptiveConcurrency()) {
+      return configuration.getConcurrency();
+    }
+
+    concurrencyController.configure(configuration.getMinConcurrency(), configuration.getConcurrency());
+    return concurrencyController.getConcurrency();
+  }
+
+  /**
+   * @return the number of decoded audio bytes that were piped from flac to
+   *         lame through the JVM, by finished and running conversions
+   */
+  long getBytesPiped() {
+    long bytes = statistics.get(ConversionStatistics.Counter.PCM_BYTES).getTotal();
+    for (Pipe pipe : pipes) {
+      bytes += pipe.getBytesPiped();
+    }
+    return bytes;
+  }
+
+  /**
+   * Let the concurrency controller adjust the concurrency and resize the
+   * conversion pool accordingly
+   */
+  void adjustConcurrency() {
+    if (concurrencyController.adjust(System.nanoTime(), getBytesPiped(), activeConversions.get())) {
+      getPool(concurrencyController.getConcurrency());
+    }
+  }
+
+  @Override
+  public CompletableFuture<Boolean> convertAsync(Flac2Mp3Configuration configuration, File flac, File mp3,
+      boolean simulate) {
+    return convertTargetsAsync(configuration, flac, Collections.singletonList(mp3), simulate);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> convertTargetsAsync(Flac2Mp3Configuration configuration, File flac,
+      List<File> mp3s, boolean simulate) {
+    return convertTargetsAsync(configuration, flac, mp3s, simulate, null);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> convertTargetsAsync(final Flac2Mp3Configuration configuration,
+      final File flac, final List<File> mp3s, final boolean simulate, final ReplayGainAlbum album) {
+    final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    if (state.get() != STATE_RUNNING) {
+      result.complete(Boolean.FALSE);
+      return result;
+    }
+
+    Flac2Mp3Configuration config = configuration;
+    if (config == null) {
+      config = new Flac2Mp3Configuration();
+    }
+    final boolean adaptive = config.isAdaptiveConcurrency();
+
+    try {
+      getPool(getConcurrency(config)).execute(
+          new ConversionJob(config.getPriority(), ConversionJob.estimateCost(flac), new Runnable() {
+            @Override
+            public void run() {
+              try {
+                result.complete(Boolean.valueOf(convertTargets(configuration, flac, mp3s, simulate, album)));
+              }
+              catch (Throwable e) {
+                result.completeExceptionally(e);
+              }
+              finally {
+                if (adaptive) {
+                  adjustConcurrency();
+                }
+              }
+            }
+          }));
+    }
+    catch (RejectedExecutionException e) {
+      /* the pool was shut down */
+      result.complete(Boolean.FALSE);
+    }
+
+    return result;
+  }
+
+  /**
+   * The conversion of a flac file into the mp3 file of a target
+   */
+  static class ConversionTarget {
+    /** the mp3 file */
+    final File mp3;
+
+    /** the lame options of the target */
+    final List<String> lameOptions;
+
+    /** true when only the tag (and timestamp) of the mp3 file is updated */
+    boolean tagOnly = false;
+
+    /** the complete tag, created up front when the audio is converted */
+    ID3v24Tag mp3tag = null;
+
+    /** the file into which the audio is converted */
+    File target = null;
+
+    /** the command list used to execute lame */
+    List<String> lameCommandList = null;
+
+    /** true when the conversion was successful */
+    boolean successful = false;
+
+    /**
+     * Constructor
+     * 
+     * @param mp3 the mp3 file
+     * @param lameOptions the lame options of the target
+     */
+    ConversionTarget(File mp3, List<String> lameOptions) {
+      super();
+      this.mp3 = mp3;
+      this.lameOptions = lameOptions;
+    }
+  }
 
   @Override
   public boolean convert(Flac2Mp3Configuration configuration, File flac, File mp3, boolean simulate)
       throws FileNotFoundException {
-    if (!state.compareAndSet(STATE_IDLE, STATE_RUNNING)) {
-      /* we were not idle, so we can't run */
+    return convertTargets(configuration, flac, Collections.singletonList(mp3), simulate);
+  }
+
+  @Override
+  public boolean convertTargets(Flac2Mp3Configuration configuration, File flac, List<File> mp3s, boolean simulate)
+      throws FileNotFoundException {
+    return convertTargets(configuration, flac, mp3s, simulate, null);
+  }
+
+  @Override
+  public boolean convertTargets(Flac2Mp3Configuration configuration, File flac, List<File> mp3s, boolean simulate,
+      ReplayGainAlbum album) throws FileNotFoundException {
+    activeConversions.incrementAndGet();
+    if (state.get() != STATE_RUNNING) {
+      /* we're stopping, so we can't run */
+      activeConversions.decrementAndGet();
       return false;
     }
 
@@ -407,7 +1397,8 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
       config = new Flac2Mp3Configuration();
     }
 
-    boolean successfulConversion = true;
+    List<ConversionTarget> targets = new LinkedList<>();
+    RunJournal journal = null;
 
     try {
       /* Check that the flac file exists */
@@ -425,10 +1416,29 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
         listener.addMessage(String.format(Messages.getString("FlacToMp3Impl.8"), flac.getPath())); //$NON-NLS-1$
       }
 
-      /* Check that the mp3 file doesn't exist or is a regular file */
-      if ((mp3 == null) || (mp3.exists() && !mp3.isFile())) {
-        throw new FileNotFoundException(String.format(
-            Messages.getString("FlacToMp3Impl.11"), mp3 != null ? mp3.getPath() : "NULL")); //$NON-NLS-1$//$NON-NLS-2$
+      /* Check that the mp3 files don't exist or are regular files */
+      List<ConversionTarget> checkedTargets = new LinkedList<>();
+      for (int index = 0; (mp3s != null) && (index < mp3s.size()); index++) {
+        File mp3 = mp3s.get(index);
+        if (mp3 == null) {
+          continue;
+        }
+        if (mp3.exists() && !mp3.isFile()) {
+          throw new FileNotFoundException(String.format(Messages.getString("FlacToMp3Impl.11"), mp3.getPath())); //$NON-NLS-1$
+        }
+        checkedTargets.add(new ConversionTarget(mp3, config.getLameOptions(index)));
+      }
+      if (checkedTargets.isEmpty()) {
+        throw new FileNotFoundException(String.format(Messages.getString("FlacToMp3Impl.11"), "NULL")); //$NON-NLS-1$//$NON-NLS-2$
+      }
+      targets.addAll(checkedTargets);
+
+      /* Record the conversions in the run journal */
+      journal = simulate ? null : getJournal(config);
+      if (journal != null) {
+        for (ConversionTarget target : targets) {
+          journal.started(flac, target.mp3);
+        }
       }
 
       /* Read the tag from the flac file */
@@ -438,24 +1448,63 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
         return false;
       }
 
-      /* re-get the shell script listener */
-      listener = shellScriptListener.get();
+      List<ConversionTarget> encodings = new LinkedList<>();
+      for (ConversionTarget target : targets) {
+        File mp3 = target.mp3;
+
+        /*
+         * Only the tag (and timestamp) has to be updated when the mp3 file was
+         * converted from the same audio
+         */
+        target.tagOnly =
+            (tagInformation.getAudioMd5() != null) && mp3.isFile()
+                && tagInformation.getAudioMd5().equals(getMp3AudioMd5(mp3));
+
+        /*
+         * Create the complete tag up front when the audio is converted, so that
+         * lame can reserve enough room for it and it can be written in place
+         */
+        target.mp3tag = target.tagOnly ? null : createMp3Tag(mp3, tagInformation);
+
+        /*
+         * The audio is converted into a temporary file that is only renamed
+         * into the mp3 file once it is complete, so that an interrupted
+         * conversion never leaves an incomplete mp3 file behind
+         */
+        target.target = target.tagOnly ? mp3 : getTemporaryMp3File(mp3);
+
+        /* re-get the shell script listener */
+        listener = shellScriptListener.get();
+
+        /* Create directory for mp3 file */
+        File mp3Dir = mp3.getParentFile();
+        if (target.tagOnly && (listener != null)) {
+          listener.addMessage(String.format(Messages.getString("FlacToMp3Impl.15"), mp3.getPath())); //$NON-NLS-1$
+        }
+        if (!mp3Dir.exists() && (listener != null)) {
+          listener.addCommand(String.format("mkdir -p \"%s\"", StringUtils.escQuote(mp3Dir.getPath()))); //$NON-NLS-1$
+        }
+        boolean mp3DirCreated = false;
+        long start = System.nanoTime();
+        try {
+          mp3DirCreated = (state.get() == STATE_RUNNING) && (simulate || DirUtils.mkdir(mp3Dir));
+          if (mp3DirCreated && !simulate) {
+            statistics.record(ConversionStatistics.Stage.MKDIR, System.nanoTime() - start);
+          }
+        }
+        catch (FileAlreadyExistsException e) {
+          /* can't be covered by a test */
+          logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.12"), e.getMessage())); //$NON-NLS-1$
+        }
+        if (!mp3DirCreated) {
+          continue;
+        }
 
-      /* Create directory for mp3 file */
-      File mp3Dir = mp3.getParentFile();
-      if (!mp3Dir.exists() && (listener != null)) {
-        listener.addCommand(String.format("mkdir -p \"%s\"", StringUtils.escQuote(mp3Dir.getPath()))); //$NON-NLS-1$
-      }
-      boolean mp3DirCreated = false;
-      try {
-        mp3DirCreated = (state.get() == STATE_RUNNING) && (simulate || DirUtils.mkdir(mp3Dir));
-      }
-      catch (FileAlreadyExistsException e) {
-        /* can't be covered by a test */
-        logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.12"), e.getMessage())); //$NON-NLS-1$
-      }
-      if (!mp3DirCreated) {
-        return false;
+        /* a target is successful until one of its steps fails */
+        target.successful = true;
+        if (!target.tagOnly) {
+          encodings.add(target);
+        }
       }
 
       /*
@@ -470,113 +1519,360 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
       flacCommandList.addAll(config.getFlacOptions());
       flacCommandList.add(flac.getPath());
 
-      /* lame */
-      List<String> lameCommandList = new LinkedList<>();
-
-      lameCommandList.add(config.getLameExecutable());
-
-      lameCommandList.addAll(config.getLameOptions());
-      lameCommandList.add("-"); //$NON-NLS-1$
-      lameCommandList.add("--add-id3v2"); //$NON-NLS-1$
-      lameCommandList.add("--pad-id3v2"); //$NON-NLS-1$
-      lameCommandList.add("--ta"); //$NON-NLS-1$
-      lameCommandList.add(tagInformation.getArtist());
-      lameCommandList.add("--tl"); //$NON-NLS-1$
-      lameCommandList.add(tagInformation.getAlbum());
-      lameCommandList.add("--tt"); //$NON-NLS-1$
-      lameCommandList.add(tagInformation.getTitle());
-      lameCommandList.add("--tg"); //$NON-NLS-1$
-      lameCommandList.add(tagInformation.getGenre());
-      lameCommandList.add("--ty"); //$NON-NLS-1$
-      lameCommandList.add(tagInformation.getDate());
-      lameCommandList.add("--tn"); //$NON-NLS-1$
-      lameCommandList.add(tagInformation.getTrackNumber() + "/" + //$NON-NLS-1$
-          tagInformation.getTrackTotal());
-      lameCommandList.add(mp3.getPath());
+      /* lame, for every target of which the audio is converted */
+      List<File> encodingTargets = new ArrayList<>(encodings.size());
+      List<List<String>> lameCommandLists = new ArrayList<>(encodings.size());
+      for (ConversionTarget encoding : encodings) {
+        List<String> lameCommandList = new LinkedList<>();
+
+        lameCommandList.add(config.getLameExecutable());
+
+        lameCommandList.addAll(encoding.lameOptions);
+        lameCommandList.add("-"); //$NON-NLS-1$
+        lameCommandList.add("--add-id3v2"); //$NON-NLS-1$
+        lameCommandList.add("--pad-id3v2-size"); //$NON-NLS-1$
+        lameCommandList.add(Integer.toString((encoding.mp3tag == null)
+            ? ID3V2_PADDING_SIZE
+            : Math.max(ID3V2_PADDING_SIZE, getMp3TagSize(encoding.mp3tag)
+                + (config.isReplayGain() ? REPLAYGAIN_TAG_SIZE : 0))));
+        lameCommandList.add("--ta"); //$NON-NLS-1$
+        lameCommandList.add(tagInformation.getArtist());
+        lameCommandList.add("--tl"); //$NON-NLS-1$
+        lameCommandList.add(tagInformation.getAlbum());
+        lameCommandList.add("--tt"); //$NON-NLS-1$
+        lameCommandList.add(tagInformation.getTitle());
+        lameCommandList.add("--tg"); //$NON-NLS-1$
+        lameCommandList.add(tagInformation.getGenre());
+        lameCommandList.add("--ty"); //$NON-NLS-1$
+        lameCommandList.add(tagInformation.getDate());
+        lameCommandList.add("--tn"); //$NON-NLS-1$
+        lameCommandList.add(tagInformation.getTrackNumber() + "/" + //$NON-NLS-1$
+            tagInformation.getTrackTotal());
+        lameCommandList.add(encoding.target.getPath());
+
+        encoding.lameCommandList = lameCommandList;
+        encodingTargets.add(encoding.target);
+        lameCommandLists.add(lameCommandList);
+      }
+
+      /*
+       * the ReplayGain is analysed from the decoded audio while it passes
+       * through the pipe
+       */
+      ReplayGainAnalysis analysis = (config.isReplayGain() && !simulate) ? new ReplayGainAnalysis() : null;
+
+      /*
+       * a long flac file that is converted for a single target is converted in
+       * segments that are encoded concurrently (at most as many as there are
+       * concurrent conversions), unless the ReplayGain is analysed since the
+       * decoded audio of the segments overlaps
+       */
+      SegmentedConversion segmented =
+          ((encodings.size() == 1) && !config.isReplayGain()) ? getSegmentedConversion(config, flac,
+              getConcurrency(config)) : null;
 
       /* re-get the shell script listener */
       listener = shellScriptListener.get();
 
-      if (listener != null) {
-        listener.addCommand(String.format("%s | \\%n%s", //$NON-NLS-1$
-            listener.commandListToString(flacCommandList, 0), listener.commandListToString(lameCommandList, 4)));
+      if (!encodings.isEmpty() && (segmented == null) && (listener != null)) {
+        listener.addCommand(getConversionCommand(listener, flacCommandList, lameCommandLists));
       }
 
-      successfulConversion =
-          (state.get() == STATE_RUNNING)
-              && (simulate || runConversionProcesses(flac, mp3, flacCommandList, lameCommandList));
-      if (!successfulConversion) {
-        return false;
+      if (segmented != null) {
+        ConversionTarget encoding = encodings.get(0);
+        encoding.successful =
+            (state.get() == STATE_RUNNING)
+                && runSegmentedConversion(config, flac, encoding.mp3, encoding.target, segmented, flacCommandList,
+                    encoding.lameCommandList, encoding.lameOptions, simulate);
+      } else if (!encodings.isEmpty()) {
+        boolean running = state.get() == STATE_RUNNING;
+        boolean[] results =
+            (!running || simulate) ? null : runConversionProcesses(flac, encodingTargets, flacCommandList,
+                lameCommandLists, config.getTransport(), false, analysis);
+        for (int index = 0; index < encodings.size(); index++) {
+          encodings.get(index).successful = running && (simulate || results[index]);
+        }
+      }
+
+      ReplayGain replayGain = (analysis == null) ? null : analysis.getReplayGain();
+
+      for (ConversionTarget target : targets) {
+        if (!target.successful) {
+          continue;
+        }
+
+        /*
+         * Set tag on mp3 (from the tag that we read from the flac file)
+         */
+
+        /* re-get the shell script listener */
+        listener = shellScriptListener.get();
+
+        if (listener != null) {
+          List<String> commandList = new LinkedList<>();
+          commandList.add("id3v2"); //$NON-NLS-1$
+          commandList.add("-a"); //$NON-NLS-1$
+          commandList.add(tagInformation.getArtist());
+          commandList.add("-A"); //$NON-NLS-1$
+          commandList.add(tagInformation.getAlbum());
+          commandList.add("--TPE2"); //$NON-NLS-1$
+          commandList.add(tagInformation.getAlbumArtist());
+          commandList.add("-t"); //$NON-NLS-1$
+          commandList.add(tagInformation.getTitle());
+          commandList.add("-g"); //$NON-NLS-1$
+          commandList.add(tagInformation.getGenre());
+          commandList.add("-y"); //$NON-NLS-1$
+          commandList.add(tagInformation.getDate());
+          commandList.add("-T"); //$NON-NLS-1$
+          commandList.add(tagInformation.getTrackNumber() + "/" + tagInformation.getTrackTotal()); //$NON-NLS-1$
+          commandList.add("--TPOS"); //$NON-NLS-1$
+          commandList.add(tagInformation.getDiscNumber());
+          if ((replayGain != null) && (target.mp3tag != null)) {
+            addReplayGainCommand(commandList, replayGain, false);
+          }
+          commandList.add(target.target.getPath());
+          listener.addCommand(listener.commandListToString(commandList, 0));
+        }
+
+        long start = System.nanoTime();
+        if ((replayGain != null) && (target.mp3tag != null)
+            && !setReplayGain(target.mp3, target.mp3tag, replayGain, false)) {
+          target.mp3tag = null;
+        }
+        target.successful =
+            (state.get() == STATE_RUNNING)
+                && (simulate || ((target.mp3tag != null) && writeMp3TagInPlace(target.target, target.mp3tag))
+                    || setMp3Tag(target.target, tagInformation, true));
+        if (!target.successful) {
+          continue;
+        }
+        if (!simulate) {
+          statistics.record(ConversionStatistics.Stage.SET_TAG, System.nanoTime() - start);
+        }
+
+        /*
+         * Set the timestamp of the flac file on the mp3 file
+         */
+
+        /* re-get the shell script listener */
+        listener = shellScriptListener.get();
+
+        if ((state.get() == STATE_RUNNING) && (listener != null)) {
+          listener.addCommand(String.format("touch --reference=\"%s\" \\%n                  \"%s\"", //$NON-NLS-1$
+              StringUtils.escQuote(flac.getPath()), StringUtils.escQuote(target.target.getPath())));
+        }
+
+        target.successful = (state.get() == STATE_RUNNING) && (simulate || updateTimestamp(flac, target.target));
+        if (!target.successful) {
+          continue;
+        }
+
+        /*
+         * Rename the temporary file into the mp3 file. Also done when stopping
+         * since the conversion is complete by now
+         */
+
+        if (target.target != target.mp3) {
+          /* re-get the shell script listener */
+          listener = shellScriptListener.get();
+
+          if (listener != null) {
+            listener.addCommand(String.format("mv -f \"%s\" \\%n      \"%s\"", //$NON-NLS-1$
+                StringUtils.escQuote(target.target.getPath()), StringUtils.escQuote(target.mp3.getPath())));
+          }
+
+          target.successful = simulate || renameTemporaryMp3File(target.target, target.mp3);
+        }
+      }
+
+      /* the album gets the mp3 files into which the track was encoded */
+      if ((album != null) && (replayGain != null)) {
+        boolean encoded = true;
+        List<File> encodedMp3s = new LinkedList<>();
+        for (ConversionTarget encoding : encodings) {
+          encoded = encoded && encoding.successful;
+          encodedMp3s.add(encoding.mp3);
+        }
+        if (encoded) {
+          album.add(replayGain, encodedMp3s);
+        }
+      }
+    }
+    finally {
+      for (ConversionTarget target : targets) {
+        if (!target.successful) {
+          assert (flac != null);
+          logger.log(Level.WARNING,
+              String.format(Messages.getString("FlacToMp3Impl.13"), flac.getPath(), target.mp3.getPath())); //$NON-NLS-1$
+          /*
+           * only a temporary file is incomplete: a tag-only update works on the
+           * existing (complete) mp3 file, which must never be removed
+           */
+          if ((target.target != null) && !target.tagOnly && (target.target != target.mp3)) {
+            removeIncompleteMp3File(target.target);
+          }
+        }
+
+        if (journal != null) {
+          journal.finished(target.mp3);
+        }
       }
 
       /*
-       * Set tag on mp3 (from the tag that we read from the flac file)
+       * only signal completion here, to make sure that an incomplete mp3 file is
+       * removed
        */
+      activeConversions.decrementAndGet();
+    }
 
-      /* re-get the shell script listener */
-      listener = shellScriptListener.get();
+    for (ConversionTarget target : targets) {
+      if (!target.successful) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Get the shell command of a conversion: flac piped into lame, or into a lame
+   * process per target through tee
+   * 
+   * @param listener the shell script listener
+   * @param flacCommandList the command list used to execute flac
+   * @param lameCommandLists the command lists used to execute lame
+   * @return the command
+   */
+  static String getConversionCommand(ShellScriptListener listener, List<String> flacCommandList,
+      List<List<String>> lameCommandLists) {
+    StringBuilder command = new StringBuilder(listener.commandListToString(flacCommandList, 0));
+    int last = lameCommandLists.size() - 1;
+    if (last > 0) {
+      command.append(String.format(" | \\%n    tee")); //$NON-NLS-1$
+      for (int index = 0; index < last; index++) {
+        command.append(String.format(" >(%s)", listener.commandListToString(lameCommandLists.get(index), 8).trim())); //$NON-NLS-1$
+      }
+    }
+    command.append(String.format(" | \\%n%s", listener.commandListToString(lameCommandLists.get(last), 4))); //$NON-NLS-1$
+    return command.toString();
+  }
+
+  /**
+   * Set the ReplayGain in the tag of an mp3 file, keeping the timestamp of the
+   * mp3 file. The tag is written in place when it fits.
+   * 
+   * @param mp3 the mp3 file
+   * @param replayGain the ReplayGain
+   * @param album true to set the gain and peak of the album, false to set those
+   *          of the track
+   * @return true upon success, false otherwise
+   */
+  boolean setMp3ReplayGain(File mp3, ReplayGain replayGain, boolean album) {
+    long lastModified = mp3.lastModified();
+    boolean result = false;
+    try {
+      AbstractID3v2Tag tag = TagReader.readId3v2Tag(mp3);
+      if (tag instanceof ID3v24Tag) {
+        result = setReplayGain(mp3, (ID3v24Tag) tag, replayGain, album) && writeMp3TagInPlace(mp3, (ID3v24Tag) tag);
+      }
+
+      if (!result) {
+        MP3File mp3file = new MP3File(mp3);
+        ID3v24Tag mp3tag = mp3file.getID3v2TagAsv24();
+        if (mp3tag == null) {
+          mp3tag = new ID3v24Tag();
+        }
+        result = setReplayGain(mp3, mp3tag, replayGain, album);
+        if (result) {
+          mp3file.setID3v2Tag(mp3tag);
+          mp3file.commit();
+        }
+      }
+    }
+    catch (Throwable e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.3"), mp3.getPath()), e); //$NON-NLS-1$
+      result = false;
+    }
+
+    if (!mp3.setLastModified(lastModified)) {
+      /* can't be covered by a test */
+      logger.log(Level.INFO, String.format(Messages.getString("FlacToMp3Impl.4"), mp3.getPath())); //$NON-NLS-1$
+    }
+
+    return result;
+  }
+
+  @Override
+  public boolean setAlbumReplayGain(ReplayGainAlbum album, boolean simulate) {
+    ReplayGain replayGain = (album == null) ? null : album.getReplayGain();
+    if (replayGain == null) {
+      return true;
+    }
 
+    boolean result = true;
+    for (File mp3 : album.getMp3s()) {
+      if (state.get() != STATE_RUNNING) {
+        return false;
+      }
+
+      ShellScriptListener listener = shellScriptListener.get();
       if (listener != null) {
         List<String> commandList = new LinkedList<>();
         commandList.add("id3v2"); //$NON-NLS-1$
-        commandList.add("-a"); //$NON-NLS-1$
-        commandList.add(tagInformation.getArtist());
-        commandList.add("-A"); //$NON-NLS-1$
-        commandList.add(tagInformation.getAlbum());
-        commandList.add("--TPE2"); //$NON-NLS-1$
-        commandList.add(tagInformation.getAlbumArtist());
-        commandList.add("-t"); //$NON-NLS-1$
-        commandList.add(tagInformation.getTitle());
-        commandList.add("-g"); //$NON-NLS-1$
-        commandList.add(tagInformation.getGenre());
-        commandList.add("-y"); //$NON-NLS-1$
-        commandList.add(tagInformation.getDate());
-        commandList.add("-T"); //$NON-NLS-1$
-        commandList.add(tagInformation.getTrackNumber() + "/" + tagInformation.getTrackTotal()); //$NON-NLS-1$
-        commandList.add("--TPOS"); //$NON-NLS-1$
-        commandList.add(tagInformation.getDiscNumber());
+        addReplayGainCommand(commandList, replayGain, true);
         commandList.add(mp3.getPath());
         listener.addCommand(listener.commandListToString(commandList, 0));
       }
 
-      successfulConversion = (state.get() == STATE_RUNNING) && (simulate || setMp3Tag(mp3, tagInformation, true));
-      if (!successfulConversion) {
+      result = (simulate || setMp3ReplayGain(mp3, replayGain, true)) && result;
+    }
+
+    return result;
+  }
+
+  @Override
+  public boolean resume(Flac2Mp3Configuration configuration, boolean simulate) {
+    RunJournal journal = (configuration == null) ? null : getJournal(configuration);
+    if (journal == null) {
+      return true;
+    }
+
+    boolean result = true;
+    for (Map.Entry<File, File> entry : journal.getConverting().entrySet()) {
+      if (state.get() != STATE_RUNNING) {
         return false;
       }
 
-      /*
-       * Set the timestamp of the flac file on the mp3 file
-       */
+      File mp3 = entry.getKey();
+      File flac = entry.getValue();
 
-      /* re-get the shell script listener */
-      listener = shellScriptListener.get();
-
-      if ((state.get() == STATE_RUNNING) && (listener != null)) {
-        listener.addCommand(String.format("touch --reference=\"%s\" \\%n                  \"%s\"", //$NON-NLS-1$
-            StringUtils.escQuote(flac.getPath()), StringUtils.escQuote(mp3.getPath())));
+      ShellScriptListener listener = shellScriptListener.get();
+      if (listener != null) {
+        listener.addMessage(String.format(Messages.getString("FlacToMp3Impl.20"), flac.getPath())); //$NON-NLS-1$
       }
 
-      successfulConversion = (state.get() == STATE_RUNNING) && (simulate || updateTimestamp(flac, mp3));
-      if (!successfulConversion) {
-        return false;
+      if (!simulate) {
+        removeIncompleteMp3File(getTemporaryMp3File(mp3));
       }
-    }
-    finally {
-      if (!successfulConversion) {
-        assert (flac != null);
-        assert (mp3 != null);
-        logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.13"), flac.getPath(), mp3.getPath())); //$NON-NLS-1$
-        removeIncompleteMp3File(mp3);
+
+      /* the flac file was removed since, which leaves nothing to finish */
+      if (flac.isFile()) {
+        try {
+          result = convert(configuration, flac, mp3, simulate) && result;
+        }
+        catch (FileNotFoundException e) {
+          logger.log(Level.WARNING, String.format(Messages.getString("FlacToMp3Impl.13"), flac.getPath(), //$NON-NLS-1$
+              mp3.getPath()), e);
+          result = false;
+        }
       }
 
-      /*
-       * only clear the state here, to make sure that an incomplete mp3 file is
-       * removed
-       */
-      state.set(STATE_IDLE);
+      if (!simulate) {
+        journal.finished(mp3);
+      }
     }
 
-    return true;
+    return result;
   }
 
   /*
@@ -585,22 +1881,27 @@ public class FlacToMp3Impl implements FlacToMp3, ShutdownHookParticipant {
 
   @Override
   public void shutdownHook() {
-    int currentState = state.getAndSet(STATE_STOPPING);
-
-    if (currentState != STATE_RUNNING) {
-      /* we were not running: no need to wait for idle */
-      assert (pipeContainer.get() == null);
-      return;
+    state.set(STATE_STOPPING);
+
+    /*
+     * do not accept new jobs; queued jobs are drained since they return false
+     * immediately
+     */
+    ThreadPoolExecutor executor = pool.get();
+    if (executor != null) {
+      executor.shutdown();
     }
 
-    /* signal the pipeContainer to stop */
-    Pipe pipe = pipeContainer.get();
-    if (pipe != null) {
+    /* signal the pipes of all running conversions to stop */
+    for (Pipe pipe : pipes) {
       pipe.signalStop();
     }
+    for (NamedPipe namedPipe : namedPipes) {
+      namedPipe.signalStop();
+    }
 
-    /* wait for idle of the conversion */
-    while (state.get() != STATE_IDLE) {
+    /* wait for all conversions to finish */
+    while (activeConversions.get() != 0) {
       try {
         Thread.sleep(1);
       }
@@ -0,0 +1,432 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The layout of the MPEG audio layer III frames of an mp3 file: the offset and
+ * the length of every (audio) frame and of the Xing/Info frame in front of
+ * them.
+ * </p>
+ * <p>
+ * The frames must directly follow an (optional) ID3v2 tag. The frames end at
+ * the first data that is not a frame with the same MPEG version and sample rate
+ * as the first frame (for example an ID3v1 tag).
+ * </p>
+ */
+class Mp3Frames {
+  /** the size of a frame header */
+  static final int HEADER_SIZE = 4;
+
+  /** the size of the CRC that follows the header of a protected frame */
+  static final int CRC_SIZE = 2;
+
+  /** the size of an ID3v2 header (and footer) */
+  static final int ID3V2_HEADER_SIZE = 10;
+
+  /** the ID3v2 header flag that signals the presence of a footer */
+  static final int ID3V2_FLAG_FOOTER = 0x10;
+
+  /** the header bits that must be equal in all frames: sync, version, layer and sample rate */
+  static final int HEADER_MASK = 0xfffe0c00;
+
+  /** the maximum length of a frame */
+  static final int MAX_FRAME_LENGTH = 2 * 1441;
+
+  /** the version bits of MPEG 1 */
+  private static final int VERSION_MPEG1 = 3;
+
+  /** the version bits that are reserved */
+  private static final int VERSION_RESERVED = 1;
+
+  /** the layer bits of layer III */
+  private static final int LAYER_III = 1;
+
+  /** the channel mode bits of mono */
+  private static final int CHANNEL_MODE_MONO = 3;
+
+  /** the bitrates of MPEG 1 layer III frames in kbit/s, by bitrate index */
+  private static final int[] BITRATES_MPEG1 = {
+      0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320
+  };
+
+  /** the bitrates of MPEG 2 and MPEG 2.5 layer III frames in kbit/s, by bitrate index */
+  private static final int[] BITRATES_MPEG2 = {
+      0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160
+  };
+
+  /** the sample rates in Hz, by version bits and sample rate index */
+  private static final int[][] SAMPLE_RATES = {
+      {
+          11025, 12000, 8000
+      }, null, {
+          22050, 24000, 16000
+      }, {
+          44100, 48000, 32000
+      }
+  };
+
+  /** the initial capacity of the frame arrays */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** the header of the first frame */
+  private final int header;
+
+  /** the offset of the Xing/Info frame, -1 when there is none */
+  private final long infoOffset;
+
+  /** the length of the Xing/Info frame, 0 when there is none */
+  private final int infoLength;
+
+  /** the offsets of the (audio) frames */
+  private final long[] offsets;
+
+  /** the lengths of the (audio) frames */
+  private final int[] lengths;
+
+  /** the number of (audio) frames */
+  private final int count;
+
+  /** the offset of the first byte after the last frame */
+  private final long end;
+
+  /**
+   * Constructor
+   *
+   * @param header the header of the first frame
+   * @param infoOffset the offset of the Xing/Info frame, -1 when there is none
+   * @param infoLength the length of the Xing/Info frame, 0 when there is none
+   * @param offsets the offsets of the (audio) frames
+   * @param lengths the lengths of the (audio) frames
+   * @param count the number of (audio) frames
+   * @param end the offset of the first byte after the last frame
+   */
+  private Mp3Frames(int header, long infoOffset, int infoLength, long[] offsets, int[] lengths, int count, long end) {
+    super();
+    this.header = header;
+    this.infoOffset = infoOffset;
+    this.infoLength = infoLength;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.count = count;
+    this.end = end;
+  }
+
+  /*
+   * Frame headers
+   */
+
+  /**
+   * @param header the frame header
+   * @return the version bits of the frame
+   */
+  static int version(int header) {
+    return (header >>> 19) & 0x03;
+  }
+
+  /**
+   * @param header the frame header
+   * @return the length of the frame, -1 when the header is not the header of
+   *         an MPEG audio layer III frame with a known bitrate
+   */
+  static int frameLength(int header) {
+    if ((header & 0xffe00000) != 0xffe00000) {
+      return -1;
+    }
+
+    int version = version(header);
+    int layer = (header >>> 17) & 0x03;
+    int bitrateIndex = (header >>> 12) & 0x0f;
+    int sampleRateIndex = (header >>> 10) & 0x03;
+    if ((version == VERSION_RESERVED) || (layer != LAYER_III) || (bitrateIndex == 0) || (bitrateIndex == 15)
+        || (sampleRateIndex == 3)) {
+      return -1;
+    }
+
+    int padding = (header >>> 9) & 0x01;
+    if (version == VERSION_MPEG1) {
+      return ((144000 * BITRATES_MPEG1[bitrateIndex]) / sampleRate(header)) + padding;
+    }
+    return ((72000 * BITRATES_MPEG2[bitrateIndex]) / sampleRate(header)) + padding;
+  }
+
+  /**
+   * @param header the (valid) frame header
+   * @return the sample rate of the frame, in Hz
+   */
+  static int sampleRate(int header) {
+    return SAMPLE_RATES[version(header)][(header >>> 10) & 0x03];
+  }
+
+  /**
+   * @param header the (valid) frame header
+   * @return the number of samples (per channel) in the frame
+   */
+  static int samplesPerFrame(int header) {
+    return (version(header) == VERSION_MPEG1) ? 1152 : 576;
+  }
+
+  /**
+   * @param header the (valid) frame header
+   * @return the offset of the side information in the frame
+   */
+  static int sideInfoOffset(int header) {
+    return HEADER_SIZE + ((((header >>> 16) & 0x01) == 0) ? CRC_SIZE : 0);
+  }
+
+  /**
+   * @param header the (valid) frame header
+   * @return the length of the side information of the frame
+   */
+  static int sideInfoLength(int header) {
+    boolean mono = (((header >>> 6) & 0x03) == CHANNEL_MODE_MONO);
+    if (version(header) == VERSION_MPEG1) {
+      return mono ? 17 : 32;
+    }
+    return mono ? 9 : 17;
+  }
+
+  /**
+   * @param buffer the buffer
+   * @param offset the offset of the big endian integer in the buffer
+   * @return the big endian integer
+   */
+  static int getInt(byte[] buffer, int offset) {
+    return ((buffer[offset] & 0xff) << 24) | ((buffer[offset + 1] & 0xff) << 16) | ((buffer[offset + 2] & 0xff) << 8)
+        | (buffer[offset + 3] & 0xff);
+  }
+
+  /**
+   * @param buffer the buffer
+   * @param offset the offset in the buffer
+   * @param value the value to put as a big endian integer
+   */
+  static void putInt(byte[] buffer, int offset, int value) {
+    buffer[offset] = (byte) (value >>> 24);
+    buffer[offset + 1] = (byte) (value >>> 16);
+    buffer[offset + 2] = (byte) (value >>> 8);
+    buffer[offset + 3] = (byte) value;
+  }
+
+  /**
+   * @param frame the (valid) frame
+   * @return the number of bytes of the main data of the frame that are stored
+   *         in the frames before it (the bit reservoir)
+   */
+  static int mainDataBegin(byte[] frame) {
+    int header = getInt(frame, 0);
+    int offset = sideInfoOffset(header);
+    int bits = ((frame[offset] & 0xff) << 8) | (frame[offset + 1] & 0xff);
+    return (version(header) == VERSION_MPEG1) ? (bits >>> 7) : (bits >>> 8);
+  }
+
+  /**
+   * @param frame the (valid) frame
+   * @return the offset of the Xing/Info tag in the frame, -1 when the frame is
+   *         not a Xing/Info frame
+   */
+  static int xingOffset(byte[] frame) {
+    int header = getInt(frame, 0);
+    int offset = sideInfoOffset(header) + sideInfoLength(header);
+    if (frame.length < (offset + 8)) {
+      return -1;
+    }
+
+    String id = new String(frame, offset, 4, StandardCharsets.US_ASCII);
+    if (!"Xing".equals(id) && !"Info".equals(id)) { //$NON-NLS-1$ //$NON-NLS-2$
+      return -1;
+    }
+
+    return offset;
+  }
+
+  /*
+   * Layout
+   */
+
+  /**
+   * @param mp3 the mp3 file
+   * @return the offset of the first byte after the ID3v2 tag at the start of
+   *         the file, 0 when there is no such tag
+   * @throws IOException upon read errors
+   */
+  static long skipId3v2Tag(File mp3) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(mp3, "r")) { //$NON-NLS-1$
+      byte[] header = new byte[ID3V2_HEADER_SIZE];
+      if ((raf.read(header) != header.length) || (header[0] != 'I') || (header[1] != 'D') || (header[2] != '3')) {
+        return 0;
+      }
+
+      long size =
+          ((header[6] & 0x7f) << 21) | ((header[7] & 0x7f) << 14) | ((header[8] & 0x7f) << 7) | (header[9] & 0x7f);
+      if ((header[5] & ID3V2_FLAG_FOOTER) != 0) {
+        size += ID3V2_HEADER_SIZE;
+      }
+      return ID3V2_HEADER_SIZE + size;
+    }
+  }
+
+  /**
+   * Read the layout of the frames of an mp3 file
+   *
+   * @param mp3 the mp3 file
+   * @return null when the file has no frames, the layout of its frames
+   *         otherwise
+   * @throws IOException upon read errors
+   */
+  static Mp3Frames read(File mp3) throws IOException {
+    long start = skipId3v2Tag(mp3);
+    long size = mp3.length();
+
+    int firstHeader = 0;
+    long infoOffset = -1;
+    int infoLength = 0;
+    long[] offsets = new long[INITIAL_CAPACITY];
+    int[] lengths = new int[INITIAL_CAPACITY];
+    int count = 0;
+    long position = start;
+
+    byte[] frame = new byte[MAX_FRAME_LENGTH];
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mp3)))) {
+      long skipped = 0;
+      while (skipped < start) {
+        long n = in.skip(start - skipped);
+        if (n <= 0) {
+          return null;
+        }
+        skipped += n;
+      }
+
+      while ((position + HEADER_SIZE) <= size) {
+        int header = in.readInt();
+        int length = frameLength(header);
+        if ((length < HEADER_SIZE) || ((position + length) > size)
+            || ((position != start) && ((header & HEADER_MASK) != (firstHeader & HEADER_MASK)))) {
+          break;
+        }
+
+        putInt(frame, 0, header);
+        in.readFully(frame, HEADER_SIZE, length - HEADER_SIZE);
+
+        if (position == start) {
+          firstHeader = header;
+          if (xingOffset(Arrays.copyOf(frame, length)) >= 0) {
+            infoOffset = position;
+            infoLength = length;
+            position += length;
+            continue;
+          }
+        }
+
+        if (count == offsets.length) {
+          offsets = Arrays.copyOf(offsets, 2 * count);
+          lengths = Arrays.copyOf(lengths, 2 * count);
+        }
+        offsets[count] = position;
+        lengths[count] = length;
+        count++;
+        position += length;
+      }
+    }
+    catch (EOFException e) {
+      /* swallow, the frames end here */
+    }
+
+    if ((count == 0) && (infoOffset < 0)) {
+      return null;
+    }
+
+    return new Mp3Frames(firstHeader, infoOffset, infoLength, offsets, lengths, count, position);
+  }
+
+  /**
+   * @return the header of the first frame
+   */
+  int getHeader() {
+    return header;
+  }
+
+  /**
+   * @return the sample rate of the frames, in Hz
+   */
+  int getSampleRate() {
+    return sampleRate(header);
+  }
+
+  /**
+   * @return the number of samples (per channel) in a frame
+   */
+  int getSamplesPerFrame() {
+    return samplesPerFrame(header);
+  }
+
+  /**
+   * @return the offset of the Xing/Info frame, -1 when there is none
+   */
+  long getInfoOffset() {
+    return infoOffset;
+  }
+
+  /**
+   * @return the length of the Xing/Info frame, 0 when there is none
+   */
+  int getInfoLength() {
+    return infoLength;
+  }
+
+  /**
+   * @return the number of (audio) frames, excluding the Xing/Info frame
+   */
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * @param frame the index of the (audio) frame
+   * @return the offset of the frame
+   */
+  long getOffset(int frame) {
+    return offsets[frame];
+  }
+
+  /**
+   * @param frame the index of the (audio) frame
+   * @return the length of the frame
+   */
+  int getLength(int frame) {
+    return lengths[frame];
+  }
+
+  /**
+   * @return the offset of the first byte after the last frame
+   */
+  long getEnd() {
+    return end;
+  }
+
+  /**
+   * Read a frame
+   *
+   * @param mp3 the mp3 file
+   * @param offset the offset of the frame
+   * @param length the length of the frame
+   * @return the frame
+   * @throws IOException upon read errors
+   */
+  static byte[] readFrame(File mp3, long offset, int length) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(mp3, "r")) { //$NON-NLS-1$
+      byte[] frame = new byte[length];
+      raf.seek(offset);
+      raf.readFully(frame);
+      return frame;
+    }
+  }
+}
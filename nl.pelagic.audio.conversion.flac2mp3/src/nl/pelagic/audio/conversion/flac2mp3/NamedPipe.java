@@ -0,0 +1,231 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * An OS pipe between two processes: a named pipe (fifo) to which the source
+ * process writes its output and from which the destination process reads its
+ * input, so that the data doesn't pass through the JVM.
+ * </p>
+ * <p>
+ * The processes are run through a POSIX shell that opens the named pipe and
+ * then replaces itself with the process, so that the exit values of the
+ * processes are those of the processes themselves. When one of the processes
+ * fails then the other is destroyed, so that it doesn't wait for the pipe
+ * forever.
+ * </p>
+ * <p>
+ * The exit value has the same semantics as that of {@link Pipe}.
+ * </p>
+ */
+class NamedPipe {
+  /** the shell that runs the processes */
+  static final String SHELL = "/bin/sh"; //$NON-NLS-1$
+
+  /** the program that creates the named pipe */
+  static final String MKFIFO = "mkfifo"; //$NON-NLS-1$
+
+  /** the prefix of the name of the (temporary) directory of the named pipe */
+  private static final String DIR_PREFIX = "flac2mp3-"; //$NON-NLS-1$
+
+  /** the environment variable with the path of the named pipe */
+  static final String FIFO_VARIABLE = "FLAC2MP3_FIFO"; //$NON-NLS-1$
+
+  /** the interval at which the processes are checked, in milliseconds */
+  private static final long POLL_INTERVAL = 10;
+
+  /** the directory of the named pipe */
+  private final File dir;
+
+  /** the named pipe */
+  private final File fifo;
+
+  /** the pipe exit value */
+  private final AtomicInteger exitValue = new AtomicInteger(Pipe.EXIT_OK);
+
+  /** true when the pipe was signalled to stop */
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+  /** the source process, null when not running */
+  private volatile Process source = null;
+
+  /** the destination process, null when not running */
+  private volatile Process destination = null;
+
+  /**
+   * Constructor
+   *
+   * @param dir the directory of the named pipe
+   * @param fifo the named pipe
+   */
+  private NamedPipe(File dir, File fifo) {
+    super();
+    this.dir = dir;
+    this.fifo = fifo;
+  }
+
+  /**
+   * Create a named pipe in a new temporary directory
+   *
+   * @return the named pipe, null when it could not be created (for example
+   *         because the OS doesn't support named pipes)
+   */
+  static NamedPipe create() {
+    File dir = null;
+    try {
+      dir = Files.createTempDirectory(DIR_PREFIX).toFile();
+      File fifo = new File(dir, "pcm"); //$NON-NLS-1$
+
+      Process mkfifo = new ProcessBuilder(MKFIFO, fifo.getPath()).start();
+      if ((mkfifo.waitFor() == 0) && fifo.exists()) {
+        return new NamedPipe(dir, fifo);
+      }
+    }
+    catch (IOException | InterruptedException e) {
+      /* swallow, no named pipe */
+    }
+
+    if (dir != null) {
+      dir.delete();
+    }
+    return null;
+  }
+
+  /**
+   * @return the named pipe
+   */
+  File getFifo() {
+    return fifo;
+  }
+
+  /**
+   * @param command the command
+   * @param redirection the shell redirection of the named pipe
+   * @return the command list that runs the command with the named pipe
+   *         redirected
+   */
+  private static List<String> redirect(List<String> command, String redirection) {
+    List<String> result = new LinkedList<>();
+    result.add(SHELL);
+    result.add("-c"); //$NON-NLS-1$
+    result.add("exec \"$@\" " + redirection + " \"$" + FIFO_VARIABLE + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    result.add(SHELL);
+    result.addAll(command);
+    return result;
+  }
+
+  /**
+   * @param command the command of the source process
+   * @return the command list that runs the source process with its output
+   *         redirected into the named pipe
+   */
+  List<String> sourceCommand(List<String> command) {
+    return redirect(command, ">"); //$NON-NLS-1$
+  }
+
+  /**
+   * @param command the command of the destination process
+   * @return the command list that runs the destination process with its input
+   *         redirected from the named pipe
+   */
+  List<String> destinationCommand(List<String> command) {
+    return redirect(command, "<"); //$NON-NLS-1$
+  }
+
+  /**
+   * Configure a process builder of one of the processes
+   *
+   * @param processBuilder the process builder
+   * @return the process builder
+   */
+  ProcessBuilder configure(ProcessBuilder processBuilder) {
+    processBuilder.environment().put(FIFO_VARIABLE, fifo.getPath());
+    return processBuilder;
+  }
+
+  /**
+   * @return the pipe exit value, bit mask of Pipe.EXIT_* values
+   */
+  int getExitValue() {
+    return exitValue.get();
+  }
+
+  /**
+   * @param process the process
+   * @return true when the process exited with a non-zero exit value
+   */
+  private static boolean failed(Process process) {
+    return !process.isAlive() && (process.exitValue() != 0);
+  }
+
+  /**
+   * Wait for the processes to exit. A process is destroyed when the other
+   * process failed or when the pipe is signalled to stop.
+   *
+   * @param sourceProcess the source process
+   * @param destinationProcess the destination process
+   * @return the pipe exit value, bit mask of Pipe.EXIT_* values
+   */
+  int run(Process sourceProcess, Process destinationProcess) {
+    source = sourceProcess;
+    destination = destinationProcess;
+
+    try {
+      while (sourceProcess.isAlive() || destinationProcess.isAlive()) {
+        if (stopped.get() || failed(sourceProcess)) {
+          destinationProcess.destroy();
+        }
+        if (stopped.get() || failed(destinationProcess)) {
+          sourceProcess.destroy();
+        }
+
+        try {
+          Process process = sourceProcess.isAlive() ? sourceProcess : destinationProcess;
+          process.waitFor(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+          /* swallow & can't be covered by a test */
+        }
+      }
+    }
+    finally {
+      source = null;
+      destination = null;
+    }
+
+    return exitValue.get();
+  }
+
+  /**
+   * Signal the pipe to stop: the processes are destroyed.
+   */
+  void signalStop() {
+    exitValue.set(Pipe.EXIT_ERROR_INTERRUPTED);
+    stopped.set(true);
+
+    Process process = source;
+    if (process != null) {
+      process.destroy();
+    }
+    process = destination;
+    if (process != null) {
+      process.destroy();
+    }
+  }
+
+  /**
+   * Delete the named pipe and its directory
+   */
+  void delete() {
+    fifo.delete();
+    dir.delete();
+  }
+}
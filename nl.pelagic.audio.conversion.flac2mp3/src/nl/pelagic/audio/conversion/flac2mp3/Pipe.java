@@ -3,14 +3,39 @@ package nl.pelagic.audio.conversion.flac2mp3;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import nl.pelagic.audio.conversion.flac2mp3.i18n.Messages;
 
 /**
- * A pipe between two processes
+ * A pipe between a source process and one or more destination processes. Every
+ * destination process receives all output of the source process.
  */
 public class Pipe implements Runnable {
+  /**
+   * A tap on the pipe: receives a copy of all output of the source process
+   */
+  public interface Tap {
+    /**
+     * Receive output of the source process
+     * 
+     * @param buffer the buffer with the output
+     * @param offset the offset of the output in the buffer
+     * @param length the length of the output
+     */
+    void write(byte[] buffer, int offset, int length);
+
+    /**
+     * The tap doesn't receive any more output of the source process
+     * 
+     * @param complete true when the tap received all output of the source
+     *          process, false when the tap was dropped because it failed, or
+     *          when the pipe failed or was stopped
+     */
+    void close(boolean complete);
+  }
 
   /*
    * Exit codes, OR mask bits
@@ -31,8 +56,14 @@ public class Pipe implements Runnable {
   /** the output stream of the source process */
   private InputStream srcOutputStream;
 
-  /** the input stream of the destination process */
-  private OutputStream dstInputStream;
+  /** the input streams of the destination processes */
+  private OutputStream[] dstInputStreams;
+
+  /**
+   * the destinations to which writing failed: they don't receive any more
+   * output
+   */
+  private boolean[] dstFailed;
 
   /** the pipe buffer size */
   private static final int buffersize = 1024 * 256;
@@ -40,9 +71,15 @@ public class Pipe implements Runnable {
   /** the pipe buffer */
   private byte[] buffer = new byte[buffersize];
 
+  /** the tap on the pipe, null for no tap */
+  private Tap tap = null;
+
   /** the pipe exit value */
   private AtomicInteger exitValue = new AtomicInteger(EXIT_OK);
 
+  /** the number of bytes that were piped */
+  private AtomicLong bytesPiped = new AtomicLong(0);
+
   /**
    * @return the pipe exit value, bit mask of EXIT_* values
    */
@@ -50,17 +87,69 @@ public class Pipe implements Runnable {
     return exitValue.get();
   }
 
+  /**
+   * @return the number of bytes that were piped (so far)
+   */
+  public long getBytesPiped() {
+    return bytesPiped.get();
+  }
+
+  /**
+   * @param destination the index of the destination
+   * @return true when writing to the destination failed
+   */
+  public boolean isWriteFailed(int destination) {
+    return dstFailed[destination];
+  }
+
+  /**
+   * Set a tap on the pipe. A tap that fails doesn't fail the pipe, it is closed
+   * as incomplete and doesn't receive any more output.
+   * 
+   * @param tap the tap to set, null for no tap
+   */
+  public void setTap(Tap tap) {
+    this.tap = tap;
+  }
+
+  /**
+   * Close the tap (if any) and remove it from the pipe
+   * 
+   * @param complete true when the tap received all output of the source
+   *          process
+   */
+  private void closeTap(boolean complete) {
+    Tap closing = tap;
+    tap = null;
+    if (closing == null) {
+      return;
+    }
+
+    try {
+      closing.close(complete);
+    }
+    catch (RuntimeException e) {
+      /* a failing tap doesn't fail the pipe */
+    }
+  }
+
   /**
    * Constructor
    * 
    * @param srcOutputStream the output stream of the source process
-   * @param dstInputStream the input stream of the destination process
+   * @param dstInputStreams the input streams of the destination processes
+   * @throws IllegalArgumentException when the output stream of the source
+   *           process is null, or when there are no input streams of
+   *           destination processes (also when the array is null) or one of
+   *           them is null
    */
-  public Pipe(InputStream srcOutputStream, OutputStream dstInputStream) {
+  public Pipe(InputStream srcOutputStream, OutputStream... dstInputStreams) {
     super();
-    if ((srcOutputStream == null) || (dstInputStream == null)) {
+    boolean noDstInputStreams =
+        (dstInputStreams == null) || (dstInputStreams.length == 0) || Arrays.asList(dstInputStreams).contains(null);
+    if ((srcOutputStream == null) || noDstInputStreams) {
       String s = srcOutputStream == null ? Messages.getString("Pipe.0") : ""; //$NON-NLS-1$//$NON-NLS-2$
-      String s2 = dstInputStream == null ? Messages.getString("Pipe.1") : ""; //$NON-NLS-1$//$NON-NLS-2$
+      String s2 = noDstInputStreams ? Messages.getString("Pipe.1") : ""; //$NON-NLS-1$//$NON-NLS-2$
       if ((s.length() > 0) && (s2.length() > 0)) {
         s = s + Messages.getString("Pipe.2"); //$NON-NLS-1$
       }
@@ -68,7 +157,8 @@ public class Pipe implements Runnable {
       throw new IllegalArgumentException(s);
     }
     this.srcOutputStream = srcOutputStream;
-    this.dstInputStream = dstInputStream;
+    this.dstInputStreams = dstInputStreams;
+    this.dstFailed = new boolean[dstInputStreams.length];
   }
 
   /*
@@ -115,6 +205,35 @@ public class Pipe implements Runnable {
     }
   }
 
+  /**
+   * Close the streams of the pipe
+   */
+  private void closeStreams() {
+    try {
+      srcOutputStream.close();
+    }
+    catch (IOException e) {
+      /* swallow */
+    }
+    for (int destination = 0; destination < dstInputStreams.length; destination++) {
+      closeDestination(destination);
+    }
+  }
+
+  /**
+   * Close the input stream of a destination process
+   * 
+   * @param destination the index of the destination
+   */
+  private void closeDestination(int destination) {
+    try {
+      dstInputStreams[destination].close();
+    }
+    catch (IOException e) {
+      /* swallow */
+    }
+  }
+
   /*
    * Runnable
    */
@@ -122,39 +241,66 @@ public class Pipe implements Runnable {
   @Override
   public void run() {
     if (!state.compareAndSet(STATE_IDLE, STATE_RUNNING)) {
+      if (state.get() == STATE_STOPPING) {
+        /*
+         * stopped before we ran: close the streams so that the processes on
+         * both ends of the pipe terminate
+         */
+        closeStreams();
+      }
+
       /* not idle: can't run */
       return;
     }
 
     int read = -2;
+    int destinations = dstInputStreams.length;
+    boolean eof = false;
     try {
       while (state.get() == STATE_RUNNING) {
         read = -2;
         read = srcOutputStream.read(buffer);
         if (read < 0) {
           /* EOF */
+          eof = true;
+          break;
+        }
+        if (tap != null) {
+          try {
+            tap.write(buffer, 0, read);
+          }
+          catch (RuntimeException e) {
+            /* keep feeding the destinations */
+            closeTap(false);
+          }
+        }
+        for (int destination = 0; destination < dstInputStreams.length; destination++) {
+          if (dstFailed[destination]) {
+            continue;
+          }
+          try {
+            dstInputStreams[destination].write(buffer, 0, read);
+          }
+          catch (IOException e) {
+            /* keep feeding the other destinations */
+            dstFailed[destination] = true;
+            destinations--;
+            exitValue.compareAndSet(EXIT_OK, EXIT_ERROR_WRITE);
+            closeDestination(destination);
+          }
+        }
+        if (destinations == 0) {
           break;
         }
-        dstInputStream.write(buffer, 0, read);
+        bytesPiped.addAndGet(read);
       }
     }
     catch (Throwable e) {
       exitValue.compareAndSet(EXIT_OK, (read == -2) ? EXIT_ERROR_READ : EXIT_ERROR_WRITE);
     }
     finally {
-      try {
-        srcOutputStream.close();
-      }
-      catch (IOException e) {
-        /* swallow */
-      }
-      try {
-        dstInputStream.close();
-      }
-      catch (IOException e) {
-        /* swallow */
-      }
-
+      closeTap(eof);
+      closeStreams();
       state.set(STATE_IDLE);
     }
   }
@@ -0,0 +1,435 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import java.util.Arrays;
+
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGain;
+
+/**
+ * <p>
+ * A streaming ReplayGain analysis of the decoded audio of a flac file, as it
+ * passes through the pipe between flac and lame: a WAV stream with PCM audio.
+ * </p>
+ * <p>
+ * The audio is K-weighted and its mean square energy is determined per gating
+ * block (see {@link ReplayGain}), next to its sample peak. The analysis is
+ * abandoned when the stream is not a WAV stream with PCM audio, and it has no
+ * result unless all audio of the stream was analysed.
+ * </p>
+ */
+class ReplayGainAnalysis implements Pipe.Tap {
+  /** the maximum size of the WAV header */
+  static final int MAX_HEADER_SIZE = 64 * 1024;
+
+  /** the number of steps per gating block, blocks overlap by 75% */
+  static final int STEPS_PER_BLOCK = 4;
+
+  /** the number of steps per second, a step is 100ms */
+  static final int STEPS_PER_SECOND = 10;
+
+  /*
+   * State
+   */
+
+  /** reading the WAV header */
+  private static final int STATE_HEADER = 0;
+
+  /** analysing the audio */
+  private static final int STATE_AUDIO = 1;
+
+  /** not a WAV stream with PCM audio */
+  private static final int STATE_INVALID = 2;
+
+  /** state of the analysis */
+  private int state = STATE_HEADER;
+
+  /**
+   * true when the tap was closed after it received the whole stream and all
+   * (declared) audio of the stream was analysed
+   */
+  private boolean complete = false;
+
+  /*
+   * Header
+   */
+
+  /** the (partial) WAV header */
+  private byte[] header = new byte[256];
+
+  /** the length of the (partial) WAV header */
+  private int headerLength = 0;
+
+  /** the number of channels */
+  private int channels = 0;
+
+  /** the sample rate */
+  private int sampleRate = 0;
+
+  /** the number of bits per sample */
+  private int bitsPerSample = 0;
+
+  /** the number of audio bytes that remain, negative when unknown */
+  private long remaining = -1;
+
+  /*
+   * Audio
+   */
+
+  /** the number of bytes per sample */
+  private int bytesPerSample = 0;
+
+  /** the number of bytes per frame: a sample for every channel */
+  private int frameSize = 0;
+
+  /** the partial frame at the end of the previous output */
+  private byte[] carry = null;
+
+  /** the length of the partial frame */
+  private int carryLength = 0;
+
+  /** the weights of the channels */
+  private double[] weights = null;
+
+  /** the coefficients of the pre-filter: b0, b1, b2, a1, a2 */
+  private double[] preFilter = null;
+
+  /** the coefficients of the high-pass filter: b0, b1, b2, a1, a2 */
+  private double[] highPassFilter = null;
+
+  /** the state of the pre-filter, per channel */
+  private double[][] preState = null;
+
+  /** the state of the high-pass filter, per channel */
+  private double[][] highPassState = null;
+
+  /** the number of frames per step */
+  private int stepSize = 0;
+
+  /** the number of frames in the current step */
+  private int stepFrames = 0;
+
+  /** the weighted sum of the squared samples of the current step */
+  private double stepSum = 0.0;
+
+  /** the sums of the last steps */
+  private double[] steps = new double[STEPS_PER_BLOCK];
+
+  /** the number of completed steps */
+  private long stepCount = 0;
+
+  /** the mean square energies of the gating blocks */
+  private double[] blocks = new double[1024];
+
+  /** the number of gating blocks */
+  private int blockCount = 0;
+
+  /** the sample peak */
+  private double peak = 0.0;
+
+  /**
+   * Get the coefficients of the pre-filter of the K-weighting, a high shelf
+   * that models the acoustic effect of the head
+   * 
+   * @param sampleRate the sample rate
+   * @return the coefficients: b0, b1, b2, a1, a2
+   */
+  static double[] getPreFilter(int sampleRate) {
+    double f0 = 1681.974450955533;
+    double g = 3.999843853973347;
+    double q = 0.7071752369554196;
+
+    double k = Math.tan((Math.PI * f0) / sampleRate);
+    double vh = Math.pow(10.0, g / 20.0);
+    double vb = Math.pow(vh, 0.4996667741545416);
+    double a0 = 1.0 + (k / q) + (k * k);
+
+    return new double[] {
+        (vh + ((vb * k) / q) + (k * k)) / a0,
+        (2.0 * ((k * k) - vh)) / a0,
+        ((vh - ((vb * k) / q)) + (k * k)) / a0,
+        (2.0 * ((k * k) - 1.0)) / a0,
+        ((1.0 - (k / q)) + (k * k)) / a0
+    };
+  }
+
+  /**
+   * Get the coefficients of the high-pass filter of the K-weighting
+   * 
+   * @param sampleRate the sample rate
+   * @return the coefficients: b0, b1, b2, a1, a2
+   */
+  static double[] getHighPassFilter(int sampleRate) {
+    double f0 = 38.13547087602444;
+    double q = 0.5003270373238773;
+
+    double k = Math.tan((Math.PI * f0) / sampleRate);
+    double a0 = 1.0 + (k / q) + (k * k);
+
+    return new double[] {
+        1.0, -2.0, 1.0, (2.0 * ((k * k) - 1.0)) / a0, ((1.0 - (k / q)) + (k * k)) / a0
+    };
+  }
+
+  /**
+   * @param buffer a buffer
+   * @param offset the offset in the buffer
+   * @return the little endian 16-bit unsigned value at the offset
+   */
+  private static int getShort(byte[] buffer, int offset) {
+    return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+  }
+
+  /**
+   * @param buffer a buffer
+   * @param offset the offset in the buffer
+   * @return the little endian 32-bit unsigned value at the offset
+   */
+  private static long getInt(byte[] buffer, int offset) {
+    return (getShort(buffer, offset) | ((long) getShort(buffer, offset + 2) << 16)) & 0xffffffffL;
+  }
+
+  /**
+   * @param buffer a buffer
+   * @param offset the offset in the buffer
+   * @param id the (4 character) chunk id
+   * @return true when the chunk id is at the offset
+   */
+  private static boolean isId(byte[] buffer, int offset, String id) {
+    for (int i = 0; i < 4; i++) {
+      if (buffer[offset + i] != id.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parse the (partial) WAV header
+   * 
+   * @return the offset of the audio in the header, -1 when more of the header
+   *         is needed, -2 when the stream is not a WAV stream with PCM audio
+   */
+  private int parseHeader() {
+    if (headerLength < 12) {
+      return -1;
+    }
+    if (!isId(header, 0, "RIFF") || !isId(header, 8, "WAVE")) { //$NON-NLS-1$ //$NON-NLS-2$
+      return -2;
+    }
+
+    int position = 12;
+    while ((position + 8) <= headerLength) {
+      long size = getInt(header, position + 4);
+      if (isId(header, position, "fmt ")) { //$NON-NLS-1$
+        if ((position + 24) > headerLength) {
+          return -1;
+        }
+        int format = getShort(header, position + 8);
+        channels = getShort(header, position + 10);
+        sampleRate = (int) getInt(header, position + 12);
+        bitsPerSample = getShort(header, position + 22);
+        if (((format != 1) && (format != 0xfffe)) || (channels < 1) || (sampleRate < STEPS_PER_SECOND)
+            || (bitsPerSample < 8) || (bitsPerSample > 32) || ((bitsPerSample % 8) != 0)) {
+          return -2;
+        }
+      } else if (isId(header, position, "data")) { //$NON-NLS-1$
+        if (channels == 0) {
+          return -2;
+        }
+        remaining = ((size == 0) || (size == 0xffffffffL)) ? -1 : size;
+        return position + 8;
+      }
+
+      long next = position + 8 + size + (size & 1);
+      if (next > MAX_HEADER_SIZE) {
+        return -2;
+      }
+      position = (int) next;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Prepare the analysis of the audio, once the header is parsed
+   */
+  private void startAudio() {
+    bytesPerSample = bitsPerSample / 8;
+    frameSize = bytesPerSample * channels;
+    carry = new byte[frameSize];
+
+    /* the LFE channel doesn't count, the surround channels count more */
+    weights = new double[channels];
+    for (int channel = 0; channel < channels; channel++) {
+      weights[channel] = ((channels < 5) || (channel < 3)) ? 1.0 : ((channel == 3) ? 0.0 : 1.41);
+    }
+
+    preFilter = getPreFilter(sampleRate);
+    highPassFilter = getHighPassFilter(sampleRate);
+    preState = new double[channels][2];
+    highPassState = new double[channels][2];
+    stepSize = sampleRate / STEPS_PER_SECOND;
+  }
+
+  /**
+   * @param buffer a buffer
+   * @param offset the offset of the sample in the buffer
+   * @return the sample, 1.0 being full scale
+   */
+  private double getSample(byte[] buffer, int offset) {
+    switch (bytesPerSample) {
+      case 1:
+        return ((buffer[offset] & 0xff) - 128) / 128.0;
+
+      case 2:
+        return ((short) getShort(buffer, offset)) / 32768.0;
+
+      case 3:
+        return ((buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) | (buffer[offset + 2] << 16))
+            / 8388608.0;
+
+      default:
+        return ((int) getInt(buffer, offset)) / 2147483648.0;
+    }
+  }
+
+  /**
+   * Run a sample through a (biquad) filter
+   * 
+   * @param filter the coefficients of the filter
+   * @param filterState the state of the filter
+   * @param x the sample
+   * @return the filtered sample
+   */
+  private static double filter(double[] filter, double[] filterState, double x) {
+    double y = (filter[0] * x) + filterState[0];
+    filterState[0] = ((filter[1] * x) - (filter[3] * y)) + filterState[1];
+    filterState[1] = (filter[2] * x) - (filter[4] * y);
+    return y;
+  }
+
+  /**
+   * Analyse a frame
+   * 
+   * @param buffer the buffer with the frame
+   * @param offset the offset of the frame in the buffer
+   */
+  private void analyseFrame(byte[] buffer, int offset) {
+    for (int channel = 0; channel < channels; channel++) {
+      double x = getSample(buffer, offset + (channel * bytesPerSample));
+      peak = Math.max(peak, Math.abs(x));
+      double y = filter(highPassFilter, highPassState[channel], filter(preFilter, preState[channel], x));
+      stepSum += weights[channel] * y * y;
+    }
+
+    stepFrames++;
+    if (stepFrames < stepSize) {
+      return;
+    }
+
+    steps[(int) (stepCount % STEPS_PER_BLOCK)] = stepSum;
+    stepCount++;
+    stepFrames = 0;
+    stepSum = 0.0;
+
+    if (stepCount < STEPS_PER_BLOCK) {
+      return;
+    }
+
+    double sum = 0.0;
+    for (double step : steps) {
+      sum += step;
+    }
+    if (blockCount == blocks.length) {
+      blocks = Arrays.copyOf(blocks, blocks.length * 2);
+    }
+    blocks[blockCount++] = sum / ((double) STEPS_PER_BLOCK * stepSize);
+  }
+
+  /**
+   * Analyse audio
+   * 
+   * @param buffer the buffer with the audio
+   * @param offset the offset of the audio in the buffer
+   * @param length the length of the audio
+   */
+  private void analyse(byte[] buffer, int offset, int length) {
+    int end = offset + length;
+    if (remaining >= 0) {
+      end = offset + (int) Math.min(length, remaining);
+      remaining -= end - offset;
+    }
+
+    int position = offset;
+    if (carryLength > 0) {
+      int size = Math.min(frameSize - carryLength, end - position);
+      System.arraycopy(buffer, position, carry, carryLength, size);
+      carryLength += size;
+      position += size;
+      if (carryLength < frameSize) {
+        return;
+      }
+      analyseFrame(carry, 0);
+      carryLength = 0;
+    }
+
+    while ((position + frameSize) <= end) {
+      analyseFrame(buffer, position);
+      position += frameSize;
+    }
+
+    carryLength = end - position;
+    System.arraycopy(buffer, position, carry, 0, carryLength);
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) {
+    if (state == STATE_AUDIO) {
+      analyse(buffer, offset, length);
+      return;
+    }
+
+    if (state != STATE_HEADER) {
+      return;
+    }
+
+    /* collect the header */
+    int size = Math.min(length, MAX_HEADER_SIZE - headerLength);
+    if ((headerLength + size) > header.length) {
+      header = Arrays.copyOf(header, Math.max(header.length * 2, headerLength + size));
+    }
+    System.arraycopy(buffer, offset, header, headerLength, size);
+    headerLength += size;
+
+    int audioOffset = parseHeader();
+    if ((audioOffset == -2) || ((audioOffset == -1) && (headerLength >= MAX_HEADER_SIZE))) {
+      state = STATE_INVALID;
+      header = null;
+    } else if (audioOffset >= 0) {
+      state = STATE_AUDIO;
+      startAudio();
+      analyse(header, audioOffset, headerLength - audioOffset);
+      analyse(buffer, offset + size, length - size);
+      header = null;
+    }
+  }
+
+  @Override
+  public void close(boolean complete) {
+    /* the size of the audio is unknown when it was streamed: then remaining is -1 */
+    this.complete = complete && (state == STATE_AUDIO) && (remaining <= 0);
+  }
+
+  /**
+   * @return the ReplayGain of the analysed audio, null when the analysed
+   *         stream is not a WAV stream with PCM audio, or when not all of its
+   *         audio was analysed (the analysis failed, was stopped or the stream
+   *         was truncated)
+   */
+  ReplayGain getReplayGain() {
+    if ((state != STATE_AUDIO) || !complete) {
+      return null;
+    }
+
+    return new ReplayGain(Arrays.copyOf(blocks, blockCount), peak);
+  }
+}
@@ -0,0 +1,236 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.conversion.flac2mp3.i18n.Messages;
+
+/**
+ * <p>
+ * The journal of the conversions of a run: records which conversions are in
+ * progress, so that the conversions that were in progress when a run was
+ * stopped (or crashed) can be finished by the next run without having to scan
+ * the whole music tree.
+ * </p>
+ * <p>
+ * The journal is a UTF-8 text file with tab separated lines that are appended
+ * (and synced to disk) when a conversion starts and when it finishes:
+ *
+ * <pre>
+ * c &lt;mp3 path&gt; &lt;flac path&gt;
+ * d &lt;mp3 path&gt;
+ * </pre>
+ *
+ * The journal is compacted (atomically rewritten with only the conversions
+ * that are in progress) when it grows too long and it is removed when no
+ * conversions are in progress.
+ * </p>
+ */
+class RunJournal {
+  /** the header (first line) of the journal */
+  static final String HEADER = "# flac2mp3 journal 1"; //$NON-NLS-1$
+
+  /** the separator of the fields on a line */
+  static final String SEPARATOR = "\t"; //$NON-NLS-1$
+
+  /** the line type of a conversion that was started */
+  static final String TYPE_CONVERTING = "c"; //$NON-NLS-1$
+
+  /** the line type of a conversion that finished */
+  static final String TYPE_DONE = "d"; //$NON-NLS-1$
+
+  /** the number of lines above which the journal is compacted */
+  static final int COMPACTION_THRESHOLD = 1000;
+
+  /** the logger */
+  private static final Logger logger = Logger.getLogger(RunJournal.class.getName());
+
+  /** the journal file */
+  private final File file;
+
+  /** the conversions in progress: mp3 file to flac file, in start order */
+  private final Map<File, File> converting = new LinkedHashMap<>();
+
+  /** the number of lines in the journal file, excluding the header */
+  private int lines = 0;
+
+  /**
+   * Constructor. Loads the conversions that are in progress according to the
+   * journal file, when it exists.
+   *
+   * @param file the journal file
+   */
+  RunJournal(File file) {
+    super();
+    this.file = file;
+    load();
+  }
+
+  /**
+   * @return the journal file
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Load the journal file. An unreadable journal file is ignored.
+   */
+  private void load() {
+    if (!file.isFile()) {
+      return;
+    }
+
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) { //$NON-NLS-1$
+      String line = reader.readLine();
+      if (!HEADER.equals(line)) {
+        throw new IOException(String.format(Messages.getString("RunJournal.0"), line)); //$NON-NLS-1$
+      }
+
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+
+        String[] fields = line.split(SEPARATOR, 3);
+        if (TYPE_CONVERTING.equals(fields[0]) && (fields.length == 3)) {
+          converting.put(new File(fields[1]), new File(fields[2]));
+        } else if (TYPE_DONE.equals(fields[0]) && (fields.length == 2)) {
+          converting.remove(new File(fields[1]));
+        } else {
+          throw new IOException(String.format(Messages.getString("RunJournal.0"), line)); //$NON-NLS-1$
+        }
+        lines++;
+      }
+    }
+    catch (IOException e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("RunJournal.1"), file.getPath()), e); //$NON-NLS-1$
+      converting.clear();
+      lines = 0;
+    }
+  }
+
+  /**
+   * @return a copy of the conversions that are in progress: mp3 file to flac
+   *         file, in the order in which they were started
+   */
+  synchronized Map<File, File> getConverting() {
+    return new LinkedHashMap<>(converting);
+  }
+
+  /**
+   * Record that a conversion was started
+   *
+   * @param flac the flac file
+   * @param mp3 the mp3 file
+   */
+  synchronized void started(File flac, File mp3) {
+    converting.put(mp3, flac);
+    append(TYPE_CONVERTING + SEPARATOR + mp3.getPath() + SEPARATOR + flac.getPath());
+  }
+
+  /**
+   * Record that a conversion finished (successfully or not)
+   *
+   * @param mp3 the mp3 file
+   */
+  synchronized void finished(File mp3) {
+    if (converting.remove(mp3) == null) {
+      return;
+    }
+
+    if (converting.isEmpty()) {
+      /* nothing in progress, so there is nothing to finish in a next run */
+      file.delete();
+      lines = 0;
+    } else if ((lines < COMPACTION_THRESHOLD) || !compact()) {
+      append(TYPE_DONE + SEPARATOR + mp3.getPath());
+    }
+  }
+
+  /**
+   * Open the journal file for writing
+   *
+   * @param f the file
+   * @param append true to append to the file
+   * @return the output stream
+   * @throws IOException when the file could not be opened
+   */
+  private static FileOutputStream open(File f, boolean append) throws IOException {
+    FileOutputStream out = new FileOutputStream(f, append);
+    try {
+      if (!append || (f.length() == 0)) {
+        out.write((HEADER + "\n").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    catch (IOException e) {
+      /* can't be covered by a test */
+      out.close();
+      throw e;
+    }
+    return out;
+  }
+
+  /**
+   * Append a line to the journal file and sync it to disk
+   *
+   * @param line the line
+   */
+  private void append(String line) {
+    try (FileOutputStream out = open(file, true)) {
+      out.write((line + "\n").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+      out.getFD().sync();
+      lines++;
+    }
+    catch (IOException e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("RunJournal.2"), file.getPath()), e); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Compact the journal file: atomically replace it with a journal file that
+   * only has the conversions that are in progress
+   *
+   * @return true when successful
+   */
+  private boolean compact() {
+    File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+    try {
+      try (FileOutputStream out = open(tmpFile, false);
+          Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"))) { //$NON-NLS-1$
+        for (Map.Entry<File, File> entry : converting.entrySet()) {
+          writer.write(TYPE_CONVERTING + SEPARATOR + entry.getKey().getPath() + SEPARATOR
+              + entry.getValue().getPath() + "\n"); //$NON-NLS-1$
+        }
+        writer.flush();
+        out.getFD().sync();
+      }
+
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      lines = converting.size();
+    }
+    catch (IOException e) {
+      /* can't be covered by a test */
+      logger.log(Level.WARNING, String.format(Messages.getString("RunJournal.2"), file.getPath()), e); //$NON-NLS-1$
+      tmpFile.delete();
+      return false;
+    }
+
+    return true;
+  }
+}
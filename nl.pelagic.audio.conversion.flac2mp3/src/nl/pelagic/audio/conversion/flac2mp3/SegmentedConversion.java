@@ -0,0 +1,402 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.conversion.flac2mp3.i18n.Messages;
+
+/**
+ * <p>
+ * A segmented conversion: the decoded audio of a (long) flac file is split into
+ * segments that are encoded concurrently into separate mp3 files, which are
+ * then joined into one mp3 file.
+ * </p>
+ * <p>
+ * The joins are frame-accurate:
+ * </p>
+ * <ul>
+ * <li>the segment boundaries are aligned on frames, so that every frame of the
+ * joined file covers the same audio as the frame at the same position in an mp3
+ * file that was encoded in one go;</li>
+ * <li>every segment also encodes some audio before its start and after its end
+ * (the overlap) so that the encoder has settled at the joins. The frames of the
+ * overlap are dropped when joining;</li>
+ * <li>the segments must be encoded without bit reservoir (lame --nores) so that
+ * the first frame of a segment doesn't need data from the dropped frames in
+ * front of it. This is verified when joining.</li>
+ * </ul>
+ * <p>
+ * Only the first segment is encoded with the tags and with the Xing/Info frame
+ * (lame -t for the other segments). The Xing/Info frame of the joined file is
+ * updated for the joined frames: the number of frames, the number of bytes, the
+ * seek table and, in the LAME tag, the encoder padding (for gapless playback),
+ * the music length and the CRCs.
+ * </p>
+ */
+class SegmentedConversion {
+  /**
+   * the segment boundaries are aligned on this number of samples: a multiple of
+   * the number of samples in a frame of every MPEG version
+   */
+  static final int ALIGNMENT = 1152;
+
+  /** the number of samples that a segment encodes before its start and after its end */
+  static final int OVERLAP = 8 * ALIGNMENT;
+
+  /** the minimum number of samples in a segment */
+  static final long MIN_SEGMENT_SAMPLES = 64 * ALIGNMENT;
+
+  /** the Xing/Info flag of the number of frames field */
+  static final int XING_FLAG_FRAMES = 0x01;
+
+  /** the Xing/Info flag of the number of bytes field */
+  static final int XING_FLAG_BYTES = 0x02;
+
+  /** the Xing/Info flag of the seek table field */
+  static final int XING_FLAG_TOC = 0x04;
+
+  /** the Xing/Info flag of the quality field */
+  static final int XING_FLAG_QUALITY = 0x08;
+
+  /** the size of the seek table */
+  static final int TOC_SIZE = 100;
+
+  /** the size of the LAME tag, from its version string up to and including its CRC */
+  static final int LAME_TAG_SIZE = 36;
+
+  /** the offset of the encoder delay and padding fields in the LAME tag */
+  static final int LAME_DELAY_PADDING_OFFSET = 21;
+
+  /** the offset of the music length field in the LAME tag */
+  static final int LAME_MUSIC_LENGTH_OFFSET = 28;
+
+  /** the offset of the music CRC field in the LAME tag */
+  static final int LAME_MUSIC_CRC_OFFSET = 32;
+
+  /** the offset of the tag CRC field in the LAME tag */
+  static final int LAME_TAG_CRC_OFFSET = 34;
+
+  /** the maximum encoder padding that fits in the LAME tag */
+  static final int MAX_PADDING = 0xfff;
+
+  /** the size of the buffer used for copying */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** the CRC-16 lookup table (polynomial 0x8005, reflected) of the LAME tag CRCs */
+  private static final int[] CRC16_TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < CRC16_TABLE.length; i++) {
+      int crc = i;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = ((crc & 0x01) != 0) ? ((crc >>> 1) ^ 0xa001) : (crc >>> 1);
+      }
+      CRC16_TABLE[i] = crc;
+    }
+  }
+
+  /** the logger */
+  private static final Logger logger = Logger.getLogger(SegmentedConversion.class.getName());
+
+  /** the total number of samples (per channel) of the flac file */
+  private final long totalSamples;
+
+  /** the sample rate of the flac file, in Hz */
+  private final int sampleRate;
+
+  /** the boundaries of the segments: the start of every segment and the end of the last segment */
+  private final long[] boundaries;
+
+  /**
+   * Constructor. Splits the audio into the requested number of segments of
+   * (about) equal length, or into fewer segments when the segments would
+   * otherwise be shorter than {@link #MIN_SEGMENT_SAMPLES}.
+   *
+   * @param totalSamples the total number of samples (per channel) of the flac
+   *          file
+   * @param sampleRate the sample rate of the flac file, in Hz
+   * @param segments the requested number of segments
+   */
+  SegmentedConversion(long totalSamples, int sampleRate, int segments) {
+    super();
+    this.totalSamples = totalSamples;
+    this.sampleRate = sampleRate;
+
+    int count = (int) Math.max(1, Math.min(segments, totalSamples / MIN_SEGMENT_SAMPLES));
+    boundaries = new long[count + 1];
+    for (int segment = 1; segment < count; segment++) {
+      boundaries[segment] = ((totalSamples * segment) / count / ALIGNMENT) * ALIGNMENT;
+    }
+    boundaries[count] = totalSamples;
+  }
+
+  /**
+   * @return the number of segments
+   */
+  int getCount() {
+    return boundaries.length - 1;
+  }
+
+  /**
+   * @return the sample rate of the flac file, in Hz
+   */
+  int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * @param segment the segment
+   * @return the first sample that is decoded for the segment
+   */
+  long getDecodeStart(int segment) {
+    return Math.max(0, boundaries[segment] - OVERLAP);
+  }
+
+  /**
+   * @param segment the segment
+   * @return the sample after the last sample that is decoded for the segment,
+   *         -1 for the last segment (which is decoded up to the end)
+   */
+  long getDecodeEnd(int segment) {
+    if (segment == (getCount() - 1)) {
+      return -1;
+    }
+    return Math.min(totalSamples, boundaries[segment + 1] + OVERLAP);
+  }
+
+  /**
+   * @param mp3 the mp3 file that is converted
+   * @param segment the segment
+   * @return the (hidden) temporary file next to the mp3 file into which the
+   *         segment is encoded
+   */
+  static File getSegmentMp3File(File mp3, int segment) {
+    return FlacToMp3Impl.getTemporaryMp3File(new File(mp3.getParentFile(), segment + "-" + mp3.getName())); //$NON-NLS-1$
+  }
+
+  /**
+   * @param crc the CRC so far
+   * @param buffer the buffer
+   * @param offset the offset of the data in the buffer
+   * @param length the length of the data
+   * @return the CRC-16 of the LAME tag, updated with the data
+   */
+  static int crc16(int crc, byte[] buffer, int offset, int length) {
+    int result = crc;
+    for (int i = offset; i < (offset + length); i++) {
+      result = (result >>> 8) ^ CRC16_TABLE[(result ^ buffer[i]) & 0xff];
+    }
+    return result;
+  }
+
+  /**
+   * Copy a part of a file
+   *
+   * @param from the file to copy from
+   * @param offset the offset of the part to copy
+   * @param length the length of the part to copy
+   * @param to the file to copy to, at its file pointer
+   * @param crc the CRC so far
+   * @return the CRC, updated with the copied part
+   * @throws IOException upon read or write errors
+   */
+  static int copy(File from, long offset, long length, RandomAccessFile to, int crc) throws IOException {
+    int result = crc;
+    try (RandomAccessFile raf = new RandomAccessFile(from, "r")) { //$NON-NLS-1$
+      raf.seek(offset);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long remaining = length;
+      while (remaining > 0) {
+        int n = (int) Math.min(buffer.length, remaining);
+        raf.readFully(buffer, 0, n);
+        to.write(buffer, 0, n);
+        result = crc16(result, buffer, 0, n);
+        remaining -= n;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param mp3 the mp3 file
+   * @param reason the reason why the segments can't be joined
+   * @return false
+   */
+  private static boolean cannotJoin(File mp3, String reason) {
+    logger.log(Level.WARNING, String.format(Messages.getString("SegmentedConversion.0"), mp3.getPath(), reason)); //$NON-NLS-1$
+    return false;
+  }
+
+  /**
+   * Join the mp3 files of the segments into one mp3 file
+   *
+   * @param segmentMp3s the mp3 files of the segments, in order
+   * @param mp3 the mp3 file to join them into
+   * @return true when successful, false when the segments can't be joined
+   *         frame-accurately (for example because lame resampled the audio or
+   *         didn't write a Xing/Info frame)
+   * @throws IOException upon read or write errors
+   */
+  boolean join(List<File> segmentMp3s, File mp3) throws IOException {
+    int count = getCount();
+    Mp3Frames[] frames = new Mp3Frames[count];
+    int[] firstFrames = new int[count];
+    int[] endFrames = new int[count];
+    int totalFrames = 0;
+    int samplesPerFrame = 0;
+
+    /*
+     * Determine the frames of every segment that are kept
+     */
+
+    for (int segment = 0; segment < count; segment++) {
+      File segmentMp3 = segmentMp3s.get(segment);
+      frames[segment] = Mp3Frames.read(segmentMp3);
+      if ((frames[segment] == null) || (frames[segment].getSampleRate() != sampleRate)) {
+        return cannotJoin(mp3, Messages.getString("SegmentedConversion.1")); //$NON-NLS-1$
+      }
+
+      samplesPerFrame = frames[segment].getSamplesPerFrame();
+      long decodeStart = getDecodeStart(segment);
+      firstFrames[segment] = (int) ((boundaries[segment] - decodeStart) / samplesPerFrame);
+      endFrames[segment] =
+          (segment == (count - 1)) ? frames[segment].getCount()
+              : (int) ((boundaries[segment + 1] - decodeStart) / samplesPerFrame);
+      if ((endFrames[segment] > frames[segment].getCount()) || (firstFrames[segment] >= endFrames[segment])) {
+        return cannotJoin(mp3, Messages.getString("SegmentedConversion.2")); //$NON-NLS-1$
+      }
+
+      if ((segment > 0)
+          && (Mp3Frames.mainDataBegin(Mp3Frames.readFrame(segmentMp3, frames[segment].getOffset(firstFrames[segment]),
+              frames[segment].getLength(firstFrames[segment]))) != 0)) {
+        return cannotJoin(mp3, Messages.getString("SegmentedConversion.3")); //$NON-NLS-1$
+      }
+
+      totalFrames += endFrames[segment] - firstFrames[segment];
+    }
+
+    /*
+     * Parse the Xing/Info frame of the first segment
+     */
+
+    Mp3Frames first = frames[0];
+    if (first.getInfoOffset() < 0) {
+      return cannotJoin(mp3, Messages.getString("SegmentedConversion.4")); //$NON-NLS-1$
+    }
+
+    byte[] info = Mp3Frames.readFrame(segmentMp3s.get(0), first.getInfoOffset(), first.getInfoLength());
+    int xing = Mp3Frames.xingOffset(info);
+    int flags = Mp3Frames.getInt(info, xing + 4);
+    if ((flags & (XING_FLAG_FRAMES | XING_FLAG_BYTES)) != (XING_FLAG_FRAMES | XING_FLAG_BYTES)) {
+      return cannotJoin(mp3, Messages.getString("SegmentedConversion.4")); //$NON-NLS-1$
+    }
+
+    int framesField = xing + 8;
+    int bytesField = framesField + 4;
+    int tocField = -1;
+    int offset = bytesField + 4;
+    if ((flags & XING_FLAG_TOC) != 0) {
+      tocField = offset;
+      offset += TOC_SIZE;
+    }
+    if ((flags & XING_FLAG_QUALITY) != 0) {
+      offset += 4;
+    }
+
+    int lameTag = -1;
+    if (((offset + LAME_TAG_SIZE) <= info.length)
+        && "LAME".equals(new String(info, offset, 4, StandardCharsets.US_ASCII))) { //$NON-NLS-1$
+      lameTag = offset;
+    }
+
+    long padding = 0;
+    if (lameTag >= 0) {
+      int delay =
+          ((info[lameTag + LAME_DELAY_PADDING_OFFSET] & 0xff) << 4)
+              | ((info[lameTag + LAME_DELAY_PADDING_OFFSET + 1] & 0xff) >>> 4);
+      padding = (((long) totalFrames) * samplesPerFrame) - delay - totalSamples;
+      if ((padding < 0) || (padding > MAX_PADDING)) {
+        return cannotJoin(mp3, Messages.getString("SegmentedConversion.5")); //$NON-NLS-1$
+      }
+    }
+
+    /*
+     * Join
+     */
+
+    long[] tocOffsets = new long[TOC_SIZE];
+    int tocIndex = 0;
+    int frame = 0;
+    long audioBytes = 0;
+    int crc = 0;
+
+    try (RandomAccessFile out = new RandomAccessFile(mp3, "rw")) { //$NON-NLS-1$
+      out.setLength(0);
+
+      /* the ID3v2 tag of the first segment */
+      copy(segmentMp3s.get(0), 0, first.getInfoOffset(), out, 0);
+
+      /* the Xing/Info frame is rewritten once the frames are known */
+      long infoPosition = out.getFilePointer();
+      out.write(info);
+
+      for (int segment = 0; segment < count; segment++) {
+        Mp3Frames segmentFrames = frames[segment];
+        long from = segmentFrames.getOffset(firstFrames[segment]);
+        int last = endFrames[segment] - 1;
+        long to = segmentFrames.getOffset(last) + segmentFrames.getLength(last);
+
+        for (int i = firstFrames[segment]; i <= last; i++) {
+          while ((tocIndex < TOC_SIZE) && ((((long) tocIndex) * totalFrames) / TOC_SIZE) == frame) {
+            /* like the stream size, relative to the start of the Xing/Info frame */
+            tocOffsets[tocIndex] = info.length + audioBytes + (segmentFrames.getOffset(i) - from);
+            tocIndex++;
+          }
+          frame++;
+        }
+
+        crc = copy(segmentMp3s.get(segment), from, to - from, out, crc);
+        audioBytes += to - from;
+      }
+
+      /* what follows the frames of the first segment, like an ID3v1 tag */
+      File firstMp3 = segmentMp3s.get(0);
+      copy(firstMp3, first.getEnd(), firstMp3.length() - first.getEnd(), out, 0);
+
+      /*
+       * Update the Xing/Info frame
+       */
+
+      long streamBytes = info.length + audioBytes;
+      Mp3Frames.putInt(info, framesField, totalFrames);
+      Mp3Frames.putInt(info, bytesField, (int) streamBytes);
+      if (tocField >= 0) {
+        for (int i = 0; i < TOC_SIZE; i++) {
+          info[tocField + i] = (byte) Math.min(255, (tocOffsets[i] * 256) / streamBytes);
+        }
+      }
+
+      if (lameTag >= 0) {
+        int o = lameTag + LAME_DELAY_PADDING_OFFSET + 1;
+        info[o] = (byte) ((info[o] & 0xf0) | ((padding >>> 8) & 0x0f));
+        info[o + 1] = (byte) padding;
+        Mp3Frames.putInt(info, lameTag + LAME_MUSIC_LENGTH_OFFSET, (int) streamBytes);
+        info[lameTag + LAME_MUSIC_CRC_OFFSET] = (byte) (crc >>> 8);
+        info[lameTag + LAME_MUSIC_CRC_OFFSET + 1] = (byte) crc;
+        int tagCrc = crc16(0, info, 0, lameTag + LAME_TAG_CRC_OFFSET);
+        info[lameTag + LAME_TAG_CRC_OFFSET] = (byte) (tagCrc >>> 8);
+        info[lameTag + LAME_TAG_CRC_OFFSET + 1] = (byte) tagCrc;
+      }
+
+      out.seek(infoPosition);
+      out.write(info);
+    }
+
+    return true;
+  }
+}
@@ -66,6 +66,9 @@ public class TagInformation {
   /** the total number of tracks on the album */
   private String trackTotal = DEFAULT_TRACKTOTAL;
 
+  /** the MD5 signature of the (unencoded) audio, null when unknown */
+  private String audioMd5 = null;
+
   /**
    * Default constructor.
    */
@@ -159,4 +162,18 @@ public class TagInformation {
   public String getTrackTotal() {
     return trackTotal;
   }
+
+  /**
+   * @return the audioMd5
+   */
+  public String getAudioMd5() {
+    return audioMd5;
+  }
+
+  /**
+   * @param audioMd5 the audioMd5 to set
+   */
+  void setAudioMd5(String audioMd5) {
+    this.audioMd5 = audioMd5;
+  }
 }
@@ -0,0 +1,183 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc"
+})
+public class TestConcurrencyController {
+  private static Logger logger = Logger.getLogger(ConcurrencyController.class.getName());
+
+  private static final long MB = 1024 * 1024;
+
+  private static class MyConcurrencyController extends ConcurrencyController {
+    double load = -1.0;
+    long[] cpuTimes = null;
+
+    MyConcurrencyController(int processors) {
+      super(processors);
+    }
+
+    @Override
+    double getLoadAverage() {
+      return load;
+    }
+
+    @Override
+    long[] getCpuTimes() {
+      return cpuTimes;
+    }
+  }
+
+  private MyConcurrencyController controller = null;
+  private long now = 1;
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    logger.setLevel(Level.OFF);
+  }
+
+  @Before
+  public void setUp() {
+    controller = new MyConcurrencyController(8);
+    controller.configure(2, 6);
+    now = 1;
+  }
+
+  private boolean adjust(long bytes, int active) {
+    now += ConcurrencyController.INTERVAL;
+    return controller.adjust(now, bytes, active);
+  }
+
+  private int concurrency() {
+    return controller.getConcurrency();
+  }
+
+  @Test
+  public void testConfigure() {
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(6)));
+
+    controller.configure(1, 4);
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(4)));
+
+    controller.configure(5, 3);
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(5)));
+
+    controller.configure(0, 0);
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(1)));
+  }
+
+  @Test
+  public void testAdjust_NotConfigured() {
+    ConcurrencyController c = new ConcurrencyController(4);
+    assertThat(Boolean.valueOf(c.adjust(1, 0, 0)), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(c.getConcurrency()), equalTo(Integer.valueOf(-1)));
+  }
+
+  @Test
+  public void testAdjust_Interval() {
+    controller.load = 20.0;
+
+    /* baseline */
+    assertThat(Boolean.valueOf(controller.adjust(now, 0, 6)), equalTo(Boolean.FALSE));
+
+    /* too soon */
+    assertThat(Boolean.valueOf(controller.adjust(now + 1, 0, 6)), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(6)));
+  }
+
+  @Test
+  public void testAdjust_Load() {
+    controller.adjust(now, 0, 6);
+
+    /* other work takes 5 of the 8 processors: step down to the floor */
+    controller.load = 11.0;
+    assertThat(Boolean.valueOf(adjust(0, 6)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(5)));
+    controller.load = 10.0;
+    adjust(0, 5);
+    controller.load = 9.0;
+    adjust(0, 4);
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(3)));
+    controller.load = 9.0;
+    adjust(0, 3);
+    controller.load = 8.0;
+    assertThat(Boolean.valueOf(adjust(0, 2)), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(2)));
+
+    /* the other work is gone: step up to the ceiling */
+    controller.load = 2.0;
+    assertThat(Boolean.valueOf(adjust(0, 2)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(3)));
+  }
+
+  @Test
+  public void testAdjust_LoadUnavailable() {
+    controller.adjust(now, 0, 6);
+
+    assertThat(Boolean.valueOf(adjust(10 * MB, 6)), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(6)));
+  }
+
+  @Test
+  public void testAdjust_IoWait() {
+    controller.load = 6.0;
+    controller.cpuTimes = new long[] {
+        1000, 0
+    };
+    controller.adjust(now, 0, 6);
+
+    /* 10% disk wait */
+    controller.cpuTimes = new long[] {
+        2000, 100
+    };
+    assertThat(Boolean.valueOf(adjust(0, 6)), equalTo(Boolean.FALSE));
+
+    /* 50% disk wait */
+    controller.cpuTimes = new long[] {
+        3000, 600
+    };
+    assertThat(Boolean.valueOf(adjust(0, 6)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(5)));
+  }
+
+  @Test
+  public void testAdjust_Throughput() {
+    controller.configure(2, 8);
+    controller.adjust(now, 0, 6);
+    controller.load = 6.0;
+
+    /* try 7 */
+    long bytes = 100 * MB;
+    assertThat(Boolean.valueOf(adjust(bytes, 6)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(7)));
+
+    /* the increase didn't pay off: undo it and hold */
+    bytes += 100 * MB;
+    assertThat(Boolean.valueOf(adjust(bytes, 7)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(6)));
+
+    for (int i = 0; i < (ConcurrencyController.HOLD_INTERVALS - 1); i++) {
+      bytes += 100 * MB;
+      assertThat(Boolean.valueOf(adjust(bytes, 6)), equalTo(Boolean.FALSE));
+    }
+
+    /* retry */
+    bytes += 100 * MB;
+    assertThat(Boolean.valueOf(adjust(bytes, 6)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(7)));
+
+    /* the increase paid off */
+    bytes += 200 * MB;
+    assertThat(Boolean.valueOf(adjust(bytes, 7)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(concurrency()), equalTo(Integer.valueOf(8)));
+  }
+}
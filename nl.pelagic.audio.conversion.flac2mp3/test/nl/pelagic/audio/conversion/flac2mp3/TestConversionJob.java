@@ -0,0 +1,70 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestConversionJob {
+  private static final Runnable nothing = new Runnable() {
+    @Override
+    public void run() {
+      /* nothing */
+    }
+  };
+
+  @Test
+  public void testEstimateCost() {
+    File flac = new File("testresources/testdata/laser.flac");
+
+    assertThat(Long.valueOf(ConversionJob.estimateCost(null)), equalTo(Long.valueOf(0)));
+    assertThat(Long.valueOf(ConversionJob.estimateCost(new File("some dummy file that doesn't exist.flac"))),
+        equalTo(Long.valueOf(0)));
+    assertThat(Boolean.valueOf(ConversionJob.estimateCost(flac) > flac.length()), equalTo(Boolean.TRUE));
+    assertThat(Long.valueOf(ConversionJob.estimateCost(new File("testresources/testdata/laser.mp3"))),
+        equalTo(Long.valueOf(new File("testresources/testdata/laser.mp3").length())));
+  }
+
+  @Test
+  public void testCompareTo() {
+    ConversionJob small = new ConversionJob(0, 10, nothing);
+    ConversionJob large = new ConversionJob(0, 1000, nothing);
+    ConversionJob small2 = new ConversionJob(0, 10, nothing);
+    ConversionJob user = new ConversionJob(10, 1, nothing);
+
+    ConversionJob[] jobs = {
+        small2, small, large, user
+    };
+    Arrays.sort(jobs);
+
+    List<ConversionJob> expected = Arrays.asList(user, large, small, small2);
+    assertThat(Arrays.asList(jobs), equalTo(expected));
+    assertThat(Integer.valueOf(small.compareTo(small)), equalTo(Integer.valueOf(0)));
+    assertThat(Integer.valueOf(user.getPriority()), equalTo(Integer.valueOf(10)));
+    assertThat(Long.valueOf(large.getCost()), equalTo(Long.valueOf(1000)));
+  }
+
+  @Test
+  public void testRun_Once() {
+    final AtomicInteger runs = new AtomicInteger(0);
+    ConversionJob job = new ConversionJob(0, 10, new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    });
+
+    job.run();
+    job.run();
+
+    assertThat(Integer.valueOf(runs.get()), equalTo(Integer.valueOf(1)));
+  }
+}
@@ -8,16 +8,30 @@ import static org.junit.Assert.assertThat;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics;
 import nl.pelagic.audio.conversion.flac2mp3.api.Flac2Mp3Configuration;
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGain;
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGainAlbum;
 import nl.pelagic.audio.conversion.flac2mp3.i18n.Messages;
 import nl.pelagic.audio.conversion.flac2mp3.testhelpers.Syncer;
 import nl.pelagic.audio.conversion.flac2mp3.testhelpers.TagHelper;
+import nl.pelagic.jaudiotagger.reader.TagReader;
 import nl.pelagic.jaudiotagger.util.TagUtils;
 import nl.pelagic.shell.script.listener.testhelpers.MyShellScriptListener;
 import nl.pelagic.shell.script.listener.testhelpers.MyShellScriptListener.Pair;
@@ -30,8 +44,10 @@ import org.jaudiotagger.tag.FieldDataInvalidException;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.KeyNotFoundException;
 import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.TagField;
 import org.jaudiotagger.tag.flac.FlacTag;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
 import org.jaudiotagger.tag.id3.ID3v11Tag;
 import org.jaudiotagger.tag.id3.ID3v1Tag;
 import org.jaudiotagger.tag.id3.ID3v24Tag;
@@ -153,6 +169,91 @@ public class TestFlacToMp3Impl {
   public void testRunConversionProcesses_Null_LameCommandList_Normal() {
     boolean r = flacToMp3Impl.runConversionProcesses(flacFake, mp3Fake, flacCommandList, lameCommandList);
     assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+    /* 'bla bla bla' and a newline */
+    ConversionStatistics statistics = flacToMp3Impl.getStatistics();
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Stage.ENCODE).getCount()),
+        equalTo(Integer.valueOf(1)));
+    assertThat(Long.valueOf(statistics.get(ConversionStatistics.Counter.PCM_BYTES).getTotal()),
+        equalTo(Long.valueOf(12)));
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Counter.FLAC_BYTES).getCount()),
+        equalTo(Integer.valueOf(1)));
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Counter.MP3_BYTES).getCount()),
+        equalTo(Integer.valueOf(1)));
+  }
+
+  @Test(timeout = 10000)
+  public void testRunConversionProcesses_OsTransport() {
+    boolean r =
+        flacToMp3Impl.runConversionProcesses(flacFake, mp3Fake, flacCommandList, lameCommandList,
+            Flac2Mp3Configuration.Transport.OS);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+    /* the audio doesn't pass through the JVM */
+    ConversionStatistics statistics = flacToMp3Impl.getStatistics();
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Stage.ENCODE).getCount()),
+        equalTo(Integer.valueOf(1)));
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Counter.PCM_BYTES).getCount()),
+        equalTo(Integer.valueOf(0)));
+  }
+
+  @Test(timeout = 10000)
+  public void testRunConversionProcesses_OsTransport_Tap() {
+    final StringBuilder tapped = new StringBuilder();
+    Pipe.Tap tap = new Pipe.Tap() {
+      @Override
+      public void write(byte[] buffer, int offset, int length) {
+        tapped.append(new String(buffer, offset, length, StandardCharsets.UTF_8));
+      }
+
+      @Override
+      public void close(boolean complete) {
+        tapped.append(complete ? "<complete>" : "<incomplete>");
+      }
+    };
+
+    boolean r =
+        flacToMp3Impl.runConversionProcesses(flacFake, Collections.singletonList(mp3Fake), flacCommandList,
+            Collections.singletonList(lameCommandList), Flac2Mp3Configuration.Transport.OS, false, tap)[0];
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+    /* a tap needs the audio to pass through the JVM */
+    assertThat(tapped.toString(), equalTo("bla bla bla\n<complete>"));
+    assertThat(Long.valueOf(flacToMp3Impl.getStatistics().get(ConversionStatistics.Counter.PCM_BYTES).getTotal()),
+        equalTo(Long.valueOf(12)));
+  }
+
+  @Test(timeout = 10000)
+  public void testRunConversionProcesses_OsTransport_LameError() {
+    List<String> lameCommandList = new LinkedList<>();
+    lameCommandList.add(0, "cat");
+    lameCommandList.add(1, "--some_dummy_option_that_doesnt_exist");
+    boolean r =
+        flacToMp3Impl.runConversionProcesses(flacFake, mp3Fake, flacCommandList, lameCommandList,
+            Flac2Mp3Configuration.Transport.OS);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testRunConversionProcesses_FanOut() {
+    List<String> failingLameCommandList = new LinkedList<>();
+    failingLameCommandList.add(0, "cat");
+    failingLameCommandList.add(1, "--some_dummy_option_that_doesnt_exist");
+
+    boolean[] r =
+        flacToMp3Impl.runConversionProcesses(flacFake, Arrays.asList(mp3Fake, mp3Fake, mp3Fake), flacCommandList,
+            Arrays.asList(lameCommandList, failingLameCommandList, lameCommandList),
+            Flac2Mp3Configuration.Transport.OS, false, null);
+    assertThat(Boolean.valueOf(r[0]), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(r[1]), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(r[2]), equalTo(Boolean.TRUE));
+
+    /* decoded once */
+    ConversionStatistics statistics = flacToMp3Impl.getStatistics();
+    assertThat(Integer.valueOf(statistics.get(ConversionStatistics.Stage.ENCODE).getCount()),
+        equalTo(Integer.valueOf(1)));
+    assertThat(Long.valueOf(statistics.get(ConversionStatistics.Counter.PCM_BYTES).getTotal()),
+        equalTo(Long.valueOf(12)));
   }
 
   @Test
@@ -162,6 +263,8 @@ public class TestFlacToMp3Impl {
     flacCommandList.add(1, "--some_dummy_option_that_doesnt_exist");
     boolean r = flacToMp3Impl.runConversionProcesses(flacFake, mp3Fake, flacCommandList, lameCommandList);
     assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(flacToMp3Impl.getStatistics().get(ConversionStatistics.Stage.ENCODE).getCount()),
+        equalTo(Integer.valueOf(0)));
   }
 
   @Test
@@ -435,6 +538,8 @@ public class TestFlacToMp3Impl {
 
     boolean r = flacToMp3Impl.updateTimestamp(flacFake, mp3Fake);
     assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(flacToMp3Impl.getStatistics().get(ConversionStatistics.Stage.UPDATE_TIMESTAMP)
+        .getCount()), equalTo(Integer.valueOf(1)));
   }
 
   @Test
@@ -445,6 +550,8 @@ public class TestFlacToMp3Impl {
     TagInformation tagInformation = flacToMp3Impl.readTag(flacFake);
 
     assertThat(tagInformation, nullValue());
+    assertThat(Integer.valueOf(flacToMp3Impl.getStatistics().get(ConversionStatistics.Stage.READ_TAG).getCount()),
+        equalTo(Integer.valueOf(0)));
   }
 
   @Test
@@ -484,6 +591,237 @@ public class TestFlacToMp3Impl {
     assertThat(tagInformation.getTitle(), equalTo("Laser flac"));
     assertThat(tagInformation.getTrackNumber(), equalTo("01"));
     assertThat(tagInformation.getTrackTotal(), equalTo("12"));
+    assertThat(tagInformation.getAudioMd5(), equalTo("ccdac9afb079ec9b272576eab4f395e2"));
+    assertThat(Integer.valueOf(flacToMp3Impl.getStatistics().get(ConversionStatistics.Stage.READ_TAG).getCount()),
+        equalTo(Integer.valueOf(1)));
+  }
+
+  @Test
+  public void testGetSetAudioMd5() throws FieldDataInvalidException {
+    ID3v24Tag mp3tag = new ID3v24Tag();
+    assertThat(FlacToMp3Impl.getAudioMd5(mp3tag), nullValue());
+
+    FlacToMp3Impl.setAudioMd5(mp3tag, null);
+    assertThat(FlacToMp3Impl.getAudioMd5(mp3tag), nullValue());
+    assertThat(Integer.valueOf(mp3tag.getFields("TXXX").size()), equalTo(Integer.valueOf(0)));
+
+    mp3tag.setField(FieldKey.MUSICBRAINZ_ARTISTID, "some id");
+    FlacToMp3Impl.setAudioMd5(mp3tag, "0123456789abcdef0123456789abcdef");
+    assertThat(FlacToMp3Impl.getAudioMd5(mp3tag), equalTo("0123456789abcdef0123456789abcdef"));
+
+    FlacToMp3Impl.setAudioMd5(mp3tag, "fedcba9876543210fedcba9876543210");
+    assertThat(FlacToMp3Impl.getAudioMd5(mp3tag), equalTo("fedcba9876543210fedcba9876543210"));
+    assertThat(Integer.valueOf(mp3tag.getFields("TXXX").size()), equalTo(Integer.valueOf(2)));
+    assertThat(mp3tag.getFirst(FieldKey.MUSICBRAINZ_ARTISTID), equalTo("some id"));
+
+    FlacToMp3Impl.setAudioMd5(mp3tag, null);
+    assertThat(FlacToMp3Impl.getAudioMd5(mp3tag), nullValue());
+  }
+
+  @Test
+  public void testSetReplayGain() throws FieldDataInvalidException {
+    ID3v24Tag mp3tag = new ID3v24Tag();
+    FlacToMp3Impl.setAudioMd5(mp3tag, "0123456789abcdef0123456789abcdef");
+
+    ReplayGain replayGain = new ReplayGain(new double[] {
+      Math.pow(10.0, (-20.0 + 0.691) / 10.0)
+    }, 0.1);
+    boolean r = flacToMp3Impl.setReplayGain(mp3, mp3tag, replayGain, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+    r = flacToMp3Impl.setReplayGain(mp3, mp3tag, ReplayGain.album(Arrays.asList(replayGain)), true);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+    assertThat(FlacToMp3Impl.getAudioMd5(mp3tag), equalTo("0123456789abcdef0123456789abcdef"));
+    assertThat(FlacToMp3Impl.getUserDefinedInfo(mp3tag, FlacToMp3Impl.REPLAYGAIN_TRACK_GAIN), equalTo("+2.00 dB"));
+    assertThat(FlacToMp3Impl.getUserDefinedInfo(mp3tag, FlacToMp3Impl.REPLAYGAIN_TRACK_PEAK), equalTo("0.100000"));
+    assertThat(FlacToMp3Impl.getUserDefinedInfo(mp3tag, FlacToMp3Impl.REPLAYGAIN_ALBUM_GAIN), equalTo("+2.00 dB"));
+    assertThat(FlacToMp3Impl.getUserDefinedInfo(mp3tag, FlacToMp3Impl.REPLAYGAIN_ALBUM_PEAK), equalTo("0.100000"));
+    assertThat(Integer.valueOf(mp3tag.getFields("TXXX").size()), equalTo(Integer.valueOf(5)));
+
+    /* silence */
+    FlacToMp3Impl.setAudioMd5(mp3tag, null);
+    r = flacToMp3Impl.setReplayGain(mp3, mp3tag, new ReplayGain(null, 0.0), false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+    assertThat(FlacToMp3Impl.getUserDefinedInfo(mp3tag, FlacToMp3Impl.REPLAYGAIN_TRACK_GAIN), equalTo("+0.00 dB"));
+    assertThat(FlacToMp3Impl.getUserDefinedInfo(mp3tag, FlacToMp3Impl.REPLAYGAIN_TRACK_PEAK), equalTo("0.000000"));
+    assertThat(FlacToMp3Impl.getAudioMd5(mp3tag), nullValue());
+    assertThat(Integer.valueOf(mp3tag.getFields("TXXX").size()), equalTo(Integer.valueOf(5)));
+
+    List<String> commandList = new LinkedList<>();
+    FlacToMp3Impl.addReplayGainCommand(commandList, replayGain, true);
+    assertThat(commandList, equalTo(Arrays.asList("--TXXX", "REPLAYGAIN_ALBUM_GAIN:+2.00 dB", "--TXXX",
+        "REPLAYGAIN_ALBUM_PEAK:0.100000")));
+  }
+
+  @Test
+  public void testSetAlbumReplayGain() throws FileAlreadyExistsException, FileNotFoundException, IOException,
+      TagException {
+    ReplayGain replayGain = new ReplayGain(new double[] {
+      Math.pow(10.0, (-20.0 + 0.691) / 10.0)
+    }, 0.1);
+
+    try {
+      FileUtils.copy(mp3, mp3Fake);
+      assertThat(Boolean.valueOf(mp3Fake.setLastModified(1000000000L)), equalTo(Boolean.TRUE));
+      long lastModified = mp3Fake.lastModified();
+
+      /* incomplete album */
+      ReplayGainAlbum album = new ReplayGainAlbum(2);
+      album.add(replayGain, Arrays.asList(mp3Fake));
+      boolean r = flacToMp3Impl.setAlbumReplayGain(album, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myShellScriptListener.received.size()), equalTo(Integer.valueOf(0)));
+      assertThat(flacToMp3Impl.getMp3AudioMd5(mp3Fake), nullValue());
+      r = flacToMp3Impl.setAlbumReplayGain(null, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+      /* simulate */
+      album.add(replayGain, Arrays.asList(mp3Fake));
+      r = flacToMp3Impl.setAlbumReplayGain(album, true);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myShellScriptListener.received.size()), equalTo(Integer.valueOf(2)));
+      assertThat(myShellScriptListener.received.get(0).string,
+          equalTo("id3v2 --TXXX REPLAYGAIN_ALBUM_GAIN:+2.00 dB --TXXX REPLAYGAIN_ALBUM_PEAK:0.100000 "
+              + mp3Fake.getPath()));
+      AbstractID3v2Tag tag = TagReader.readId3v2Tag(mp3Fake);
+      assertThat(Boolean.valueOf((tag instanceof ID3v24Tag)
+          && (FlacToMp3Impl.getUserDefinedInfo((ID3v24Tag) tag, FlacToMp3Impl.REPLAYGAIN_ALBUM_GAIN) != null)),
+          equalTo(Boolean.FALSE));
+
+      /* complete album */
+      ReplayGainAlbum single = new ReplayGainAlbum(1);
+      single.add(replayGain, Arrays.asList(mp3Fake));
+      r = flacToMp3Impl.setAlbumReplayGain(single, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      tag = TagReader.readId3v2Tag(mp3Fake);
+      assertThat(Boolean.valueOf(tag instanceof ID3v24Tag), equalTo(Boolean.TRUE));
+      assertThat(FlacToMp3Impl.getUserDefinedInfo((ID3v24Tag) tag, FlacToMp3Impl.REPLAYGAIN_ALBUM_GAIN),
+          equalTo("+2.00 dB"));
+      assertThat(FlacToMp3Impl.getUserDefinedInfo((ID3v24Tag) tag, FlacToMp3Impl.REPLAYGAIN_ALBUM_PEAK),
+          equalTo("0.100000"));
+      assertThat(Long.valueOf(mp3Fake.lastModified()), equalTo(Long.valueOf(lastModified)));
+
+      /* not running */
+      flacToMp3Impl.shutdownHook();
+      r = flacToMp3Impl.setAlbumReplayGain(album, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+    }
+    finally {
+      mp3Fake.delete();
+    }
+  }
+
+  @Test
+  public void testGetFlacAudioMd5() {
+    assertThat(flacToMp3Impl.getFlacAudioMd5(new File("some dummy file that doesn't exist.flac")), nullValue());
+    assertThat(flacToMp3Impl.getFlacAudioMd5(mp3), nullValue());
+    assertThat(flacToMp3Impl.getFlacAudioMd5(flac), equalTo("ccdac9afb079ec9b272576eab4f395e2"));
+  }
+
+  @Test
+  public void testGetMp3AudioMd5() throws FileAlreadyExistsException, FileNotFoundException, IOException {
+    assertThat(flacToMp3Impl.getMp3AudioMd5(new File("some dummy file that doesn't exist.mp3")), nullValue());
+    assertThat(flacToMp3Impl.getMp3AudioMd5(new File(testdataDir, "laser_id3v1.mp3")), nullValue());
+    assertThat(flacToMp3Impl.getMp3AudioMd5(new File(testdataDir, "laser_no_tag.mp3")), nullValue());
+    assertThat(flacToMp3Impl.getMp3AudioMd5(mp3), nullValue());
+
+    try {
+      FileUtils.copy(new File(testdataDir, "laser_no_tag.mp3"), mp3Fake);
+      TagInformation tagInformation = flacToMp3Impl.readTag(flac);
+      boolean r = flacToMp3Impl.writeMp3TagInPlace(mp3Fake, flacToMp3Impl.createMp3Tag(mp3Fake, tagInformation));
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(flacToMp3Impl.getMp3AudioMd5(mp3Fake), equalTo("ccdac9afb079ec9b272576eab4f395e2"));
+    }
+    finally {
+      mp3Fake.delete();
+    }
+  }
+
+  @Test
+  public void testWriteMp3TagInPlace() throws FileAlreadyExistsException, FileNotFoundException, IOException,
+      TagException, KeyNotFoundException, FieldDataInvalidException {
+    TagInformation tagInformation = flacToMp3Impl.readTag(flac);
+    ID3v24Tag mp3tag = flacToMp3Impl.createMp3Tag(mp3Fake, tagInformation);
+    assertThat(mp3tag, notNullValue());
+    assertThat(Boolean.valueOf(FlacToMp3Impl.getMp3TagSize(mp3tag) > FlacToMp3Impl.ID3V2_PADDING_SIZE),
+        equalTo(Boolean.TRUE));
+
+    /* no ID3v2 tag */
+    try {
+      FileUtils.copy(new File(testdataDir, "laser_id3v1.mp3"), mp3Fake);
+      boolean r = flacToMp3Impl.writeMp3TagInPlace(mp3Fake, mp3tag);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+    }
+    finally {
+      mp3Fake.delete();
+    }
+
+    /* padded ID3v2 tag */
+    File mp3Padded = new File(testdataDir, "laser_no_tag.mp3");
+    int tagSize = (int) AbstractID3v2Tag.getV2TagSizeIfExists(mp3Padded);
+    byte[] original = Files.readAllBytes(mp3Padded.toPath());
+    try {
+      FileUtils.copy(mp3Padded, mp3Fake);
+      boolean r = flacToMp3Impl.writeMp3TagInPlace(mp3Fake, mp3tag);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+      byte[] written = Files.readAllBytes(mp3Fake.toPath());
+      assertThat(Integer.valueOf(written.length), equalTo(Integer.valueOf(original.length)));
+      assertThat(Boolean.valueOf(Arrays.equals(Arrays.copyOfRange(written, tagSize, written.length),
+          Arrays.copyOfRange(original, tagSize, original.length))), equalTo(Boolean.TRUE));
+
+      ID3v24Tag writtenTag = new ID3v24Tag(ByteBuffer.wrap(written, 0, tagSize), mp3Fake.getName());
+      assertThat(writtenTag.getFirst(FieldKey.TITLE), equalTo("Laser flac"));
+      assertThat(FlacToMp3Impl.getAudioMd5(writtenTag), equalTo("ccdac9afb079ec9b272576eab4f395e2"));
+    }
+    finally {
+      mp3Fake.delete();
+    }
+
+    /* tag too large for the padding */
+    StringBuilder comment = new StringBuilder();
+    while (comment.length() <= tagSize) {
+      comment.append("a long comment ");
+    }
+    mp3tag.setField(FieldKey.COMMENT, comment.toString());
+    try {
+      FileUtils.copy(mp3Padded, mp3Fake);
+      boolean r = flacToMp3Impl.writeMp3TagInPlace(mp3Fake, mp3tag);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(Arrays.equals(Files.readAllBytes(mp3Fake.toPath()), original)),
+          equalTo(Boolean.TRUE));
+    }
+    finally {
+      mp3Fake.delete();
+    }
+  }
+
+  @Test
+  public void testConvert_TagOnly() throws FileAlreadyExistsException, FileNotFoundException, IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+
+    try {
+      FileUtils.copy(mp3, mp3Dst);
+      TagInformation tagInformation = flacToMp3Impl.readTag(flac);
+      flacToMp3Impl.setMp3Tag(mp3Dst, tagInformation, false);
+
+      boolean r = flacToMp3Impl.convert(flac2mp3Config, flac, mp3Dst, false);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      for (Pair pair : myShellScriptListener.received) {
+        assertThat(pair.string, pair.string.startsWith(flac2mp3Config.getFlacExecutable()), equalTo(Boolean.FALSE));
+      }
+      assertThat(Long.valueOf(mp3Dst.lastModified()), equalTo(Long.valueOf(flac.lastModified())));
+
+      ID3v24Tag mp3tag = readMp3Tag(mp3Dst);
+      assertThat(TagUtils.concatenateTagFields(mp3tag.getFields(FieldKey.TITLE), null), equalTo("Text=\"Laser flac\"; "));
+    }
+    finally {
+      mp3Dst.delete();
+      FileUtils.delete(mp3DstDir);
+    }
   }
 
   @Test
@@ -528,6 +866,187 @@ public class TestFlacToMp3Impl {
     assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
   }
 
+  @Test
+  public void testGetPool() {
+    ThreadPoolExecutor pool = flacToMp3Impl.getPool(2);
+    assertThat(Integer.valueOf(pool.getMaximumPoolSize()), equalTo(Integer.valueOf(2)));
+
+    ThreadPoolExecutor pool2 = flacToMp3Impl.getPool(4);
+    assertThat(pool2, equalTo(pool));
+    assertThat(Integer.valueOf(pool2.getCorePoolSize()), equalTo(Integer.valueOf(4)));
+    assertThat(Integer.valueOf(pool2.getMaximumPoolSize()), equalTo(Integer.valueOf(4)));
+
+    pool2 = flacToMp3Impl.getPool(0);
+    assertThat(Integer.valueOf(pool2.getMaximumPoolSize()), equalTo(Integer.valueOf(1)));
+
+    flacToMp3Impl.shutdownHook();
+    assertThat(Boolean.valueOf(pool.isShutdown()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testGetConcurrency() {
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setConcurrency(3);
+    config.setMinConcurrency(2);
+    assertThat(Integer.valueOf(flacToMp3Impl.getConcurrency(config)), equalTo(Integer.valueOf(3)));
+
+    /* adaptive concurrency starts at the ceiling */
+    config.setAdaptiveConcurrency(true);
+    config.setConcurrency(5);
+    assertThat(Integer.valueOf(flacToMp3Impl.getConcurrency(config)), equalTo(Integer.valueOf(5)));
+
+    config.setConcurrency(4);
+    assertThat(Integer.valueOf(flacToMp3Impl.getConcurrency(config)), equalTo(Integer.valueOf(4)));
+
+    /* the first adjustment only sets the baseline */
+    flacToMp3Impl.adjustConcurrency();
+    assertThat(Integer.valueOf(flacToMp3Impl.getConcurrency(config)), equalTo(Integer.valueOf(4)));
+    assertThat(Long.valueOf(flacToMp3Impl.getBytesPiped()), equalTo(Long.valueOf(0)));
+  }
+
+  @Test(timeout = 10000)
+  public void testGetPool_LongestJobFirst() throws InterruptedException {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final List<Long> order = new LinkedList<>();
+    ThreadPoolExecutor pool = flacToMp3Impl.getPool(1);
+
+    /* occupy the only thread of the pool so that the next jobs are queued */
+    pool.execute(new ConversionJob(0, 0, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blocked.await();
+        }
+        catch (InterruptedException e) {
+          /* swallow */
+        }
+      }
+    }));
+
+    long[][] jobs = {
+        {
+            0, 1
+        }, {
+            0, 3
+        }, {
+            10, 0
+        }, {
+            0, 2
+        }
+    };
+    for (final long[] job : jobs) {
+      pool.execute(new ConversionJob((int) job[0], job[1], new Runnable() {
+        @Override
+        public void run() {
+          synchronized (order) {
+            order.add(Long.valueOf((job[0] * 100) + job[1]));
+          }
+        }
+      }));
+    }
+
+    blocked.countDown();
+    flacToMp3Impl.shutdownHook();
+    pool.awaitTermination(10, TimeUnit.SECONDS);
+
+    assertThat(order, equalTo(Arrays.asList(Long.valueOf(1000), Long.valueOf(3), Long.valueOf(2), Long.valueOf(1))));
+  }
+
+  @Test
+  public void testConvertAsync_AlreadyStopped() throws InterruptedException, ExecutionException {
+    flacToMp3Impl.shutdownHook();
+    Boolean r = flacToMp3Impl.convertAsync(null, flac, mp3Fake, true).get();
+
+    assertThat(r, equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testConvertAsync_FlacNull() throws InterruptedException {
+    Throwable cause = null;
+    try {
+      flacToMp3Impl.convertAsync(null, null, mp3Fake, true).get();
+    }
+    catch (ExecutionException e) {
+      cause = e.getCause();
+    }
+
+    assertThat(Boolean.valueOf(cause instanceof FileNotFoundException), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testConvertAsync_Normal_Simulate() throws InterruptedException, ExecutionException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    mp3Dst.delete();
+
+    try {
+      List<CompletableFuture<Boolean>> futures = new LinkedList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(flacToMp3Impl.convertAsync(flac2mp3Config, flac, mp3Dst, true));
+      }
+
+      for (CompletableFuture<Boolean> future : futures) {
+        assertThat(future.get(), equalTo(Boolean.TRUE));
+      }
+      assertThat(Boolean.valueOf(mp3DstDir.exists()), equalTo(Boolean.FALSE));
+    }
+    finally {
+      flacToMp3Impl.shutdownHook();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testConvertAsync_UserPriorityFirst() throws InterruptedException, ExecutionException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File userFlac = new File(testdataDir, "laser_no_tag.flac");
+    final CountDownLatch blocked = new CountDownLatch(1);
+    Flac2Mp3Configuration backgroundConfig = new Flac2Mp3Configuration();
+    Flac2Mp3Configuration userConfig = new Flac2Mp3Configuration();
+    userConfig.setPriority(Flac2Mp3Configuration.USER_PRIORITY);
+
+    try {
+      /* occupy the only thread of the pool so that the conversions are queued */
+      flacToMp3Impl.getPool(1).execute(new ConversionJob(0, 0, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            blocked.await();
+          }
+          catch (InterruptedException e) {
+            /* swallow */
+          }
+        }
+      }));
+
+      List<CompletableFuture<Boolean>> futures = new LinkedList<>();
+      for (int i = 0; i < 3; i++) {
+        futures.add(flacToMp3Impl.convertAsync(backgroundConfig, flac, new File(mp3DstDir, "background" + i + ".mp3"),
+            true));
+      }
+      futures.add(flacToMp3Impl.convertAsync(userConfig, userFlac, new File(mp3DstDir, "user.mp3"), true));
+
+      blocked.countDown();
+      for (CompletableFuture<Boolean> future : futures) {
+        assertThat(future.get(), equalTo(Boolean.TRUE));
+      }
+
+      List<String> commands = new LinkedList<>();
+      for (Pair pair : myShellScriptListener.received) {
+        if ((pair.type == MyShellScriptListener.TYPE_COMMAND)
+            && pair.string.startsWith(backgroundConfig.getFlacExecutable() + " ")) {
+          commands.add(pair.string);
+        }
+      }
+      assertThat(Integer.valueOf(commands.size()), equalTo(Integer.valueOf(4)));
+      assertThat(Boolean.valueOf(commands.get(0).contains(userFlac.getName())), equalTo(Boolean.TRUE));
+    }
+    finally {
+      flacToMp3Impl.shutdownHook();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
   @SuppressWarnings("unused")
   @Test(expected = FileNotFoundException.class)
   public void testConvert_FlacNull() throws FileNotFoundException {
@@ -711,6 +1230,96 @@ public class TestFlacToMp3Impl {
     }
   }
 
+  @Test
+  public void testConvert_TagOnly_StopBeforeTimestampCopy_Mp3_Exists() throws FileAlreadyExistsException,
+      IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+
+    myShellScriptListener.stallPoints.add("^touch .*");
+    try {
+      /* an mp3 file that was converted from the same audio */
+      FileUtils.copy(new File(testdataDir, "laser_no_tag.mp3"), mp3Dst);
+      TagInformation tagInformation = flacToMp3Impl.readTag(flac);
+      boolean r = flacToMp3Impl.writeMp3TagInPlace(mp3Dst, flacToMp3Impl.createMp3Tag(mp3Dst, tagInformation));
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      byte[] original = Files.readAllBytes(mp3Dst.toPath());
+
+      Syncer syncer = new Syncer(myShellScriptListener, flacToMp3Impl);
+      syncer.start();
+      while (!syncer.busy.get()) {
+        try {
+          Thread.sleep(1);
+        }
+        catch (InterruptedException e) {
+          /* swallow */
+        }
+      }
+
+      r = flacToMp3Impl.convert(flac2mp3Config, flac, mp3Dst, true);
+
+      try {
+        syncer.join();
+      }
+      catch (InterruptedException e) {
+        /* swallow */
+      }
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(mp3Dst.exists()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(Arrays.equals(Files.readAllBytes(mp3Dst.toPath()), original)), equalTo(Boolean.TRUE));
+    }
+    finally {
+      mp3Dst.delete();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
+  @Test
+  public void testConvert_TagOnly_StopBeforeTagCopy_Mp3_Exists() throws FileAlreadyExistsException, IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+
+    myShellScriptListener.stallPoints.add("^id3v2 .*");
+    try {
+      /* an mp3 file that was converted from the same audio */
+      FileUtils.copy(new File(testdataDir, "laser_no_tag.mp3"), mp3Dst);
+      TagInformation tagInformation = flacToMp3Impl.readTag(flac);
+      boolean r = flacToMp3Impl.writeMp3TagInPlace(mp3Dst, flacToMp3Impl.createMp3Tag(mp3Dst, tagInformation));
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+      Syncer syncer = new Syncer(myShellScriptListener, flacToMp3Impl);
+      syncer.start();
+      while (!syncer.busy.get()) {
+        try {
+          Thread.sleep(1);
+        }
+        catch (InterruptedException e) {
+          /* swallow */
+        }
+      }
+
+      r = flacToMp3Impl.convert(flac2mp3Config, flac, mp3Dst, false);
+
+      try {
+        syncer.join();
+      }
+      catch (InterruptedException e) {
+        /* swallow */
+      }
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+      for (Pair pair : myShellScriptListener.received) {
+        assertThat(pair.string, pair.string.startsWith(flac2mp3Config.getFlacExecutable()), equalTo(Boolean.FALSE));
+      }
+      assertThat(Boolean.valueOf(mp3Dst.exists()), equalTo(Boolean.TRUE));
+    }
+    finally {
+      mp3Dst.delete();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
   @Test
   public void testConvert_StopBeforeTimestampCopy_Mp3_Exists() throws FileAlreadyExistsException, IOException {
     FileUtils.copy(mp3, mp3Fake);
@@ -786,6 +1395,175 @@ public class TestFlacToMp3Impl {
     }
   }
 
+  private static void writeLongFlac(File file, long totalSamples) throws IOException {
+    byte[] bytes = Files.readAllBytes(flac.toPath());
+    int o = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("fLaC") + 8 + 10;
+    bytes[o + 3] = (byte) ((bytes[o + 3] & 0xf0) | ((totalSamples >>> 32) & 0x0f));
+    bytes[o + 4] = (byte) (totalSamples >>> 24);
+    bytes[o + 5] = (byte) (totalSamples >>> 16);
+    bytes[o + 6] = (byte) (totalSamples >>> 8);
+    bytes[o + 7] = (byte) totalSamples;
+    Files.write(file.toPath(), bytes);
+  }
+
+  @Test
+  public void testGetSegmentedConversion() throws IOException {
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    File longFlac = new File(tmpTestDir, "TestFlacToMp3Impl.long.tmp.flac");
+
+    try {
+      writeLongFlac(longFlac, 44100L * 600);
+
+      /* disabled */
+      assertThat(FlacToMp3Impl.getSegmentedConversion(config, longFlac), nullValue());
+
+      /* not above the threshold */
+      config.setSegmentThreshold(600);
+      config.setSegments(4);
+      assertThat(FlacToMp3Impl.getSegmentedConversion(config, longFlac), nullValue());
+      assertThat(FlacToMp3Impl.getSegmentedConversion(config, flac), nullValue());
+      assertThat(FlacToMp3Impl.getSegmentedConversion(config, new File("some dummy file that doesn't exist.flac")),
+          nullValue());
+
+      config.setSegmentThreshold(599);
+      SegmentedConversion segmented = FlacToMp3Impl.getSegmentedConversion(config, longFlac);
+      assertThat(Integer.valueOf(segmented.getCount()), equalTo(Integer.valueOf(4)));
+      assertThat(Integer.valueOf(segmented.getSampleRate()), equalTo(Integer.valueOf(44100)));
+
+      /* capped at the concurrency */
+      segmented = FlacToMp3Impl.getSegmentedConversion(config, longFlac, 3);
+      assertThat(Integer.valueOf(segmented.getCount()), equalTo(Integer.valueOf(3)));
+      assertThat(FlacToMp3Impl.getSegmentedConversion(config, longFlac, 1), nullValue());
+    }
+    finally {
+      longFlac.delete();
+    }
+  }
+
+  @Test
+  public void testConvert_Segmented_Simulate() throws IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    File longFlac = new File(tmpTestDir, "TestFlacToMp3Impl.long.tmp.flac");
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setSegmentThreshold(60);
+    config.setSegments(3);
+    config.setConcurrency(3);
+
+    try {
+      writeLongFlac(longFlac, 44100L * 600);
+
+      boolean r = flacToMp3Impl.convert(config, longFlac, mp3Dst, true);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(mp3DstDir.exists()), equalTo(Boolean.FALSE));
+
+      List<String> commands = new LinkedList<>();
+      for (Pair pair : myShellScriptListener.received) {
+        if ((pair.type == MyShellScriptListener.TYPE_COMMAND)
+            && pair.string.startsWith(config.getFlacExecutable() + " ")) {
+          commands.add(pair.string);
+        }
+      }
+      assertThat(Integer.valueOf(commands.size()), equalTo(Integer.valueOf(3)));
+
+      SegmentedConversion segmented = FlacToMp3Impl.getSegmentedConversion(config, longFlac);
+      String temporaryMp3 = FlacToMp3Impl.getTemporaryMp3File(mp3Dst).getPath();
+      assertThat(Boolean.valueOf(commands.get(0).contains(" --skip=0 --until=" + segmented.getDecodeEnd(0) + " ")),
+          equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(commands.get(0).contains("lame --nores ")), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(commands.get(0).contains(" --add-id3v2 ")), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(commands.get(0).endsWith(SegmentedConversion.getSegmentMp3File(mp3Dst, 0).getPath()
+          + " &")), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(commands.get(2).contains(" --skip=" + segmented.getDecodeStart(2) + " ")),
+          equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(commands.get(2).contains(" --until=")), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(commands.get(2).contains(" -t - ")), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(commands.get(2).contains(" --add-id3v2 ")), equalTo(Boolean.FALSE));
+
+      boolean joined = false;
+      for (Pair pair : myShellScriptListener.received) {
+        joined =
+            joined
+                || pair.string.equals(String.format(Messages.getString("FlacToMp3Impl.21"), Integer.valueOf(3),
+                    temporaryMp3));
+      }
+      assertThat(Boolean.valueOf(joined), equalTo(Boolean.TRUE));
+    }
+    finally {
+      longFlac.delete();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
+  @Test
+  public void testConvertTargets_Simulate() throws IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    File mp3DstDir2 = new File(tmpTestDir, "from.flac.2");
+    File mp3Dst2 = new File(mp3DstDir2, "mp3Dst.mp3");
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setTargetLameOptions(Arrays.asList("-V 2"));
+
+    try {
+      boolean r = flacToMp3Impl.convertTargets(config, flac, Arrays.asList(mp3Dst, mp3Dst2), true);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(mp3DstDir.exists()), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(mp3DstDir2.exists()), equalTo(Boolean.FALSE));
+
+      List<String> commands = new LinkedList<>();
+      for (Pair pair : myShellScriptListener.received) {
+        if ((pair.type == MyShellScriptListener.TYPE_COMMAND)
+            && pair.string.startsWith(config.getFlacExecutable() + " ")) {
+          commands.add(pair.string);
+        }
+      }
+      assertThat(Integer.valueOf(commands.size()), equalTo(Integer.valueOf(1)));
+      assertThat(Boolean.valueOf(commands.get(0).contains(" tee >(lame -S -h -b 320 - ")), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(commands.get(0).contains("lame -V 2 - ")), equalTo(Boolean.TRUE));
+    }
+    finally {
+      FileUtils.delete(mp3DstDir);
+      FileUtils.delete(mp3DstDir2);
+    }
+  }
+
+  @Test
+  public void testConvertTargets_Normal() throws IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    File mp3DstDir2 = new File(tmpTestDir, "from.flac.2");
+    File mp3Dst2 = new File(mp3DstDir2, "mp3Dst.mp3");
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setTargetLameOptions(Arrays.asList("-S -h -b 128", "-S -h -b 64"));
+
+    try {
+      boolean r = flacToMp3Impl.convertTargets(config, flac, Arrays.asList(mp3Dst, null, mp3Dst2), false);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(mp3Dst.exists()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(mp3Dst2.exists()), equalTo(Boolean.TRUE));
+      assertThat(Long.valueOf(mp3Dst2.lastModified()), equalTo(Long.valueOf(flac.lastModified())));
+      assertThat(Boolean.valueOf(FlacToMp3Impl.getTemporaryMp3File(mp3Dst2).exists()), equalTo(Boolean.FALSE));
+
+      /* decoded once */
+      assertThat(Integer.valueOf(flacToMp3Impl.getStatistics().get(ConversionStatistics.Stage.ENCODE).getCount()),
+          equalTo(Integer.valueOf(1)));
+    }
+    finally {
+      mp3Dst.delete();
+      mp3Dst2.delete();
+      FileUtils.delete(mp3DstDir);
+      FileUtils.delete(mp3DstDir2);
+    }
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testConvertTargets_NoMp3s() throws FileNotFoundException {
+    flacToMp3Impl.convertTargets(flac2mp3Config, flac, Arrays.asList((File) null), true);
+  }
+
   @Test
   public void testConvert_Normal_FileWithQuote() throws IOException {
     File mp3DstDir = new File(tmpTestDir, "from.flac");
@@ -819,8 +1597,143 @@ public class TestFlacToMp3Impl {
       assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
       assertThat(Boolean.valueOf(mp3DstDir.exists()), equalTo(Boolean.TRUE));
       assertThat(Boolean.valueOf(mp3Dst.exists()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(FlacToMp3Impl.getTemporaryMp3File(mp3Dst).exists()), equalTo(Boolean.FALSE));
+      assertThat(Long.valueOf(mp3Dst.lastModified()), equalTo(Long.valueOf(flac.lastModified())));
+
+      String mvCommand = null;
+      for (Pair pair : myShellScriptListener.received) {
+        if (pair.string.startsWith("mv -f ")) {
+          mvCommand = pair.string;
+        }
+      }
+      assertThat(mvCommand, notNullValue());
+    }
+    finally {
+      mp3Dst.delete();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
+  @Test
+  public void testConvert_Failure_KeepsExistingMp3() throws IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    File tmp = FlacToMp3Impl.getTemporaryMp3File(mp3Dst);
+
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setLameExecutable("false");
+
+    try {
+      FileUtils.copy(mp3, mp3Dst);
+      byte[] original = Files.readAllBytes(mp3Dst.toPath());
+
+      boolean r = flacToMp3Impl.convert(config, flac, mp3Dst, false);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(tmp.exists()), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(Arrays.equals(Files.readAllBytes(mp3Dst.toPath()), original)),
+          equalTo(Boolean.TRUE));
+    }
+    finally {
+      tmp.delete();
+      mp3Dst.delete();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
+  @Test
+  public void testConvert_Journal() throws IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    File journal = new File(tmpTestDir, "journal");
+
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setJournal(journal);
+
+    try {
+      boolean r = flacToMp3Impl.convert(config, flac, mp3Dst, false);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(mp3Dst.exists()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(journal.exists()), equalTo(Boolean.FALSE));
+      assertThat(Integer.valueOf(flacToMp3Impl.getJournal(config).getConverting().size()),
+          equalTo(Integer.valueOf(0)));
+    }
+    finally {
+      journal.delete();
+      mp3Dst.delete();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
+  @Test
+  public void testResume_NoJournal() {
+    assertThat(Boolean.valueOf(flacToMp3Impl.resume(null, false)), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(flacToMp3Impl.resume(flac2mp3Config, false)), equalTo(Boolean.TRUE));
+  }
+
+  private static void writeJournal(File journal, File flac, File mp3) throws IOException {
+    Files.write(
+        journal.toPath(),
+        Arrays.asList(RunJournal.HEADER, "c\t" + mp3.getAbsolutePath() + "\t" + flac.getAbsolutePath(), "c\t"
+            + new File(mp3.getParentFile(), "gone.mp3").getAbsolutePath() + "\t"
+            + new File(flac.getParentFile(), "gone.flac").getAbsolutePath()), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testResume_Simulate() throws IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    File journal = new File(tmpTestDir, "journal");
+
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setJournal(journal);
+
+    try {
+      writeJournal(journal, flac, mp3Dst);
+
+      boolean r = flacToMp3Impl.resume(config, true);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(mp3Dst.exists()), equalTo(Boolean.FALSE));
+      assertThat(Integer.valueOf(new RunJournal(journal).getConverting().size()), equalTo(Integer.valueOf(2)));
+      assertThat(myShellScriptListener.received.get(0).string,
+          equalTo(String.format(Messages.getString("FlacToMp3Impl.20"), flac.getAbsolutePath())));
+    }
+    finally {
+      journal.delete();
+      FileUtils.delete(mp3DstDir);
+    }
+  }
+
+  @Test
+  public void testResume() throws IOException {
+    File mp3DstDir = new File(tmpTestDir, "from.flac");
+    File mp3Dst = new File(mp3DstDir, "mp3Dst.mp3");
+    File tmp = FlacToMp3Impl.getTemporaryMp3File(mp3Dst);
+    File journal = new File(tmpTestDir, "journal");
+
+    Flac2Mp3Configuration config = new Flac2Mp3Configuration();
+    config.setJournal(journal);
+
+    try {
+      /* an interrupted conversion */
+      writeJournal(journal, flac, mp3Dst);
+      DirUtils.mkdir(mp3DstDir);
+      Files.write(tmp.toPath(), new byte[] {
+          1, 2, 3
+      });
+
+      boolean r = flacToMp3Impl.resume(config, false);
+
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(mp3Dst.exists()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(tmp.exists()), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(journal.exists()), equalTo(Boolean.FALSE));
     }
     finally {
+      journal.delete();
+      tmp.delete();
       mp3Dst.delete();
       FileUtils.delete(mp3DstDir);
     }
@@ -0,0 +1,82 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestMp3Frames {
+  private static File testdataDir = new File("testresources/testdata");
+
+  /* MPEG 1 layer III, 128 kbit/s, 44100 Hz, joint stereo */
+  static final int HEADER = 0xfffb9064;
+
+  @Test
+  public void testFrameLength() {
+    assertThat(Integer.valueOf(Mp3Frames.frameLength(HEADER)), equalTo(Integer.valueOf(417)));
+    /* padded */
+    assertThat(Integer.valueOf(Mp3Frames.frameLength(HEADER | 0x200)), equalTo(Integer.valueOf(418)));
+    /* MPEG 2, 64 kbit/s, 22050 Hz */
+    assertThat(Integer.valueOf(Mp3Frames.frameLength(0xfff38064)), equalTo(Integer.valueOf(208)));
+    assertThat(Integer.valueOf(Mp3Frames.samplesPerFrame(0xfff38064)), equalTo(Integer.valueOf(576)));
+    assertThat(Integer.valueOf(Mp3Frames.sampleRate(0xfff38064)), equalTo(Integer.valueOf(22050)));
+
+    /* no sync, layer I, free format, reserved sample rate */
+    assertThat(Integer.valueOf(Mp3Frames.frameLength(0x54414700)), equalTo(Integer.valueOf(-1)));
+    assertThat(Integer.valueOf(Mp3Frames.frameLength(0xffff9064)), equalTo(Integer.valueOf(-1)));
+    assertThat(Integer.valueOf(Mp3Frames.frameLength(0xfffb0064)), equalTo(Integer.valueOf(-1)));
+    assertThat(Integer.valueOf(Mp3Frames.frameLength(0xfffb9c64)), equalTo(Integer.valueOf(-1)));
+  }
+
+  @Test
+  public void testMainDataBegin() {
+    byte[] frame = new byte[417];
+    Mp3Frames.putInt(frame, 0, HEADER);
+    assertThat(Integer.valueOf(Mp3Frames.mainDataBegin(frame)), equalTo(Integer.valueOf(0)));
+
+    frame[4] = (byte) 0x80;
+    frame[5] = (byte) 0x80;
+    assertThat(Integer.valueOf(Mp3Frames.mainDataBegin(frame)), equalTo(Integer.valueOf(257)));
+    assertThat(Integer.valueOf(Mp3Frames.xingOffset(frame)), equalTo(Integer.valueOf(-1)));
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    Mp3Frames frames = Mp3Frames.read(new File(testdataDir, "laser.mp3"));
+
+    assertThat(Long.valueOf(frames.getInfoOffset()), equalTo(Long.valueOf(1024)));
+    assertThat(Integer.valueOf(frames.getInfoLength()), equalTo(Integer.valueOf(156)));
+    assertThat(Integer.valueOf(frames.getCount()), equalTo(Integer.valueOf(9)));
+    assertThat(Long.valueOf(frames.getOffset(0)), equalTo(Long.valueOf(1024 + 156)));
+    assertThat(Integer.valueOf(frames.getLength(0)), equalTo(Integer.valueOf(835)));
+    assertThat(Long.valueOf(frames.getOffset(8)), equalTo(Long.valueOf(3576)));
+    assertThat(Integer.valueOf(frames.getLength(8)), equalTo(Integer.valueOf(104)));
+    assertThat(Long.valueOf(frames.getEnd()), equalTo(Long.valueOf(3680)));
+    assertThat(Integer.valueOf(frames.getSampleRate()), equalTo(Integer.valueOf(44100)));
+    assertThat(Integer.valueOf(frames.getSamplesPerFrame()), equalTo(Integer.valueOf(1152)));
+
+    byte[] info = Mp3Frames.readFrame(new File(testdataDir, "laser.mp3"), frames.getInfoOffset(), frames.getInfoLength());
+    assertThat(Integer.valueOf(Mp3Frames.xingOffset(info)), equalTo(Integer.valueOf(36)));
+  }
+
+  @Test
+  public void testRead_NoId3v2Tag() throws IOException {
+    Mp3Frames frames = Mp3Frames.read(new File(testdataDir, "laser_id3v1.mp3"));
+
+    assertThat(Long.valueOf(frames.getInfoOffset()), equalTo(Long.valueOf(0)));
+    assertThat(Integer.valueOf(frames.getCount()), equalTo(Integer.valueOf(9)));
+    assertThat(Long.valueOf(frames.getEnd()), equalTo(Long.valueOf(2656)));
+  }
+
+  @Test
+  public void testRead_NotMp3() throws IOException {
+    assertThat(Mp3Frames.read(new File(testdataDir, "laser.flac")), nullValue());
+  }
+}
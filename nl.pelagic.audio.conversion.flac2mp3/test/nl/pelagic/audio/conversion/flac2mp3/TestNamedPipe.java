@@ -0,0 +1,133 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc"
+})
+public class TestNamedPipe {
+
+  private NamedPipe namedPipe = null;
+  private File out = new File("testresources/testNamedPipe.out");
+
+  @Before
+  public void setUp() {
+    namedPipe = NamedPipe.create();
+    assertThat(namedPipe, notNullValue());
+  }
+
+  @After
+  public void tearDown() {
+    namedPipe.delete();
+    namedPipe = null;
+    out.delete();
+  }
+
+  private Process start(List<String> command) throws IOException {
+    return namedPipe.configure(new ProcessBuilder(command)).start();
+  }
+
+  private List<String> catToOut() {
+    return namedPipe.destinationCommand(Arrays.asList(NamedPipe.SHELL, "-c", "cat > \"$0\"", out.getPath()));
+  }
+
+  @Test
+  public void testCreate_Delete() {
+    File fifo = namedPipe.getFifo();
+    assertThat(Boolean.valueOf(fifo.exists()), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(fifo.isFile()), equalTo(Boolean.FALSE));
+
+    namedPipe.delete();
+    assertThat(Boolean.valueOf(fifo.exists()), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(fifo.getParentFile().exists()), equalTo(Boolean.FALSE));
+  }
+
+  @Test(timeout = 10000)
+  public void testRun_Normal() throws IOException {
+    Process source = start(namedPipe.sourceCommand(Arrays.asList("echo", "some audio with a ' and a \" in it")));
+    Process destination = start(catToOut());
+
+    int r = namedPipe.run(source, destination);
+
+    assertThat(Integer.valueOf(r), equalTo(Integer.valueOf(Pipe.EXIT_OK)));
+    assertThat(Integer.valueOf(source.exitValue()), equalTo(Integer.valueOf(0)));
+    assertThat(Integer.valueOf(destination.exitValue()), equalTo(Integer.valueOf(0)));
+    assertThat(new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8),
+        equalTo("some audio with a ' and a \" in it\n"));
+  }
+
+  @Test(timeout = 10000)
+  public void testRun_SourceDoesNotExist() throws IOException {
+    Process source = start(namedPipe.sourceCommand(Arrays.asList("some_dummy_command_that_does_not_exist")));
+    Process destination = start(catToOut());
+
+    int r = namedPipe.run(source, destination);
+
+    assertThat(Integer.valueOf(r), equalTo(Integer.valueOf(Pipe.EXIT_OK)));
+    assertThat(Boolean.valueOf(source.exitValue() != 0), equalTo(Boolean.TRUE));
+  }
+
+  @Test(timeout = 10000)
+  public void testRun_DestinationFailsWithoutReading() throws IOException {
+    /* the source waits for a reader of the named pipe, which never comes */
+    Process source = start(namedPipe.sourceCommand(Arrays.asList("echo", "bla")));
+    Process destination = new ProcessBuilder("false").start();
+
+    int r = namedPipe.run(source, destination);
+
+    assertThat(Integer.valueOf(r), equalTo(Integer.valueOf(Pipe.EXIT_OK)));
+    assertThat(Boolean.valueOf(source.exitValue() != 0), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(destination.exitValue() != 0), equalTo(Boolean.TRUE));
+  }
+
+  @Test(timeout = 10000)
+  public void testSignalStop() throws IOException {
+    Process source = start(namedPipe.sourceCommand(Arrays.asList("sleep", "60")));
+    Process destination = start(catToOut());
+
+    Thread stopper = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        }
+        catch (InterruptedException e) {
+          /* swallow */
+        }
+        namedPipe.signalStop();
+      }
+    };
+    stopper.start();
+
+    int r = namedPipe.run(source, destination);
+
+    assertThat(Integer.valueOf(r), equalTo(Integer.valueOf(Pipe.EXIT_ERROR_INTERRUPTED)));
+    assertThat(Integer.valueOf(namedPipe.getExitValue()), equalTo(Integer.valueOf(Pipe.EXIT_ERROR_INTERRUPTED)));
+    assertThat(Boolean.valueOf(source.exitValue() != 0), equalTo(Boolean.TRUE));
+  }
+
+  @Test(timeout = 10000)
+  public void testSignalStop_BeforeRun() throws IOException {
+    namedPipe.signalStop();
+
+    Process source = start(namedPipe.sourceCommand(Arrays.asList("sleep", "60")));
+    Process destination = start(catToOut());
+
+    int r = namedPipe.run(source, destination);
+
+    assertThat(Integer.valueOf(r), equalTo(Integer.valueOf(Pipe.EXIT_ERROR_INTERRUPTED)));
+  }
+}
@@ -4,6 +4,10 @@ import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import nl.pelagic.audio.conversion.flac2mp3.testhelpers.PipeTestInputStream;
@@ -57,7 +61,25 @@ public class TestPipe {
   @SuppressWarnings("unused")
   @Test(expected = IllegalArgumentException.class)
   public void testPipe_NullParameter2() {
-    Pipe p = new Pipe(srcOutputStream, null);
+    Pipe p = new Pipe(srcOutputStream, (OutputStream) null);
+  }
+
+  @SuppressWarnings("unused")
+  @Test(expected = IllegalArgumentException.class)
+  public void testPipe_NullParameter2_Array() {
+    Pipe p = new Pipe(srcOutputStream, (OutputStream[]) null);
+  }
+
+  @SuppressWarnings("unused")
+  @Test(expected = IllegalArgumentException.class)
+  public void testPipe_NullParameter2_Empty() {
+    Pipe p = new Pipe(srcOutputStream);
+  }
+
+  @SuppressWarnings("unused")
+  @Test(expected = IllegalArgumentException.class)
+  public void testPipe_NullParameter2_OneOfMore() {
+    Pipe p = new Pipe(srcOutputStream, dstInputStream, null);
   }
 
   @SuppressWarnings({
@@ -65,7 +87,7 @@ public class TestPipe {
   })
   @Test(expected = IllegalArgumentException.class)
   public void testPipe_NullParameterBoth() {
-    Pipe p = new Pipe(null, null);
+    Pipe p = new Pipe(null, (OutputStream) null);
   }
 
   @Test
@@ -116,6 +138,7 @@ public class TestPipe {
     assertThat(Integer.valueOf(dstInputStream.writtenStrings.size()), equalTo(Integer.valueOf(2)));
     assertThat(dstInputStream.writtenStrings.get(0), equalTo(outstr1));
     assertThat(dstInputStream.writtenStrings.get(1), equalTo(outstr2));
+    assertThat(Long.valueOf(pipe.getBytesPiped()), equalTo(Long.valueOf(outstr1.length() + outstr2.length())));
   }
 
   @Test
@@ -134,6 +157,114 @@ public class TestPipe {
     assertThat(dstInputStream.writtenStrings.get(1), equalTo(outstr2));
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NoDestinations() {
+    @SuppressWarnings("unused")
+    Pipe p = new Pipe(srcOutputStream);
+  }
+
+  @Test
+  public void testRun_FanOut() {
+    PipeTestOutputStream dstInputStream2 = new PipeTestOutputStream();
+    pipe = new Pipe(srcOutputStream, dstInputStream, dstInputStream2);
+
+    String outstr1 = "testRun_FanOut: string 1";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr1));
+    String outstr2 = "testRun_FanOut: string 2";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr2));
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_EOF, null));
+
+    pipe.run();
+    assertThat(Integer.valueOf(pipe.getExitValue()), equalTo(Integer.valueOf(Pipe.EXIT_OK)));
+    assertThat(dstInputStream.writtenStrings, equalTo(Arrays.asList(outstr1, outstr2)));
+    assertThat(dstInputStream2.writtenStrings, equalTo(Arrays.asList(outstr1, outstr2)));
+    assertThat(Long.valueOf(pipe.getBytesPiped()), equalTo(Long.valueOf(outstr1.length() + outstr2.length())));
+    assertThat(Boolean.valueOf(pipe.isWriteFailed(0)), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(pipe.isWriteFailed(1)), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testRun_FanOut_WriteError() {
+    PipeTestOutputStream dstInputStream2 = new PipeTestOutputStream();
+    pipe = new Pipe(srcOutputStream, dstInputStream, dstInputStream2);
+    dstInputStream.throwExceptionDuringWrite = true;
+
+    String outstr1 = "testRun_FanOut_WriteError: string 1";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr1));
+    String outstr2 = "testRun_FanOut_WriteError: string 2";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr2));
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_EOF, null));
+
+    pipe.run();
+    assertThat(Integer.valueOf(pipe.getExitValue()), equalTo(Integer.valueOf(Pipe.EXIT_ERROR_WRITE)));
+    assertThat(Integer.valueOf(dstInputStream.writtenStrings.size()), equalTo(Integer.valueOf(0)));
+    assertThat(dstInputStream2.writtenStrings, equalTo(Arrays.asList(outstr1, outstr2)));
+    assertThat(Boolean.valueOf(pipe.isWriteFailed(0)), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(pipe.isWriteFailed(1)), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testRun_Tap() {
+    final StringBuilder tapped = new StringBuilder();
+    final List<Boolean> closed = new LinkedList<>();
+    pipe.setTap(new Pipe.Tap() {
+      @Override
+      public void write(byte[] buffer, int offset, int length) {
+        tapped.append(new String(buffer, offset, length));
+        if (tapped.length() > 30) {
+          throw new IllegalStateException("tap failure");
+        }
+      }
+
+      @Override
+      public void close(boolean complete) {
+        closed.add(Boolean.valueOf(complete));
+      }
+    });
+
+    String outstr1 = "testRun_Tap: string 1";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr1));
+    String outstr2 = "testRun_Tap: string 2";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr2));
+    String outstr3 = "testRun_Tap: string 3";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr3));
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_EOF, null));
+
+    pipe.run();
+    assertThat(Integer.valueOf(pipe.getExitValue()), equalTo(Integer.valueOf(Pipe.EXIT_OK)));
+    assertThat(dstInputStream.writtenStrings, equalTo(Arrays.asList(outstr1, outstr2, outstr3)));
+
+    /* the failed tap doesn't receive any more output */
+    assertThat(tapped.toString(), equalTo(outstr1 + outstr2));
+    assertThat(closed, equalTo(Arrays.asList(Boolean.FALSE)));
+  }
+
+  @Test
+  public void testRun_Tap_Complete() {
+    final StringBuilder tapped = new StringBuilder();
+    final List<Boolean> closed = new LinkedList<>();
+    pipe.setTap(new Pipe.Tap() {
+      @Override
+      public void write(byte[] buffer, int offset, int length) {
+        tapped.append(new String(buffer, offset, length));
+      }
+
+      @Override
+      public void close(boolean complete) {
+        closed.add(Boolean.valueOf(complete));
+      }
+    });
+
+    String outstr1 = "testRun_Tap_Complete: string 1";
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_STRING, outstr1));
+    srcOutputStream.entries.add(new PipeTestInputStream.Entry(PipeTestInputStream.CMD_EOF, null));
+
+    pipe.run();
+    assertThat(Integer.valueOf(pipe.getExitValue()), equalTo(Integer.valueOf(Pipe.EXIT_OK)));
+    assertThat(tapped.toString(), equalTo(outstr1));
+    assertThat(closed, equalTo(Arrays.asList(Boolean.TRUE)));
+  }
+
   @Test
   public void testRun_Normal_CloseExceptionWrite() {
     dstInputStream.throwExceptionDuringClose = true;
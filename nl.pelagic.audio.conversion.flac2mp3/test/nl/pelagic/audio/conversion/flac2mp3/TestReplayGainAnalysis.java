@@ -0,0 +1,195 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGain;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestReplayGainAnalysis {
+
+  private static void putShort(ByteArrayOutputStream out, int value) {
+    out.write(value & 0xff);
+    out.write((value >> 8) & 0xff);
+  }
+
+  private static void putInt(ByteArrayOutputStream out, int value) {
+    putShort(out, value & 0xffff);
+    putShort(out, (value >> 16) & 0xffff);
+  }
+
+  /* a WAV stream with a sine of 997 Hz in every channel, with an extra chunk before the audio */
+  private static byte[] sine(int sampleRate, int channels, int bitsPerSample, double amplitude, double seconds) {
+    int bytesPerSample = bitsPerSample / 8;
+    int frames = (int) (sampleRate * seconds);
+    int dataSize = frames * channels * bytesPerSample;
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write('R');
+    out.write('I');
+    out.write('F');
+    out.write('F');
+    putInt(out, 4 + 24 + 10 + 8 + dataSize);
+    out.write('W');
+    out.write('A');
+    out.write('V');
+    out.write('E');
+    out.write('f');
+    out.write('m');
+    out.write('t');
+    out.write(' ');
+    putInt(out, 16);
+    putShort(out, 1);
+    putShort(out, channels);
+    putInt(out, sampleRate);
+    putInt(out, sampleRate * channels * bytesPerSample);
+    putShort(out, channels * bytesPerSample);
+    putShort(out, bitsPerSample);
+    out.write('L');
+    out.write('I');
+    out.write('S');
+    out.write('T');
+    putInt(out, 1);
+    out.write(0);
+    out.write(0);
+    out.write('d');
+    out.write('a');
+    out.write('t');
+    out.write('a');
+    putInt(out, dataSize);
+
+    double scale = 1 << (bitsPerSample - 1);
+    for (int frame = 0; frame < frames; frame++) {
+      int sample = (int) Math.round(amplitude * scale * Math.sin((2.0 * Math.PI * 997.0 * frame) / sampleRate));
+      for (int channel = 0; channel < channels; channel++) {
+        for (int i = 0; i < bytesPerSample; i++) {
+          out.write((sample >> (8 * i)) & 0xff);
+        }
+      }
+    }
+
+    /* trailing bytes that are not audio */
+    out.write(0x7f);
+    out.write(0x7f);
+    out.write(0x7f);
+
+    return out.toByteArray();
+  }
+
+  private static ReplayGain analyse(byte[] wav, int length, int chunkSize, boolean complete) {
+    ReplayGainAnalysis analysis = new ReplayGainAnalysis();
+    for (int offset = 0; offset < length; offset += chunkSize) {
+      analysis.write(wav, offset, Math.min(chunkSize, length - offset));
+    }
+    analysis.close(complete);
+    return analysis.getReplayGain();
+  }
+
+  private static ReplayGain analyse(byte[] wav, int chunkSize) {
+    return analyse(wav, wav.length, chunkSize, true);
+  }
+
+  private static long round(double value, double precision) {
+    return Math.round(value / precision);
+  }
+
+  @Test
+  public void testGetPreFilter() {
+    /* the coefficients of ITU-R BS.1770 for 48 kHz */
+    double[] expected = {
+        1.53512485958697, -2.69169618940638, 1.19839281085285, -1.69065929318241, 0.73248077421585
+    };
+    double[] filter = ReplayGainAnalysis.getPreFilter(48000);
+    for (int i = 0; i < expected.length; i++) {
+      assertThat(Long.valueOf(round(filter[i], 1e-8)), equalTo(Long.valueOf(round(expected[i], 1e-8))));
+    }
+  }
+
+  @Test
+  public void testGetHighPassFilter() {
+    /* the coefficients of ITU-R BS.1770 for 48 kHz */
+    double[] expected = {
+        1.0, -2.0, 1.0, -1.99004745483398, 0.99007225036621
+    };
+    double[] filter = ReplayGainAnalysis.getHighPassFilter(48000);
+    for (int i = 0; i < expected.length; i++) {
+      assertThat(Long.valueOf(round(filter[i], 1e-8)), equalTo(Long.valueOf(round(expected[i], 1e-8))));
+    }
+  }
+
+  @Test
+  public void testWrite_Stereo() {
+    ReplayGain replayGain = analyse(sine(44100, 2, 16, 0.1, 5.0), 1001);
+
+    /* 20 overlapping blocks in 5 seconds */
+    assertThat(Integer.valueOf(replayGain.getBlocks()), equalTo(Integer.valueOf(47)));
+    assertThat(Long.valueOf(round(replayGain.getLoudness(), 0.1)), equalTo(Long.valueOf(-200)));
+    assertThat(Long.valueOf(round(replayGain.getGain(), 0.1)), equalTo(Long.valueOf(20)));
+    assertThat(Long.valueOf(round(replayGain.getPeak(), 0.001)), equalTo(Long.valueOf(100)));
+  }
+
+  @Test
+  public void testWrite_Mono24() {
+    ReplayGain replayGain = analyse(sine(48000, 1, 24, 0.5, 2.0), 7);
+
+    /* a full scale sine in a single channel has a loudness of -3.01 LUFS */
+    assertThat(Long.valueOf(round(replayGain.getLoudness(), 0.1)), equalTo(Long.valueOf(-90)));
+    assertThat(Long.valueOf(round(replayGain.getPeak(), 0.001)), equalTo(Long.valueOf(500)));
+  }
+
+  @Test
+  public void testWrite_Short() {
+    ReplayGain replayGain = analyse(sine(8000, 1, 8, 0.5, 0.3), 256 * 1024);
+
+    assertThat(Integer.valueOf(replayGain.getBlocks()), equalTo(Integer.valueOf(0)));
+    assertThat(Double.valueOf(replayGain.getGain()), equalTo(Double.valueOf(0.0)));
+  }
+
+  @Test
+  public void testWrite_Incomplete() {
+    byte[] wav = sine(44100, 2, 16, 0.1, 1.0);
+    assertThat(analyse(wav, wav.length, 4096, true).getPeak() > 0.0, equalTo(true));
+
+    /* not closed */
+    ReplayGainAnalysis analysis = new ReplayGainAnalysis();
+    analysis.write(wav, 0, wav.length);
+    assertThat(analysis.getReplayGain(), nullValue());
+
+    /* dropped, failed or stopped */
+    assertThat(analyse(wav, wav.length, 4096, false), nullValue());
+
+    /* truncated */
+    assertThat(analyse(wav, wav.length / 2, 4096, true), nullValue());
+
+    /* unknown size */
+    for (int i = 0; i < 4; i++) {
+      wav[50 + i] = (byte) 0xff;
+    }
+    assertThat(analyse(wav, wav.length / 2, 4096, true).getPeak() > 0.0, equalTo(true));
+  }
+
+  @Test
+  public void testWrite_NotWav() {
+    byte[] raw = new byte[1024];
+    assertThat(analyse(raw, 100), nullValue());
+
+    byte[] wav = sine(44100, 2, 16, 0.1, 0.1);
+    assertThat(analyse(wav, 10).getPeak() > 0.0, equalTo(true));
+
+    /* incomplete header */
+    byte[] header = new byte[30];
+    System.arraycopy(wav, 0, header, 0, header.length);
+    assertThat(analyse(header, 10), nullValue());
+
+    /* not PCM */
+    wav[20] = 3;
+    assertThat(analyse(wav, 10), nullValue());
+  }
+}
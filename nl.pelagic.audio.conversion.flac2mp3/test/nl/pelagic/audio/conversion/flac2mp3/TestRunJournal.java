@@ -0,0 +1,120 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestRunJournal {
+  private static Logger logger = Logger.getLogger(RunJournal.class.getName());
+
+  private File file = new File("testresources/testRunJournal.journal");
+  private File flac1 = new File("flac/1.flac");
+  private File mp31 = new File("mp3/1.mp3");
+  private File flac2 = new File("flac/2 with a space.flac");
+  private File mp32 = new File("mp3/2 with a space.mp3");
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    logger.setLevel(Level.OFF);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private List<String> readLines() throws IOException {
+    return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+  }
+
+  private void write(String... lines) throws IOException {
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testStarted_Finished() throws IOException {
+    RunJournal journal = new RunJournal(file);
+    assertThat(Boolean.valueOf(file.exists()), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(journal.getConverting().size()), equalTo(Integer.valueOf(0)));
+
+    journal.started(flac1, mp31);
+    journal.started(flac2, mp32);
+    assertThat(readLines(), equalTo(Arrays.asList(RunJournal.HEADER, "c\tmp3/1.mp3\tflac/1.flac",
+        "c\tmp3/2 with a space.mp3\tflac/2 with a space.flac")));
+
+    journal.finished(mp31);
+    assertThat(readLines().get(3), equalTo("d\tmp3/1.mp3"));
+    Map<File, File> converting = journal.getConverting();
+    assertThat(Integer.valueOf(converting.size()), equalTo(Integer.valueOf(1)));
+    assertThat(converting.get(mp32), equalTo(flac2));
+
+    /* not in progress */
+    journal.finished(mp31);
+    assertThat(Integer.valueOf(readLines().size()), equalTo(Integer.valueOf(4)));
+
+    /* nothing in progress anymore */
+    journal.finished(mp32);
+    assertThat(Boolean.valueOf(file.exists()), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testLoad() throws IOException {
+    write(RunJournal.HEADER, "c\tmp3/1.mp3\tflac/1.flac", "", "c\tmp3/2 with a space.mp3\tflac/2 with a space.flac",
+        "d\tmp3/1.mp3");
+
+    Map<File, File> converting = new RunJournal(file).getConverting();
+
+    assertThat(Integer.valueOf(converting.size()), equalTo(Integer.valueOf(1)));
+    assertThat(converting.get(mp32), equalTo(flac2));
+  }
+
+  @Test
+  public void testLoad_InvalidHeader() throws IOException {
+    write("# something else", "c\tmp3/1.mp3\tflac/1.flac");
+
+    assertThat(Integer.valueOf(new RunJournal(file).getConverting().size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testLoad_InvalidLine() throws IOException {
+    write(RunJournal.HEADER, "c\tmp3/1.mp3\tflac/1.flac", "c\tmp3/2.mp3");
+
+    assertThat(Integer.valueOf(new RunJournal(file).getConverting().size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    RunJournal journal = new RunJournal(file);
+    journal.started(flac1, mp31);
+    for (int i = 0; i < RunJournal.COMPACTION_THRESHOLD; i++) {
+      File mp3 = new File("mp3/other/" + i + ".mp3");
+      journal.started(new File("flac/other/" + i + ".flac"), mp3);
+      journal.finished(mp3);
+    }
+
+    List<String> lines = readLines();
+    assertThat(Boolean.valueOf(lines.size() < RunJournal.COMPACTION_THRESHOLD), equalTo(Boolean.TRUE));
+    assertThat(lines.get(0), equalTo(RunJournal.HEADER));
+    assertThat(lines.get(1), equalTo("c\tmp3/1.mp3\tflac/1.flac"));
+
+    Map<File, File> converting = new RunJournal(file).getConverting();
+    assertThat(Integer.valueOf(converting.size()), equalTo(Integer.valueOf(1)));
+    assertThat(converting.get(mp31), equalTo(flac1));
+  }
+}
@@ -0,0 +1,246 @@
+package nl.pelagic.audio.conversion.flac2mp3;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc"
+})
+public class TestSegmentedConversion {
+  private static Logger logger = Logger.getLogger(SegmentedConversion.class.getName());
+
+  private static final int FRAME_LENGTH = 417;
+  private static final int DELAY = 576;
+  private static final int XING = 36;
+  private static final int LAME_TAG = XING + 120;
+  private static final long TOTAL_SAMPLES = (3 * SegmentedConversion.MIN_SEGMENT_SAMPLES) + 500;
+
+  private static File tmpTestDir = new File("testresources/tmpTestDir");
+
+  private SegmentedConversion segmented = null;
+  private List<File> segmentMp3s = new LinkedList<>();
+  private File mp3 = new File(tmpTestDir, "TestSegmentedConversion.tmp.mp3");
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    logger.setLevel(Level.OFF);
+  }
+
+  @Before
+  public void setUp() {
+    segmented = new SegmentedConversion(TOTAL_SAMPLES, 44100, 3);
+    for (int segment = 0; segment < segmented.getCount(); segment++) {
+      segmentMp3s.add(SegmentedConversion.getSegmentMp3File(mp3, segment));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (File segmentMp3 : segmentMp3s) {
+      segmentMp3.delete();
+    }
+    mp3.delete();
+  }
+
+  private static byte[] frame(int id) {
+    byte[] frame = new byte[FRAME_LENGTH];
+    Mp3Frames.putInt(frame, 0, TestMp3Frames.HEADER);
+    frame[FRAME_LENGTH - 2] = (byte) (id >>> 8);
+    frame[FRAME_LENGTH - 1] = (byte) id;
+    return frame;
+  }
+
+  private static int id(byte[] frame) {
+    return ((frame[FRAME_LENGTH - 2] & 0xff) << 8) | (frame[FRAME_LENGTH - 1] & 0xff);
+  }
+
+  private static byte[] infoFrame() {
+    byte[] frame = frame(0);
+    System.arraycopy("Info".getBytes(StandardCharsets.US_ASCII), 0, frame, XING, 4);
+    Mp3Frames.putInt(frame, XING + 4, 0x0f);
+    System.arraycopy("LAME3.100".getBytes(StandardCharsets.US_ASCII), 0, frame, LAME_TAG, 9);
+    frame[LAME_TAG + SegmentedConversion.LAME_DELAY_PADDING_OFFSET] = (byte) (DELAY >>> 4);
+    frame[LAME_TAG + SegmentedConversion.LAME_DELAY_PADDING_OFFSET + 1] = (byte) ((DELAY & 0x0f) << 4);
+    return frame;
+  }
+
+  /* frames needed by the segment up to its end */
+  private int frames(int segment) {
+    long end = segmented.getDecodeEnd(segment);
+    if (end < 0) {
+      end = TOTAL_SAMPLES;
+    }
+    return (int) (((end - segmented.getDecodeStart(segment)) + DELAY + 1151) / 1152);
+  }
+
+  private void writeSegment(int segment, byte[] prefix, byte[] info, int frames, byte[] suffix) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(prefix);
+    if (info != null) {
+      out.write(info);
+    }
+    for (int i = 0; i < frames; i++) {
+      out.write(frame((1000 * segment) + i));
+    }
+    out.write(suffix);
+    Files.write(segmentMp3s.get(segment).toPath(), out.toByteArray());
+  }
+
+  private void writeSegments() throws IOException {
+    byte[] id3v2 = new byte[64];
+    System.arraycopy("ID3".getBytes(StandardCharsets.US_ASCII), 0, id3v2, 0, 3);
+    id3v2[3] = 4;
+    id3v2[9] = 64 - 10;
+    byte[] id3v1 = new byte[128];
+    System.arraycopy("TAG".getBytes(StandardCharsets.US_ASCII), 0, id3v1, 0, 3);
+
+    writeSegment(0, id3v2, infoFrame(), frames(0), id3v1);
+    for (int segment = 1; segment < segmented.getCount(); segment++) {
+      writeSegment(segment, new byte[0], null, frames(segment), new byte[0]);
+    }
+  }
+
+  @Test
+  public void testSegments() {
+    assertThat(Integer.valueOf(segmented.getCount()), equalTo(Integer.valueOf(3)));
+    assertThat(Integer.valueOf(segmented.getSampleRate()), equalTo(Integer.valueOf(44100)));
+    assertThat(Long.valueOf(segmented.getDecodeStart(0)), equalTo(Long.valueOf(0)));
+    assertThat(Long.valueOf(segmented.getDecodeEnd(2)), equalTo(Long.valueOf(-1)));
+    for (int segment = 1; segment < segmented.getCount(); segment++) {
+      long start = segmented.getDecodeStart(segment) + SegmentedConversion.OVERLAP;
+      assertThat(Long.valueOf(start % SegmentedConversion.ALIGNMENT), equalTo(Long.valueOf(0)));
+      assertThat(Long.valueOf(segmented.getDecodeEnd(segment - 1)),
+          equalTo(Long.valueOf(start + SegmentedConversion.OVERLAP)));
+    }
+
+    /* too short for the requested number of segments */
+    assertThat(Integer.valueOf(new SegmentedConversion((2 * SegmentedConversion.MIN_SEGMENT_SAMPLES) + 1, 44100, 8)
+        .getCount()), equalTo(Integer.valueOf(2)));
+    assertThat(Integer.valueOf(new SegmentedConversion(100, 44100, 4).getCount()), equalTo(Integer.valueOf(1)));
+
+    assertThat(SegmentedConversion.getSegmentMp3File(new File("dir/song.mp3"), 2), equalTo(new File("dir/"
+        + FlacToMp3Impl.TEMPORARY_MP3_PREFIX + "2-song.mp3")));
+  }
+
+  @Test
+  public void testCrc16() {
+    byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+    assertThat(Integer.valueOf(SegmentedConversion.crc16(0, data, 0, data.length)), equalTo(Integer.valueOf(0xbb3d)));
+  }
+
+  @Test
+  public void testJoin() throws IOException {
+    writeSegments();
+
+    assertThat(Boolean.valueOf(segmented.join(segmentMp3s, mp3)), equalTo(Boolean.TRUE));
+
+    /* the frames */
+    Mp3Frames frames = Mp3Frames.read(mp3);
+    int expectedFrames = (int) ((TOTAL_SAMPLES + DELAY + 1151) / 1152);
+    assertThat(Long.valueOf(frames.getInfoOffset()), equalTo(Long.valueOf(64)));
+    assertThat(Integer.valueOf(frames.getCount()), equalTo(Integer.valueOf(expectedFrames)));
+
+    List<Integer> ids = new LinkedList<>();
+    for (int i = 0; i < frames.getCount(); i++) {
+      ids.add(Integer.valueOf(id(Mp3Frames.readFrame(mp3, frames.getOffset(i), frames.getLength(i)))));
+    }
+    int first1 = SegmentedConversion.OVERLAP / 1152;
+    int end0 = (int) ((segmented.getDecodeEnd(0) - SegmentedConversion.OVERLAP) / 1152);
+    int end1 = (int) ((segmented.getDecodeEnd(1) - SegmentedConversion.OVERLAP - segmented.getDecodeStart(1)) / 1152);
+    assertThat(ids.get(0), equalTo(Integer.valueOf(0)));
+    assertThat(ids.get(end0 - 1), equalTo(Integer.valueOf(end0 - 1)));
+    assertThat(ids.get(end0), equalTo(Integer.valueOf(1000 + first1)));
+    assertThat(ids.get((end0 + end1) - first1), equalTo(Integer.valueOf(2000 + first1)));
+    assertThat(ids.get(frames.getCount() - 1), equalTo(Integer.valueOf((2000 + frames(2)) - 1)));
+
+    /* the ID3v1 tag */
+    byte[] bytes = Files.readAllBytes(mp3.toPath());
+    assertThat(Long.valueOf(bytes.length), equalTo(Long.valueOf(frames.getEnd() + 128)));
+    assertThat(new String(bytes, (int) frames.getEnd(), 3, StandardCharsets.US_ASCII), equalTo("TAG"));
+
+    /* the Xing/Info frame */
+    byte[] info = Mp3Frames.readFrame(mp3, frames.getInfoOffset(), frames.getInfoLength());
+    int streamBytes = FRAME_LENGTH * (expectedFrames + 1);
+    assertThat(Integer.valueOf(Mp3Frames.getInt(info, XING + 8)), equalTo(Integer.valueOf(expectedFrames)));
+    assertThat(Integer.valueOf(Mp3Frames.getInt(info, XING + 12)), equalTo(Integer.valueOf(streamBytes)));
+    /* the seek table offsets are relative to the start of the Xing/Info frame */
+    assertThat(Integer.valueOf(info[XING + 16] & 0xff), equalTo(Integer.valueOf((FRAME_LENGTH * 256) / streamBytes)));
+    assertThat(Integer.valueOf(info[XING + 16 + 50] & 0xff),
+        equalTo(Integer.valueOf(((((expectedFrames / 2) + 1) * FRAME_LENGTH) * 256) / streamBytes)));
+
+    int o = LAME_TAG + SegmentedConversion.LAME_DELAY_PADDING_OFFSET;
+    int delay = ((info[o] & 0xff) << 4) | ((info[o + 1] & 0xff) >>> 4);
+    int padding = ((info[o + 1] & 0x0f) << 8) | (info[o + 2] & 0xff);
+    assertThat(Integer.valueOf(delay), equalTo(Integer.valueOf(DELAY)));
+    assertThat(Long.valueOf(padding), equalTo(Long.valueOf(((expectedFrames * 1152L) - DELAY) - TOTAL_SAMPLES)));
+    assertThat(Integer.valueOf(Mp3Frames.getInt(info, LAME_TAG + SegmentedConversion.LAME_MUSIC_LENGTH_OFFSET)),
+        equalTo(Integer.valueOf(streamBytes)));
+
+    int musicCrc =
+        SegmentedConversion.crc16(0, bytes, (int) frames.getOffset(0), (int) (frames.getEnd() - frames.getOffset(0)));
+    o = LAME_TAG + SegmentedConversion.LAME_MUSIC_CRC_OFFSET;
+    assertThat(Integer.valueOf(((info[o] & 0xff) << 8) | (info[o + 1] & 0xff)), equalTo(Integer.valueOf(musicCrc)));
+    int tagCrc = SegmentedConversion.crc16(0, info, 0, LAME_TAG + SegmentedConversion.LAME_TAG_CRC_OFFSET);
+    o = LAME_TAG + SegmentedConversion.LAME_TAG_CRC_OFFSET;
+    assertThat(Integer.valueOf(((info[o] & 0xff) << 8) | (info[o + 1] & 0xff)), equalTo(Integer.valueOf(tagCrc)));
+  }
+
+  @Test
+  public void testJoin_NoInfoFrame() throws IOException {
+    writeSegments();
+    writeSegment(0, new byte[0], null, frames(0), new byte[0]);
+
+    assertThat(Boolean.valueOf(segmented.join(segmentMp3s, mp3)), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testJoin_Resampled() throws IOException {
+    writeSegments();
+    segmented = new SegmentedConversion(TOTAL_SAMPLES, 48000, 3);
+
+    assertThat(Boolean.valueOf(segmented.join(segmentMp3s, mp3)), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testJoin_TooFewFrames() throws IOException {
+    writeSegments();
+    writeSegment(1, new byte[0], null, SegmentedConversion.OVERLAP / 1152, new byte[0]);
+
+    assertThat(Boolean.valueOf(segmented.join(segmentMp3s, mp3)), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testJoin_BitReservoir() throws IOException {
+    writeSegments();
+    byte[] bytes = Files.readAllBytes(segmentMp3s.get(2).toPath());
+    int first = (SegmentedConversion.OVERLAP / 1152) * FRAME_LENGTH;
+    bytes[first + Mp3Frames.HEADER_SIZE] = (byte) 0x80;
+    Files.write(segmentMp3s.get(2).toPath(), bytes);
+
+    assertThat(Boolean.valueOf(segmented.join(segmentMp3s, mp3)), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testJoin_Padding() throws IOException {
+    writeSegments();
+    writeSegment(2, new byte[0], null, frames(2) + 10, new byte[0]);
+
+    assertThat(Boolean.valueOf(segmented.join(segmentMp3s, mp3)), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(mp3.exists()), equalTo(Boolean.FALSE));
+  }
+}
@@ -4,9 +4,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics;
 import nl.pelagic.audio.conversion.flac2mp3.api.Flac2Mp3Configuration;
 import nl.pelagic.audio.conversion.flac2mp3.api.FlacToMp3;
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGain;
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGainAlbum;
 
 import org.junit.Ignore;
 
@@ -21,14 +29,31 @@ public class MyFlacToMp3 implements FlacToMp3 {
   public int countNormal = 0;
   public boolean throwException = false;
   public boolean retval = true;
+  public int countExisting = 0;
+  public Map<String, String> audioMd5s = new ConcurrentHashMap<>();
+  public ConversionStatistics statistics = new ConversionStatistics();
+  public int countResume = 0;
+  public Flac2Mp3Configuration resumeConfiguration = null;
+  public int lastPriority = Flac2Mp3Configuration.DEFAULT_PRIORITY;
+  public int countDecodes = 0;
+  public List<File> lastMp3s = null;
+  public int countAlbums = 0;
+  public boolean analyse = true;
+  public List<File> lastAlbumMp3s = null;
 
   @Override
-  public boolean convert(Flac2Mp3Configuration configuration, File flac, File mp3, boolean simulate)
+  public synchronized boolean convert(Flac2Mp3Configuration configuration, File flac, File mp3, boolean simulate)
       throws FileNotFoundException {
     countAll++;
+    if (configuration != null) {
+      lastPriority = configuration.getPriority();
+    }
     if (throwException) {
       throw new FileNotFoundException(msg);
     }
+    if (mp3.exists()) {
+      countExisting++;
+    }
     if (retval && !simulate) {
       try (FileWriter fw = new FileWriter(mp3)) {
         fw.write(mp3.getPath());
@@ -36,9 +61,106 @@ public class MyFlacToMp3 implements FlacToMp3 {
       catch (IOException e) {
         throw new FileNotFoundException(e.getLocalizedMessage());
       }
+      statistics.record(ConversionStatistics.Stage.ENCODE, 1000000);
+      statistics.record(ConversionStatistics.Counter.MP3_BYTES, mp3.length());
     }
 
     countNormal++;
     return retval;
   }
+
+  @Override
+  public synchronized boolean convertTargets(Flac2Mp3Configuration configuration, File flac, List<File> mp3s,
+      boolean simulate) throws FileNotFoundException {
+    countDecodes++;
+    lastMp3s = mp3s;
+    boolean result = true;
+    for (File mp3 : mp3s) {
+      if (mp3 != null) {
+        result = convert(configuration, flac, mp3, simulate) && result;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized boolean convertTargets(Flac2Mp3Configuration configuration, File flac, List<File> mp3s,
+      boolean simulate, ReplayGainAlbum album) throws FileNotFoundException {
+    boolean result = convertTargets(configuration, flac, mp3s, simulate);
+    if (result && analyse && (album != null) && (configuration != null) && configuration.isReplayGain()) {
+      List<File> albumMp3s = new LinkedList<>();
+      for (File mp3 : mp3s) {
+        if (mp3 != null) {
+          albumMp3s.add(mp3);
+        }
+      }
+      album.add(new ReplayGain(new double[] {
+        0.01
+      }, 0.5), albumMp3s);
+    }
+    return result;
+  }
+
+  @Override
+  public CompletableFuture<Boolean> convertTargetsAsync(Flac2Mp3Configuration configuration, File flac,
+      List<File> mp3s, boolean simulate) {
+    return convertTargetsAsync(configuration, flac, mp3s, simulate, null);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> convertTargetsAsync(Flac2Mp3Configuration configuration, File flac,
+      List<File> mp3s, boolean simulate, ReplayGainAlbum album) {
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    try {
+      result.complete(Boolean.valueOf(convertTargets(configuration, flac, mp3s, simulate, album)));
+    }
+    catch (FileNotFoundException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  @Override
+  public CompletableFuture<Boolean> convertAsync(Flac2Mp3Configuration configuration, File flac, File mp3,
+      boolean simulate) {
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    try {
+      result.complete(Boolean.valueOf(convert(configuration, flac, mp3, simulate)));
+    }
+    catch (FileNotFoundException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized boolean setAlbumReplayGain(ReplayGainAlbum album, boolean simulate) {
+    if ((album != null) && album.isComplete()) {
+      countAlbums++;
+      lastAlbumMp3s = album.getMp3s();
+    }
+    return retval;
+  }
+
+  @Override
+  public synchronized boolean resume(Flac2Mp3Configuration configuration, boolean simulate) {
+    countResume++;
+    resumeConfiguration = configuration;
+    return true;
+  }
+
+  @Override
+  public String getFlacAudioMd5(File flac) {
+    return audioMd5s.get(flac.getName());
+  }
+
+  @Override
+  public String getMp3AudioMd5(File mp3) {
+    return audioMd5s.get(mp3.getName());
+  }
+
+  @Override
+  public ConversionStatistics getStatistics() {
+    return statistics;
+  }
 }
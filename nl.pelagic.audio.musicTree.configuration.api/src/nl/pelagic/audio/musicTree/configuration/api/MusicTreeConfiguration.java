@@ -23,6 +23,34 @@ public class MusicTreeConfiguration {
   /** the mp3 base directory */
   private File mp3BaseDir = new File(DEFAULT_MP3_BASE_DIRECTORY);
 
+  /**
+   * true to use the sync state (index) in the mp3 base directory to skip
+   * directories that didn't change since they were last synchronised
+   */
+  private boolean incremental = false;
+
+  /**
+   * true to move (instead of convert) existing mp3 files of which the flac
+   * files were moved or renamed, and to convert duplicate flac audio only once
+   */
+  private boolean detectMoves = false;
+
+  /**
+   * true to first plan all steps of a synchronisation and then execute the
+   * plan, running independent steps in parallel
+   */
+  private boolean planned = false;
+
+  /** the file to write the plan of a planned synchronisation to (optional) */
+  private File planFile = null;
+
+  /**
+   * the mp3 base directories of the additional targets: additional mirrors of
+   * the flac tree into which the flac files are converted in the same walk and
+   * from the same decode
+   */
+  private List<File> targetMp3BaseDirs = new LinkedList<>();
+
   /**
    * Default Constructor
    */
@@ -71,6 +99,90 @@ public class MusicTreeConfiguration {
     this.mp3BaseDir = mp3BaseDir;
   }
 
+  /**
+   * @return the incremental
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * @param incremental the incremental to set
+   */
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * @return the detectMoves
+   */
+  public boolean isDetectMoves() {
+    return detectMoves;
+  }
+
+  /**
+   * @param detectMoves the detectMoves to set
+   */
+  public void setDetectMoves(boolean detectMoves) {
+    this.detectMoves = detectMoves;
+  }
+
+  /**
+   * @return the planned
+   */
+  public boolean isPlanned() {
+    return planned;
+  }
+
+  /**
+   * @param planned the planned to set
+   */
+  public void setPlanned(boolean planned) {
+    this.planned = planned;
+  }
+
+  /**
+   * @return the planFile
+   */
+  public File getPlanFile() {
+    return planFile;
+  }
+
+  /**
+   * @param planFile the planFile to set. A simulated planned synchronisation
+   *          only writes the plan when set.
+   */
+  public void setPlanFile(File planFile) {
+    this.planFile = planFile;
+  }
+
+  /**
+   * @return the mp3 base directories of the additional targets
+   */
+  public List<File> getTargetMp3BaseDirs() {
+    return targetMp3BaseDirs;
+  }
+
+  /**
+   * @param targetMp3BaseDirs the mp3 base directories of the additional
+   *          targets to set. Target 1 is the first of them, target 0 is the mp3
+   *          base directory.
+   */
+  public void setTargetMp3BaseDirs(List<File> targetMp3BaseDirs) {
+    this.targetMp3BaseDirs = targetMp3BaseDirs;
+  }
+
+  /**
+   * @return the mp3 base directories of all targets: the mp3 base directory
+   *         followed by those of the additional targets
+   */
+  public List<File> getMp3BaseDirs() {
+    List<File> result = new LinkedList<>();
+    result.add(mp3BaseDir);
+    result.addAll(targetMp3BaseDirs);
+    return result;
+  }
+
   /**
    * Validate: ensure that
    * <ul>
@@ -79,6 +191,11 @@ public class MusicTreeConfiguration {
    * <li>the mp3 base directory is a directory (optional)</li>
    * <li>the mp3 base directory is NOT a sub-directory of the flac base
    * directory</li>
+   * <li>a planned synchronisation is not combined with move detection</li>
+   * <li>the mp3 base directories of the additional targets are validated like
+   * the mp3 base directory and are all different</li>
+   * <li>additional targets are not combined with a planned synchronisation or
+   * with move detection</li>
    * </ul>
    * 
    * @param validateMp3BaseDir if true, then also validate that mp3BaseDir is a
@@ -113,6 +230,37 @@ public class MusicTreeConfiguration {
           mp3BaseDir.getPath(), flacBaseDir.getPath()));
     }
 
+    /* check that move detection (which defers its own steps) is not planned */
+    if (planned && detectMoves) {
+      result.add(Messages.getString("MusicTreeConfiguration.4")); //$NON-NLS-1$
+    }
+
+    /* check the mp3 base directories of the additional targets */
+    List<File> mp3BaseDirs = new LinkedList<>();
+    mp3BaseDirs.add(mp3BaseDir);
+    for (File targetMp3BaseDir : targetMp3BaseDirs) {
+      if (targetMp3BaseDir == null) {
+        result.add(Messages.getString("MusicTreeConfiguration.3")); //$NON-NLS-1$
+        continue;
+      }
+      if (validateMp3BaseDir && !targetMp3BaseDir.isDirectory()) {
+        result.add(String.format(Messages.getString("MusicTreeConfiguration.1"), targetMp3BaseDir.getPath())); //$NON-NLS-1$
+      }
+      if (FileUtils.isFileBelowDirectory(flacBaseDir, targetMp3BaseDir, true)) {
+        result.add(String.format(Messages.getString("MusicTreeConfiguration.2"), //$NON-NLS-1$
+            targetMp3BaseDir.getPath(), flacBaseDir.getPath()));
+      }
+      if (mp3BaseDirs.contains(targetMp3BaseDir)) {
+        result.add(String.format(Messages.getString("MusicTreeConfiguration.6"), targetMp3BaseDir.getPath())); //$NON-NLS-1$
+      }
+      mp3BaseDirs.add(targetMp3BaseDir);
+    }
+
+    /* check that the (single) plan and the move detection have one target */
+    if (!targetMp3BaseDirs.isEmpty() && (planned || detectMoves)) {
+      result.add(Messages.getString("MusicTreeConfiguration.5")); //$NON-NLS-1$
+    }
+
     if (result.size() == 0) {
       return null;
     }
@@ -27,6 +27,25 @@ public class MusicTreeHelpers {
    *         otherwise
    */
   static public File flacFileToMp3File(MusicTreeConfiguration musicTreeConfiguration, File flacFile) {
+    return flacFileToMp3File(musicTreeConfiguration, flacFile, 0);
+  }
+
+  /**
+   * Convert a flac file (from below the base directory of the flac files tree)
+   * to a mp3 file of a target, like
+   * {@link #flacFileToMp3File(MusicTreeConfiguration, File)} but below the mp3
+   * base directory of the target.
+   * 
+   * @param musicTreeConfiguration the music tree configuration
+   * @param flacFile the flac file. If null, then the base directory of the flac
+   *          files tree is converted.
+   * @param target the target, 0 for the mp3 base directory and 1 and up for
+   *          the mp3 base directories of the additional targets
+   * @return null if the flac file is not below the base directory of the flac
+   *         files tree or when a path can't be resolved, the converted file
+   *         otherwise
+   */
+  static public File flacFileToMp3File(MusicTreeConfiguration musicTreeConfiguration, File flacFile, int target) {
     assert (musicTreeConfiguration != null);
     assert (musicTreeConfiguration.validate(false) == null);
     assert (flacFile != null);
@@ -53,6 +72,6 @@ public class MusicTreeHelpers {
       relativeFlacFile = relativeFlacFileSplit[0] + MusicTreeConstants.MP3EXTENSION;
     }
 
-    return new File(musicTreeConfiguration.getMp3BaseDir(), relativeFlacFile);
+    return new File(musicTreeConfiguration.getMp3BaseDirs().get(target), relativeFlacFile);
   }
 }
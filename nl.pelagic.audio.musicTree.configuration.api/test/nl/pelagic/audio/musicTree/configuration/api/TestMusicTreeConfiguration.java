@@ -6,6 +6,7 @@ import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 
 import nl.pelagic.audio.musicTree.configuration.api.i18n.Messages;
@@ -39,6 +40,13 @@ public class TestMusicTreeConfiguration {
         equalTo(MusicTreeConfiguration.DEFAULT_FLAC_BASE_DIRECTORY));
     assertThat(musicTreeConfiguration.getMp3BaseDir().getPath(),
         equalTo(MusicTreeConfiguration.DEFAULT_MP3_BASE_DIRECTORY));
+    assertThat(Boolean.valueOf(musicTreeConfiguration.isIncremental()), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(musicTreeConfiguration.isDetectMoves()), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(musicTreeConfiguration.isPlanned()), equalTo(Boolean.FALSE));
+    assertThat(musicTreeConfiguration.getPlanFile(), nullValue());
+    assertThat(Integer.valueOf(musicTreeConfiguration.getTargetMp3BaseDirs().size()), equalTo(Integer.valueOf(0)));
+    assertThat(musicTreeConfiguration.getMp3BaseDirs(), equalTo(Arrays.asList(musicTreeConfiguration
+        .getMp3BaseDir())));
   }
 
   @Test
@@ -65,6 +73,31 @@ public class TestMusicTreeConfiguration {
     assertThat(musicTreeConfiguration.getMp3BaseDir(), equalTo(bd));
   }
 
+  @Test
+  public void testSetIncremental() {
+    musicTreeConfiguration.setIncremental(true);
+    assertThat(Boolean.valueOf(musicTreeConfiguration.isIncremental()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSetDetectMoves() {
+    musicTreeConfiguration.setDetectMoves(true);
+    assertThat(Boolean.valueOf(musicTreeConfiguration.isDetectMoves()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSetPlanned() {
+    musicTreeConfiguration.setPlanned(true);
+    assertThat(Boolean.valueOf(musicTreeConfiguration.isPlanned()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSetPlanFile() {
+    File planFile = new File("some plan file");
+    musicTreeConfiguration.setPlanFile(planFile);
+    assertThat(musicTreeConfiguration.getPlanFile(), equalTo(planFile));
+  }
+
   @Test
   public void testValidate_BaseDirs_AreNull() {
     File fbd = null;
@@ -164,4 +197,71 @@ public class TestMusicTreeConfiguration {
 
     assertThat(result, nullValue());
   }
+
+  @Test
+  public void testValidate_Planned_DetectMoves() {
+    musicTreeConfiguration.setFlacBaseDir(new File(testdatadir, "Music"));
+    musicTreeConfiguration.setMp3BaseDir(new File(testdatadir, "from.flac"));
+    musicTreeConfiguration.setPlanned(true);
+
+    assertThat(musicTreeConfiguration.validate(true), nullValue());
+
+    musicTreeConfiguration.setDetectMoves(true);
+    List<String> result = musicTreeConfiguration.validate(true);
+
+    assertThat(result, notNullValue());
+    assertThat(Integer.valueOf(result.size()), equalTo(Integer.valueOf(1)));
+    assertThat(result.get(0), equalTo(Messages.getString("MusicTreeConfiguration.4")));
+  }
+
+  @Test
+  public void testSetTargetMp3BaseDirs() {
+    File mbd = new File("some mp3 base directory");
+    File tbd = new File("some target mp3 base directory");
+    musicTreeConfiguration.setMp3BaseDir(mbd);
+    musicTreeConfiguration.setTargetMp3BaseDirs(Arrays.asList(tbd));
+
+    assertThat(musicTreeConfiguration.getTargetMp3BaseDirs(), equalTo(Arrays.asList(tbd)));
+    assertThat(musicTreeConfiguration.getMp3BaseDirs(), equalTo(Arrays.asList(mbd, tbd)));
+  }
+
+  @Test
+  public void testValidate_Targets() {
+    File fbd = new File(testdatadir, "Music");
+    File mbd = new File(testdatadir, "from.flac");
+    musicTreeConfiguration.setFlacBaseDir(fbd);
+    musicTreeConfiguration.setMp3BaseDir(mbd);
+    musicTreeConfiguration.setTargetMp3BaseDirs(Arrays.asList(testdatadir));
+
+    assertThat(musicTreeConfiguration.validate(true), nullValue());
+
+    File sub = new File(fbd, "no.such.directory");
+    musicTreeConfiguration.setTargetMp3BaseDirs(Arrays.asList(null, sub, mbd));
+    List<String> result = musicTreeConfiguration.validate(false);
+
+    assertThat(result, notNullValue());
+    assertThat(result, equalTo(Arrays.asList(Messages.getString("MusicTreeConfiguration.3"),
+        String.format(Messages.getString("MusicTreeConfiguration.2"), sub.getPath(), fbd.getPath()),
+        String.format(Messages.getString("MusicTreeConfiguration.6"), mbd.getPath()))));
+
+    result = musicTreeConfiguration.validate(true);
+
+    assertThat(result, notNullValue());
+    assertThat(Integer.valueOf(result.size()), equalTo(Integer.valueOf(4)));
+    assertThat(result.get(1), equalTo(String.format(Messages.getString("MusicTreeConfiguration.1"), sub.getPath())));
+  }
+
+  @Test
+  public void testValidate_Targets_Planned() {
+    musicTreeConfiguration.setFlacBaseDir(new File(testdatadir, "Music"));
+    musicTreeConfiguration.setMp3BaseDir(new File(testdatadir, "from.flac"));
+    musicTreeConfiguration.setTargetMp3BaseDirs(Arrays.asList(testdatadir));
+    musicTreeConfiguration.setPlanned(true);
+
+    List<String> result = musicTreeConfiguration.validate(true);
+
+    assertThat(result, notNullValue());
+    assertThat(Integer.valueOf(result.size()), equalTo(Integer.valueOf(1)));
+    assertThat(result.get(0), equalTo(Messages.getString("MusicTreeConfiguration.5")));
+  }
 }
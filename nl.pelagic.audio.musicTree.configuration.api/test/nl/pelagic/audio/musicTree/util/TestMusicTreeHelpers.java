@@ -6,6 +6,7 @@ import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConfiguration;
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
@@ -46,4 +47,16 @@ public class TestMusicTreeHelpers {
     assertThat(result.getCanonicalFile(),
         equalTo(new File(testdatadir, "from.flac/Music/dummy1.txt").getCanonicalFile()));
   }
+
+  @Test
+  public void testFlacFileToMp3File_Target() throws IOException {
+    MusicTreeConfiguration mtc =
+        new MusicTreeConfiguration(new File(testdatadir, "Music"), new File(testdatadir, "from.flac"));
+    mtc.setTargetMp3BaseDirs(Arrays.asList(new File(testdatadir, "from.flac.2")));
+    File result =
+        MusicTreeHelpers.flacFileToMp3File(mtc, new File(testdatadir, "Music/dummy1"
+            + MusicTreeConstants.FLACEXTENSION), 1);
+    assertThat(result.getCanonicalFile(), equalTo(new File(testdatadir, "from.flac.2/Music/dummy1"
+        + MusicTreeConstants.MP3EXTENSION).getCanonicalFile()));
+  }
 }
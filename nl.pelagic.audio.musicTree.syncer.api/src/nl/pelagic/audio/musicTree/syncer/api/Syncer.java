@@ -19,7 +19,12 @@ public interface Syncer {
    * the flac tree into the mp3 tree, and convert flac files into mp3 files
    * 
    * @param flac2Mp3Configuration the configuration for the flac-to-mp3
-   *          conversion
+   *          conversion. When its concurrency is larger than 1 then sibling
+   *          directories are synchronised in parallel, all conversions are
+   *          performed (even when some of them fail) and the aggregated result
+   *          is returned. Otherwise (the default, also when it's null) the
+   *          directories are synchronised one after the other and the
+   *          synchronisation stops on the first failure.
    * @param musicTreeConfiguration the music tree configuration. If it's invalid
    *          then false is returned immediately.
    * @param directoryToSync the directory to sync. If null then it is assumed to
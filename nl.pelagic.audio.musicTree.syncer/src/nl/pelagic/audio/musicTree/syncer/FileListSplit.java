@@ -1,16 +1,19 @@
 package nl.pelagic.audio.musicTree.syncer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
+import nl.pelagic.util.file.DirectoryEntry;
 import nl.pelagic.util.file.ExtensionUtils;
 
 /**
  * Container to hold a list of file and directories by category (directories,
- * music files, covers, and other files).
+ * music files, covers, and other files). The files are sorted by name before
+ * they are split, so that the lists can be diffed efficiently (see
+ * {@link TreeDiff}).
  */
 public class FileListSplit {
   /** the directory for which the split is performed */
@@ -20,59 +23,68 @@ public class FileListSplit {
   boolean noDirectoryFiles = true;
 
   /** the directories */
-  List<String> directories = new LinkedList<>();
+  List<String> directories = new ArrayList<>();
 
   /** the music file names */
-  List<String> musicFiles = new LinkedList<>();
+  List<String> musicFiles = new ArrayList<>();
+
+  /** the entries (with their attributes) of the music files */
+  List<DirectoryEntry> musicFileEntries = new ArrayList<>();
 
   /** the music file names without the extensions */
-  List<String> musicFilesWithoutExtensions = new LinkedList<>();
+  List<String> musicFilesWithoutExtensions = new ArrayList<>();
 
   /** the extensions of the music file names (extensions include the dot) */
-  List<String> musicFilesExtensions = new LinkedList<>();
+  List<String> musicFilesExtensions = new ArrayList<>();
 
   /** the file names of the cover files */
-  List<String> covers = new LinkedList<>();
+  List<String> covers = new ArrayList<>();
+
+  /** the entries (with their attributes) of the cover files */
+  List<DirectoryEntry> coverEntries = new ArrayList<>();
 
   /** the file names of the other files */
-  List<String> otherFiles = new LinkedList<>();
+  List<String> otherFiles = new ArrayList<>();
 
   /**
    * Split a list of files into categories (directories, music files, covers,
    * and other files).
    * 
    * @param directory the directory of the files
-   * @param directoryFiles the files in the directory
+   * @param directoryEntries the entries (with their attributes) in the
+   *          directory
    * @param extension the file extension of music files. When null then the
    *          files are not filtered on extension.
    */
-  public FileListSplit(File directory, String[] directoryFiles, String extension) {
+  public FileListSplit(File directory, DirectoryEntry[] directoryEntries, String extension) {
     if (directory == null) {
       return;
     }
 
     this.directory = directory;
 
-    if ((directoryFiles == null) || (directoryFiles.length == 0)) {
+    if ((directoryEntries == null) || (directoryEntries.length == 0)) {
       return;
     }
 
-    Arrays.sort(directoryFiles);
+    Arrays.sort(directoryEntries);
 
-    for (String directoryFile : directoryFiles) {
-      if (directoryFile == null) {
+    for (DirectoryEntry directoryEntry : directoryEntries) {
+      if (directoryEntry == null) {
         continue;
       }
 
       noDirectoryFiles = false;
 
-      if (new File(directory, directoryFile).isDirectory()) {
+      String directoryFile = directoryEntry.getName();
+      if (directoryEntry.isDirectory()) {
         this.directories.add(directoryFile);
         continue;
       }
 
       if (MusicTreeConstants.COVER.equals(directoryFile)) {
         this.covers.add(directoryFile);
+        this.coverEntries.add(directoryEntry);
         continue;
       }
 
@@ -80,6 +92,7 @@ public class FileListSplit {
       String directoryFileExtension = directoryFileSplit[1];
       if ((extension != null) && extension.equals(directoryFileExtension)) {
         this.musicFiles.add(directoryFile);
+        this.musicFileEntries.add(directoryEntry);
         this.musicFilesWithoutExtensions.add(directoryFileSplit[0]);
         this.musicFilesExtensions.add(directoryFileExtension);
       } else {
@@ -7,13 +7,17 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import nl.pelagic.audio.musicTree.syncer.i18n.Messages;
+import nl.pelagic.util.file.DirectoryEntry;
+import nl.pelagic.util.file.DirectoryEntryFilter;
 import nl.pelagic.util.file.ExtensionUtils;
 
 /**
  * Filter file names based on a number of configured (lower-cased) extensions
- * and filenames. Always accepts directories if so configured.
+ * and filenames. Always accepts directories if so configured. As a
+ * {@link DirectoryEntryFilter} it uses the attributes of the listed entries
+ * instead of reading them again.
  */
-public class FlacTreeFilenameFilter implements FilenameFilter {
+public class FlacTreeFilenameFilter implements FilenameFilter, DirectoryEntryFilter {
   /** if true then accept directories */
   private boolean acceptDirectories = true;
 
@@ -65,8 +69,27 @@ public class FlacTreeFilenameFilter implements FilenameFilter {
       return false;
     }
 
+    return accept(name, acceptDirectories && new File(dir, name).isDirectory());
+  }
+
+  @Override
+  public boolean accept(DirectoryEntry entry) {
+    if (entry == null) {
+      return false;
+    }
+
+    return accept(entry.getName(), acceptDirectories && entry.isDirectory());
+  }
+
+  /**
+   * @param name the file name
+   * @param acceptedDirectory true when the file is a directory and directories
+   *          are accepted
+   * @return true when the file is accepted
+   */
+  private boolean accept(String name, boolean acceptedDirectory) {
     /* accept directories when enabled */
-    if (acceptDirectories && new File(dir, name).isDirectory()) {
+    if (acceptedDirectory) {
       return true;
     }
 
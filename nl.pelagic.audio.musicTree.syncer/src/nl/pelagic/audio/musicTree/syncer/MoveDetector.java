@@ -0,0 +1,201 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import nl.pelagic.audio.conversion.flac2mp3.api.FlacToMp3;
+import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
+
+/**
+ * <p>
+ * Detects moved, renamed and duplicate flac files by their audio identity: the
+ * MD5 signature of their unencoded audio.
+ * </p>
+ * <p>
+ * While the flac tree is walked, the removal of mp3 files and directories and
+ * the conversion of flac files are deferred and collected. Afterwards the mp3
+ * files that are to be removed are matched with the conversions of the same
+ * audio, so that they can be moved into place instead of being converted
+ * again, and conversions of the same audio are matched with each other, so
+ * that the audio is converted only once.
+ * </p>
+ */
+class MoveDetector {
+  /**
+   * A deferred conversion of a flac file
+   */
+  static class Conversion {
+    /** the flac file */
+    final File flac;
+
+    /** the mp3 file */
+    final File mp3;
+
+    /** the audio signature of the flac file, null when unknown */
+    String audioMd5 = null;
+
+    /** the existing mp3 file (that is to be removed) to move into place */
+    File source = null;
+
+    /** the conversion of the same audio that is performed first */
+    Conversion original = null;
+
+    /** the result of the conversion */
+    CompletableFuture<Boolean> result = null;
+
+    /**
+     * Constructor
+     *
+     * @param flac the flac file
+     * @param mp3 the mp3 file
+     */
+    Conversion(File flac, File mp3) {
+      super();
+      this.flac = flac;
+      this.mp3 = mp3;
+    }
+  }
+
+  /**
+   * The deferred conversions of a directory of the flac tree
+   */
+  static class DirectoryConversions {
+    /** the path of the directory in the sync state (may be null) */
+    final String syncStatePath;
+
+    /** the modification time of the flac directory before it was listed */
+    final long lastModified;
+
+    /** the (filtered) file list of the flac directory */
+    final FileListSplit flacDirListSplit;
+
+    /** the corresponding mp3 directories, one for every target */
+    final List<File> mp3Dirs;
+
+    /** the conversions */
+    final List<Conversion> conversions = new LinkedList<>();
+
+    /**
+     * Constructor
+     *
+     * @param syncStatePath the path of the directory in the sync state (may be
+     *          null)
+     * @param lastModified the modification time of the flac directory before
+     *          it was listed
+     * @param flacDirListSplit the (filtered) file list of the flac directory
+     * @param mp3Dirs the corresponding mp3 directories, one for every target
+     */
+    DirectoryConversions(String syncStatePath, long lastModified, FileListSplit flacDirListSplit, List<File> mp3Dirs) {
+      super();
+      this.syncStatePath = syncStatePath;
+      this.lastModified = lastModified;
+      this.flacDirListSplit = flacDirListSplit;
+      this.mp3Dirs = mp3Dirs;
+    }
+  }
+
+  /** the deferred conversions, by directory */
+  final List<DirectoryConversions> directories = Collections.synchronizedList(new LinkedList<DirectoryConversions>());
+
+  /** the deferred removals of mp3 files and directories */
+  final List<File> removals = Collections.synchronizedList(new LinkedList<File>());
+
+  /**
+   * Add the mp3 files in an mp3 file or directory (recursively) to an index
+   *
+   * @param flacToMp3 the converter, used to read the audio signatures
+   * @param file the mp3 file or directory
+   * @param index the index: the mp3 files by audio signature
+   */
+  static void indexMp3Files(FlacToMp3 flacToMp3, File file, Map<String, Deque<File>> index) {
+    if (file.isDirectory()) {
+      String[] entries = file.list();
+      if (entries == null) {
+        /* can't be covered by a test */
+        return;
+      }
+
+      for (String entry : entries) {
+        indexMp3Files(flacToMp3, new File(file, entry), index);
+      }
+      return;
+    }
+
+    if (!file.isFile() || !file.getName().endsWith(MusicTreeConstants.MP3EXTENSION)) {
+      return;
+    }
+
+    String audioMd5 = flacToMp3.getMp3AudioMd5(file);
+    if (audioMd5 == null) {
+      return;
+    }
+
+    Deque<File> files = index.get(audioMd5);
+    if (files == null) {
+      files = new LinkedList<>();
+      index.put(audioMd5, files);
+    }
+    files.add(file);
+  }
+
+  /**
+   * Match the deferred conversions: determine the audio signatures of the flac
+   * files and match them with the mp3 files that are to be removed and with
+   * the conversions of the same audio. The directories are sorted first, so
+   * that the matching doesn't depend on the order in which the directories
+   * were walked.
+   *
+   * @param flacToMp3 the converter, used to read the audio signatures
+   */
+  void match(FlacToMp3 flacToMp3) {
+    Map<String, Deque<File>> removed = new HashMap<>();
+    for (File removal : removals) {
+      indexMp3Files(flacToMp3, removal, removed);
+    }
+
+    synchronized (directories) {
+      List<DirectoryConversions> sorted = new ArrayList<>(directories);
+      Collections.sort(sorted, new Comparator<DirectoryConversions>() {
+        @Override
+        public int compare(DirectoryConversions o1, DirectoryConversions o2) {
+          return o1.flacDirListSplit.directory.compareTo(o2.flacDirListSplit.directory);
+        }
+      });
+      directories.clear();
+      directories.addAll(sorted);
+    }
+
+    Map<String, Conversion> originals = new HashMap<>();
+    for (DirectoryConversions directory : directories) {
+      for (Conversion conversion : directory.conversions) {
+        conversion.audioMd5 = flacToMp3.getFlacAudioMd5(conversion.flac);
+        if (conversion.audioMd5 == null) {
+          continue;
+        }
+
+        Deque<File> files = removed.get(conversion.audioMd5);
+        if ((files != null) && !files.isEmpty()) {
+          conversion.source = files.poll();
+          originals.put(conversion.audioMd5, conversion);
+          continue;
+        }
+
+        Conversion original = originals.get(conversion.audioMd5);
+        if (original != null) {
+          conversion.original = original;
+          continue;
+        }
+
+        originals.put(conversion.audioMd5, conversion);
+      }
+    }
+  }
+}
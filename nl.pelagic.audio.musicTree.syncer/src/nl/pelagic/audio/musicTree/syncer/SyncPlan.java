@@ -0,0 +1,338 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.musicTree.syncer.i18n.Messages;
+
+/**
+ * <p>
+ * The plan of a synchronisation: the steps that are needed to mirror (part of)
+ * the flac tree into the mp3 tree, determined by walking the trees before
+ * anything is changed.
+ * </p>
+ * <p>
+ * The steps are ordered such that a step comes after the steps it depends on:
+ * <ul>
+ * <li>a directory is created after the removals in its parent directory (a
+ * file can be in the way) and after the creation of its parent directory</li>
+ * <li>a cover is copied and a flac file is converted after the creation of the
+ * directory in which they're placed</li>
+ * </ul>
+ * Steps without dependencies between them can be executed in parallel.
+ * </p>
+ * <p>
+ * The plan can be written as a UTF-8 text file with tab separated lines:
+ *
+ * <pre>
+ * &lt;type&gt; &lt;size&gt; &lt;source&gt; &lt;target&gt;
+ * </pre>
+ *
+ * where the size is the size of the source (the number of bytes the step
+ * processes) and the source is empty for removals and directory creations.
+ * </p>
+ */
+class SyncPlan {
+  /** the header (first line) of a written plan */
+  static final String HEADER = "# flac2mp3 sync plan 1"; //$NON-NLS-1$
+
+  /** the separator of the fields on a line */
+  static final String SEPARATOR = "\t"; //$NON-NLS-1$
+
+  /** the logger */
+  private static final Logger logger = Logger.getLogger(SyncPlan.class.getName());
+
+  /**
+   * The types of steps
+   */
+  enum StepType {
+    /** remove an mp3 file or directory (recursively) */
+    DELETE,
+
+    /** create an mp3 directory (and the directories leading up to it) */
+    MKDIR,
+
+    /** copy a cover */
+    COPY,
+
+    /** convert a flac file */
+    CONVERT
+  }
+
+  /**
+   * A step of the plan
+   */
+  static class Step {
+    /** the type */
+    final StepType type;
+
+    /** the source file, null for removals and directory creations */
+    final File source;
+
+    /** the target file or directory */
+    final File target;
+
+    /** the size of the source: the number of bytes the step processes */
+    final long size;
+
+    /** the steps this step depends on */
+    final List<Step> dependencies = new LinkedList<>();
+
+    /** the steps that depend on this step */
+    final List<Step> dependents = new LinkedList<>();
+
+    /** the number of dependencies that didn't complete yet (during execution) */
+    final AtomicInteger pendingDependencies = new AtomicInteger();
+
+    /** the result of the step (during execution) */
+    final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    /**
+     * Constructor
+     *
+     * @param type the type
+     * @param source the source file, null for removals and directory creations
+     * @param target the target file or directory
+     * @param size the size of the source
+     */
+    Step(StepType type, File source, File target, long size) {
+      super();
+      this.type = type;
+      this.source = source;
+      this.target = target;
+      this.size = size;
+    }
+  }
+
+  /**
+   * The steps of a directory of the flac tree, used to record the sync state of
+   * the directory when all its steps were successful
+   */
+  static class Directory {
+    /** the path of the directory in the sync state (may be null) */
+    final String syncStatePath;
+
+    /** the modification time of the flac directory before it was listed */
+    final long lastModified;
+
+    /** the (filtered) file list of the flac directory */
+    final FileListSplit flacDirListSplit;
+
+    /** the corresponding mp3 directories, one for every target */
+    final List<File> mp3Dirs;
+
+    /** the steps */
+    final List<Step> steps = new LinkedList<>();
+
+    /**
+     * Constructor
+     *
+     * @param syncStatePath the path of the directory in the sync state (may be
+     *          null)
+     * @param lastModified the modification time of the flac directory before
+     *          it was listed
+     * @param flacDirListSplit the (filtered) file list of the flac directory
+     * @param mp3Dirs the corresponding mp3 directories, one for every target
+     */
+    Directory(String syncStatePath, long lastModified, FileListSplit flacDirListSplit, List<File> mp3Dirs) {
+      super();
+      this.syncStatePath = syncStatePath;
+      this.lastModified = lastModified;
+      this.flacDirListSplit = flacDirListSplit;
+      this.mp3Dirs = mp3Dirs;
+    }
+  }
+
+  /** the steps, in dependency order */
+  final List<Step> steps = new LinkedList<>();
+
+  /** the directories of the flac tree */
+  final List<Directory> directories = new LinkedList<>();
+
+  /** the directory creations, by directory */
+  private final Map<File, Step> mkdirs = new HashMap<>();
+
+  /** the removals, by parent directory */
+  private final Map<File, List<Step>> deletes = new HashMap<>();
+
+  /** the total size of the steps */
+  private long totalSize = 0;
+
+  /**
+   * Add a step, after the steps it depends on
+   *
+   * @param directory the directory to which the step belongs (may be null)
+   * @param type the type
+   * @param source the source file, null for removals and directory creations
+   * @param target the target file or directory
+   * @param size the size of the source
+   * @return the step
+   */
+  synchronized Step add(Directory directory, StepType type, File source, File target, long size) {
+    Step step = new Step(type, source, target, size);
+    File parent = target.getParentFile();
+
+    switch (type) {
+      case DELETE:
+        List<Step> parentDeletes = deletes.get(parent);
+        if (parentDeletes == null) {
+          parentDeletes = new LinkedList<>();
+          deletes.put(parent, parentDeletes);
+        }
+        parentDeletes.add(step);
+        break;
+
+      case MKDIR:
+        List<Step> inTheWay = deletes.get(parent);
+        if (inTheWay != null) {
+          step.dependencies.addAll(inTheWay);
+        }
+        Step parentMkdir = mkdirs.get(parent);
+        if (parentMkdir != null) {
+          step.dependencies.add(parentMkdir);
+        }
+        mkdirs.put(target, step);
+        break;
+
+      case COPY:
+      case CONVERT:
+      default:
+        Step mkdir = mkdirs.get(parent);
+        if (mkdir != null) {
+          step.dependencies.add(mkdir);
+        }
+        break;
+    }
+
+    for (Step dependency : step.dependencies) {
+      dependency.dependents.add(step);
+    }
+
+    steps.add(step);
+    totalSize += size;
+    if (directory != null) {
+      directory.steps.add(step);
+    }
+    return step;
+  }
+
+  /**
+   * @return the total size of the steps: the number of bytes the plan
+   *         processes
+   */
+  synchronized long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * @param type the type
+   * @return the number of steps of the type
+   */
+  synchronized int count(StepType type) {
+    int count = 0;
+    for (Step step : steps) {
+      if (step.type == type) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Write the plan
+   *
+   * @param writer the writer to write to
+   * @throws IOException upon write errors
+   */
+  synchronized void write(Writer writer) throws IOException {
+    writer.write(HEADER);
+    writer.write('\n');
+    for (Step step : steps) {
+      writer.write(step.type.name() + SEPARATOR + step.size + SEPARATOR
+          + ((step.source == null) ? "" : step.source.getPath()) + SEPARATOR + step.target.getPath()); //$NON-NLS-1$
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Write the plan to a file, atomically replacing an existing file
+   *
+   * @param file the file
+   * @return true when successful
+   */
+  boolean write(File file) {
+    File tmpFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+    try {
+      try (BufferedWriter writer =
+          new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"))) { //$NON-NLS-1$
+        write(writer);
+      }
+
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      logger.log(Level.SEVERE, String.format(Messages.getString("SyncPlan.1"), file.getPath()), e); //$NON-NLS-1$
+      tmpFile.delete();
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Read a (written) plan. The dependencies of the steps are restored, the
+   * directories are not.
+   *
+   * @param reader the reader to read from
+   * @return the plan
+   * @throws IOException upon read errors or when the plan is invalid
+   */
+  static SyncPlan read(Reader reader) throws IOException {
+    SyncPlan plan = new SyncPlan();
+    BufferedReader bufferedReader = new BufferedReader(reader);
+
+    String line = bufferedReader.readLine();
+    if (!HEADER.equals(line)) {
+      throw new IOException(String.format(Messages.getString("SyncPlan.0"), line)); //$NON-NLS-1$
+    }
+
+    while ((line = bufferedReader.readLine()) != null) {
+      if (line.isEmpty()) {
+        continue;
+      }
+
+      String[] fields = line.split(SEPARATOR, 4);
+      if (fields.length != 4) {
+        throw new IOException(String.format(Messages.getString("SyncPlan.0"), line)); //$NON-NLS-1$
+      }
+
+      try {
+        plan.add(null, StepType.valueOf(fields[0]), fields[2].isEmpty() ? null : new File(fields[2]), new File(
+            fields[3]), Long.parseLong(fields[1]));
+      }
+      catch (IllegalArgumentException e) {
+        /* also catches NumberFormatException */
+        throw new IOException(String.format(Messages.getString("SyncPlan.0"), line), e); //$NON-NLS-1$
+      }
+    }
+
+    return plan;
+  }
+}
@@ -0,0 +1,234 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.musicTree.syncer.i18n.Messages;
+
+/**
+ * <p>
+ * Executes a sync plan: a step is started as soon as all steps it depends on
+ * completed successfully, so that independent steps run in parallel (the
+ * conversions on the bounded executor of the converter). A step of which a
+ * dependency failed is not run and fails as well.
+ * </p>
+ * <p>
+ * The progress is reported periodically, with an estimate of the remaining
+ * time that is based on the number of bytes processed so far.
+ * </p>
+ */
+abstract class SyncPlanExecutor {
+  /** the minimum interval between progress reports, in nanoseconds */
+  static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+  /** the number of bytes in a MB */
+  private static final long MB = 1024 * 1024;
+
+  /** the logger */
+  private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+  /** the plan */
+  private final SyncPlan plan;
+
+  /** the number of completed steps */
+  private final AtomicInteger completedSteps = new AtomicInteger();
+
+  /** the number of bytes processed by the completed steps */
+  private final AtomicLong processedSize = new AtomicLong();
+
+  /** the (nanoTime) time of the last progress report */
+  private final AtomicLong lastReport = new AtomicLong();
+
+  /** the (nanoTime) start time of the execution */
+  private long start = 0;
+
+  /**
+   * Constructor
+   *
+   * @param plan the plan to execute
+   */
+  SyncPlanExecutor(SyncPlan plan) {
+    super();
+    this.plan = plan;
+  }
+
+  /**
+   * Run a step
+   *
+   * @param step the step
+   * @return a future that completes with true when the step was successful
+   */
+  abstract CompletableFuture<Boolean> runStep(SyncPlan.Step step);
+
+  /**
+   * Report progress
+   *
+   * @param message the progress message
+   */
+  abstract void reportProgress(String message);
+
+  /**
+   * @return the number of completed steps
+   */
+  int getCompletedSteps() {
+    return completedSteps.get();
+  }
+
+  /**
+   * @return the number of bytes processed by the completed steps
+   */
+  long getProcessedSize() {
+    return processedSize.get();
+  }
+
+  /**
+   * Estimate the remaining time, assuming that the remaining bytes are
+   * processed at the same rate as the bytes so far
+   *
+   * @param elapsed the elapsed time
+   * @param processed the number of bytes processed
+   * @param total the total number of bytes
+   * @return the estimated remaining time (in the unit of elapsed), -1 when it
+   *         can't be estimated yet
+   */
+  static long estimateRemaining(long elapsed, long processed, long total) {
+    if (processed >= total) {
+      return 0;
+    }
+    if ((processed <= 0) || (elapsed <= 0)) {
+      return -1;
+    }
+    return (long) (elapsed * ((double) (total - processed) / processed));
+  }
+
+  /**
+   * @param nanos a duration in nanoseconds, negative when unknown
+   * @return the duration as h:mm:ss, ? when unknown
+   */
+  static String formatDuration(long nanos) {
+    if (nanos < 0) {
+      return "?"; //$NON-NLS-1$
+    }
+    long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+    return String.format("%d:%02d:%02d", Long.valueOf(seconds / 3600), Long.valueOf((seconds / 60) % 60), //$NON-NLS-1$
+        Long.valueOf(seconds % 60));
+  }
+
+  /**
+   * Report the progress
+   *
+   * @param now the current (nanoTime) time
+   */
+  void report(long now) {
+    long total = plan.getTotalSize();
+    long processed = processedSize.get();
+    reportProgress(String.format(Messages.getString("SyncPlanExecutor.0"), //$NON-NLS-1$
+        Integer.valueOf(completedSteps.get()), Integer.valueOf(plan.steps.size()), Long.valueOf(processed / MB),
+        Long.valueOf(total / MB), formatDuration(estimateRemaining(now - start, processed, total))));
+  }
+
+  /**
+   * Complete a step, and start the steps that depend on it when they have no
+   * other pending dependencies
+   *
+   * @param step the step
+   * @param success true when the step was successful
+   */
+  void complete(SyncPlan.Step step, boolean success) {
+    completedSteps.incrementAndGet();
+    processedSize.addAndGet(step.size);
+    step.result.complete(Boolean.valueOf(success));
+
+    long now = System.nanoTime();
+    long last = lastReport.get();
+    if (((now - last) >= PROGRESS_INTERVAL) && lastReport.compareAndSet(last, now)) {
+      report(now);
+    }
+
+    for (SyncPlan.Step dependent : step.dependents) {
+      if (dependent.pendingDependencies.decrementAndGet() == 0) {
+        start(dependent);
+      }
+    }
+  }
+
+  /**
+   * Start a step of which all dependencies completed
+   *
+   * @param step the step
+   */
+  void start(final SyncPlan.Step step) {
+    for (SyncPlan.Step dependency : step.dependencies) {
+      if (!dependency.result.join().booleanValue()) {
+        complete(step, false);
+        return;
+      }
+    }
+
+    CompletableFuture<Boolean> result;
+    try {
+      result = runStep(step);
+    }
+    catch (RuntimeException e) {
+      /* can't be covered by a test */
+      logger.log(Level.SEVERE, Messages.getString("SyncerImpl.5"), e); //$NON-NLS-1$
+      complete(step, false);
+      return;
+    }
+
+    result.whenComplete(new BiConsumer<Boolean, Throwable>() {
+      @Override
+      public void accept(Boolean success, Throwable e) {
+        if (e != null) {
+          logger.log(Level.SEVERE, Messages.getString("SyncerImpl.5"), //$NON-NLS-1$
+              (e instanceof CompletionException) ? e.getCause() : e);
+        }
+        complete(step, (e == null) && (success != null) && success.booleanValue());
+      }
+    });
+  }
+
+  /**
+   * Execute the plan and wait for all steps to complete
+   *
+   * @return true when all steps were successful
+   */
+  boolean execute() {
+    start = System.nanoTime();
+    lastReport.set(start);
+
+    for (SyncPlan.Step step : plan.steps) {
+      step.pendingDependencies.set(step.dependencies.size());
+    }
+
+    for (SyncPlan.Step step : plan.steps) {
+      if (step.dependencies.isEmpty()) {
+        start(step);
+      }
+    }
+
+    boolean result = true;
+    for (SyncPlan.Step step : plan.steps) {
+      try {
+        result = step.result.join().booleanValue() && result;
+      }
+      catch (CancellationException e) {
+        /* can't be covered by a test */
+        result = false;
+      }
+    }
+
+    if (!plan.steps.isEmpty()) {
+      report(System.nanoTime());
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,423 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
+import nl.pelagic.audio.musicTree.syncer.i18n.Messages;
+import nl.pelagic.util.file.DirectoryEntry;
+
+/**
+ * <p>
+ * The persistent synchronisation state (index) of a music tree, which is
+ * stored in the mp3 base directory.
+ * </p>
+ * <p>
+ * For every directory of the flac tree that was synchronised successfully it
+ * records the modification time of the flac directory, its sub-directories and
+ * the size and modification time of its music files and covers, and of the mp3
+ * files and covers in the corresponding mp3 directory of every target. A
+ * directory whose modification time didn't change since it was last
+ * synchronised successfully, and whose recorded files didn't change either (a
+ * file that is edited in place, like a retagged flac file or a truncated mp3
+ * file, doesn't change the modification time of its directory), doesn't have
+ * to be listed and compared again.
+ * </p>
+ * <p>
+ * The index is a UTF-8 text file with tab separated lines:
+ *
+ * <pre>
+ * d &lt;flac directory modification time&gt; &lt;directory path, relative to the mp3 base directory&gt;
+ * s &lt;sub-directory name&gt;
+ * f &lt;size&gt; &lt;modification time&gt; &lt;file name&gt;
+ * t
+ * m &lt;size&gt; &lt;modification time&gt; &lt;file name&gt;
+ * </pre>
+ *
+ * where the s, f and t lines belong to the preceding d line, a t line starts
+ * the mp3 directory of the next target and the m lines belong to the preceding
+ * t line.
+ * </p>
+ */
+public class SyncState {
+  /** the file name of the index in the mp3 base directory */
+  public static final String INDEX_FILE_NAME = ".flac2mp3.syncstate"; //$NON-NLS-1$
+
+  /** the header (first line) of the index */
+  static final String HEADER = "# flac2mp3 sync state 2"; //$NON-NLS-1$
+
+  /** the separator of the fields on a line */
+  static final String SEPARATOR = "\t"; //$NON-NLS-1$
+
+  /** the directory line type */
+  static final String TYPE_DIRECTORY = "d"; //$NON-NLS-1$
+
+  /** the sub-directory line type */
+  static final String TYPE_SUBDIRECTORY = "s"; //$NON-NLS-1$
+
+  /** the file line type */
+  static final String TYPE_FILE = "f"; //$NON-NLS-1$
+
+  /** the target (mp3 directory) line type */
+  static final String TYPE_TARGET = "t"; //$NON-NLS-1$
+
+  /** the mp3 file line type */
+  static final String TYPE_MP3_FILE = "m"; //$NON-NLS-1$
+
+  /** the logger */
+  private static final Logger logger = Logger.getLogger(SyncState.class.getName());
+
+  /**
+   * The recorded state of a file
+   */
+  static class FileState {
+    /** the size of the file */
+    final long size;
+
+    /** the modification time of the file */
+    final long lastModified;
+
+    /**
+     * Constructor
+     *
+     * @param size the size of the file
+     * @param lastModified the modification time of the file
+     */
+    FileState(long size, long lastModified) {
+      super();
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * The recorded state of a directory
+   */
+  static class DirectoryState {
+    /** the modification time of the flac directory */
+    final long lastModified;
+
+    /** the names of the sub-directories */
+    final List<String> directories = new LinkedList<>();
+
+    /** the states of the music files and covers, by name */
+    final SortedMap<String, FileState> files = new TreeMap<>();
+
+    /**
+     * the states of the mp3 files and covers in the mp3 directory of every
+     * target, by name
+     */
+    final List<SortedMap<String, FileState>> targets = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param lastModified the modification time of the flac directory
+     */
+    DirectoryState(long lastModified) {
+      super();
+      this.lastModified = lastModified;
+    }
+  }
+
+  /** the index file */
+  private final File indexFile;
+
+  /** the directory states, by directory path (relative to the mp3 base dir) */
+  final Map<String, DirectoryState> directories = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param mp3BaseDir the mp3 base directory in which the index is stored
+   */
+  public SyncState(File mp3BaseDir) {
+    super();
+    this.indexFile = new File(mp3BaseDir, INDEX_FILE_NAME);
+  }
+
+  /**
+   * @return the indexFile
+   */
+  public File getIndexFile() {
+    return indexFile;
+  }
+
+  /**
+   * Load the index. A missing index results in an empty state, an unreadable
+   * or corrupt index is discarded.
+   */
+  public void load() {
+    directories.clear();
+
+    if (!indexFile.isFile()) {
+      return;
+    }
+
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"))) { //$NON-NLS-1$
+      String line = reader.readLine();
+      if (!HEADER.equals(line)) {
+        throw new IOException(String.format(Messages.getString("SyncState.0"), line)); //$NON-NLS-1$
+      }
+
+      DirectoryState directoryState = null;
+      SortedMap<String, FileState> targetState = null;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+
+        if (line.startsWith(TYPE_DIRECTORY + SEPARATOR)) {
+          String[] fields = line.split(SEPARATOR, 3);
+          if (fields.length != 3) {
+            throw new IOException(String.format(Messages.getString("SyncState.0"), line)); //$NON-NLS-1$
+          }
+          directoryState = new DirectoryState(Long.parseLong(fields[1]));
+          targetState = null;
+          directories.put(fields[2], directoryState);
+        } else if ((directoryState != null) && line.startsWith(TYPE_SUBDIRECTORY + SEPARATOR)) {
+          directoryState.directories.add(line.substring(TYPE_SUBDIRECTORY.length() + SEPARATOR.length()));
+        } else if ((directoryState != null) && line.startsWith(TYPE_FILE + SEPARATOR)) {
+          String[] fields = line.split(SEPARATOR, 4);
+          if (fields.length != 4) {
+            throw new IOException(String.format(Messages.getString("SyncState.0"), line)); //$NON-NLS-1$
+          }
+          directoryState.files.put(fields[3],
+              new FileState(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+        } else if ((directoryState != null) && line.equals(TYPE_TARGET)) {
+          targetState = new TreeMap<>();
+          directoryState.targets.add(targetState);
+        } else if ((targetState != null) && line.startsWith(TYPE_MP3_FILE + SEPARATOR)) {
+          String[] fields = line.split(SEPARATOR, 4);
+          if (fields.length != 4) {
+            throw new IOException(String.format(Messages.getString("SyncState.0"), line)); //$NON-NLS-1$
+          }
+          targetState.put(fields[3], new FileState(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+        } else {
+          throw new IOException(String.format(Messages.getString("SyncState.0"), line)); //$NON-NLS-1$
+        }
+      }
+    }
+    catch (IOException | NumberFormatException e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("SyncState.1"), indexFile.getPath()), e); //$NON-NLS-1$
+      directories.clear();
+    }
+  }
+
+  /**
+   * Save the index, atomically replacing the existing index. Directory states
+   * that are no longer referenced by the directory state of their parent
+   * directory are not saved.
+   *
+   * @return true when successful
+   */
+  public boolean save() {
+    SortedMap<String, DirectoryState> sorted = new TreeMap<>(directories);
+
+    File tmpFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp"); //$NON-NLS-1$
+    try {
+      try (BufferedWriter writer =
+          new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"))) { //$NON-NLS-1$
+        writer.write(HEADER);
+        writer.newLine();
+
+        for (Map.Entry<String, DirectoryState> entry : sorted.entrySet()) {
+          String path = entry.getKey();
+          if (!isReferenced(sorted, path)) {
+            continue;
+          }
+
+          DirectoryState directoryState = entry.getValue();
+          writer.write(TYPE_DIRECTORY + SEPARATOR + directoryState.lastModified + SEPARATOR + path);
+          writer.newLine();
+          for (String directory : directoryState.directories) {
+            writer.write(TYPE_SUBDIRECTORY + SEPARATOR + directory);
+            writer.newLine();
+          }
+          for (Map.Entry<String, FileState> file : directoryState.files.entrySet()) {
+            FileState fileState = file.getValue();
+            writer.write(TYPE_FILE + SEPARATOR + fileState.size + SEPARATOR + fileState.lastModified + SEPARATOR
+                + file.getKey());
+            writer.newLine();
+          }
+          for (SortedMap<String, FileState> targetState : directoryState.targets) {
+            writer.write(TYPE_TARGET);
+            writer.newLine();
+            for (Map.Entry<String, FileState> file : targetState.entrySet()) {
+              FileState fileState = file.getValue();
+              writer.write(TYPE_MP3_FILE + SEPARATOR + fileState.size + SEPARATOR + fileState.lastModified
+                  + SEPARATOR + file.getKey());
+              writer.newLine();
+            }
+          }
+        }
+      }
+
+      Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      /* can't be covered by a test */
+      logger.log(Level.SEVERE, String.format(Messages.getString("SyncState.2"), indexFile.getPath()), e); //$NON-NLS-1$
+      tmpFile.delete();
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Determine whether a directory state is referenced by the state of its
+   * parent directory: the directory must be listed by its parent when the
+   * parent has a state.
+   *
+   * @param sorted the directory states
+   * @param path the path of the directory
+   * @return true when referenced
+   */
+  static boolean isReferenced(Map<String, DirectoryState> sorted, String path) {
+    int index = path.lastIndexOf(File.separatorChar);
+    if (index < 0) {
+      return true;
+    }
+
+    DirectoryState parentState = sorted.get(path.substring(0, index));
+    if (parentState == null) {
+      return true;
+    }
+
+    return parentState.directories.contains(path.substring(index + 1));
+  }
+
+  /**
+   * Determine whether the recorded files in a directory are unchanged: they
+   * must (still) exist with the recorded size and modification time.
+   *
+   * @param directory the directory
+   * @param files the recorded states of the files, by name
+   * @return true when unchanged
+   */
+  static boolean isUnchanged(File directory, Map<String, FileState> files) {
+    for (Map.Entry<String, FileState> file : files.entrySet()) {
+      DirectoryEntry entry = DirectoryEntry.read(new File(directory, file.getKey()));
+      FileState fileState = file.getValue();
+      if (!entry.exists() || (entry.length() != fileState.size) || (entry.lastModified() != fileState.lastModified)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Determine whether a directory of the flac tree is unchanged since it was
+   * last synchronised successfully.
+   *
+   * @param path the path of the directory, relative to the mp3 base directory
+   * @param flacDir the flac directory
+   * @param mp3Dirs the corresponding mp3 directories, one for every target
+   * @return null when the directory changed (or was not synchronised
+   *         successfully before), the names of its sub-directories otherwise
+   */
+  public List<String> getUnchangedDirectories(String path, File flacDir, List<File> mp3Dirs) {
+    DirectoryState directoryState = directories.get(path);
+    if ((directoryState == null) || (directoryState.lastModified != flacDir.lastModified())
+        || (directoryState.targets.size() != mp3Dirs.size())) {
+      return null;
+    }
+
+    /*
+     * a file that is edited in place doesn't change the modification time of
+     * its directory
+     */
+    if (!isUnchanged(flacDir, directoryState.files)) {
+      return null;
+    }
+
+    for (int target = 0; target < mp3Dirs.size(); target++) {
+      File mp3Dir = mp3Dirs.get(target);
+
+      /* the mp3 directory must (still) exist when music files were converted */
+      if (!directoryState.files.isEmpty() && !mp3Dir.isDirectory()) {
+        return null;
+      }
+
+      /* a removed or truncated mp3 file must be converted again */
+      if (!isUnchanged(mp3Dir, directoryState.targets.get(target))) {
+        return null;
+      }
+    }
+
+    return Collections.unmodifiableList(directoryState.directories);
+  }
+
+  /**
+   * Record the state of a directory of the flac tree that was synchronised
+   * successfully.
+   *
+   * @param path the path of the directory, relative to the mp3 base directory
+   * @param lastModified the modification time of the flac directory before it
+   *          was listed
+   * @param flacDirListSplit the (filtered) file list of the flac directory
+   * @param mp3Dirs the corresponding mp3 directories, one for every target
+   */
+  public void update(String path, long lastModified, FileListSplit flacDirListSplit, List<File> mp3Dirs) {
+    DirectoryState directoryState = new DirectoryState(lastModified);
+    directoryState.directories.addAll(flacDirListSplit.directories);
+
+    /* the attributes of the files as they were listed */
+    List<DirectoryEntry> files = new LinkedList<>(flacDirListSplit.musicFileEntries);
+    files.addAll(flacDirListSplit.coverEntries);
+    for (DirectoryEntry file : files) {
+      directoryState.files.put(file.getName(), new FileState(file.length(), file.lastModified()));
+    }
+
+    /* the attributes of the mp3 files and covers as they are now */
+    List<String> mp3Files = new LinkedList<>();
+    for (String musicFile : flacDirListSplit.musicFilesWithoutExtensions) {
+      mp3Files.add(musicFile + MusicTreeConstants.MP3EXTENSION);
+    }
+    mp3Files.addAll(flacDirListSplit.covers);
+    for (File mp3Dir : mp3Dirs) {
+      SortedMap<String, FileState> targetState = new TreeMap<>();
+      for (String mp3File : mp3Files) {
+        DirectoryEntry entry = DirectoryEntry.read(new File(mp3Dir, mp3File));
+        if (entry.exists()) {
+          targetState.put(mp3File, new FileState(entry.length(), entry.lastModified()));
+        }
+      }
+      directoryState.targets.add(targetState);
+    }
+
+    directories.put(path, directoryState);
+  }
+
+  /**
+   * Forget the state of a directory, so that it is synchronised fully the
+   * next time.
+   *
+   * @param path the path of the directory, relative to the mp3 base directory
+   */
+  public void remove(String path) {
+    directories.remove(path);
+  }
+}
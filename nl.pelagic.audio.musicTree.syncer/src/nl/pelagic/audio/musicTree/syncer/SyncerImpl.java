@@ -3,20 +3,37 @@ package nl.pelagic.audio.musicTree.syncer;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import nl.pelagic.audio.conversion.flac2mp3.api.Flac2Mp3Configuration;
 import nl.pelagic.audio.conversion.flac2mp3.api.FlacToMp3;
+import nl.pelagic.audio.conversion.flac2mp3.api.ReplayGainAlbum;
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConfiguration;
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
 import nl.pelagic.audio.musicTree.syncer.api.Syncer;
 import nl.pelagic.audio.musicTree.syncer.i18n.Messages;
 import nl.pelagic.audio.musicTree.util.MusicTreeHelpers;
 import nl.pelagic.shell.script.listener.api.ShellScriptListener;
+import nl.pelagic.util.file.DirUtils;
+import nl.pelagic.util.file.DirectoryEntry;
 import nl.pelagic.util.file.FileUtils;
 import nl.pelagic.util.string.StringUtils;
 import aQute.bnd.annotation.component.Component;
@@ -79,6 +96,28 @@ public class SyncerImpl implements Syncer {
    */
   void removeFromMp3Dir(File mp3Dir, List<String> mp3Entries, List<String> mp3EntriesFullName,
       List<String> flacEntries, boolean simulate) {
+    removeFromMp3Dir(mp3Dir, mp3Entries, mp3EntriesFullName, flacEntries, simulate, null);
+  }
+
+  /**
+   * Remove directories/files from the mp3 directory that are not in the
+   * corresponding flac directory, see
+   * {@link #removeFromMp3Dir(File, List, List, List, boolean)}.
+   * 
+   * @param mp3Dir the mp3 directory
+   * @param mp3Entries the directories/files that are in the mp3 directory
+   * @param mp3EntriesFullName the full names of the directories/files in
+   *          mp3entries
+   * @param flacEntries the directories/files that are in the corresponding flac
+   *          directory
+   * @param simulate true to simulate removal
+   * @param removals when not null then the directories/files are not removed
+   *          but added to this list instead, so that they can be removed later
+   * @throws IllegalArgumentException when mp3EntriesFullName is not null and
+   *           mp3Entries and mp3EntriesFullName don't have the same size
+   */
+  void removeFromMp3Dir(File mp3Dir, List<String> mp3Entries, List<String> mp3EntriesFullName,
+      List<String> flacEntries, boolean simulate, List<File> removals) {
     assert (mp3Dir != null);
 
     if (!mp3Dir.exists()) {
@@ -101,23 +140,26 @@ public class SyncerImpl implements Syncer {
     /* get the shell script listener */
     ShellScriptListener listener = shellScriptListener.get();
 
-    for (int index = 0; index < mp3Entries.size(); index++) {
-      String mp3Entry = mp3Entries.get(index);
-      if ((flacEntries == null) || !flacEntries.contains(mp3Entry)) {
-        String mp3EntryFullName = (mp3EntriesFullName == null) ? mp3Entry : mp3EntriesFullName.get(index);
-        File mp3EntryFullNameFile = new File(mp3Dir, mp3EntryFullName);
-        if (!mp3EntryFullNameFile.exists()) {
-          continue;
-        }
-        if (listener != null) {
-          listener.addMessage(String.format(Messages.getString("SyncerImpl.0"), mp3EntryFullNameFile.getPath())); //$NON-NLS-1$
-          listener.addCommand(String.format("rm -fr \"%s\"", //$NON-NLS-1$
-              StringUtils.escQuote(mp3EntryFullNameFile.getPath())));
-        }
-        if (!(simulate || FileUtils.delete(mp3EntryFullNameFile))) {
-          /* can't be covered in a test */
-          logger.log(Level.SEVERE, String.format(Messages.getString("SyncerImpl.1"), mp3EntryFullNameFile.getPath())); //$NON-NLS-1$
-        }
+    String[] mp3EntriesFullNames =
+        ((mp3EntriesFullName == null) ? mp3Entries : mp3EntriesFullName).toArray(new String[mp3Entries.size()]);
+
+    for (int index : TreeDiff.diff(flacEntries, mp3Entries, null).deleted) {
+      File mp3EntryFullNameFile = new File(mp3Dir, mp3EntriesFullNames[index]);
+      if (!mp3EntryFullNameFile.exists()) {
+        continue;
+      }
+      if (removals != null) {
+        removals.add(mp3EntryFullNameFile);
+        continue;
+      }
+      if (listener != null) {
+        listener.addMessage(String.format(Messages.getString("SyncerImpl.0"), mp3EntryFullNameFile.getPath())); //$NON-NLS-1$
+        listener.addCommand(String.format("rm -fr \"%s\"", //$NON-NLS-1$
+            StringUtils.escQuote(mp3EntryFullNameFile.getPath())));
+      }
+      if (!(simulate || FileUtils.delete(mp3EntryFullNameFile))) {
+        /* can't be covered in a test */
+        logger.log(Level.SEVERE, String.format(Messages.getString("SyncerImpl.1"), mp3EntryFullNameFile.getPath())); //$NON-NLS-1$
       }
     }
   }
@@ -159,7 +201,7 @@ public class SyncerImpl implements Syncer {
       File flacCoverFile = new File(flacDir, cover);
       File mp3CoverFile = new File(mp3Dir, cover);
 
-      if (!mp3CoverFile.exists() || (flacCoverFile.lastModified() > mp3CoverFile.lastModified())) {
+      if (isCoverCopyNeeded(flacCoverFile, mp3CoverFile)) {
         if (listener != null) {
           if (!reported) {
             listener.addMessage(String.format(Messages.getString("SyncerImpl.2"), mp3Dir.getPath())); //$NON-NLS-1$
@@ -226,6 +268,48 @@ public class SyncerImpl implements Syncer {
    */
   boolean convertFlacFiles(Flac2Mp3Configuration flac2Mp3Configuration, File flacDir, List<String> flacEntries,
       List<String> flacEntriesFullName, File mp3Dir, List<String> mp3Entries, boolean simulate) {
+    return convertFlacFiles(flac2Mp3Configuration, flacDir, flacEntries, flacEntriesFullName, mp3Dir, mp3Entries,
+        simulate, null, null, null, null);
+  }
+
+  /**
+   * Convert flac files in the flac directory to mp3 files in the mp3 directory
+   * when needed, see
+   * {@link #convertFlacFiles(Flac2Mp3Configuration, File, List, List, File, List, boolean)}
+   * .
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null, in which case the default configuration
+   *          is used.
+   * @param flacDir the flac directory
+   * @param flacEntries the flac file names in the flac directory, without
+   *          extensions
+   * @param flacEntriesFullName the flac file names in the flac directory, with
+   *          extensions
+   * @param mp3Dir the mp3 directory
+   * @param mp3Entries the mp3 file names in the mp3 directory, without
+   *          extensions
+   * @param simulate true to simulate conversion
+   * @param conversions when null then the conversions are performed
+   *          synchronously and the first failed conversion stops the
+   *          conversion of the remaining files. Otherwise all conversions are
+   *          submitted to the (bounded) executor of the converter and their
+   *          results are added to this list.
+   * @param deferred when not null then the conversions are not performed but
+   *          added to this list instead (conversions is ignored)
+   * @param flacDirEntries the entries (with their attributes) of the flac
+   *          files, in the same order as flacEntries. When null then the
+   *          attributes are read from the file system.
+   * @param mp3DirEntries the entries (with their attributes) of the mp3 files,
+   *          in the same order as mp3Entries. When null then the attributes are
+   *          read from the file system.
+   * @return true when successful (or when all conversions were submitted or
+   *         deferred)
+   */
+  boolean convertFlacFiles(Flac2Mp3Configuration flac2Mp3Configuration, final File flacDir,
+      List<String> flacEntries, List<String> flacEntriesFullName, final File mp3Dir, List<String> mp3Entries,
+      boolean simulate, List<CompletableFuture<Boolean>> conversions, List<MoveDetector.Conversion> deferred,
+      List<DirectoryEntry> flacDirEntries, List<DirectoryEntry> mp3DirEntries) {
     if ((flacDir == null) || !flacDir.isDirectory()) {
       return false;
     }
@@ -242,22 +326,52 @@ public class SyncerImpl implements Syncer {
       return false;
     }
 
-    for (int index = 0; index < flacEntries.size(); index++) {
-      String flacEntry = flacEntries.get(index);
+    final String[] flacEntriesArray = flacEntries.toArray(new String[flacEntries.size()]);
+    final String[] flacEntriesFullNameArray = flacEntriesFullName.toArray(new String[flacEntriesFullName.size()]);
+    final DirectoryEntry[] flacDirEntriesArray = toArray(flacDirEntries, flacEntries.size());
+    final DirectoryEntry[] mp3DirEntriesArray = toArray(mp3DirEntries, (mp3Entries == null) ? 0 : mp3Entries.size());
 
-      File flacEntryFullNameFile = new File(flacDir, flacEntriesFullName.get(index));
-      if (!flacEntryFullNameFile.exists() || flacEntryFullNameFile.isDirectory()) {
+    /*
+     * Added flac files are always converted, flac files that are also in the
+     * mp3 directory only when the mp3 file is missing or older
+     */
+    TreeDiff diff = TreeDiff.diff(flacEntries, mp3Entries, new TreeDiff.UpdateCheck() {
+      @Override
+      public boolean isUpdateNeeded(int sourceIndex, int targetIndex) {
+        DirectoryEntry flacEntry = flacDirEntriesArray[sourceIndex];
+        if (flacEntry == null) {
+          flacEntry = DirectoryEntry.read(new File(flacDir, flacEntriesFullNameArray[sourceIndex]));
+          flacDirEntriesArray[sourceIndex] = flacEntry;
+        }
+        DirectoryEntry mp3Entry = mp3DirEntriesArray[targetIndex];
+        if (mp3Entry == null) {
+          mp3Entry = DirectoryEntry.read(new File(mp3Dir, flacEntriesArray[sourceIndex]
+              + MusicTreeConstants.MP3EXTENSION));
+        }
+        return !mp3Entry.exists() || (flacEntry.lastModified() > mp3Entry.lastModified());
+      }
+    });
+
+    for (int index : diff.getChanged()) {
+      DirectoryEntry flacEntry = flacDirEntriesArray[index];
+      if (flacEntry == null) {
+        flacEntry = DirectoryEntry.read(new File(flacDir, flacEntriesFullNameArray[index]));
+      }
+      if (!flacEntry.exists() || flacEntry.isDirectory()) {
         continue;
       }
 
-      File mp3EntryFullNameFile = new File(mp3Dir, flacEntry + MusicTreeConstants.MP3EXTENSION);
+      File flacEntryFullNameFile = flacEntry.getFile();
+      File mp3EntryFullNameFile = new File(mp3Dir, flacEntriesArray[index] + MusicTreeConstants.MP3EXTENSION);
 
-      boolean doConversion =
-          !mp3EntryFullNameFile.exists()
-              || (flacEntryFullNameFile.lastModified() > mp3EntryFullNameFile.lastModified()) || (mp3Entries == null)
-              || !mp3Entries.contains(flacEntry);
+      if (deferred != null) {
+        deferred.add(new MoveDetector.Conversion(flacEntryFullNameFile, mp3EntryFullNameFile));
+        continue;
+      }
 
-      if (!doConversion) {
+      if (conversions != null) {
+        conversions.add(flacToMp3.convertAsync(flac2Mp3Configuration, flacEntryFullNameFile, mp3EntryFullNameFile,
+            simulate));
         continue;
       }
 
@@ -276,29 +390,119 @@ public class SyncerImpl implements Syncer {
   }
 
   /**
-   * Synchronise/Mirror a tree of flac files into a tree of mp3 files: remove
-   * superfluous directories and files in the mp3 tree, copy cover images from
-   * the flac tree into the mp3 tree, and convert flac files into mp3 files
+   * @param entries the entries (can be null)
+   * @param size the size of the array when entries is null
+   * @return the entries as an array, an array of nulls when entries is null
+   */
+  private static DirectoryEntry[] toArray(List<DirectoryEntry> entries, int size) {
+    if (entries == null) {
+      return new DirectoryEntry[size];
+    }
+    return entries.toArray(new DirectoryEntry[entries.size()]);
+  }
+
+  /**
+   * Get the path of a directory in the mp3 tree, relative to the mp3 base
+   * directory. This is the key of the directory in the sync state.
    * 
-   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
-   *          conversion. May be null in which case the default configuration is
-   *          used.
    * @param musicTreeConfiguration the music tree configuration
-   * @param directoryToSync the directory to sync
-   * @param simulate true to simulate synchronisation/mirroring
-   * @param filter the filter to use (created from the extensions to accept as
-   *          flac files in the flac tree and from the additional file names to
-   *          accept in the flac tree
-   * @return true on success
+   * @param mp3Dir the mp3 directory
+   * @return the relative path
    */
-  boolean syncFlac2Mp3(Flac2Mp3Configuration flac2Mp3Configuration, MusicTreeConfiguration musicTreeConfiguration,
-      File directoryToSync, boolean simulate, FlacTreeFilenameFilter filter) {
-    assert (musicTreeConfiguration != null);
-    assert (musicTreeConfiguration.validate(false) == null);
-    assert (directoryToSync != null);
-    assert (FileUtils.isFileBelowDirectory(musicTreeConfiguration.getFlacBaseDir(), directoryToSync, true));
-    assert (filter != null);
+  static String getSyncStatePath(MusicTreeConfiguration musicTreeConfiguration, File mp3Dir) {
+    return musicTreeConfiguration.getMp3BaseDir().toPath().relativize(mp3Dir.toPath()).toString();
+  }
+
+  /**
+   * The file lists of a flac directory and its corresponding mp3 directory
+   */
+  static class DirectoryListing {
+    /** the (filtered) file list of the flac directory */
+    final FileListSplit flacDirListSplit;
 
+    /** the (unfiltered) file list of the mp3 directory */
+    final FileListSplit mp3DirListSplit;
+
+    /**
+     * the (unfiltered) file lists of the mp3 directories of the additional
+     * targets
+     */
+    final List<FileListSplit> targetDirListSplits = new LinkedList<>();
+
+    /**
+     * Constructor
+     * 
+     * @param flacDirListSplit the (filtered) file list of the flac directory
+     * @param mp3DirListSplit the (unfiltered) file list of the mp3 directory
+     */
+    DirectoryListing(FileListSplit flacDirListSplit, FileListSplit mp3DirListSplit) {
+      super();
+      this.flacDirListSplit = flacDirListSplit;
+      this.mp3DirListSplit = mp3DirListSplit;
+    }
+
+    /**
+     * @return the (unfiltered) file lists of the mp3 directories of all
+     *         targets
+     */
+    List<FileListSplit> getMp3DirListSplits() {
+      List<FileListSplit> result = new LinkedList<>();
+      result.add(mp3DirListSplit);
+      result.addAll(targetDirListSplits);
+      return result;
+    }
+  }
+
+  /**
+   * Get the sub-directories of a directory of the flac tree when it is
+   * unchanged (see
+   * {@link SyncState#getUnchangedDirectories(String, File, File)}) for all
+   * targets.
+   * 
+   * @param musicTreeConfiguration the music tree configuration
+   * @param syncState the sync state
+   * @param syncStatePath the path of the directory in the sync state
+   * @param directoryToSync the directory of the flac tree
+   * @return null when the directory changed for one of the targets, the names
+   *         of its sub-directories otherwise
+   */
+  static List<String> getUnchangedDirectories(MusicTreeConfiguration musicTreeConfiguration, SyncState syncState,
+      String syncStatePath, File directoryToSync) {
+    return syncState.getUnchangedDirectories(syncStatePath, directoryToSync,
+        getMp3Dirs(musicTreeConfiguration, directoryToSync));
+  }
+
+  /**
+   * @param musicTreeConfiguration the music tree configuration
+   * @param flacDir a directory of the flac tree
+   * @return the corresponding mp3 directories, one for every target
+   */
+  static List<File> getMp3Dirs(MusicTreeConfiguration musicTreeConfiguration, File flacDir) {
+    int targets = musicTreeConfiguration.getMp3BaseDirs().size();
+    List<File> mp3Dirs = new ArrayList<>(targets);
+    for (int target = 0; target < targets; target++) {
+      mp3Dirs.add(MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, flacDir, target));
+    }
+    return mp3Dirs;
+  }
+
+  /**
+   * List a directory in the flac tree and its corresponding directories in the
+   * mp3 trees of all targets, and remove superfluous directories and files from
+   * the mp3 directories.
+   * 
+   * @param musicTreeConfiguration the music tree configuration
+   * @param directoryToSync the directory to sync
+   * @param simulate true to simulate removal
+   * @param filter the filter to use on the flac directory
+   * @param moveDetector the move detector. When not null then the removal of
+   *          directories and mp3 files is deferred to it.
+   * @param removals when not null then all removals are not performed but
+   *          added to this list instead (moveDetector is ignored)
+   * @return null when the flac directory has no files, the listings otherwise
+   */
+  DirectoryListing listAndClean(MusicTreeConfiguration musicTreeConfiguration, File directoryToSync,
+      boolean simulate, FlacTreeFilenameFilter filter, MoveDetector moveDetector, List<File> removals) {
     File mp3Dir = MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, directoryToSync);
 
     /* get the shell script listener */
@@ -315,41 +519,311 @@ public class SyncerImpl implements Syncer {
 
     /* get all (filtered) files in the flac tree directory */
     FileListSplit flacDirListSplit =
-        new FileListSplit(directoryToSync, directoryToSync.list(filter), MusicTreeConstants.FLACEXTENSION);
+        new FileListSplit(directoryToSync, DirectoryEntry.list(directoryToSync, filter),
+            MusicTreeConstants.FLACEXTENSION);
 
     /* Exit early when there are no files in the flac directory */
     if (flacDirListSplit.noDirectoryFiles) {
-      return true;
+      return null;
+    }
+
+    List<File> deferredRemovals = removals;
+    if ((deferredRemovals == null) && (moveDetector != null)) {
+      deferredRemovals = moveDetector.removals;
+    }
+
+    DirectoryListing listing =
+        new DirectoryListing(flacDirListSplit, listAndClean(flacDirListSplit, mp3Dir, simulate, deferredRemovals,
+            removals));
+
+    /* the mp3 directories of the additional targets are diffed in the same walk */
+    int targets = musicTreeConfiguration.getMp3BaseDirs().size();
+    for (int target = 1; target < targets; target++) {
+      File targetDir = MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, directoryToSync, target);
+      listing.targetDirListSplits.add(listAndClean(flacDirListSplit, targetDir, simulate, deferredRemovals,
+          removals));
     }
 
+    return listing;
+  }
+
+  /**
+   * List a directory in the mp3 tree and remove the directories and files that
+   * are superfluous according to the listing of its corresponding directory in
+   * the flac tree.
+   * 
+   * @param flacDirListSplit the (filtered) file list of the flac directory
+   * @param mp3Dir the mp3 directory
+   * @param simulate true to simulate removal
+   * @param deferredRemovals when not null then the removal of directories and
+   *          mp3 files is deferred by adding them to this list
+   * @param removals when not null then all removals are not performed but
+   *          added to this list instead
+   * @return the (unfiltered) file list of the mp3 directory
+   */
+  FileListSplit listAndClean(FileListSplit flacDirListSplit, File mp3Dir, boolean simulate,
+      List<File> deferredRemovals, List<File> removals) {
     /* get all (unfiltered) files in the mp3 tree directory */
-    FileListSplit mp3DirListSplit = new FileListSplit(mp3Dir, mp3Dir.list(), MusicTreeConstants.MP3EXTENSION);
+    FileListSplit mp3DirListSplit =
+        new FileListSplit(mp3Dir, DirectoryEntry.list(mp3Dir, null), MusicTreeConstants.MP3EXTENSION);
 
     /*
      * Remove directories in the mp3 directory that are not present in the flac
      * directory
      */
     removeFromMp3Dir(mp3DirListSplit.directory, mp3DirListSplit.directories, null, flacDirListSplit.directories,
-        simulate);
+        simulate, deferredRemovals);
 
     /*
      * Remove covers in the mp3 directory that are not present in the flac
      * directory
      */
-    removeFromMp3Dir(mp3DirListSplit.directory, mp3DirListSplit.covers, null, flacDirListSplit.covers, simulate);
+    removeFromMp3Dir(mp3DirListSplit.directory, mp3DirListSplit.covers, null, flacDirListSplit.covers, simulate,
+        removals);
 
     /*
      * Remove other files in the mp3 directory that are not present in the flac
      * directory
      */
-    removeFromMp3Dir(mp3DirListSplit.directory, mp3DirListSplit.otherFiles, null, null, simulate);
+    removeFromMp3Dir(mp3DirListSplit.directory, mp3DirListSplit.otherFiles, null, null, simulate, removals);
 
     /*
      * Remove mp3s in the mp3 directory that are not present as flac files in
      * the flac directory
      */
     removeFromMp3Dir(mp3DirListSplit.directory, mp3DirListSplit.musicFilesWithoutExtensions,
-        mp3DirListSplit.musicFiles, flacDirListSplit.musicFilesWithoutExtensions, simulate);
+        mp3DirListSplit.musicFiles, flacDirListSplit.musicFilesWithoutExtensions, simulate, deferredRemovals);
+
+    return mp3DirListSplit;
+  }
+
+  /**
+   * Copy the covers of a directory in the flac tree to its corresponding
+   * directories in the mp3 trees of all targets (if needed and only when the
+   * flac directory has flac files)
+   * 
+   * @param listing the listings of the directory
+   * @param simulate true to simulate copying
+   */
+  void copyCovers(DirectoryListing listing, boolean simulate) {
+    FileListSplit flacDirListSplit = listing.flacDirListSplit;
+    if (flacDirListSplit.musicFiles.isEmpty()) {
+      return;
+    }
+
+    for (FileListSplit mp3DirListSplit : listing.getMp3DirListSplits()) {
+      copyCovers(flacDirListSplit.directory, flacDirListSplit.covers, mp3DirListSplit.directory, simulate);
+    }
+  }
+
+  /**
+   * Convert the flac files of a directory in the flac tree to mp3 files in its
+   * corresponding directories in the mp3 trees of all targets when needed (see
+   * {@link #convertFlacFiles(Flac2Mp3Configuration, File, List, List, File, List, boolean)}
+   * ). A flac file that needs conversion for several targets is decoded only
+   * once.
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null, in which case the default configuration
+   *          is used.
+   * @param listing the listings of the directory
+   * @param simulate true to simulate conversion
+   * @param conversions when null then the conversions are performed
+   *          synchronously and the first failed conversion stops the
+   *          conversion of the remaining files. Otherwise all conversions are
+   *          submitted to the (bounded) executor of the converter and their
+   *          results are added to this list.
+   * @return true when successful (or when all conversions were submitted)
+   */
+  boolean convertFlacFiles(Flac2Mp3Configuration flac2Mp3Configuration, DirectoryListing listing, boolean simulate,
+      List<CompletableFuture<Boolean>> conversions) {
+    FileListSplit flacDirListSplit = listing.flacDirListSplit;
+    List<FileListSplit> mp3DirListSplits = listing.getMp3DirListSplits();
+    int targets = mp3DirListSplits.size();
+
+    /* diff all targets, collecting the mp3 files of every flac file by target */
+    Map<File, File[]> mp3s = new LinkedHashMap<>();
+    for (int target = 0; target < targets; target++) {
+      FileListSplit mp3DirListSplit = mp3DirListSplits.get(target);
+      List<MoveDetector.Conversion> targetConversions = new LinkedList<>();
+      if (!convertFlacFiles(flac2Mp3Configuration, flacDirListSplit.directory,
+          flacDirListSplit.musicFilesWithoutExtensions, flacDirListSplit.musicFiles, mp3DirListSplit.directory,
+          mp3DirListSplit.musicFilesWithoutExtensions, simulate, null, targetConversions,
+          flacDirListSplit.musicFileEntries, mp3DirListSplit.musicFileEntries)) {
+        return false;
+      }
+      for (MoveDetector.Conversion conversion : targetConversions) {
+        File[] flacMp3s = mp3s.get(conversion.flac);
+        if (flacMp3s == null) {
+          flacMp3s = new File[targets];
+          mp3s.put(conversion.flac, flacMp3s);
+        }
+        flacMp3s[target] = conversion.mp3;
+      }
+    }
+
+    /*
+     * the ReplayGain of the album can only be determined when all flac files of
+     * the directory are converted
+     */
+    boolean replayGain =
+        (flac2Mp3Configuration != null) && flac2Mp3Configuration.isReplayGain() && !mp3s.isEmpty();
+    final ReplayGainAlbum album =
+        (replayGain && (mp3s.size() == flacDirListSplit.musicFiles.size())) ? new ReplayGainAlbum(mp3s.size())
+            : null;
+    if (replayGain && (album == null)) {
+      reportAlbumReplayGainSkipped(flacDirListSplit.directory, simulate);
+    }
+    final List<CompletableFuture<Boolean>> albumConversions = new LinkedList<>();
+
+    for (Map.Entry<File, File[]> entry : mp3s.entrySet()) {
+      List<File> flacMp3s = new ArrayList<>(Arrays.asList(entry.getValue()));
+
+      if (conversions != null) {
+        CompletableFuture<Boolean> conversion =
+            flacToMp3.convertTargetsAsync(flac2Mp3Configuration, entry.getKey(), flacMp3s, simulate, album);
+        conversions.add(conversion);
+        albumConversions.add(conversion);
+        continue;
+      }
+
+      try {
+        if (!flacToMp3.convertTargets(flac2Mp3Configuration, entry.getKey(), flacMp3s, simulate, album)) {
+          return false;
+        }
+      }
+      catch (FileNotFoundException e) {
+        logger.log(Level.SEVERE, Messages.getString("SyncerImpl.5"), e); //$NON-NLS-1$
+        return false;
+      }
+    }
+
+    if (album == null) {
+      return true;
+    }
+
+    if (conversions == null) {
+      return setAlbumReplayGain(album, flacDirListSplit.directory, simulate);
+    }
+
+    final File albumDir = flacDirListSplit.directory;
+    final boolean simulateAlbum = simulate;
+    conversions.add(CompletableFuture.allOf(albumConversions.toArray(new CompletableFuture<?>[albumConversions.size()]))
+        .handle(new BiFunction<Void, Throwable, Boolean>() {
+          @Override
+          public Boolean apply(Void v, Throwable e) {
+            if (e != null) {
+              /* already reported by the failed conversion */
+              return Boolean.FALSE;
+            }
+
+            for (CompletableFuture<Boolean> conversion : albumConversions) {
+              if (!conversion.join().booleanValue()) {
+                return Boolean.FALSE;
+              }
+            }
+
+            return Boolean.valueOf(setAlbumReplayGain(album, albumDir, simulateAlbum));
+          }
+        }));
+
+    return true;
+  }
+
+  /**
+   * Report that the ReplayGain of an album is not set because not all of its
+   * flac files were converted (and analysed): some were up-to-date, or only
+   * their tags were updated.
+   * 
+   * @param flacDir the directory of the album in the flac tree
+   * @param simulate true when simulating, in which case nothing is analysed and
+   *          nothing is reported
+   */
+  void reportAlbumReplayGainSkipped(File flacDir, boolean simulate) {
+    if (!simulate) {
+      logger.log(Level.INFO, String.format(Messages.getString("SyncerImpl.14"), flacDir.getPath())); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Set the ReplayGain of an album in the mp3 files of its tracks, once all of
+   * its flac files were converted successfully
+   * 
+   * @param album the album
+   * @param flacDir the directory of the album in the flac tree
+   * @param simulate true to simulate
+   * @return true when successful
+   */
+  boolean setAlbumReplayGain(ReplayGainAlbum album, File flacDir, boolean simulate) {
+    if (!album.isComplete()) {
+      reportAlbumReplayGainSkipped(flacDir, simulate);
+      return true;
+    }
+
+    return flacToMp3.setAlbumReplayGain(album, simulate);
+  }
+
+  /**
+   * Synchronise/Mirror a tree of flac files into a tree of mp3 files: remove
+   * superfluous directories and files in the mp3 tree, copy cover images from
+   * the flac tree into the mp3 tree, and convert flac files into mp3 files.
+   * The tree is walked depth-first on the calling thread and the
+   * synchronisation stops on the first failure.
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null in which case the default configuration is
+   *          used.
+   * @param musicTreeConfiguration the music tree configuration
+   * @param directoryToSync the directory to sync
+   * @param simulate true to simulate synchronisation/mirroring
+   * @param filter the filter to use (created from the extensions to accept as
+   *          flac files in the flac tree and from the additional file names to
+   *          accept in the flac tree
+   * @param syncState the sync state. When null then all directories are
+   *          synchronised, otherwise unchanged directories are skipped and the
+   *          state of successfully synchronised directories is recorded.
+   * @param moveDetector the move detector. When not null then the removal of
+   *          directories and mp3 files, the conversion of flac files and the
+   *          recording of the sync state are deferred to it.
+   * @return true on success
+   */
+  boolean syncFlac2Mp3(Flac2Mp3Configuration flac2Mp3Configuration, MusicTreeConfiguration musicTreeConfiguration,
+      File directoryToSync, boolean simulate, FlacTreeFilenameFilter filter, SyncState syncState,
+      MoveDetector moveDetector) {
+    assert (musicTreeConfiguration != null);
+    assert (musicTreeConfiguration.validate(false) == null);
+    assert (directoryToSync != null);
+    assert (FileUtils.isFileBelowDirectory(musicTreeConfiguration.getFlacBaseDir(), directoryToSync, true));
+    assert (filter != null);
+
+    String syncStatePath = null;
+    long lastModified = directoryToSync.lastModified();
+    if (syncState != null) {
+      File mp3Dir = MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, directoryToSync);
+      syncStatePath = getSyncStatePath(musicTreeConfiguration, mp3Dir);
+      List<String> directories =
+          getUnchangedDirectories(musicTreeConfiguration, syncState, syncStatePath, directoryToSync);
+      if (directories != null) {
+        /* unchanged, only recurse into directories */
+        for (String directory : directories) {
+          if (!syncFlac2Mp3(flac2Mp3Configuration, musicTreeConfiguration, new File(directoryToSync, directory),
+              simulate, filter, syncState, moveDetector)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      syncState.remove(syncStatePath);
+    }
+
+    DirectoryListing listing =
+        listAndClean(musicTreeConfiguration, directoryToSync, simulate, filter, moveDetector, null);
+    if (listing == null) {
+      return true;
+    }
+
+    FileListSplit flacDirListSplit = listing.flacDirListSplit;
+    FileListSplit mp3DirListSplit = listing.mp3DirListSplit;
 
     /*
      * Recurse into directories
@@ -357,22 +831,651 @@ public class SyncerImpl implements Syncer {
 
     for (String directory : flacDirListSplit.directories) {
       if (!syncFlac2Mp3(flac2Mp3Configuration, musicTreeConfiguration, new File(flacDirListSplit.directory, directory),
-          simulate, filter)) {
+          simulate, filter, syncState, moveDetector)) {
         return false;
       }
     }
 
-    /* Early exit when we have no flac files */
-    if (flacDirListSplit.musicFiles.isEmpty()) {
+    /* Copy covers (if needed and only when we have flac files) */
+    copyCovers(listing, simulate);
+
+    /* defer the conversion of flac files */
+    if (moveDetector != null) {
+      MoveDetector.DirectoryConversions directoryConversions =
+          new MoveDetector.DirectoryConversions(syncStatePath, lastModified, flacDirListSplit,
+              getMp3Dirs(musicTreeConfiguration, directoryToSync));
+      convertFlacFiles(flac2Mp3Configuration, directoryToSync, flacDirListSplit.musicFilesWithoutExtensions,
+          flacDirListSplit.musicFiles, mp3DirListSplit.directory, mp3DirListSplit.musicFilesWithoutExtensions,
+          simulate, null, directoryConversions.conversions, flacDirListSplit.musicFileEntries,
+          mp3DirListSplit.musicFileEntries);
+      moveDetector.directories.add(directoryConversions);
       return true;
     }
 
-    /* Copy covers (if needed and only when we have flac files) */
-    copyCovers(flacDirListSplit.directory, flacDirListSplit.covers, mp3DirListSplit.directory, simulate);
-
     /* convert flac files */
-    return convertFlacFiles(flac2Mp3Configuration, directoryToSync, flacDirListSplit.musicFilesWithoutExtensions,
-        flacDirListSplit.musicFiles, mp3Dir, mp3DirListSplit.musicFilesWithoutExtensions, simulate);
+    if (!convertFlacFiles(flac2Mp3Configuration, listing, simulate, null)) {
+      return false;
+    }
+
+    if (syncState != null) {
+      syncState.update(syncStatePath, lastModified, flacDirListSplit,
+          getMp3Dirs(musicTreeConfiguration, directoryToSync));
+    }
+
+    return true;
+  }
+
+  /**
+   * A fork/join task that synchronises a directory of the flac tree: sibling
+   * directories are synchronised by parallel (sub-)tasks and conversions are
+   * submitted to the (bounded) executor of the converter. All directories and
+   * files are processed, failures do not stop the synchronisation.
+   */
+  class SyncTask extends RecursiveTask<Boolean> {
+    private static final long serialVersionUID = -3640465316307474541L;
+
+    /** the configuration for the flac-to-mp3 conversion */
+    private final Flac2Mp3Configuration flac2Mp3Configuration;
+
+    /** the music tree configuration */
+    private final MusicTreeConfiguration musicTreeConfiguration;
+
+    /** the directory to sync */
+    private final File directoryToSync;
+
+    /** true to simulate synchronisation/mirroring */
+    private final boolean simulate;
+
+    /** the filter to use */
+    private final FlacTreeFilenameFilter filter;
+
+    /** the sync state (may be null) */
+    private final SyncState syncState;
+
+    /** the move detector (may be null) */
+    private final MoveDetector moveDetector;
+
+    /**
+     * Constructor
+     * 
+     * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+     *          conversion. May be null in which case the default configuration
+     *          is used.
+     * @param musicTreeConfiguration the music tree configuration
+     * @param directoryToSync the directory to sync
+     * @param simulate true to simulate synchronisation/mirroring
+     * @param filter the filter to use
+     * @param syncState the sync state (may be null)
+     * @param moveDetector the move detector (may be null)
+     */
+    SyncTask(Flac2Mp3Configuration flac2Mp3Configuration, MusicTreeConfiguration musicTreeConfiguration,
+        File directoryToSync, boolean simulate, FlacTreeFilenameFilter filter, SyncState syncState,
+        MoveDetector moveDetector) {
+      super();
+      this.flac2Mp3Configuration = flac2Mp3Configuration;
+      this.musicTreeConfiguration = musicTreeConfiguration;
+      this.directoryToSync = directoryToSync;
+      this.simulate = simulate;
+      this.filter = filter;
+      this.syncState = syncState;
+      this.moveDetector = moveDetector;
+    }
+
+    /**
+     * Fork a task for every directory
+     * 
+     * @param parent the parent directory
+     * @param directories the directories in the parent directory
+     * @return the forked tasks
+     */
+    private List<SyncTask> forkDirectories(File parent, List<String> directories) {
+      List<SyncTask> subTasks = new LinkedList<>();
+      for (String directory : directories) {
+        SyncTask subTask =
+            new SyncTask(flac2Mp3Configuration, musicTreeConfiguration, new File(parent, directory), simulate, filter,
+                syncState, moveDetector);
+        subTask.fork();
+        subTasks.add(subTask);
+      }
+      return subTasks;
+    }
+
+    @Override
+    protected Boolean compute() {
+      String syncStatePath = null;
+      long lastModified = directoryToSync.lastModified();
+      if (syncState != null) {
+        File mp3Dir = MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, directoryToSync);
+        syncStatePath = getSyncStatePath(musicTreeConfiguration, mp3Dir);
+        List<String> directories =
+            getUnchangedDirectories(musicTreeConfiguration, syncState, syncStatePath, directoryToSync);
+        if (directories != null) {
+          /* unchanged, only recurse into directories */
+          boolean result = true;
+          for (SyncTask subTask : forkDirectories(directoryToSync, directories)) {
+            result = subTask.join().booleanValue() && result;
+          }
+          return Boolean.valueOf(result);
+        }
+        syncState.remove(syncStatePath);
+      }
+
+      DirectoryListing listing =
+          listAndClean(musicTreeConfiguration, directoryToSync, simulate, filter, moveDetector, null);
+      if (listing == null) {
+        return Boolean.TRUE;
+      }
+
+      FileListSplit flacDirListSplit = listing.flacDirListSplit;
+      FileListSplit mp3DirListSplit = listing.mp3DirListSplit;
+
+      /* fork the sub-directories */
+      List<SyncTask> subTasks = forkDirectories(flacDirListSplit.directory, flacDirListSplit.directories);
+
+      boolean result = true;
+
+      /* submit the conversions of the flac files in this directory */
+      List<CompletableFuture<Boolean>> conversions = new LinkedList<>();
+      if (moveDetector != null) {
+        /* defer the conversions */
+        if (!flacDirListSplit.musicFiles.isEmpty()) {
+          copyCovers(flacDirListSplit.directory, flacDirListSplit.covers, mp3DirListSplit.directory, simulate);
+        }
+
+        MoveDetector.DirectoryConversions directoryConversions =
+            new MoveDetector.DirectoryConversions(syncStatePath, lastModified, flacDirListSplit,
+                getMp3Dirs(musicTreeConfiguration, directoryToSync));
+        convertFlacFiles(flac2Mp3Configuration, directoryToSync, flacDirListSplit.musicFilesWithoutExtensions,
+            flacDirListSplit.musicFiles, mp3DirListSplit.directory, mp3DirListSplit.musicFilesWithoutExtensions,
+            simulate, null, directoryConversions.conversions, flacDirListSplit.musicFileEntries,
+            mp3DirListSplit.musicFileEntries);
+        moveDetector.directories.add(directoryConversions);
+      } else if (!flacDirListSplit.musicFiles.isEmpty()) {
+        copyCovers(listing, simulate);
+
+        result = convertFlacFiles(flac2Mp3Configuration, listing, simulate, conversions);
+      }
+
+      /* aggregate the results */
+      for (CompletableFuture<Boolean> conversion : conversions) {
+        try {
+          result = conversion.join().booleanValue() && result;
+        }
+        catch (CompletionException | CancellationException e) {
+          logger.log(Level.SEVERE, Messages.getString("SyncerImpl.5"), e.getCause()); //$NON-NLS-1$
+          result = false;
+        }
+      }
+
+      if (result && (syncState != null) && (moveDetector == null)) {
+        syncState.update(syncStatePath, lastModified, flacDirListSplit,
+            getMp3Dirs(musicTreeConfiguration, directoryToSync));
+      }
+
+      for (SyncTask subTask : subTasks) {
+        result = subTask.join().booleanValue() && result;
+      }
+
+      return Boolean.valueOf(result);
+    }
+  }
+
+  /**
+   * Synchronise/Mirror a tree of flac files into a tree of mp3 files, like
+   * {@link #syncFlac2Mp3(Flac2Mp3Configuration, MusicTreeConfiguration, File, boolean, FlacTreeFilenameFilter, SyncState, MoveDetector)}
+   * , but walks the tree with a fork/join pool of the specified parallelism.
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null in which case the default configuration is
+   *          used.
+   * @param musicTreeConfiguration the music tree configuration
+   * @param directoryToSync the directory to sync
+   * @param simulate true to simulate synchronisation/mirroring
+   * @param filter the filter to use
+   * @param syncState the sync state (may be null)
+   * @param moveDetector the move detector (may be null)
+   * @param parallelism the number of directories to process in parallel
+   * @return true when all directories and files were synchronised successfully
+   */
+  boolean syncFlac2Mp3Parallel(Flac2Mp3Configuration flac2Mp3Configuration,
+      MusicTreeConfiguration musicTreeConfiguration, File directoryToSync, boolean simulate,
+      FlacTreeFilenameFilter filter, SyncState syncState, MoveDetector moveDetector, int parallelism) {
+    assert (musicTreeConfiguration != null);
+    assert (musicTreeConfiguration.validate(false) == null);
+    assert (directoryToSync != null);
+    assert (FileUtils.isFileBelowDirectory(musicTreeConfiguration.getFlacBaseDir(), directoryToSync, true));
+    assert (filter != null);
+    assert (parallelism > 0);
+
+    ForkJoinPool walker = new ForkJoinPool(parallelism);
+    try {
+      return walker.invoke(
+          new SyncTask(flac2Mp3Configuration, musicTreeConfiguration, directoryToSync, simulate, filter, syncState,
+              moveDetector)).booleanValue();
+    }
+    finally {
+      walker.shutdown();
+    }
+  }
+
+  /**
+   * Move an existing mp3 file (that is to be removed) into place, instead of
+   * converting its flac file again. Automatically creates the target directory
+   * when needed.
+   * 
+   * @param source the existing mp3 file
+   * @param mp3 the mp3 file
+   * @param simulate true to simulate moving
+   * @return true when successful
+   */
+  boolean moveMp3File(File source, File mp3, boolean simulate) {
+    /* get the shell script listener */
+    ShellScriptListener listener = shellScriptListener.get();
+
+    File mp3Dir = mp3.getParentFile();
+    if (listener != null) {
+      listener.addMessage(String.format(Messages.getString("SyncerImpl.8"), source.getPath(), mp3.getPath())); //$NON-NLS-1$
+      if (!mp3Dir.exists()) {
+        listener.addCommand(String.format("mkdir -p \"%s\"", StringUtils.escQuote(mp3Dir.getPath()))); //$NON-NLS-1$
+      }
+      listener.addCommand(String.format("mv -f \"%s\" \\%n      \"%s\"", //$NON-NLS-1$
+          StringUtils.escQuote(source.getPath()), StringUtils.escQuote(mp3.getPath())));
+    }
+
+    if (simulate) {
+      return true;
+    }
+
+    try {
+      DirUtils.mkdir(mp3Dir);
+      Files.move(source.toPath(), mp3.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("SyncerImpl.9"), source.getPath(), mp3.getPath()), e); //$NON-NLS-1$
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Duplicate the mp3 file that was converted from the same audio, instead of
+   * converting the audio again. The mp3 file is hard-linked when both flac
+   * files are the same file (and thus have the same tag) and copied otherwise.
+   * Automatically creates the target directory when needed.
+   * 
+   * @param original the conversion of the same audio
+   * @param duplicate the conversion to duplicate the mp3 file for
+   * @param simulate true to simulate duplication
+   * @return true when the mp3 file was hard-linked (it then doesn't have to be
+   *         converted anymore), false otherwise
+   */
+  boolean duplicateMp3File(MoveDetector.Conversion original, MoveDetector.Conversion duplicate, boolean simulate) {
+    boolean link;
+    try {
+      link = Files.isSameFile(original.flac.toPath(), duplicate.flac.toPath());
+    }
+    catch (IOException e) {
+      /* can't be covered by a test */
+      link = false;
+    }
+
+    /* get the shell script listener */
+    ShellScriptListener listener = shellScriptListener.get();
+
+    File mp3Dir = duplicate.mp3.getParentFile();
+    if (listener != null) {
+      listener.addMessage(String.format(Messages.getString(link ? "SyncerImpl.10" : "SyncerImpl.11"), //$NON-NLS-1$ //$NON-NLS-2$
+          original.mp3.getPath(), duplicate.mp3.getPath()));
+      if (!mp3Dir.exists()) {
+        listener.addCommand(String.format("mkdir -p \"%s\"", StringUtils.escQuote(mp3Dir.getPath()))); //$NON-NLS-1$
+      }
+      listener.addCommand(String.format("%s \"%s\" \\%n      \"%s\"", link ? "ln -f" : "cp -f", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+          StringUtils.escQuote(original.mp3.getPath()), StringUtils.escQuote(duplicate.mp3.getPath())));
+    }
+
+    if (simulate) {
+      return link;
+    }
+
+    try {
+      DirUtils.mkdir(mp3Dir);
+      if (link) {
+        Files.deleteIfExists(duplicate.mp3.toPath());
+        Files.createLink(duplicate.mp3.toPath(), original.mp3.toPath());
+      } else {
+        Files.copy(original.mp3.toPath(), duplicate.mp3.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException | UnsupportedOperationException e) {
+      logger.log(Level.WARNING,
+          String.format(Messages.getString("SyncerImpl.12"), original.mp3.getPath(), duplicate.mp3.getPath()), e); //$NON-NLS-1$
+      return false;
+    }
+
+    return link;
+  }
+
+  /**
+   * Get the result of a (deferred) conversion, waiting for it when needed
+   * 
+   * @param conversion the conversion
+   * @return true when the conversion was successful
+   */
+  boolean getResult(MoveDetector.Conversion conversion) {
+    try {
+      return conversion.result.join().booleanValue();
+    }
+    catch (CompletionException | CancellationException e) {
+      logger.log(Level.SEVERE, Messages.getString("SyncerImpl.5"), e.getCause()); //$NON-NLS-1$
+      return false;
+    }
+  }
+
+  /**
+   * <p>
+   * Perform the conversions and removals that were deferred to a move
+   * detector.
+   * </p>
+   * <p>
+   * Flac files of which the audio is also in an mp3 file that is to be removed
+   * get that mp3 file moved into place, after which the conversion only
+   * updates its tag and timestamp. Flac files with the same audio as another
+   * flac file get the mp3 file of that other flac file duplicated. All other
+   * flac files are converted normally.
+   * </p>
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null in which case the default configuration is
+   *          used.
+   * @param moveDetector the move detector
+   * @param simulate true to simulate synchronisation/mirroring
+   * @param syncState the sync state (may be null)
+   * @return true when all conversions were successful
+   */
+  boolean convertDeferred(Flac2Mp3Configuration flac2Mp3Configuration, MoveDetector moveDetector, boolean simulate,
+      SyncState syncState) {
+    moveDetector.match(flacToMp3);
+
+    /* first convert (or move) the audio that isn't duplicated */
+    for (MoveDetector.DirectoryConversions directory : moveDetector.directories) {
+      for (MoveDetector.Conversion conversion : directory.conversions) {
+        if (conversion.original != null) {
+          continue;
+        }
+
+        if (conversion.source != null) {
+          moveMp3File(conversion.source, conversion.mp3, simulate);
+        }
+        conversion.result = flacToMp3.convertAsync(flac2Mp3Configuration, conversion.flac, conversion.mp3, simulate);
+      }
+    }
+
+    /* then duplicate the converted audio */
+    for (MoveDetector.DirectoryConversions directory : moveDetector.directories) {
+      for (MoveDetector.Conversion conversion : directory.conversions) {
+        if (conversion.original == null) {
+          continue;
+        }
+
+        if (getResult(conversion.original) && duplicateMp3File(conversion.original, conversion, simulate)) {
+          conversion.result = CompletableFuture.completedFuture(Boolean.TRUE);
+        } else {
+          conversion.result =
+              flacToMp3.convertAsync(flac2Mp3Configuration, conversion.flac, conversion.mp3, simulate);
+        }
+      }
+    }
+
+    /* aggregate the results */
+    boolean result = true;
+    for (MoveDetector.DirectoryConversions directory : moveDetector.directories) {
+      boolean directoryResult = true;
+      for (MoveDetector.Conversion conversion : directory.conversions) {
+        directoryResult = getResult(conversion) && directoryResult;
+      }
+
+      if (directoryResult && (syncState != null)) {
+        syncState.update(directory.syncStatePath, directory.lastModified, directory.flacDirListSplit,
+            directory.mp3Dirs);
+      }
+      result = result && directoryResult;
+    }
+
+    /* remove what is left of the mp3 files and directories that are to be removed */
+    for (File removal : moveDetector.removals) {
+      removeFromMp3Dir(removal.getParentFile(), Collections.singletonList(removal.getName()), null, null, simulate);
+    }
+
+    return result;
+  }
+
+  /**
+   * Determine whether a cover must be copied: when the cover doesn't exist in
+   * the mp3 directory or when the cover in the flac directory is newer.
+   * 
+   * @param flacCoverFile the cover in the flac directory
+   * @param mp3CoverFile the cover in the mp3 directory
+   * @return true when the cover must be copied
+   */
+  static boolean isCoverCopyNeeded(File flacCoverFile, File mp3CoverFile) {
+    return !mp3CoverFile.exists() || (flacCoverFile.lastModified() > mp3CoverFile.lastModified());
+  }
+
+  /**
+   * Plan the synchronisation of a directory of the flac tree (recursively),
+   * without changing anything. The removals, directory creations, cover copies
+   * and conversions that are needed are added to the plan.
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null in which case the default configuration is
+   *          used.
+   * @param musicTreeConfiguration the music tree configuration
+   * @param directoryToSync the directory to sync
+   * @param filter the filter to use
+   * @param syncState the sync state. When null then all directories are
+   *          planned, otherwise unchanged directories are skipped.
+   * @param plan the plan to add to
+   */
+  void plan(Flac2Mp3Configuration flac2Mp3Configuration, MusicTreeConfiguration musicTreeConfiguration,
+      File directoryToSync, FlacTreeFilenameFilter filter, SyncState syncState, SyncPlan plan) {
+    String syncStatePath = null;
+    long lastModified = directoryToSync.lastModified();
+    if (syncState != null) {
+      File mp3Dir = MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, directoryToSync);
+      syncStatePath = getSyncStatePath(musicTreeConfiguration, mp3Dir);
+      List<String> directories =
+          getUnchangedDirectories(musicTreeConfiguration, syncState, syncStatePath, directoryToSync);
+      if (directories != null) {
+        /* unchanged, only recurse into directories */
+        for (String directory : directories) {
+          plan(flac2Mp3Configuration, musicTreeConfiguration, new File(directoryToSync, directory), filter, syncState,
+              plan);
+        }
+        return;
+      }
+      syncState.remove(syncStatePath);
+    }
+
+    List<File> removals = new LinkedList<>();
+    DirectoryListing listing =
+        listAndClean(musicTreeConfiguration, directoryToSync, true, filter, null, removals);
+    if (listing == null) {
+      return;
+    }
+
+    FileListSplit flacDirListSplit = listing.flacDirListSplit;
+    File mp3Dir = listing.mp3DirListSplit.directory;
+
+    SyncPlan.Directory directory =
+        new SyncPlan.Directory(syncStatePath, lastModified, flacDirListSplit, getMp3Dirs(musicTreeConfiguration,
+            directoryToSync));
+    plan.directories.add(directory);
+
+    for (File removal : removals) {
+      plan.add(directory, SyncPlan.StepType.DELETE, null, removal, 0);
+    }
+
+    if (!flacDirListSplit.musicFiles.isEmpty()) {
+      List<File> covers = new LinkedList<>();
+      for (String cover : flacDirListSplit.covers) {
+        File flacCoverFile = new File(flacDirListSplit.directory, cover);
+        if (isCoverCopyNeeded(flacCoverFile, new File(mp3Dir, cover))) {
+          covers.add(flacCoverFile);
+        }
+      }
+
+      List<MoveDetector.Conversion> conversions = new LinkedList<>();
+      convertFlacFiles(flac2Mp3Configuration, directoryToSync, flacDirListSplit.musicFilesWithoutExtensions,
+          flacDirListSplit.musicFiles, mp3Dir, listing.mp3DirListSplit.musicFilesWithoutExtensions, true, null,
+          conversions, flacDirListSplit.musicFileEntries, listing.mp3DirListSplit.musicFileEntries);
+
+      if ((!covers.isEmpty() || !conversions.isEmpty()) && !mp3Dir.isDirectory()) {
+        plan.add(directory, SyncPlan.StepType.MKDIR, null, mp3Dir, 0);
+      }
+      for (File cover : covers) {
+        plan.add(directory, SyncPlan.StepType.COPY, cover, new File(mp3Dir, cover.getName()), cover.length());
+      }
+      for (MoveDetector.Conversion conversion : conversions) {
+        plan.add(directory, SyncPlan.StepType.CONVERT, conversion.flac, conversion.mp3, conversion.flac.length());
+      }
+    }
+
+    /* recurse into directories, so that a directory is created before its sub-directories */
+    for (String subDirectory : flacDirListSplit.directories) {
+      plan(flac2Mp3Configuration, musicTreeConfiguration, new File(flacDirListSplit.directory, subDirectory), filter,
+          syncState, plan);
+    }
+  }
+
+  /**
+   * Run a step of a sync plan
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null in which case the default configuration is
+   *          used.
+   * @param step the step
+   * @param simulate true to simulate the step
+   * @return a future that completes with true when the step was successful
+   */
+  CompletableFuture<Boolean> runStep(Flac2Mp3Configuration flac2Mp3Configuration, SyncPlan.Step step,
+      boolean simulate) {
+    switch (step.type) {
+      case DELETE:
+        removeFromMp3Dir(step.target.getParentFile(), Collections.singletonList(step.target.getName()), null, null,
+            simulate);
+        return CompletableFuture.completedFuture(Boolean.TRUE);
+
+      case MKDIR:
+        ShellScriptListener listener = shellScriptListener.get();
+        if (listener != null) {
+          listener.addCommand(String.format("mkdir -p \"%s\"", StringUtils.escQuote(step.target.getPath()))); //$NON-NLS-1$
+        }
+        if (!simulate) {
+          try {
+            if (!DirUtils.mkdir(step.target)) {
+              /* can't be covered by a test */
+              throw new IOException(step.target.getPath());
+            }
+          }
+          catch (IOException e) {
+            logger.log(Level.SEVERE, String.format(Messages.getString("SyncerImpl.13"), step.target.getPath()), e); //$NON-NLS-1$
+            return CompletableFuture.completedFuture(Boolean.FALSE);
+          }
+        }
+        return CompletableFuture.completedFuture(Boolean.TRUE);
+
+      case COPY:
+        copyCovers(step.source.getParentFile(), Collections.singletonList(step.source.getName()),
+            step.target.getParentFile(), simulate);
+        return CompletableFuture.completedFuture(Boolean.TRUE);
+
+      case CONVERT:
+      default:
+        return flacToMp3.convertAsync(flac2Mp3Configuration, step.source, step.target, simulate);
+    }
+  }
+
+  /**
+   * Execute a sync plan and record the sync state of the directories of which
+   * all steps were successful
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null in which case the default configuration is
+   *          used.
+   * @param plan the plan
+   * @param simulate true to simulate synchronisation/mirroring
+   * @param syncState the sync state (may be null)
+   * @return true when all steps were successful
+   */
+  boolean execute(final Flac2Mp3Configuration flac2Mp3Configuration, SyncPlan plan, final boolean simulate,
+      SyncState syncState) {
+    SyncPlanExecutor executor = new SyncPlanExecutor(plan) {
+      @Override
+      CompletableFuture<Boolean> runStep(SyncPlan.Step step) {
+        return SyncerImpl.this.runStep(flac2Mp3Configuration, step, simulate);
+      }
+
+      @Override
+      void reportProgress(String message) {
+        ShellScriptListener listener = shellScriptListener.get();
+        if (listener != null) {
+          listener.addVerboseMessage(message);
+        }
+      }
+    };
+
+    boolean result = executor.execute();
+
+    if (syncState != null) {
+      for (SyncPlan.Directory directory : plan.directories) {
+        boolean directoryResult = true;
+        for (SyncPlan.Step step : directory.steps) {
+          directoryResult = directoryResult && step.result.join().booleanValue();
+        }
+        if (directoryResult) {
+          syncState.update(directory.syncStatePath, directory.lastModified, directory.flacDirListSplit,
+              directory.mp3Dirs);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Synchronise/Mirror a tree of flac files into a tree of mp3 files in two
+   * phases: first plan all steps, then execute the plan. When the music tree
+   * configuration has a plan file then the plan is written to it, in which
+   * case a simulation only writes the plan.
+   * 
+   * @param flac2Mp3Configuration the configuration for the flac-to-mp3
+   *          conversion. May be null in which case the default configuration is
+   *          used.
+   * @param musicTreeConfiguration the music tree configuration
+   * @param directoryToSync the directory to sync
+   * @param simulate true to simulate synchronisation/mirroring
+   * @param filter the filter to use
+   * @param syncState the sync state (may be null)
+   * @return true when all steps were successful
+   */
+  boolean syncFlac2Mp3Planned(Flac2Mp3Configuration flac2Mp3Configuration,
+      MusicTreeConfiguration musicTreeConfiguration, File directoryToSync, boolean simulate,
+      FlacTreeFilenameFilter filter, SyncState syncState) {
+    SyncPlan plan = new SyncPlan();
+    plan(flac2Mp3Configuration, musicTreeConfiguration, directoryToSync, filter, syncState, plan);
+
+    File planFile = musicTreeConfiguration.getPlanFile();
+    if (planFile != null) {
+      if (!plan.write(planFile)) {
+        return false;
+      }
+      if (simulate) {
+        return true;
+      }
+    }
+
+    return execute(flac2Mp3Configuration, plan, simulate, syncState);
   }
 
   @Override
@@ -392,7 +1495,41 @@ public class SyncerImpl implements Syncer {
       return false;
     }
 
-    return syncFlac2Mp3(flac2Mp3Configuration, musicTreeConfiguration, directoryToSyncInternal, simulate,
-        new FlacTreeFilenameFilter(extensionsList, fileNamesList, true));
+    FlacTreeFilenameFilter filter = new FlacTreeFilenameFilter(extensionsList, fileNamesList, true);
+
+    int concurrency =
+        (flac2Mp3Configuration == null) ? Flac2Mp3Configuration.DEFAULT_CONCURRENCY : flac2Mp3Configuration
+            .getConcurrency();
+    SyncState syncState = null;
+    if (musicTreeConfiguration.isIncremental()) {
+      syncState = new SyncState(musicTreeConfiguration.getMp3BaseDir());
+      syncState.load();
+    }
+    MoveDetector moveDetector = musicTreeConfiguration.isDetectMoves() ? new MoveDetector() : null;
+
+    boolean result;
+    if (musicTreeConfiguration.isPlanned()) {
+      result =
+          syncFlac2Mp3Planned(flac2Mp3Configuration, musicTreeConfiguration, directoryToSyncInternal, simulate,
+              filter, syncState);
+    } else if (concurrency > 1) {
+      result =
+          syncFlac2Mp3Parallel(flac2Mp3Configuration, musicTreeConfiguration, directoryToSyncInternal, simulate,
+              filter, syncState, moveDetector, concurrency);
+    } else {
+      result =
+          syncFlac2Mp3(flac2Mp3Configuration, musicTreeConfiguration, directoryToSyncInternal, simulate, filter,
+              syncState, moveDetector);
+    }
+
+    if (moveDetector != null) {
+      result = convertDeferred(flac2Mp3Configuration, moveDetector, simulate, syncState) && result;
+    }
+
+    if ((syncState != null) && !simulate) {
+      syncState.save();
+    }
+
+    return result;
   }
 }
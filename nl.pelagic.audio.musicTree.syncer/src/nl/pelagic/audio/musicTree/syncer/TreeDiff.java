@@ -0,0 +1,212 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * The difference between the entries of a source directory (the flac
+ * directory) and those of a target directory (the mp3 directory), determined
+ * by a merge-join of the sorted entries: linear in the number of entries when
+ * the entries are already sorted (as those of a {@link FileListSplit} usually
+ * are), n log(n) otherwise.
+ * </p>
+ * <p>
+ * The entries are classified as:
+ * <ul>
+ * <li>added: source entries that are not in the target entries</li>
+ * <li>updated: source entries that are also in the target entries, but of
+ * which the target entry is out of date</li>
+ * <li>deleted: target entries that are not in the source entries</li>
+ * </ul>
+ * Entries are indices into the source or target entries, in ascending order.
+ * Entries with the same name (which can occur when the names are stripped of
+ * their extensions) are matched all together.
+ * </p>
+ */
+class TreeDiff {
+  /** an empty set of indices */
+  private static final int[] NONE = new int[0];
+
+  /**
+   * Determines whether the target entry of an entry that is in both the source
+   * and target entries is out of date
+   */
+  interface UpdateCheck {
+    /**
+     * @param sourceIndex the index of the source entry
+     * @param targetIndex the index of the target entry
+     * @return true when the target entry is out of date
+     */
+    boolean isUpdateNeeded(int sourceIndex, int targetIndex);
+  }
+
+  /** the indices of the source entries that are not in the target entries */
+  final int[] added;
+
+  /** the indices of the source entries of which the target entry is out of date */
+  final int[] updated;
+
+  /** the indices of the target entries that are not in the source entries */
+  final int[] deleted;
+
+  /**
+   * Constructor
+   *
+   * @param added the indices of the added source entries
+   * @param updated the indices of the updated source entries
+   * @param deleted the indices of the deleted target entries
+   */
+  private TreeDiff(int[] added, int[] updated, int[] deleted) {
+    super();
+    this.added = added;
+    this.updated = updated;
+    this.deleted = deleted;
+  }
+
+  /**
+   * @return the indices of the added and updated source entries, in ascending
+   *         order
+   */
+  int[] getChanged() {
+    int[] changed = new int[added.length + updated.length];
+    int a = 0;
+    int u = 0;
+    int c = 0;
+    while ((a < added.length) && (u < updated.length)) {
+      changed[c++] = (added[a] < updated[u]) ? added[a++] : updated[u++];
+    }
+    while (a < added.length) {
+      changed[c++] = added[a++];
+    }
+    while (u < updated.length) {
+      changed[c++] = updated[u++];
+    }
+    return changed;
+  }
+
+  /**
+   * @param entries the entries
+   * @return the entries as an array
+   */
+  private static String[] toArray(List<String> entries) {
+    if (entries == null) {
+      return new String[0];
+    }
+    return entries.toArray(new String[entries.size()]);
+  }
+
+  /**
+   * @param entries the entries
+   * @return the indices of the entries in the sorted order of the entries
+   */
+  static int[] sortedOrder(final String[] entries) {
+    boolean sorted = true;
+    for (int i = 1; (i < entries.length) && sorted; i++) {
+      sorted = entries[i - 1].compareTo(entries[i]) <= 0;
+    }
+
+    int[] order = new int[entries.length];
+    if (sorted) {
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      return order;
+    }
+
+    Integer[] boxed = new Integer[entries.length];
+    for (int i = 0; i < boxed.length; i++) {
+      boxed[i] = Integer.valueOf(i);
+    }
+    Arrays.sort(boxed, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return entries[o1.intValue()].compareTo(entries[o2.intValue()]);
+      }
+    });
+    for (int i = 0; i < order.length; i++) {
+      order[i] = boxed[i].intValue();
+    }
+    return order;
+  }
+
+  /**
+   * Determine the difference between source and target entries
+   *
+   * @param sourceEntries the source entries, null means 'no entries'
+   * @param targetEntries the target entries, null means 'no entries'
+   * @param updateCheck the check for out of date target entries. When null
+   *          then no entries are updated.
+   * @return the difference
+   */
+  static TreeDiff diff(List<String> sourceEntries, List<String> targetEntries, UpdateCheck updateCheck) {
+    String[] sources = toArray(sourceEntries);
+    String[] targets = toArray(targetEntries);
+    int[] sourceOrder = sortedOrder(sources);
+    int[] targetOrder = sortedOrder(targets);
+
+    int[] added = new int[sources.length];
+    int[] updated = new int[sources.length];
+    int[] deleted = new int[targets.length];
+    int addedCount = 0;
+    int updatedCount = 0;
+    int deletedCount = 0;
+
+    int s = 0;
+    int t = 0;
+    while ((s < sources.length) && (t < targets.length)) {
+      int sourceIndex = sourceOrder[s];
+      int targetIndex = targetOrder[t];
+      int comparison = sources[sourceIndex].compareTo(targets[targetIndex]);
+      if (comparison < 0) {
+        added[addedCount++] = sourceIndex;
+        s++;
+      } else if (comparison > 0) {
+        deleted[deletedCount++] = targetIndex;
+        t++;
+      } else {
+        /* match all source and target entries with the same name */
+        String entry = sources[sourceIndex];
+        do {
+          if ((updateCheck != null) && updateCheck.isUpdateNeeded(sourceOrder[s], targetIndex)) {
+            updated[updatedCount++] = sourceOrder[s];
+          }
+          s++;
+        } while ((s < sources.length) && entry.equals(sources[sourceOrder[s]]));
+        do {
+          t++;
+        } while ((t < targets.length) && entry.equals(targets[targetOrder[t]]));
+      }
+    }
+    while (s < sources.length) {
+      added[addedCount++] = sourceOrder[s++];
+    }
+    while (t < targets.length) {
+      deleted[deletedCount++] = targetOrder[t++];
+    }
+
+    return new TreeDiff(ascending(added, addedCount), ascending(updated, updatedCount),
+        ascending(deleted, deletedCount));
+  }
+
+  /**
+   * @param indices the indices
+   * @param count the number of valid indices
+   * @return the valid indices, in ascending order
+   */
+  private static int[] ascending(int[] indices, int count) {
+    if (count == 0) {
+      return NONE;
+    }
+    int[] result = (count == indices.length) ? indices : Arrays.copyOf(indices, count);
+    for (int i = 1; i < result.length; i++) {
+      if (result[i - 1] > result[i]) {
+        /* the entries were not sorted */
+        Arrays.sort(result);
+        break;
+      }
+    }
+    return result;
+  }
+}
@@ -9,6 +9,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
+import nl.pelagic.util.file.DirectoryEntry;
 
 import org.junit.Test;
 
@@ -57,7 +58,7 @@ public class TestFileListSplit {
   public void testFileListSplit_DirWithZeroFiles() {
     File dir = new File(".");
 
-    FileListSplit fileListSplit = new FileListSplit(dir, new String[0], null);
+    FileListSplit fileListSplit = new FileListSplit(dir, new DirectoryEntry[0], null);
 
     int musicFilesCount = 0;
     assertThat(fileListSplit.directory, equalTo(dir));
@@ -75,7 +76,7 @@ public class TestFileListSplit {
   public void testFileListSplit_DirWithSingleNullFile() {
     File dir = new File(".");
 
-    FileListSplit fileListSplit = new FileListSplit(dir, new String[1], null);
+    FileListSplit fileListSplit = new FileListSplit(dir, new DirectoryEntry[1], null);
 
     int musicFilesCount = 0;
     assertThat(fileListSplit.directory, equalTo(dir));
@@ -91,7 +92,8 @@ public class TestFileListSplit {
 
   @Test
   public void testFileListSplit_NoExtension() {
-    FileListSplit fileListSplit = new FileListSplit(testDirFileListSplit, testDirFileListSplit.list(), null);
+    FileListSplit fileListSplit =
+        new FileListSplit(testDirFileListSplit, DirectoryEntry.list(testDirFileListSplit, null), null);
 
     int directoriesCount = 2;
     int musicFilesCount = 0;
@@ -137,7 +139,8 @@ public class TestFileListSplit {
   @Test
   public void testFileListSplit_Normal() {
     FileListSplit fileListSplit =
-        new FileListSplit(testDirFileListSplit, testDirFileListSplit.list(), MusicTreeConstants.FLACEXTENSION);
+        new FileListSplit(testDirFileListSplit, DirectoryEntry.list(testDirFileListSplit, null),
+            MusicTreeConstants.FLACEXTENSION);
 
     int directoriesCount = 2;
     int musicFilesCount = 2;
@@ -182,5 +185,17 @@ public class TestFileListSplit {
     assertThat(fileListSplit.musicFilesExtensions, equalTo(musicFilesExtensions));
     assertThat(fileListSplit.musicFilesWithoutExtensions, equalTo(musicFilesWithoutExtensions));
     assertThat(fileListSplit.otherFiles, equalTo(otherFiles));
+
+    assertThat(Integer.valueOf(fileListSplit.musicFileEntries.size()), equalTo(Integer.valueOf(musicFilesCount)));
+    for (int i = 0; i < musicFilesCount; i++) {
+      DirectoryEntry entry = fileListSplit.musicFileEntries.get(i);
+      File file = new File(testDirFileListSplit, musicFiles.get(i));
+      assertThat(entry.getFile(), equalTo(file));
+      assertThat(Long.valueOf(entry.length()), equalTo(Long.valueOf(file.length())));
+      assertThat(Long.valueOf(entry.lastModified()), equalTo(Long.valueOf(file.lastModified())));
+    }
+    assertThat(Integer.valueOf(fileListSplit.coverEntries.size()), equalTo(Integer.valueOf(coversCount)));
+    assertThat(fileListSplit.coverEntries.get(0).getFile(),
+        equalTo(new File(testDirFileListSplit, MusicTreeConstants.COVER)));
   }
 }
@@ -4,10 +4,14 @@ import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
+import nl.pelagic.util.file.DirectoryEntry;
 
 import org.junit.Test;
 
@@ -116,6 +120,29 @@ public class TestFlacTreeFilenameFilter {
     assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
   }
 
+  @Test
+  public void testAccept_DirectoryEntries() {
+    Set<String> extensions = new TreeSet<>();
+    extensions.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> filenames = new TreeSet<>();
+    filenames.add(MusicTreeConstants.COVER);
+    FlacTreeFilenameFilter filter = new FlacTreeFilenameFilter(extensions, filenames, true);
+
+    assertThat(Boolean.valueOf(filter.accept((DirectoryEntry) null)), equalTo(Boolean.FALSE));
+
+    DirectoryEntry[] entries = DirectoryEntry.list(testDirFileListSplit, filter);
+    List<String> accepted = new LinkedList<>();
+    for (DirectoryEntry entry : entries) {
+      accepted.add(entry.getName());
+    }
+    assertThat(accepted, equalTo(Arrays.asList("cover.jpg", "dummy1.flac", "dummy2.flac", "dummydir1",
+        "dummydir2")));
+
+    filter = new FlacTreeFilenameFilter(extensions, filenames, false);
+    entries = DirectoryEntry.list(testDirFileListSplit, filter);
+    assertThat(Integer.valueOf(entries.length), equalTo(Integer.valueOf(3)));
+  }
+
   @Test
   public void testAccept_Extensions() {
     boolean r;
@@ -0,0 +1,125 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.pelagic.audio.conversion.flac2mp3.testhelpers.MyFlacToMp3;
+import nl.pelagic.util.file.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls"
+})
+public class TestMoveDetector {
+  private static final File tmpTestBaseDir = new File("testresources/tmpTestBaseDir");
+
+  private File mp3Dir = new File(tmpTestBaseDir, "moveDetector");
+  private MyFlacToMp3 myFlacToMp3 = null;
+  private MoveDetector moveDetector = null;
+
+  @Before
+  public void setUp() {
+    mp3Dir.mkdirs();
+    myFlacToMp3 = new MyFlacToMp3();
+    moveDetector = new MoveDetector();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.delete(mp3Dir);
+    moveDetector = null;
+    myFlacToMp3 = null;
+  }
+
+  private static File createFile(File file) throws IOException {
+    file.getParentFile().mkdirs();
+    try (FileWriter fw = new FileWriter(file)) {
+      fw.write(file.getPath());
+    }
+    return file;
+  }
+
+  private MoveDetector.Conversion addConversion(String directory, String name) {
+    FileListSplit flacDirListSplit = new FileListSplit(new File(directory), null, null);
+    MoveDetector.DirectoryConversions directoryConversions =
+        new MoveDetector.DirectoryConversions(null, 0, flacDirListSplit, null);
+    MoveDetector.Conversion conversion =
+        new MoveDetector.Conversion(new File(directory, name + ".flac"), new File(mp3Dir, name + ".mp3"));
+    directoryConversions.conversions.add(conversion);
+    moveDetector.directories.add(directoryConversions);
+    return conversion;
+  }
+
+  @Test
+  public void testIndexMp3Files() throws IOException {
+    File mp3a = createFile(new File(mp3Dir, "a.mp3"));
+    File mp3b = createFile(new File(mp3Dir, "sub/b.mp3"));
+    createFile(new File(mp3Dir, "sub/c.mp3"));
+    createFile(new File(mp3Dir, "sub/cover.jpg"));
+    myFlacToMp3.audioMd5s.put("a.mp3", "md5-1");
+    myFlacToMp3.audioMd5s.put("b.mp3", "md5-1");
+    myFlacToMp3.audioMd5s.put("cover.jpg", "md5-2");
+
+    Map<String, Deque<File>> index = new HashMap<>();
+    MoveDetector.indexMp3Files(myFlacToMp3, new File(mp3Dir, "doesn't exist"), index);
+    assertThat(Integer.valueOf(index.size()), equalTo(Integer.valueOf(0)));
+
+    MoveDetector.indexMp3Files(myFlacToMp3, mp3a, index);
+    MoveDetector.indexMp3Files(myFlacToMp3, new File(mp3Dir, "sub"), index);
+    assertThat(Integer.valueOf(index.size()), equalTo(Integer.valueOf(1)));
+    assertThat(index.get("md5-1").toArray(), equalTo(new Object[] {
+        mp3a, mp3b
+    }));
+  }
+
+  @Test
+  public void testMatch() throws IOException {
+    File removedFile = createFile(new File(mp3Dir, "old/moved.mp3"));
+    moveDetector.removals.add(removedFile.getParentFile());
+    myFlacToMp3.audioMd5s.put("moved.mp3", "md5-1");
+    myFlacToMp3.audioMd5s.put("a.flac", "md5-1");
+    myFlacToMp3.audioMd5s.put("b.flac", "md5-1");
+    myFlacToMp3.audioMd5s.put("c.flac", "md5-2");
+    myFlacToMp3.audioMd5s.put("d.flac", "md5-2");
+
+    /* added in reverse order of the directories */
+    MoveDetector.Conversion e = addConversion("flac/3", "e");
+    MoveDetector.Conversion c = addConversion("flac/2", "c");
+    MoveDetector.Conversion d = addConversion("flac/2", "d");
+    MoveDetector.Conversion b = addConversion("flac/1", "b");
+    MoveDetector.Conversion a = addConversion("flac/0", "a");
+
+    moveDetector.match(myFlacToMp3);
+
+    assertThat(moveDetector.directories.get(0).conversions.get(0), sameInstance(a));
+
+    assertThat(a.audioMd5, equalTo("md5-1"));
+    assertThat(a.source, equalTo(removedFile));
+    assertThat(a.original, nullValue());
+
+    assertThat(b.source, nullValue());
+    assertThat(b.original, sameInstance(a));
+
+    assertThat(c.source, nullValue());
+    assertThat(c.original, nullValue());
+
+    assertThat(d.source, nullValue());
+    assertThat(d.original, sameInstance(c));
+
+    assertThat(e.audioMd5, nullValue());
+    assertThat(e.source, nullValue());
+    assertThat(e.original, nullValue());
+  }
+}
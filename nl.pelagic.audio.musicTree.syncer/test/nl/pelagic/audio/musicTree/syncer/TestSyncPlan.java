@@ -0,0 +1,135 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls", "static-method"
+})
+public class TestSyncPlan {
+  private static final File mp3Dir = new File("mp3");
+  private static final File flacDir = new File("flac");
+
+  private static SyncPlan createPlan() {
+    SyncPlan plan = new SyncPlan();
+    SyncPlan.Directory directory = new SyncPlan.Directory(null, 0, null, null);
+    plan.add(directory, SyncPlan.StepType.DELETE, null, new File(mp3Dir, "album/cd1"), 0);
+    plan.add(directory, SyncPlan.StepType.MKDIR, null, new File(mp3Dir, "album/cd1"), 0);
+    plan.add(directory, SyncPlan.StepType.MKDIR, null, new File(mp3Dir, "album/cd1/extra"), 0);
+    plan.add(directory, SyncPlan.StepType.COPY, new File(flacDir, "album/cd1/cover.jpg"), new File(mp3Dir,
+        "album/cd1/cover.jpg"), 10);
+    plan.add(directory, SyncPlan.StepType.CONVERT, new File(flacDir, "album/cd1/01 space.flac"), new File(mp3Dir,
+        "album/cd1/01 space.mp3"), 1000);
+    plan.add(directory, SyncPlan.StepType.CONVERT, new File(flacDir, "other/01.flac"),
+        new File(mp3Dir, "other/01.mp3"), 2000);
+    return plan;
+  }
+
+  @Test
+  public void testAdd_Dependencies() {
+    SyncPlan plan = createPlan();
+
+    SyncPlan.Step delete = plan.steps.get(0);
+    SyncPlan.Step mkdir = plan.steps.get(1);
+    SyncPlan.Step mkdirExtra = plan.steps.get(2);
+    SyncPlan.Step copy = plan.steps.get(3);
+    SyncPlan.Step convert = plan.steps.get(4);
+    SyncPlan.Step convertOther = plan.steps.get(5);
+
+    assertThat(delete.dependencies, equalTo(Arrays.<SyncPlan.Step> asList()));
+    assertThat(mkdir.dependencies, equalTo(Arrays.asList(delete)));
+    assertThat(mkdirExtra.dependencies, equalTo(Arrays.asList(mkdir)));
+    assertThat(copy.dependencies, equalTo(Arrays.asList(mkdir)));
+    assertThat(convert.dependencies, equalTo(Arrays.asList(mkdir)));
+    assertThat(convertOther.dependencies, equalTo(Arrays.<SyncPlan.Step> asList()));
+
+    assertThat(delete.dependents, equalTo(Arrays.asList(mkdir)));
+    assertThat(mkdir.dependents, equalTo(Arrays.asList(mkdirExtra, copy, convert)));
+
+    assertThat(Long.valueOf(plan.getTotalSize()), equalTo(Long.valueOf(3010)));
+    assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.DELETE)), equalTo(Integer.valueOf(1)));
+    assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.MKDIR)), equalTo(Integer.valueOf(2)));
+    assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.COPY)), equalTo(Integer.valueOf(1)));
+    assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.CONVERT)), equalTo(Integer.valueOf(2)));
+    assertThat(Integer.valueOf(plan.directories.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testWriteRead() throws IOException {
+    SyncPlan plan = createPlan();
+
+    StringWriter writer = new StringWriter();
+    plan.write(writer);
+    String written = writer.toString();
+
+    String[] lines = written.split("\n");
+    assertThat(Integer.valueOf(lines.length), equalTo(Integer.valueOf(7)));
+    assertThat(lines[0], equalTo(SyncPlan.HEADER));
+    assertThat(lines[1], equalTo("DELETE\t0\t\t" + new File(mp3Dir, "album/cd1").getPath()));
+
+    SyncPlan read = SyncPlan.read(new StringReader(written));
+    assertThat(Integer.valueOf(read.steps.size()), equalTo(Integer.valueOf(plan.steps.size())));
+    for (int i = 0; i < plan.steps.size(); i++) {
+      SyncPlan.Step step = plan.steps.get(i);
+      SyncPlan.Step readStep = read.steps.get(i);
+      assertThat(readStep.type, equalTo(step.type));
+      assertThat(readStep.source, equalTo(step.source));
+      assertThat(readStep.target, equalTo(step.target));
+      assertThat(Long.valueOf(readStep.size), equalTo(Long.valueOf(step.size)));
+      assertThat(Integer.valueOf(readStep.dependencies.size()), equalTo(Integer.valueOf(step.dependencies.size())));
+    }
+    assertThat(read.steps.get(0).source, nullValue());
+
+    writer = new StringWriter();
+    read.write(writer);
+    assertThat(writer.toString(), equalTo(written));
+  }
+
+  @Test
+  public void testRead_Invalid() {
+    String[] invalids = {
+        "", "# some other file\n", SyncPlan.HEADER + "\nCONVERT\t0\tsource\n",
+        SyncPlan.HEADER + "\nMOVE\t0\tsource\ttarget\n", SyncPlan.HEADER + "\nCONVERT\tbig\tsource\ttarget\n"
+    };
+
+    for (String invalid : invalids) {
+      IOException exception = null;
+      try {
+        SyncPlan.read(new StringReader(invalid));
+      }
+      catch (IOException e) {
+        exception = e;
+      }
+      assertThat(invalid, Boolean.valueOf(exception != null), equalTo(Boolean.TRUE));
+    }
+  }
+
+  @Test
+  public void testWrite_File() throws IOException {
+    File planFile = new File("testresources/tmpTestBaseDir/plan.txt");
+    try {
+      SyncPlan plan = createPlan();
+      assertThat(Boolean.valueOf(plan.write(planFile)), equalTo(Boolean.TRUE));
+
+      StringWriter writer = new StringWriter();
+      plan.write(writer);
+      assertThat(new String(java.nio.file.Files.readAllBytes(planFile.toPath()), "UTF-8"), equalTo(writer
+          .toString()));
+
+      assertThat(Boolean.valueOf(plan.write(new File("testresources/tmpTestBaseDir/does/not/exist/plan.txt"))),
+          equalTo(Boolean.FALSE));
+    }
+    finally {
+      planFile.delete();
+    }
+  }
+}
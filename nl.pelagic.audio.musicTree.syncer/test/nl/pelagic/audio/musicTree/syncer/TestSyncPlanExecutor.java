@@ -0,0 +1,149 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls", "static-method"
+})
+public class TestSyncPlanExecutor {
+  private static final File mp3Dir = new File("mp3");
+  private static final File flacDir = new File("flac");
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    Logger.getLogger(SyncPlanExecutor.class.getName()).setLevel(Level.OFF);
+  }
+
+  static class MyExecutor extends SyncPlanExecutor {
+    final List<SyncPlan.Step> run = Collections.synchronizedList(new LinkedList<SyncPlan.Step>());
+    final List<String> messages = Collections.synchronizedList(new LinkedList<String>());
+    final Set<File> failures = new HashSet<>();
+    final List<CompletableFuture<Boolean>> conversions = new LinkedList<>();
+
+    MyExecutor(SyncPlan plan) {
+      super(plan);
+    }
+
+    @Override
+    CompletableFuture<Boolean> runStep(SyncPlan.Step step) {
+      run.add(step);
+      if (step.type == SyncPlan.StepType.CONVERT) {
+        CompletableFuture<Boolean> conversion = new CompletableFuture<>();
+        conversions.add(conversion);
+        conversion.complete(Boolean.valueOf(!failures.contains(step.target)));
+        return conversion;
+      }
+      if (failures.contains(step.target)) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        result.completeExceptionally(new RuntimeException("BOOM"));
+        return result;
+      }
+      return CompletableFuture.completedFuture(Boolean.TRUE);
+    }
+
+    @Override
+    void reportProgress(String message) {
+      messages.add(message);
+    }
+  }
+
+  private static SyncPlan createPlan() {
+    SyncPlan plan = new SyncPlan();
+    plan.add(null, SyncPlan.StepType.DELETE, null, new File(mp3Dir, "old"), 0);
+    plan.add(null, SyncPlan.StepType.MKDIR, null, new File(mp3Dir, "album"), 0);
+    plan.add(null, SyncPlan.StepType.CONVERT, new File(flacDir, "album/01.flac"), new File(mp3Dir, "album/01.mp3"),
+        3 * 1024 * 1024);
+    plan.add(null, SyncPlan.StepType.CONVERT, new File(flacDir, "other/01.flac"), new File(mp3Dir, "other/01.mp3"),
+        1024 * 1024);
+    return plan;
+  }
+
+  @Test
+  public void testExecute_Normal() {
+    SyncPlan plan = createPlan();
+    MyExecutor executor = new MyExecutor(plan);
+
+    assertThat(Boolean.valueOf(executor.execute()), equalTo(Boolean.TRUE));
+
+    assertThat(Integer.valueOf(executor.run.size()), equalTo(Integer.valueOf(4)));
+    assertThat(Boolean.valueOf(executor.run.indexOf(plan.steps.get(1)) < executor.run.indexOf(plan.steps.get(2))),
+        equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(executor.getCompletedSteps()), equalTo(Integer.valueOf(4)));
+    assertThat(Long.valueOf(executor.getProcessedSize()), equalTo(Long.valueOf(4 * 1024 * 1024)));
+    for (SyncPlan.Step step : plan.steps) {
+      assertThat(step.result.join(), equalTo(Boolean.TRUE));
+    }
+
+    /* the final report */
+    assertThat(executor.messages.get(executor.messages.size() - 1), equalTo(String.format(
+        nl.pelagic.audio.musicTree.syncer.i18n.Messages.getString("SyncPlanExecutor.0"), Integer.valueOf(4),
+        Integer.valueOf(4), Long.valueOf(4), Long.valueOf(4), "0:00:00")));
+  }
+
+  @Test
+  public void testExecute_DependencyFailure() {
+    SyncPlan plan = createPlan();
+    MyExecutor executor = new MyExecutor(plan);
+    executor.failures.add(new File(mp3Dir, "album"));
+
+    assertThat(Boolean.valueOf(executor.execute()), equalTo(Boolean.FALSE));
+
+    /* the conversion in the directory that could not be created is not run */
+    assertThat(executor.run, equalTo(Arrays.asList(plan.steps.get(0), plan.steps.get(1), plan.steps.get(3))));
+    assertThat(plan.steps.get(1).result.join(), equalTo(Boolean.FALSE));
+    assertThat(plan.steps.get(2).result.join(), equalTo(Boolean.FALSE));
+    assertThat(plan.steps.get(3).result.join(), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(executor.getCompletedSteps()), equalTo(Integer.valueOf(4)));
+  }
+
+  @Test
+  public void testExecute_ConversionFailure() {
+    SyncPlan plan = createPlan();
+    MyExecutor executor = new MyExecutor(plan);
+    executor.failures.add(new File(mp3Dir, "other/01.mp3"));
+
+    assertThat(Boolean.valueOf(executor.execute()), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(executor.run.size()), equalTo(Integer.valueOf(4)));
+    assertThat(plan.steps.get(3).result.join(), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testExecute_Empty() {
+    MyExecutor executor = new MyExecutor(new SyncPlan());
+    assertThat(Boolean.valueOf(executor.execute()), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(executor.messages.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testEstimateRemaining() {
+    assertThat(Long.valueOf(SyncPlanExecutor.estimateRemaining(10, 0, 100)), equalTo(Long.valueOf(-1)));
+    assertThat(Long.valueOf(SyncPlanExecutor.estimateRemaining(0, 10, 100)), equalTo(Long.valueOf(-1)));
+    assertThat(Long.valueOf(SyncPlanExecutor.estimateRemaining(10, 25, 100)), equalTo(Long.valueOf(30)));
+    assertThat(Long.valueOf(SyncPlanExecutor.estimateRemaining(10, 100, 100)), equalTo(Long.valueOf(0)));
+    assertThat(Long.valueOf(SyncPlanExecutor.estimateRemaining(0, 0, 0)), equalTo(Long.valueOf(0)));
+  }
+
+  @Test
+  public void testFormatDuration() {
+    assertThat(SyncPlanExecutor.formatDuration(-1), equalTo("?"));
+    assertThat(SyncPlanExecutor.formatDuration(0), equalTo("0:00:00"));
+    assertThat(SyncPlanExecutor.formatDuration(TimeUnit.SECONDS.toNanos(2 * 3600 + 3 * 60 + 4)),
+        equalTo("2:03:04"));
+  }
+}
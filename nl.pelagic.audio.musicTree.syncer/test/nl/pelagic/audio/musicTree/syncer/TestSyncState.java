@@ -0,0 +1,266 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
+import nl.pelagic.util.file.DirectoryEntry;
+import nl.pelagic.util.file.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls"
+})
+public class TestSyncState {
+  private static Logger logger = Logger.getLogger(SyncState.class.getName());
+
+  private static final File testDir = new File("testresources/testdata");
+  private static final File testDirFileListSplit = new File(testDir, "FileListSplit");
+  private static final File tmpTestBaseDir = new File("testresources/tmpTestBaseDir");
+
+  private File mp3BaseDir = new File(tmpTestBaseDir, "syncState");
+  private SyncState syncState = null;
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    logger.setLevel(Level.OFF);
+  }
+
+  @Before
+  public void setUp() {
+    mp3BaseDir.mkdir();
+    syncState = new SyncState(mp3BaseDir);
+  }
+
+  @After
+  public void tearDown() {
+    syncState = null;
+    FileUtils.delete(mp3BaseDir);
+  }
+
+  private FileListSplit getFileListSplit() {
+    return new FileListSplit(testDirFileListSplit, DirectoryEntry.list(testDirFileListSplit, null),
+        MusicTreeConstants.FLACEXTENSION);
+  }
+
+  @Test
+  public void testLoad_NoIndex() {
+    syncState.load();
+    assertThat(Integer.valueOf(syncState.directories.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testLoad_Corrupt() throws IOException {
+    try (FileOutputStream os = new FileOutputStream(syncState.getIndexFile())) {
+      os.write((SyncState.HEADER + "\nd\tnot a number\tsome/path\n").getBytes("UTF-8"));
+    }
+
+    syncState.load();
+    assertThat(Integer.valueOf(syncState.directories.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testLoad_WrongHeader() throws IOException {
+    try (FileOutputStream os = new FileOutputStream(syncState.getIndexFile())) {
+      os.write("some other file\nd\t1\tsome/path\n".getBytes("UTF-8"));
+    }
+
+    syncState.load();
+    assertThat(Integer.valueOf(syncState.directories.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testSaveLoad() {
+    long lastModified = testDirFileListSplit.lastModified();
+    syncState.update("FileListSplit", lastModified, getFileListSplit(), Collections.<File> emptyList());
+
+    boolean r = syncState.save();
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(syncState.getIndexFile().isFile()), equalTo(Boolean.TRUE));
+
+    SyncState loaded = new SyncState(mp3BaseDir);
+    loaded.load();
+
+    SyncState.DirectoryState directoryState = loaded.directories.get("FileListSplit");
+    assertThat(directoryState, notNullValue());
+    assertThat(Long.valueOf(directoryState.lastModified), equalTo(Long.valueOf(lastModified)));
+    assertThat(directoryState.directories, equalTo(Arrays.asList("dummydir1", "dummydir2")));
+    assertThat(directoryState.files.keySet().toArray(), equalTo(new Object[] {
+        "cover.jpg", "dummy1.flac", "dummy2.flac"
+    }));
+    File dummy1 = new File(testDirFileListSplit, "dummy1.flac");
+    assertThat(Long.valueOf(directoryState.files.get("dummy1.flac").size), equalTo(Long.valueOf(dummy1.length())));
+    assertThat(Long.valueOf(directoryState.files.get("dummy1.flac").lastModified),
+        equalTo(Long.valueOf(dummy1.lastModified())));
+  }
+
+  @Test
+  public void testSaveLoad_Mp3Files() throws IOException {
+    File mp3Dir = new File(mp3BaseDir, "FileListSplit");
+    mp3Dir.mkdir();
+    File mp3 = new File(mp3Dir, "dummy1.mp3");
+    try (FileOutputStream os = new FileOutputStream(mp3)) {
+      os.write("mp3".getBytes("UTF-8"));
+    }
+
+    syncState.update("FileListSplit", 1, getFileListSplit(), Arrays.asList(mp3Dir, mp3BaseDir));
+    syncState.save();
+
+    SyncState loaded = new SyncState(mp3BaseDir);
+    loaded.load();
+
+    SyncState.DirectoryState directoryState = loaded.directories.get("FileListSplit");
+    assertThat(Integer.valueOf(directoryState.targets.size()), equalTo(Integer.valueOf(2)));
+    assertThat(directoryState.targets.get(0).keySet().toArray(), equalTo(new Object[] {
+      "dummy1.mp3"
+    }));
+    assertThat(Long.valueOf(directoryState.targets.get(0).get("dummy1.mp3").size), equalTo(Long.valueOf(3)));
+    assertThat(Long.valueOf(directoryState.targets.get(0).get("dummy1.mp3").lastModified),
+        equalTo(Long.valueOf(mp3.lastModified())));
+    assertThat(Integer.valueOf(directoryState.targets.get(1).size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testSave_UnreferencedDirectory() {
+    syncState.update("FileListSplit", 1, getFileListSplit(), Collections.<File> emptyList());
+    syncState.update("FileListSplit" + File.separator + "dummydir1", 2, getFileListSplit(), Collections.<File> emptyList());
+    syncState.update("FileListSplit" + File.separator + "removed", 3, getFileListSplit(), Collections.<File> emptyList());
+
+    syncState.save();
+
+    SyncState loaded = new SyncState(mp3BaseDir);
+    loaded.load();
+
+    assertThat(Integer.valueOf(loaded.directories.size()), equalTo(Integer.valueOf(2)));
+    assertThat(loaded.directories.get("FileListSplit" + File.separator + "removed"), nullValue());
+  }
+
+  @Test
+  public void testGetUnchangedDirectories() {
+    File mp3Dir = new File(mp3BaseDir, "FileListSplit");
+    List<File> mp3Dirs = Arrays.asList(mp3Dir);
+
+    /* unknown */
+    List<String> r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, nullValue());
+
+    /* changed */
+    syncState.update("FileListSplit", testDirFileListSplit.lastModified() - 1, getFileListSplit(), mp3Dirs);
+    r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, nullValue());
+
+    /* unchanged but the mp3 directory doesn't exist */
+    syncState.update("FileListSplit", testDirFileListSplit.lastModified(), getFileListSplit(), mp3Dirs);
+    r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, nullValue());
+
+    /* unchanged */
+    mp3Dir.mkdir();
+    r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, equalTo(Arrays.asList("dummydir1", "dummydir2")));
+
+    /* removed */
+    syncState.remove("FileListSplit");
+    r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, nullValue());
+  }
+
+  @Test
+  public void testGetUnchangedDirectories_FileEditedInPlace() throws IOException {
+    File flacDir = new File(tmpTestBaseDir, "syncStateFlac");
+    File mp3Dir = new File(mp3BaseDir, "syncStateFlac");
+    List<File> mp3Dirs = Arrays.asList(mp3Dir);
+    mp3Dir.mkdirs();
+
+    try {
+      FileUtils.copy(testDirFileListSplit, flacDir);
+      long lastModified = flacDir.lastModified();
+      syncState.update("syncStateFlac", lastModified,
+          new FileListSplit(flacDir, DirectoryEntry.list(flacDir, null), MusicTreeConstants.FLACEXTENSION), mp3Dirs);
+      List<String> r = syncState.getUnchangedDirectories("syncStateFlac", flacDir, mp3Dirs);
+      assertThat(r, notNullValue());
+
+      /* retagged: the modification time of the directory doesn't change */
+      File dummy1 = new File(flacDir, "dummy1.flac");
+      try (FileOutputStream os = new FileOutputStream(dummy1)) {
+        os.write("retagged".getBytes("UTF-8"));
+      }
+      flacDir.setLastModified(lastModified);
+      assertThat(Long.valueOf(flacDir.lastModified()), equalTo(Long.valueOf(lastModified)));
+
+      r = syncState.getUnchangedDirectories("syncStateFlac", flacDir, mp3Dirs);
+      assertThat(r, nullValue());
+
+      /* only touched */
+      syncState.update("syncStateFlac", lastModified,
+          new FileListSplit(flacDir, DirectoryEntry.list(flacDir, null), MusicTreeConstants.FLACEXTENSION), mp3Dirs);
+      dummy1.setLastModified(dummy1.lastModified() + 2000);
+      r = syncState.getUnchangedDirectories("syncStateFlac", flacDir, mp3Dirs);
+      assertThat(r, nullValue());
+
+      /* removed */
+      syncState.update("syncStateFlac", lastModified,
+          new FileListSplit(flacDir, DirectoryEntry.list(flacDir, null), MusicTreeConstants.FLACEXTENSION), mp3Dirs);
+      dummy1.delete();
+      flacDir.setLastModified(lastModified);
+      r = syncState.getUnchangedDirectories("syncStateFlac", flacDir, mp3Dirs);
+      assertThat(r, nullValue());
+    }
+    finally {
+      FileUtils.delete(flacDir);
+    }
+  }
+
+  @Test
+  public void testGetUnchangedDirectories_Mp3FileChanged() throws IOException {
+    File mp3Dir = new File(mp3BaseDir, "FileListSplit");
+    List<File> mp3Dirs = Arrays.asList(mp3Dir);
+    mp3Dir.mkdir();
+    File mp3 = new File(mp3Dir, "dummy1.mp3");
+    File mp3Cover = new File(mp3Dir, "cover.jpg");
+    for (File file : Arrays.asList(mp3, new File(mp3Dir, "dummy2.mp3"), mp3Cover)) {
+      try (FileOutputStream os = new FileOutputStream(file)) {
+        os.write("complete mp3".getBytes("UTF-8"));
+      }
+    }
+    long lastModified = testDirFileListSplit.lastModified();
+
+    syncState.update("FileListSplit", lastModified, getFileListSplit(), mp3Dirs);
+    List<String> r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, notNullValue());
+
+    /* another number of targets */
+    r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, Arrays.asList(mp3Dir, mp3Dir));
+    assertThat(r, nullValue());
+
+    /* truncated: the modification time of the mp3 file is kept */
+    long mp3LastModified = mp3.lastModified();
+    try (FileOutputStream os = new FileOutputStream(mp3)) {
+      os.write("mp3".getBytes("UTF-8"));
+    }
+    mp3.setLastModified(mp3LastModified);
+    r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, nullValue());
+
+    /* deleted */
+    syncState.update("FileListSplit", lastModified, getFileListSplit(), mp3Dirs);
+    mp3Cover.delete();
+    r = syncState.getUnchangedDirectories("FileListSplit", testDirFileListSplit, mp3Dirs);
+    assertThat(r, nullValue());
+  }
+}
@@ -6,8 +6,10 @@ import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -17,6 +19,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nl.pelagic.audio.conversion.flac2mp3.api.Flac2Mp3Configuration;
 import nl.pelagic.audio.conversion.flac2mp3.testhelpers.MyFlacToMp3;
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConfiguration;
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConstants;
@@ -910,4 +913,467 @@ public class TestSyncerImpl {
     assertThat(Boolean.valueOf(mp3dummy1.exists()), equalTo(Boolean.TRUE));
     assertThat(Boolean.valueOf(mp3dummy2.exists()), equalTo(Boolean.TRUE));
   }
+
+  @Test
+  public void testSyncFlac2Mp3_Serial_ConversionFailure() {
+    myFlacToMp3.retval = false;
+
+    File flacDir = new File(testDir, "FileListSplit");
+    File mp3Dir = tmpDir2;
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+    f2mc.setConcurrency(1);
+
+    boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+
+    /* stops on the first failure */
+    assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(1)));
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Default_ConversionFailure() {
+    myFlacToMp3.retval = false;
+
+    File flacDir = new File(testDir, "FileListSplit");
+    File mp3Dir = tmpDir2;
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+
+    /* the serial walk is used without a configuration */
+    boolean r = syncerImpl.syncFlac2Mp3(null, mtc, null, extensionsList, fileNamesList, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(1)));
+
+    /* and with a default configuration */
+    r = syncerImpl.syncFlac2Mp3(new Flac2Mp3Configuration(), mtc, null, extensionsList, fileNamesList, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Parallel_ConversionFailure() {
+    myFlacToMp3.retval = false;
+
+    File flacDir = new File(testDir, "FileListSplit");
+    File mp3Dir = tmpDir2;
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+    f2mc.setConcurrency(4);
+
+    boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+
+    /* does not stop on the first failure */
+    assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+
+    File subdir = new File(mp3Dir, "FileListSplit");
+    File mp3cover = new File(subdir, "cover.jpg");
+    assertThat(Boolean.valueOf(mp3cover.exists()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Parallel_ConversionException() {
+    myFlacToMp3.throwException = true;
+
+    File flacDir = new File(testDir, "FileListSplit");
+    File mp3Dir = tmpDir2;
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+    f2mc.setConcurrency(4);
+
+    boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Parallel_Normal() throws IOException {
+    File flacDir = new File(tmpTestBaseDir, "flac");
+    File mp3Dir = tmpDir2;
+    try {
+      for (int i = 0; i < 8; i++) {
+        File albumDir = new File(flacDir, "album" + i);
+        albumDir.mkdirs();
+        FileUtils.copy(new File(testDirFileListSplit, "dummy1.flac"), new File(albumDir, "dummy1.flac"));
+        FileUtils.copy(new File(testDirFileListSplit, "dummy2.flac"), new File(albumDir, "dummy2.flac"));
+      }
+
+      Set<String> extensionsList = new HashSet<>();
+      extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+      Set<String> fileNamesList = new HashSet<>();
+      fileNamesList.add(MusicTreeConstants.COVER);
+      MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+      Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+      f2mc.setConcurrency(4);
+
+      boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, true);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countNormal), equalTo(Integer.valueOf(16)));
+    }
+    finally {
+      FileUtils.delete(flacDir);
+    }
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Incremental() {
+    File flacDir = tmpDir;
+    File mp3Dir = tmpDir2;
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    mtc.setIncremental(true);
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+
+    for (int concurrency : new int[] {
+        1, 4
+    }) {
+      myFlacToMp3.countAll = 0;
+      File subdir = new File(mp3Dir, flacDir.getName());
+      FileUtils.delete(subdir);
+      FileUtils.delete(new File(mp3Dir, SyncState.INDEX_FILE_NAME));
+      f2mc.setConcurrency(concurrency);
+
+      boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+      assertThat(Boolean.valueOf(new File(mp3Dir, SyncState.INDEX_FILE_NAME).isFile()), equalTo(Boolean.TRUE));
+
+      /* unchanged: the directory is skipped */
+      r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+
+      /* mp3 gone: the directory is synchronised */
+      File mp3dummy1 = new File(subdir, "dummy1.mp3");
+      mp3dummy1.delete();
+
+      r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(3)));
+      assertThat(Boolean.valueOf(mp3dummy1.exists()), equalTo(Boolean.TRUE));
+    }
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Targets() throws IOException {
+    File flacDir = tmpDir;
+    File mp3Dir = tmpDir2;
+    File targetDir = new File(tmpTestBaseDir, "tmpDir3");
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    mtc.setTargetMp3BaseDirs(Arrays.asList(targetDir));
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+
+    try {
+      for (int concurrency : new int[] {
+          1, 4
+      }) {
+        myFlacToMp3.countAll = 0;
+        myFlacToMp3.countDecodes = 0;
+        File subdir = new File(mp3Dir, flacDir.getName());
+        File targetSubdir = new File(targetDir, flacDir.getName());
+        FileUtils.delete(subdir);
+        FileUtils.delete(targetDir);
+        targetSubdir.mkdirs();
+        File stale = new File(targetSubdir, "stale.mp3");
+        FileUtils.copy(new File(testDirFileListSplit, "dummy1.flac"), stale);
+        f2mc.setConcurrency(concurrency);
+
+        /* every flac file is decoded once for both targets */
+        boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+        assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+        assertThat(Integer.valueOf(myFlacToMp3.countDecodes), equalTo(Integer.valueOf(2)));
+        assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(4)));
+        assertThat(Boolean.valueOf(new File(subdir, "dummy1.mp3").isFile()), equalTo(Boolean.TRUE));
+        assertThat(Boolean.valueOf(new File(targetSubdir, "dummy1.mp3").isFile()), equalTo(Boolean.TRUE));
+        assertThat(Boolean.valueOf(new File(targetSubdir, MusicTreeConstants.COVER).isFile()),
+            equalTo(Boolean.TRUE));
+        assertThat(Boolean.valueOf(stale.exists()), equalTo(Boolean.FALSE));
+
+        /* only the target that misses the mp3 file is converted */
+        File targetMp3 = new File(targetSubdir, "dummy1.mp3");
+        targetMp3.delete();
+
+        r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+        assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+        assertThat(Integer.valueOf(myFlacToMp3.countDecodes), equalTo(Integer.valueOf(3)));
+        assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(5)));
+        assertThat(myFlacToMp3.lastMp3s, equalTo(Arrays.asList(null, targetMp3)));
+        assertThat(Boolean.valueOf(targetMp3.isFile()), equalTo(Boolean.TRUE));
+      }
+    }
+    finally {
+      FileUtils.delete(targetDir);
+    }
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_ReplayGain() throws IOException {
+    File flacDir = tmpDir;
+    File mp3Dir = tmpDir2;
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+    f2mc.setReplayGain(true);
+
+    for (int concurrency : new int[] {
+        1, 4
+    }) {
+      myFlacToMp3.countAlbums = 0;
+      myFlacToMp3.lastAlbumMp3s = null;
+      File subdir = new File(mp3Dir, flacDir.getName());
+      FileUtils.delete(subdir);
+      f2mc.setConcurrency(concurrency);
+
+      /* all flac files of the directory are converted: the album gain is set */
+      boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAlbums), equalTo(Integer.valueOf(1)));
+      assertThat(Integer.valueOf(myFlacToMp3.lastAlbumMp3s.size()), equalTo(Integer.valueOf(2)));
+      assertThat(Boolean.valueOf(myFlacToMp3.lastAlbumMp3s.contains(new File(subdir, "dummy1.mp3"))),
+          equalTo(Boolean.TRUE));
+
+      /* only some flac files of the directory are converted: no album gain */
+      new File(subdir, "dummy1.mp3").delete();
+
+      r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAlbums), equalTo(Integer.valueOf(1)));
+    }
+
+    /* not all flac files are analysed (e.g. only their tags are updated): no album gain */
+    myFlacToMp3.countAlbums = 0;
+    myFlacToMp3.analyse = false;
+    for (int concurrency : new int[] {
+        1, 4
+    }) {
+      FileUtils.delete(new File(mp3Dir, flacDir.getName()));
+      f2mc.setConcurrency(concurrency);
+
+      boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAlbums), equalTo(Integer.valueOf(0)));
+    }
+    myFlacToMp3.analyse = true;
+
+    /* failed conversion: no album gain */
+    myFlacToMp3.countAlbums = 0;
+    myFlacToMp3.retval = false;
+    FileUtils.delete(new File(mp3Dir, flacDir.getName()));
+
+    boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(myFlacToMp3.countAlbums), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_DetectMoves() throws IOException {
+    File flacDir = new File(tmpTestBaseDir, "flac");
+    File mp3Dir = tmpDir2;
+    File mp3SubDir = new File(mp3Dir, flacDir.getName());
+    File orphanDir = new File(mp3SubDir, "oldname");
+    File orphan = new File(orphanDir, "renamed.mp3");
+
+    myFlacToMp3.audioMd5s.put("dummy1.flac", "md5-1");
+    myFlacToMp3.audioMd5s.put("renamed.mp3", "md5-1");
+    myFlacToMp3.audioMd5s.put("dummy2.flac", "md5-2");
+    myFlacToMp3.audioMd5s.put("copy.flac", "md5-2");
+    myFlacToMp3.audioMd5s.put("link.flac", "md5-2");
+
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    mtc.setDetectMoves(true);
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+
+    try {
+      File album = new File(flacDir, "album");
+      File compilation = new File(flacDir, "compilation");
+      File linked = new File(flacDir, "linked");
+      album.mkdirs();
+      compilation.mkdirs();
+      linked.mkdirs();
+      FileUtils.copy(new File(testDirFileListSplit, "dummy1.flac"), new File(album, "dummy1.flac"));
+      FileUtils.copy(new File(testDirFileListSplit, "dummy2.flac"), new File(album, "dummy2.flac"));
+      FileUtils.copy(new File(testDirFileListSplit, "dummy2.flac"), new File(compilation, "copy.flac"));
+      Files.createLink(new File(linked, "link.flac").toPath(), new File(album, "dummy2.flac").toPath());
+
+      for (int concurrency : new int[] {
+          1, 4
+      }) {
+        FileUtils.delete(mp3SubDir);
+        orphanDir.mkdirs();
+        try (FileWriter fw = new FileWriter(orphan)) {
+          fw.write(orphan.getPath());
+        }
+        f2mc.setConcurrency(concurrency);
+
+        /* simulated */
+        myFlacToMp3.countAll = 0;
+        myShellScriptListener.received.clear();
+        boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, true);
+        assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+        assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(3)));
+        assertThat(Boolean.valueOf(orphan.exists()), equalTo(Boolean.TRUE));
+        boolean moved = false;
+        for (MyShellScriptListener.Pair pair : myShellScriptListener.received) {
+          moved = moved || pair.string.startsWith("mv -f \"" + orphan.getPath() + "\"");
+        }
+        assertThat(Boolean.valueOf(moved), equalTo(Boolean.TRUE));
+
+        /* real */
+        myFlacToMp3.countAll = 0;
+        myFlacToMp3.countExisting = 0;
+        r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+        assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+        /* dummy1 was moved, dummy2 converted, copy.flac copied and link.flac linked */
+        assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(3)));
+        assertThat(Integer.valueOf(myFlacToMp3.countExisting), equalTo(Integer.valueOf(2)));
+        assertThat(Boolean.valueOf(orphanDir.exists()), equalTo(Boolean.FALSE));
+        assertThat(Boolean.valueOf(new File(mp3SubDir, "album/dummy1.mp3").isFile()), equalTo(Boolean.TRUE));
+        assertThat(Boolean.valueOf(new File(mp3SubDir, "compilation/copy.mp3").isFile()), equalTo(Boolean.TRUE));
+        assertThat(Boolean.valueOf(Files.isSameFile(new File(mp3SubDir, "album/dummy2.mp3").toPath(), new File(
+            mp3SubDir, "linked/link.mp3").toPath())), equalTo(Boolean.TRUE));
+      }
+    }
+    finally {
+      FileUtils.delete(flacDir);
+      FileUtils.delete(mp3SubDir);
+    }
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Planned() throws IOException {
+    File flacDir = tmpDir;
+    File mp3Dir = tmpDir2;
+    File subdir = new File(mp3Dir, flacDir.getName());
+    File stale = new File(subdir, "stale.mp3");
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    mtc.setPlanned(true);
+    mtc.setIncremental(true);
+    Flac2Mp3Configuration f2mc = new Flac2Mp3Configuration();
+
+    try {
+      subdir.mkdirs();
+      try (FileWriter fw = new FileWriter(stale)) {
+        fw.write(stale.getPath());
+      }
+
+      boolean r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+      assertThat(Boolean.valueOf(stale.exists()), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(new File(subdir, "cover.jpg").isFile()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(new File(subdir, "dummy1.mp3").isFile()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(new File(subdir, "dummy2.mp3").isFile()), equalTo(Boolean.TRUE));
+
+      /* the sync state was recorded: unchanged directories are skipped */
+      r = syncerImpl.syncFlac2Mp3(f2mc, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+    }
+    finally {
+      FileUtils.delete(subdir);
+      FileUtils.delete(new File(mp3Dir, SyncState.INDEX_FILE_NAME));
+    }
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Planned_ConversionFailure() {
+    myFlacToMp3.retval = false;
+
+    File flacDir = new File(testDir, "FileListSplit");
+    File mp3Dir = tmpDir2;
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    mtc.setPlanned(true);
+
+    boolean r = syncerImpl.syncFlac2Mp3(null, mtc, null, extensionsList, fileNamesList, false);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.FALSE));
+
+    /* does not stop on the first failure */
+    assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+    assertThat(Boolean.valueOf(new File(mp3Dir, "FileListSplit/cover.jpg").exists()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSyncFlac2Mp3_Planned_PlanFile() throws IOException {
+    File flacDir = new File(testDir, "FileListSplit");
+    File mp3Dir = tmpDir2;
+    File planFile = new File(tmpTestBaseDir, "plan.txt");
+    Set<String> extensionsList = new HashSet<>();
+    extensionsList.add(MusicTreeConstants.FLACEXTENSION);
+    Set<String> fileNamesList = new HashSet<>();
+    fileNamesList.add(MusicTreeConstants.COVER);
+    MusicTreeConfiguration mtc = new MusicTreeConfiguration(flacDir, mp3Dir);
+    mtc.setPlanned(true);
+    mtc.setPlanFile(planFile);
+
+    try {
+      /* simulated: only the plan is written */
+      boolean r = syncerImpl.syncFlac2Mp3(null, mtc, null, extensionsList, fileNamesList, true);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(0)));
+      for (MyShellScriptListener.Pair pair : myShellScriptListener.received) {
+        assertThat(pair.string, Integer.valueOf(pair.type),
+            equalTo(Integer.valueOf(MyShellScriptListener.TYPE_VERBOSEMESSAGE)));
+      }
+
+      SyncPlan plan;
+      try (java.io.Reader reader = new java.io.InputStreamReader(new java.io.FileInputStream(planFile), "UTF-8")) {
+        plan = SyncPlan.read(reader);
+      }
+      assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.DELETE)), equalTo(Integer.valueOf(0)));
+      assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.MKDIR)), equalTo(Integer.valueOf(1)));
+      assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.COPY)), equalTo(Integer.valueOf(1)));
+      assertThat(Integer.valueOf(plan.count(SyncPlan.StepType.CONVERT)), equalTo(Integer.valueOf(2)));
+      assertThat(Long.valueOf(plan.getTotalSize()), equalTo(Long.valueOf(new File(flacDir, "cover.jpg").length()
+          + new File(flacDir, "dummy1.flac").length() + new File(flacDir, "dummy2.flac").length())));
+      assertThat(Boolean.valueOf(new File(mp3Dir, "FileListSplit").exists()), equalTo(Boolean.FALSE));
+
+      /* real: the plan is written and executed */
+      r = syncerImpl.syncFlac2Mp3(null, mtc, null, extensionsList, fileNamesList, false);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(myFlacToMp3.countAll), equalTo(Integer.valueOf(2)));
+      assertThat(Boolean.valueOf(new File(mp3Dir, "FileListSplit/dummy1.mp3").isFile()), equalTo(Boolean.TRUE));
+    }
+    finally {
+      planFile.delete();
+    }
+  }
 }
@@ -0,0 +1,156 @@
+package nl.pelagic.audio.musicTree.syncer;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls", "static-method"
+})
+public class TestTreeDiff {
+  private static int[] ints(int... values) {
+    return values;
+  }
+
+  @Test
+  public void testDiff_Null() {
+    TreeDiff diff = TreeDiff.diff(null, null, null);
+    assertThat(diff.added, equalTo(ints()));
+    assertThat(diff.updated, equalTo(ints()));
+    assertThat(diff.deleted, equalTo(ints()));
+    assertThat(diff.getChanged(), equalTo(ints()));
+
+    diff = TreeDiff.diff(Arrays.asList("a", "b"), null, null);
+    assertThat(diff.added, equalTo(ints(0, 1)));
+    assertThat(diff.deleted, equalTo(ints()));
+
+    diff = TreeDiff.diff(null, Arrays.asList("a", "b"), null);
+    assertThat(diff.added, equalTo(ints()));
+    assertThat(diff.deleted, equalTo(ints(0, 1)));
+  }
+
+  @Test
+  public void testDiff_Sorted() {
+    final List<String> sources = new LinkedList<>(Arrays.asList("a", "c", "d", "f", "g"));
+    List<String> targets = new LinkedList<>(Arrays.asList("b", "c", "e", "f", "g", "h"));
+
+    TreeDiff diff = TreeDiff.diff(sources, targets, new TreeDiff.UpdateCheck() {
+      @Override
+      public boolean isUpdateNeeded(int sourceIndex, int targetIndex) {
+        return sources.get(sourceIndex).equals("f");
+      }
+    });
+
+    assertThat(diff.added, equalTo(ints(0, 2)));
+    assertThat(diff.updated, equalTo(ints(3)));
+    assertThat(diff.deleted, equalTo(ints(0, 2, 5)));
+    assertThat(diff.getChanged(), equalTo(ints(0, 2, 3)));
+
+    diff = TreeDiff.diff(sources, targets, null);
+    assertThat(diff.updated, equalTo(ints()));
+    assertThat(diff.getChanged(), equalTo(ints(0, 2)));
+  }
+
+  @Test
+  public void testDiff_Unsorted() {
+    /* music files without extensions need not be sorted: 'a b.flac' < 'a.flac' */
+    final List<String> sources = Arrays.asList("a b", "a", "z", "c");
+    final List<String> targets = Arrays.asList("y", "a", "c", "b");
+
+    final List<String> checked = new ArrayList<>();
+    TreeDiff diff = TreeDiff.diff(sources, targets, new TreeDiff.UpdateCheck() {
+      @Override
+      public boolean isUpdateNeeded(int sourceIndex, int targetIndex) {
+        assertThat(sources.get(sourceIndex), equalTo(targets.get(targetIndex)));
+        checked.add(sources.get(sourceIndex));
+        return true;
+      }
+    });
+
+    assertThat(diff.added, equalTo(ints(0, 2)));
+    assertThat(diff.updated, equalTo(ints(1, 3)));
+    assertThat(diff.deleted, equalTo(ints(0, 3)));
+    assertThat(diff.getChanged(), equalTo(ints(0, 1, 2, 3)));
+    assertThat(checked, equalTo(Arrays.asList("a", "c")));
+  }
+
+  @Test
+  public void testDiff_Duplicates() {
+    List<String> targets = Arrays.asList("a", "a", "b", "c", "c");
+
+    final List<String> checked = new ArrayList<>();
+    TreeDiff diff = TreeDiff.diff(Arrays.asList("a", "c", "c"), targets, new TreeDiff.UpdateCheck() {
+      @Override
+      public boolean isUpdateNeeded(int sourceIndex, int targetIndex) {
+        checked.add(sourceIndex + "=" + targetIndex);
+        return sourceIndex == 2;
+      }
+    });
+
+    assertThat(diff.added, equalTo(ints()));
+    assertThat(diff.updated, equalTo(ints(2)));
+    assertThat(diff.deleted, equalTo(ints(2)));
+    assertThat(checked, equalTo(Arrays.asList("0=0", "1=3", "2=3")));
+  }
+
+  @Test
+  public void testSortedOrder() {
+    assertThat(TreeDiff.sortedOrder(new String[0]), equalTo(ints()));
+    assertThat(TreeDiff.sortedOrder(new String[] {
+        "a", "b", "c"
+    }), equalTo(ints(0, 1, 2)));
+    assertThat(TreeDiff.sortedOrder(new String[] {
+        "c", "a", "b"
+    }), equalTo(ints(1, 2, 0)));
+  }
+
+  /**
+   * Diffs (sorted and unsorted) directories of up to 100k entries, half of
+   * which are in both the flac and mp3 directory. A quadratic diff takes
+   * minutes on the largest directory.
+   */
+  @Test(timeout = 10000)
+  public void testDiff_Large() {
+    for (int size = 1000; size <= 100000; size *= 10) {
+      List<String> sources = new ArrayList<>(size);
+      List<String> targets = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        String entry = String.format("%08d - Track", Integer.valueOf(i));
+        if ((i % 4) != 3) {
+          sources.add(entry);
+        }
+        if ((i % 4) != 0) {
+          targets.add(entry);
+        }
+      }
+
+      TreeDiff diff = TreeDiff.diff(sources, targets, new TreeDiff.UpdateCheck() {
+        @Override
+        public boolean isUpdateNeeded(int sourceIndex, int targetIndex) {
+          return (sourceIndex % 2) == 0;
+        }
+      });
+      TreeDiff unsortedDiff = TreeDiff.diff(reversed(sources), reversed(targets), null);
+
+      assertThat(Integer.valueOf(diff.added.length), equalTo(Integer.valueOf(size / 4)));
+      assertThat(Integer.valueOf(diff.updated.length), equalTo(Integer.valueOf(size / 4)));
+      assertThat(Integer.valueOf(diff.deleted.length), equalTo(Integer.valueOf(size / 4)));
+      assertThat(Integer.valueOf(unsortedDiff.added.length), equalTo(Integer.valueOf(size / 4)));
+      assertThat(Integer.valueOf(unsortedDiff.deleted.length), equalTo(Integer.valueOf(size / 4)));
+    }
+  }
+
+  private static List<String> reversed(List<String> entries) {
+    List<String> result = new ArrayList<>(entries.size());
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      result.add(entries.get(i));
+    }
+    return result;
+  }
+}
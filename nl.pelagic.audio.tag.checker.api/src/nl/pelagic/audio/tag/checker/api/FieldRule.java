@@ -0,0 +1,36 @@
+package nl.pelagic.audio.tag.checker.api;
+
+import java.util.Set;
+
+import nl.pelagic.audio.tag.checker.common.FieldValueScanner;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * A rule that checks a single value of a generic tag field. Rules are declared
+ * by a {@link FieldRuleTagChecker} and are evaluated, together with the rules
+ * of the other enabled tag checkers, in one traversal of the values of a tag.
+ */
+@ConsumerType
+public interface FieldRule {
+  /**
+   * @return the generic tag fields to which the rule applies. Must not change
+   *         after the rule was handed out.
+   */
+  Set<GenericTagFieldName> getFieldNames();
+
+  /**
+   * Checks a single value of a generic tag field. When the value doesn't meet
+   * the constraint of the rule, one or more reports are created (in the generic
+   * tag) for the field.
+   * 
+   * This method can be called concurrently (for different tags).
+   * 
+   * @param genericTag the generic tag to which the value belongs (and to add
+   *          reports to)
+   * @param fieldName the generic tag field to which the value belongs
+   * @param value the scanned value
+   */
+  void check(GenericTag genericTag, GenericTagFieldName fieldName, FieldValueScanner value);
+}
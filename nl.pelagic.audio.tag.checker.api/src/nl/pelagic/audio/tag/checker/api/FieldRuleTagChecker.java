@@ -0,0 +1,36 @@
+package nl.pelagic.audio.tag.checker.api;
+
+import java.util.List;
+
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Interface of a tag checker that declares its checks of field values as
+ * rules, so that the rules of all enabled tag checkers can be evaluated in one
+ * traversal of the values of a tag (see
+ * {@link nl.pelagic.audio.tag.checker.types.AudioTagCheckerConfiguration#isFusedChecks()}
+ * ).
+ * 
+ * When the checks are not fused, {@link #check(GenericTag)} is called instead,
+ * which must perform the same checks as {@link #checkTag(GenericTag)} and the
+ * rules together.
+ */
+@ConsumerType
+public interface FieldRuleTagChecker extends TagChecker {
+  /**
+   * Checks a generic tag against the constraints that are not checked by the
+   * rules of the checker: the constraints on the tag as a whole.
+   * 
+   * This method can be called concurrently (for different tags).
+   * 
+   * @param genericTag the generic tag to check (and to add reports to)
+   */
+  void checkTag(GenericTag genericTag);
+
+  /**
+   * @return the rules of the checker, in the order in which they must be
+   *         evaluated for a value. Must not change after they were handed out.
+   */
+  List<FieldRule> getFieldRules();
+}
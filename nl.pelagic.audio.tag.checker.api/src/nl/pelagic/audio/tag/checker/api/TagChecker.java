@@ -13,6 +13,8 @@ public interface TagChecker {
    * met, one or more reports are created (in the generic tag) for each field
    * that fails the constraints.
    * 
+   * This method can be called concurrently (for different tags).
+   * 
    * @param genericTag the generic tag to check (and to add reports to)
    */
   void check(GenericTag genericTag);
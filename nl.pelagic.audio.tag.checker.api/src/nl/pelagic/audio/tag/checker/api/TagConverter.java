@@ -39,6 +39,11 @@ public interface TagConverter {
    * This method will only be called for tags that are instances of the classes
    * that are returned by the {@link #getSupportedTagClasses} method
    * </p>
+   * <p>
+   * This method can be called concurrently (for different tags), so any state
+   * that is shared between calls (like the unknown tag field names) must be
+   * thread-safe.
+   * </p>
    * 
    * @param genericTag The generic tag (non-null) to convert the non-generic tag
    *          into.
@@ -0,0 +1,87 @@
+package nl.pelagic.audio.tag.checker.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import nl.pelagic.audio.tag.checker.api.FieldRule;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * A compiled set of field rules: the rules are grouped per generic tag field
+ * once, after which all rules are evaluated in one traversal of the values of
+ * a tag. Every value is scanned only once, for all rules.
+ */
+@ProviderType
+public class FieldRuleProgram {
+  /** the empty rules array */
+  private static final FieldRule[] NO_RULES = new FieldRule[0];
+
+  /** the rules, by generic tag field name ordinal, in evaluation order */
+  private final FieldRule[][] rules = new FieldRule[GenericTagFieldName.values().length][];
+
+  /** the number of rules */
+  private final int size;
+
+  /**
+   * Constructor, compiles the rules
+   * 
+   * @param fieldRules the rules, in evaluation order
+   */
+  public FieldRuleProgram(List<FieldRule> fieldRules) {
+    super();
+
+    for (GenericTagFieldName fieldName : GenericTagFieldName.values()) {
+      List<FieldRule> fieldNameRules = new ArrayList<>();
+      if (fieldRules != null) {
+        for (FieldRule fieldRule : fieldRules) {
+          if (fieldRule.getFieldNames().contains(fieldName)) {
+            fieldNameRules.add(fieldRule);
+          }
+        }
+      }
+      rules[fieldName.ordinal()] = fieldNameRules.isEmpty() ? NO_RULES : fieldNameRules.toArray(NO_RULES);
+    }
+
+    this.size = (fieldRules == null) ? 0 : fieldRules.size();
+  }
+
+  /**
+   * @return the number of rules in the program
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Evaluate all rules for all values of a generic tag. This method can be
+   * called concurrently (for different tags).
+   * 
+   * @param genericTag the generic tag to check (and to add reports to)
+   */
+  public void run(GenericTag genericTag) {
+    if ((genericTag == null) || (size == 0)) {
+      return;
+    }
+
+    for (Entry<GenericTagFieldName, Map<String, Set<String>>> entry : genericTag.getFields().entrySet()) {
+      GenericTagFieldName fieldName = entry.getKey();
+      FieldRule[] fieldNameRules = rules[fieldName.ordinal()];
+      Map<String, Set<String>> valueNameMap = entry.getValue();
+      if ((fieldNameRules.length == 0) || (valueNameMap == null)) {
+        continue;
+      }
+
+      for (String value : valueNameMap.keySet()) {
+        FieldValueScanner scanner = new FieldValueScanner(value);
+        for (FieldRule fieldRule : fieldNameRules) {
+          fieldRule.check(genericTag, fieldName, scanner);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,505 @@
+package nl.pelagic.audio.tag.checker.common;
+
+import java.util.Arrays;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * <p>
+ * Scans a tag field value in a single pass over its characters and records
+ * everything the tag checkers need to know about it:
+ * <ul>
+ * <li>leading and trailing whitespace</li>
+ * <li>runs of 2 or more consecutive whitespace characters</li>
+ * <li>runs of unwanted characters: characters outside of the regular ASCII
+ * range [{@value #FIRST_WANTED_CHARACTER}, {@value #LAST_WANTED_CHARACTER}]</li>
+ * <li>the numeric shape of the value: a number or a number/number</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The scanner is equivalent to (and replaces) matching the value against the
+ * whitespace and number expressions of {@link RegularExpressions}. Whitespace
+ * is what these expressions consider whitespace (space, tab, newline, vertical
+ * tab, form feed and carriage return) and trimming is done like
+ * {@link String#trim()} does it.
+ * </p>
+ * <p>
+ * Positions are reported as ranges: pairs of start (inclusive) and end
+ * (exclusive) positions.
+ * </p>
+ */
+@ProviderType
+public class FieldValueScanner {
+  /** The first wanted character */
+  public static final char FIRST_WANTED_CHARACTER = 0x20;
+
+  /** The last wanted character */
+  public static final char LAST_WANTED_CHARACTER = 0x7e;
+
+  /**
+   * The numeric shapes of a (trimmed) value
+   */
+  public static enum NumericShape {
+    /** Not numeric */
+    NONE,
+
+    /** A number: digits only */
+    NUMBER,
+
+    /** A disc number: digits/digits, optionally with whitespace around the / */
+    DISC_NUMBER;
+  }
+
+  /** The states of the numeric shape scanner */
+  private static enum NumericState {
+    /** Before the first number */
+    START,
+
+    /** In the first number */
+    FIRST,
+
+    /** After the first number */
+    FIRST_GAP,
+
+    /** After the slash, before the second number */
+    SLASH,
+
+    /** In the second number */
+    SECOND,
+
+    /** After the second number */
+    SECOND_GAP,
+
+    /** Not numeric */
+    INVALID;
+  }
+
+  /**
+   * A growing list of ranges
+   */
+  private static class Ranges {
+    /** the ranges, in the first {@link #size} elements */
+    private int[] ranges = new int[4];
+
+    /** the number of elements in use */
+    private int size = 0;
+
+    /**
+     * Add a range
+     *
+     * @param start the start of the range (inclusive)
+     * @param end the end of the range (exclusive)
+     */
+    void add(int start, int end) {
+      if ((size + 2) > ranges.length) {
+        ranges = Arrays.copyOf(ranges, ranges.length * 2);
+      }
+      ranges[size++] = start;
+      ranges[size++] = end;
+    }
+
+    /**
+     * Remove the last range
+     */
+    void removeLast() {
+      size -= 2;
+    }
+
+    /**
+     * @return the end of the last range, -1 when empty
+     */
+    int lastEnd() {
+      return (size == 0) ? -1 : ranges[size - 1];
+    }
+
+    /**
+     * @param offset the offset to subtract from all positions
+     * @return the ranges, null when empty
+     */
+    int[] toArray(int offset) {
+      if (size == 0) {
+        return null;
+      }
+
+      int[] result = Arrays.copyOf(ranges, size);
+      if (offset != 0) {
+        for (int i = 0; i < size; i++) {
+          result[i] -= offset;
+        }
+      }
+      return result;
+    }
+  }
+
+  /** The value */
+  private final String value;
+
+  /** True when the value has no whitespace characters other than spaces */
+  private boolean simple = true;
+
+  /** The position of the first character that is not trimmed */
+  private int trimStart = -1;
+
+  /** The position after the last character that is not trimmed */
+  private int trimEnd = -1;
+
+  /** The length of the run of whitespace at the start of the value */
+  private int leadingWhitespace = 0;
+
+  /** The length of the run of whitespace at the end of the value */
+  private int trailingWhitespace = 0;
+
+  /** The runs of multiple whitespace characters, relative to the value */
+  private final Ranges multipleWhitespace = new Ranges();
+
+  /** The runs of unwanted characters, relative to the value */
+  private final Ranges unwantedCharacters = new Ranges();
+
+  /** The numeric shape of the trimmed value */
+  private NumericShape numericShape = NumericShape.NONE;
+
+  /** The (first) number, saturated at {@link Long#MAX_VALUE} */
+  private long number = 0;
+
+  /** The number of digits in the (first) number */
+  private int numberDigits = 0;
+
+  /** The second number, saturated at {@link Long#MAX_VALUE} */
+  private long total = 0;
+
+  /** The position of the slash, relative to the value */
+  private int slash = -1;
+
+  /** The value with all whitespace replaced by spaces, lazily built */
+  private String simpleValue = null;
+
+  /**
+   * Constructor, scans the value
+   *
+   * @param value the value to scan (non-null)
+   */
+  public FieldValueScanner(String value) {
+    super();
+    this.value = value;
+    scan();
+  }
+
+  /**
+   * @param c the character
+   * @return true when the character is whitespace
+   */
+  static boolean isWhitespace(char c) {
+    return (c == ' ') || (c == '\t') || (c == '\n') || (c == 0x0b) || (c == '\f') || (c == '\r');
+  }
+
+  /**
+   * @param number the number so far
+   * @param c the next digit
+   * @return the number with the digit appended, saturated at
+   *         {@link Long#MAX_VALUE}
+   */
+  private static long appendDigit(long number, char c) {
+    if (number > ((Long.MAX_VALUE - 9) / 10)) {
+      return Long.MAX_VALUE;
+    }
+    return (number * 10) + (c - '0');
+  }
+
+  /**
+   * The single pass over the characters of the value
+   */
+  private void scan() {
+    int length = value.length();
+
+    int whitespaceStart = -1;
+    int unwantedStart = -1;
+    int lastSignificant = -1;
+    boolean gapInvalid = false;
+    NumericState state = NumericState.START;
+
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      boolean whitespace = isWhitespace(c);
+      boolean trimmed = c <= ' ';
+      boolean digit = (c >= '0') && (c <= '9');
+
+      /* trimming */
+      if (!trimmed) {
+        if (trimStart < 0) {
+          trimStart = i;
+        }
+        lastSignificant = i;
+      }
+
+      /* whitespace runs */
+      if (whitespace) {
+        if (c != ' ') {
+          simple = false;
+        }
+        if (whitespaceStart < 0) {
+          whitespaceStart = i;
+        }
+      } else if (whitespaceStart >= 0) {
+        endWhitespaceRun(whitespaceStart, i);
+        whitespaceStart = -1;
+      }
+
+      /* unwanted character runs */
+      if ((c < FIRST_WANTED_CHARACTER) || (c > LAST_WANTED_CHARACTER)) {
+        if (unwantedStart < 0) {
+          unwantedStart = i;
+        }
+      } else if (unwantedStart >= 0) {
+        unwantedCharacters.add(unwantedStart, i);
+        unwantedStart = -1;
+      }
+
+      /* numeric shape */
+      switch (state) {
+        case START:
+          if (digit) {
+            number = appendDigit(number, c);
+            numberDigits++;
+            state = NumericState.FIRST;
+          } else if (!trimmed) {
+            state = NumericState.INVALID;
+          }
+          break;
+
+        case FIRST:
+          if (digit) {
+            number = appendDigit(number, c);
+            numberDigits++;
+          } else if (c == '/') {
+            slash = i;
+            state = NumericState.SLASH;
+          } else if (trimmed) {
+            gapInvalid = !whitespace;
+            state = NumericState.FIRST_GAP;
+          } else {
+            state = NumericState.INVALID;
+          }
+          break;
+
+        case FIRST_GAP:
+          if ((c == '/') && !gapInvalid) {
+            slash = i;
+            state = NumericState.SLASH;
+          } else if (trimmed) {
+            gapInvalid |= !whitespace;
+          } else {
+            state = NumericState.INVALID;
+          }
+          break;
+
+        case SLASH:
+          if (digit) {
+            total = appendDigit(total, c);
+            state = NumericState.SECOND;
+          } else if (!whitespace) {
+            state = NumericState.INVALID;
+          }
+          break;
+
+        case SECOND:
+          if (digit) {
+            total = appendDigit(total, c);
+          } else if (trimmed) {
+            state = NumericState.SECOND_GAP;
+          } else {
+            state = NumericState.INVALID;
+          }
+          break;
+
+        case SECOND_GAP:
+          if (!trimmed) {
+            state = NumericState.INVALID;
+          }
+          break;
+
+        case INVALID:
+        default:
+          break;
+      }
+    }
+
+    if (trimStart < 0) {
+      trimStart = length;
+      trimEnd = length;
+    } else {
+      trimEnd = lastSignificant + 1;
+    }
+
+    if (whitespaceStart >= 0) {
+      endWhitespaceRun(whitespaceStart, length);
+      trailingWhitespace = length - whitespaceStart;
+    }
+
+    /* runs of multiple whitespace that are trailing are not interior */
+    while (multipleWhitespace.lastEnd() > trimEnd) {
+      multipleWhitespace.removeLast();
+    }
+
+    if (unwantedStart >= 0) {
+      unwantedCharacters.add(unwantedStart, length);
+    }
+
+    if ((state == NumericState.FIRST) || (state == NumericState.FIRST_GAP)) {
+      numericShape = NumericShape.NUMBER;
+    } else if ((state == NumericState.SECOND) || (state == NumericState.SECOND_GAP)) {
+      numericShape = NumericShape.DISC_NUMBER;
+    }
+  }
+
+  /**
+   * Record the end of a run of whitespace
+   *
+   * @param start the start of the run (inclusive)
+   * @param end the end of the run (exclusive)
+   */
+  private void endWhitespaceRun(int start, int end) {
+    if (start == 0) {
+      leadingWhitespace = end;
+    } else if (((end - start) >= 2) && (trimStart >= 0) && (trimStart < start)) {
+      multipleWhitespace.add(start, end);
+    }
+  }
+
+  /**
+   * @return the value
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * @return true when trimming the value changes it
+   */
+  public boolean hasLeadingOrTrailingWhitespace() {
+    return (trimStart > 0) || (trimEnd < value.length());
+  }
+
+  /**
+   * @return the ranges of the leading and trailing whitespace, relative to the
+   *         value. A value that consists of whitespace only has only a leading
+   *         range. Empty when there is no leading or trailing whitespace.
+   */
+  public int[] getLeadingAndTrailingWhitespaceRanges() {
+    int length = value.length();
+    Ranges ranges = new Ranges();
+    if (leadingWhitespace > 0) {
+      ranges.add(0, leadingWhitespace);
+    }
+    if ((trailingWhitespace > 0) && (leadingWhitespace < length)) {
+      ranges.add(length - trailingWhitespace, length);
+    }
+
+    int[] result = ranges.toArray(0);
+    return (result == null) ? new int[0] : result;
+  }
+
+  /**
+   * @return the value with all whitespace characters replaced by spaces
+   */
+  public String getSimpleValue() {
+    if (simpleValue == null) {
+      if (simple) {
+        simpleValue = value;
+      } else {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+          if (isWhitespace(chars[i])) {
+            chars[i] = ' ';
+          }
+        }
+        simpleValue = new String(chars);
+      }
+    }
+    return simpleValue;
+  }
+
+  /**
+   * @return the trimmed simple value (see {@link #getSimpleValue()})
+   */
+  public String getTrimmedValue() {
+    return getSimpleValue().substring(trimStart, trimEnd);
+  }
+
+  /**
+   * @return the trimmed simple value (see {@link #getTrimmedValue()}) with all
+   *         runs of multiple whitespace characters replaced by a single space
+   */
+  public String getCollapsedValue() {
+    String trimmedValue = getTrimmedValue();
+    if (multipleWhitespace.size == 0) {
+      return trimmedValue;
+    }
+
+    StringBuilder sb = new StringBuilder(trimmedValue.length());
+    int position = 0;
+    int[] ranges = multipleWhitespace.ranges;
+    for (int i = 0; i < multipleWhitespace.size; i += 2) {
+      sb.append(trimmedValue, position, ranges[i] - trimStart).append(' ');
+      position = ranges[i + 1] - trimStart;
+    }
+    sb.append(trimmedValue, position, trimmedValue.length());
+    return sb.toString();
+  }
+
+  /**
+   * @return the ranges of the runs of multiple whitespace characters in the
+   *         trimmed value, relative to the trimmed value (see
+   *         {@link #getTrimmedValue()}). Null when there are none.
+   */
+  public int[] getMultipleWhitespaceRanges() {
+    return multipleWhitespace.toArray(trimStart);
+  }
+
+  /**
+   * @return the ranges of the runs of unwanted characters, relative to the
+   *         value. Null when there are none.
+   */
+  public int[] getUnwantedCharacterRanges() {
+    return unwantedCharacters.toArray(0);
+  }
+
+  /**
+   * @return the numeric shape of the trimmed value
+   */
+  public NumericShape getNumericShape() {
+    return numericShape;
+  }
+
+  /**
+   * @return the number, or the number before the slash of a disc number,
+   *         saturated at {@link Long#MAX_VALUE}. Only valid when the value is
+   *         numeric.
+   */
+  public long getNumber() {
+    return number;
+  }
+
+  /**
+   * @return the number of digits of {@link #getNumber()}. Only valid when the
+   *         value is numeric.
+   */
+  public int getNumberDigits() {
+    return numberDigits;
+  }
+
+  /**
+   * @return the number after the slash of a disc number, saturated at
+   *         {@link Long#MAX_VALUE}. Only valid for a disc number.
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * @return the position of the slash of a disc number, relative to the
+   *         trimmed value. Only valid for a disc number.
+   */
+  public int getSlashPosition() {
+    return slash - trimStart;
+  }
+}
@@ -18,6 +18,15 @@ public class AudioTagCheckerConfiguration {
   /** The default value for the regexInAllDirs setting */
   public static final boolean DEFAULT_REGEXINALLDIRS = false;
 
+  /** The default value for the workers setting: the number of available processors */
+  public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+
+  /** The default value for the forceRecheck setting */
+  public static final boolean DEFAULT_FORCERECHECK = false;
+
+  /** The default value for the fusedChecks setting */
+  public static final boolean DEFAULT_FUSEDCHECKS = false;
+
   /**
    * Default Constructor.
    */
@@ -106,6 +115,95 @@ public class AudioTagCheckerConfiguration {
     this.regexPattern = regexPattern;
   }
 
+  /**
+   * The number of files that are read, converted and checked concurrently.
+   * The results are always reported in the order in which the files are
+   * found.
+   */
+  private int workers = DEFAULT_WORKERS;
+
+  /**
+   * @return the workers
+   */
+  public int getWorkers() {
+    return workers;
+  }
+
+  /**
+   * @param workers the workers to set. Values below 2 select the sequential
+   *          check.
+   */
+  public void setWorkers(int workers) {
+    this.workers = workers;
+  }
+
+  /**
+   * The file in which the results of the checks are cached, null to not cache
+   * the results. The results of files whose canonical path, size and
+   * modification time didn't change are reported from the cache, without
+   * reading the files, as long as the same tag converters and tag checkers are
+   * used. Tags that are reported from the cache only have their backing file
+   * and reports set.
+   */
+  private File cacheFile = null;
+
+  /**
+   * @return the cacheFile
+   */
+  public File getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * @param cacheFile the cacheFile to set
+   */
+  public void setCacheFile(File cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  /**
+   * True when all files must be checked, even when their results are cached.
+   * The cache is still updated with the new results.
+   */
+  private boolean forceRecheck = DEFAULT_FORCERECHECK;
+
+  /**
+   * @return the forceRecheck
+   */
+  public boolean isForceRecheck() {
+    return forceRecheck;
+  }
+
+  /**
+   * @param forceRecheck the forceRecheck to set
+   */
+  public void setForceRecheck(boolean forceRecheck) {
+    this.forceRecheck = forceRecheck;
+  }
+
+  /**
+   * True when the checks of field values are fused: the field rules of all
+   * enabled tag checkers that declare them (see
+   * {@link nl.pelagic.audio.tag.checker.api.FieldRuleTagChecker}) are compiled
+   * once per check and evaluated in one traversal of the values of a tag. Other
+   * tag checkers are run as usual.
+   */
+  private boolean fusedChecks = DEFAULT_FUSEDCHECKS;
+
+  /**
+   * @return the fusedChecks
+   */
+  public boolean isFusedChecks() {
+    return fusedChecks;
+  }
+
+  /**
+   * @param fusedChecks the fusedChecks to set
+   */
+  public void setFusedChecks(boolean fusedChecks) {
+    this.fusedChecks = fusedChecks;
+  }
+
   /**
    * A list of enabled tag checkers
    * 
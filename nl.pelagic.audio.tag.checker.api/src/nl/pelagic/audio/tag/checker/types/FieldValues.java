@@ -0,0 +1,186 @@
+package nl.pelagic.audio.tag.checker.types;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map of the values of a generic tag field against the sets of the actual
+ * field names using those values, sorted on the values and backed by arrays. A
+ * generic tag field nearly always has a single value, so this map is much
+ * lighter than a TreeMap: one object and two small arrays.
+ */
+class FieldValues extends AbstractMap<String, Set<String>> {
+  /** the empty values array */
+  private static final String[] EMPTY = new String[0];
+
+  /** the values, sorted, in the first {@link #size} elements */
+  private String[] values = EMPTY;
+
+  /** the name sets, in the same order as {@link #values} */
+  private Set<String>[] names = newNamesArray(0);
+
+  /** the number of values */
+  private int size = 0;
+
+  /**
+   * Constructor
+   */
+  FieldValues() {
+    super();
+  }
+
+  /**
+   * @param length the length of the array
+   * @return a new array of name sets
+   */
+  @SuppressWarnings("unchecked")
+  private static Set<String>[] newNamesArray(int length) {
+    return (Set<String>[]) new Set<?>[length];
+  }
+
+  /**
+   * @param key the value to search for
+   * @return the index of key (when found), (-(insertion point) - 1) otherwise
+   */
+  private int indexOf(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    return Arrays.binarySearch(values, 0, size, (String) key);
+  }
+
+  /**
+   * Remove the value at an index
+   *
+   * @param index the index
+   */
+  void removeAt(int index) {
+    int moved = size - index - 1;
+    System.arraycopy(values, index + 1, values, index, moved);
+    System.arraycopy(names, index + 1, names, index, moved);
+    size--;
+    values[size] = null;
+    names[size] = null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Set<String> get(Object key) {
+    int index = indexOf(key);
+    return (index < 0) ? null : names[index];
+  }
+
+  @Override
+  public Set<String> put(String key, Set<String> value) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    int index = indexOf(key);
+    if (index >= 0) {
+      Set<String> previous = names[index];
+      names[index] = value;
+      return previous;
+    }
+
+    index = -index - 1;
+    if (size == values.length) {
+      int length = Math.max(2, size * 2);
+      values = Arrays.copyOf(values, length);
+      names = Arrays.copyOf(names, length);
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    System.arraycopy(names, index, names, index + 1, size - index);
+    values[index] = key;
+    names[index] = value;
+    size++;
+    return null;
+  }
+
+  @Override
+  public Set<String> remove(Object key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+
+    Set<String> previous = names[index];
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, 0, size, null);
+    Arrays.fill(names, 0, size, null);
+    size = 0;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Set<String>>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Set<String>>>() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, Set<String>>> iterator() {
+        return new Iterator<Map.Entry<String, Set<String>>>() {
+          /** the index of the next value */
+          private int next = 0;
+
+          /** the index of the last returned value, -1 when none */
+          private int last = -1;
+
+          @Override
+          public boolean hasNext() {
+            return next < size;
+          }
+
+          @Override
+          public Map.Entry<String, Set<String>> next() {
+            if (next >= size) {
+              throw new NoSuchElementException();
+            }
+            last = next++;
+            final int index = last;
+            return new SimpleEntry<String, Set<String>>(values[index], names[index]) {
+              private static final long serialVersionUID = 1L;
+
+              @Override
+              public Set<String> setValue(Set<String> value) {
+                names[index] = value;
+                return super.setValue(value);
+              }
+            };
+          }
+
+          @Override
+          public void remove() {
+            if (last < 0) {
+              throw new IllegalStateException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+          }
+        };
+      }
+    };
+  }
+}
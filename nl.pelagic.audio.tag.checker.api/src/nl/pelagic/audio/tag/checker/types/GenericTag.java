@@ -2,23 +2,37 @@ package nl.pelagic.audio.tag.checker.types;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.jaudiotagger.tag.images.Artwork;
 
 import aQute.bnd.annotation.ProviderType;
 
 /**
+ * <p>
  * A generic tag that is used to abstract actual music file tags.
+ * </p>
+ * <p>
+ * A tag is created for every checked file, so it's kept light: the fields and
+ * reports are stored in maps keyed on the generic tag field name, the values of
+ * a field and the names using a value are stored in small sorted arrays, and
+ * the names and the values of album fields (which are the same for all files
+ * of an album) are interned.
+ * </p>
  */
 @ProviderType
 public class GenericTag {
+  /** The fields of which the values are interned */
+  private static final Set<GenericTagFieldName> internedValueFields = EnumSet.of(GenericTagFieldName.ALBUMARTIST,
+      GenericTagFieldName.ALBUMDISCNUMBER, GenericTagFieldName.ALBUMGENRE, GenericTagFieldName.ALBUMTITLE,
+      GenericTagFieldName.ALBUMTOTALTRACKS, GenericTagFieldName.ALBUMYEAR, GenericTagFieldName.TRACKARTIST);
+
   /** A flag to signal whether the tag contains hasArtwork */
   private boolean hasArtwork = false;
 
@@ -28,19 +42,19 @@ public class GenericTag {
   /**
    * A set with classes from which this information was constructed
    */
-  private Set<Class<? extends Object>> sourceTagClasses = new HashSet<>();
+  private Set<Class<? extends Object>> sourceTagClasses = new HashSet<>(2);
 
   /**
    * A map of the generalised tag field names against a map of the field VALUES
    * against a set of the actual field NAMES using those values
    */
-  private Map<GenericTagFieldName, Map<String, Set<String>>> fields = new TreeMap<>();
+  private final Map<GenericTagFieldName, Map<String, Set<String>>> fields = new EnumMap<>(GenericTagFieldName.class);
 
   /**
    * A map of the generalised tag field NAMES against a set of check reports for
    * that field
    */
-  private Map<GenericTagFieldName, List<ProblemReport>> reports = new TreeMap<>();
+  private final Map<GenericTagFieldName, List<ProblemReport>> reports = new EnumMap<>(GenericTagFieldName.class);
 
   /**
    * Constructor
@@ -95,7 +109,10 @@ public class GenericTag {
   }
 
   /**
-   * @return the fields
+   * @return the fields, ordered on the generic tag field name, with their
+   *         values ordered on the value and their names ordered on the name.
+   *         The map is the backing store of the fields (not a copy) and can
+   *         be modified.
    */
   public Map<GenericTagFieldName, Map<String, Set<String>>> getFields() {
     return fields;
@@ -116,8 +133,8 @@ public class GenericTag {
 
     Set<String> nameSet = valueNameMap.get(value);
     if (nameSet == null) {
-      nameSet = new TreeSet<>();
-      valueNameMap.put(value, nameSet);
+      valueNameMap.put(value, new NameSet(name));
+      return;
     }
 
     /* add the id to the generic tag fieldName id set */
@@ -162,23 +179,67 @@ public class GenericTag {
       previousValue = previousNameValuePair.getValue();
     }
 
+    String internedName = name.intern();
+    return new NameValuePair(internedName, addField(previousName, previousValue, genericName, internedName, value));
+  }
+
+  /**
+   * Add a tag field, like
+   * {@link #addField(NameValuePair, GenericTagFieldName, String, String)}, but
+   * update the previous tag name/value pair in place instead of allocating a
+   * new one.
+   * 
+   * @param previousNameValuePair the previous tag name/value pair (non-null,
+   *          its name and value can be null: no previous value). It's updated
+   *          to the new tag name/value pair, or it's cleared when genericName,
+   *          name or value (or any combination of those) is null.
+   * @param genericName the generic tag field name
+   * @param name the non-generic tag field name
+   * @param value the value for name
+   */
+  public void addFieldInPlace(NameValuePair previousNameValuePair, GenericTagFieldName genericName, String name,
+      String value) {
+    if ((genericName == null) || (name == null) || (value == null)) {
+      previousNameValuePair.setName(null);
+      previousNameValuePair.setValue(null);
+      return;
+    }
+
+    String internedName = name.intern();
+    previousNameValuePair.setValue(addField(previousNameValuePair.getName(), previousNameValuePair.getValue(),
+        genericName, internedName, value));
+    previousNameValuePair.setName(internedName);
+  }
+
+  /**
+   * Add a tag field, see
+   * {@link #addField(NameValuePair, GenericTagFieldName, String, String)}
+   * 
+   * @param previousName the previous non-generic tag field name (can be null)
+   * @param previousValue the previous value (can be null)
+   * @param genericName the generic tag field name (non-null)
+   * @param name the non-generic tag field name (non-null, interned)
+   * @param value the value for name (non-null)
+   * @return the (possibly appended) value that was added
+   */
+  private String addField(String previousName, String previousValue, GenericTagFieldName genericName, String name,
+      String value) {
+    String newValue = internedValueFields.contains(genericName) ? value.intern() : value;
+
     /* create the value/name map for the generic name, if needed */
     Map<String, Set<String>> valueNameSetMap = fields.get(genericName);
     if (valueNameSetMap == null) {
-      valueNameSetMap = new TreeMap<>();
+      valueNameSetMap = new FieldValues();
       fields.put(genericName, valueNameSetMap);
     }
 
-    /* setup the result in advance */
-    NameValuePair result = new NameValuePair(name, value);
-
     if ((previousName == null) /* no previous name */
         || (previousValue == null) /* no previous value */
         || valueNameSetMap.isEmpty() /* no value/name map for the genericName */
         || !name.equals(previousName) /* previous name != new name */) {
       /* just create a new mapping, if needed */
-      addToValueNameSetMap(valueNameSetMap, name, value);
-      return result;
+      addToValueNameSetMap(valueNameSetMap, name, newValue);
+      return newValue;
     }
 
     /*
@@ -189,15 +250,15 @@ public class GenericTag {
     Set<String> nameSet = valueNameSetMap.remove(previousValue);
     if (nameSet == null) {
       /* there was no mapping for the previous value: just create a new mapping */
-      addToValueNameSetMap(valueNameSetMap, name, value);
-      return result;
+      addToValueNameSetMap(valueNameSetMap, name, newValue);
+      return newValue;
     }
 
     boolean removed = nameSet.remove(name);
     if (!removed) {
       /* the name was not in the name set: just add it */
-      addToValueNameSetMap(valueNameSetMap, name, value);
-      return result;
+      addToValueNameSetMap(valueNameSetMap, name, newValue);
+      return newValue;
     }
 
     if (nameSet.size() > 0) {
@@ -205,18 +266,19 @@ public class GenericTag {
       valueNameSetMap.put(previousValue, nameSet);
     }
 
-    nameSet = new HashSet<>();
-    nameSet.add(name);
-
     /* append and put */
-    result.setValue(previousValue.concat(" - ").concat(value)); //$NON-NLS-1$
-    valueNameSetMap.put(result.getValue(), nameSet);
+    String appendedValue = previousValue.concat(" - ").concat(value); //$NON-NLS-1$
+    if (internedValueFields.contains(genericName)) {
+      appendedValue = appendedValue.intern();
+    }
+    valueNameSetMap.put(appendedValue, new NameSet(name));
 
-    return result;
+    return appendedValue;
   }
 
   /**
-   * @return the reports
+   * @return the reports, ordered on the generic tag field name. The map is the
+   *         backing store of the reports (not a copy) and can be modified.
    */
   public Map<GenericTagFieldName, List<ProblemReport>> getReports() {
     return reports;
@@ -236,7 +298,7 @@ public class GenericTag {
     /* get the reports for the genericTagFieldName */
     List<ProblemReport> contents = reports.get(genericTagFieldName);
     if (contents == null) {
-      contents = new LinkedList<>();
+      contents = new ArrayList<>(Math.max(1, reportsToAdd.size()));
       reports.put(genericTagFieldName, contents);
     }
 
@@ -259,8 +321,33 @@ public class GenericTag {
       return;
     }
 
-    List<ProblemReport> report = new ArrayList<>(1);
-    report.add(new ProblemReport(message, expected, actual, positionMarkers));
-    addReports(genericTagFieldName, report);
+    List<ProblemReport> contents = reports.get(genericTagFieldName);
+    if (contents == null) {
+      contents = new ArrayList<>(1);
+      reports.put(genericTagFieldName, contents);
+    }
+
+    contents.add(new ProblemReport(message, expected, actual, positionMarkers));
+  }
+
+  /**
+   * Add a report about a tag field, with position markers as ranges
+   * 
+   * @param genericTagFieldName the generic tag field name (non-null)
+   * @param message the message to add (non-null)
+   * @param actual the actual value
+   * @param positionMarkerRanges the position markers, as ranges: pairs of
+   *          start (inclusive) and end (exclusive) positions in actual
+   * @param expected the expected value
+   */
+  public void addRangeReport(GenericTagFieldName genericTagFieldName, String message, String actual,
+      int[] positionMarkerRanges, String expected) {
+    if ((genericTagFieldName == null) || (message == null)) {
+      return;
+    }
+
+    ProblemReport report = new ProblemReport(message, expected, actual, null);
+    report.setPositionMarkerRanges(positionMarkerRanges);
+    addReports(genericTagFieldName, Collections.singletonList(report));
   }
 }
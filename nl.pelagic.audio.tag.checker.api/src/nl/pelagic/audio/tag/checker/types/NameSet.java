@@ -0,0 +1,149 @@
+package nl.pelagic.audio.tag.checker.types;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted set of (tag field) names that is backed by an array. Tag field
+ * values are nearly always used by a single name, so this set is much lighter
+ * than a TreeSet: one object and one small array.
+ */
+class NameSet extends AbstractSet<String> {
+  /** the empty array */
+  private static final String[] EMPTY = new String[0];
+
+  /** the names, sorted, in the first {@link #size} elements */
+  private String[] names = EMPTY;
+
+  /** the number of names */
+  private int size = 0;
+
+  /**
+   * Constructor for an empty set
+   */
+  NameSet() {
+    super();
+  }
+
+  /**
+   * Constructor for a set with a single name
+   *
+   * @param name the name (non-null)
+   */
+  NameSet(String name) {
+    super();
+    if (name == null) {
+      throw new NullPointerException();
+    }
+    this.names = new String[] {
+      name
+    };
+    this.size = 1;
+  }
+
+  /**
+   * @param o the object to search for
+   * @return the index of o (when found), (-(insertion point) - 1) otherwise
+   */
+  private int indexOf(Object o) {
+    if (!(o instanceof String)) {
+      return -1;
+    }
+    return Arrays.binarySearch(names, 0, size, (String) o);
+  }
+
+  /**
+   * Remove the name at an index
+   *
+   * @param index the index
+   */
+  void removeAt(int index) {
+    System.arraycopy(names, index + 1, names, index, size - index - 1);
+    names[--size] = null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  @Override
+  public boolean add(String e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+
+    int index = indexOf(e);
+    if (index >= 0) {
+      return false;
+    }
+
+    index = -index - 1;
+    if (size == names.length) {
+      names = Arrays.copyOf(names, Math.max(2, size * 2));
+    }
+    System.arraycopy(names, index, names, index + 1, size - index);
+    names[index] = e;
+    size++;
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    int index = indexOf(o);
+    if (index < 0) {
+      return false;
+    }
+
+    removeAt(index);
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(names, 0, size, null);
+    size = 0;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      /** the index of the next name */
+      private int next = 0;
+
+      /** the index of the last returned name, -1 when none */
+      private int last = -1;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public String next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        last = next++;
+        return names[last];
+      }
+
+      @Override
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        removeAt(last);
+        next = last;
+        last = -1;
+      }
+    };
+  }
+}
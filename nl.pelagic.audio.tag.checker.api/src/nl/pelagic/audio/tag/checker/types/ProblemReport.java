@@ -1,5 +1,7 @@
 package nl.pelagic.audio.tag.checker.types;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import aQute.bnd.annotation.ProviderType;
@@ -18,9 +20,19 @@ public class ProblemReport {
   /** The actual value */
   private String actualValue = null;
 
-  /** A list of problem positions in {@link #actualValue} */
+  /**
+   * A list of problem positions in {@link #actualValue}. Only one of
+   * {@link #positionMarkers} and {@link #positionMarkerRanges} is set.
+   */
   private List<Integer> positionMarkers = null;
 
+  /**
+   * The problem positions in {@link #actualValue} as ranges: pairs of start
+   * (inclusive) and end (exclusive) positions. Only one of
+   * {@link #positionMarkers} and {@link #positionMarkerRanges} is set.
+   */
+  private int[] positionMarkerRanges = null;
+
   /**
    * Default constructor
    */
@@ -87,9 +99,14 @@ public class ProblemReport {
   }
 
   /**
-   * @return the positionMarkers
+   * @return the positionMarkers. Markers that were set as ranges are expanded
+   *         into a list (once).
    */
   public List<Integer> getPositionMarkers() {
+    if (positionMarkerRanges != null) {
+      positionMarkers = rangesToPositions(positionMarkerRanges);
+      positionMarkerRanges = null;
+    }
     return positionMarkers;
   }
 
@@ -98,6 +115,73 @@ public class ProblemReport {
    */
   public void setPositionMarkers(List<Integer> positionMarkers) {
     this.positionMarkers = positionMarkers;
+    this.positionMarkerRanges = null;
+  }
+
+  /**
+   * @return the position markers as ranges: pairs of start (inclusive) and end
+   *         (exclusive) positions in the actual value. Markers that were set as
+   *         a list are converted into ranges, in the order of the list.
+   */
+  public int[] getPositionMarkerRanges() {
+    if (positionMarkers != null) {
+      return positionsToRanges(positionMarkers);
+    }
+    return positionMarkerRanges;
+  }
+
+  /**
+   * @param positionMarkerRanges the position markers to set, as ranges: pairs
+   *          of start (inclusive) and end (exclusive) positions in the actual
+   *          value
+   */
+  public void setPositionMarkerRanges(int[] positionMarkerRanges) {
+    this.positionMarkerRanges = positionMarkerRanges;
+    this.positionMarkers = null;
+  }
+
+  /**
+   * Expand position ranges into a list of positions
+   * 
+   * @param ranges the ranges: pairs of start (inclusive) and end (exclusive)
+   *          positions
+   * @return the positions
+   */
+  static List<Integer> rangesToPositions(int[] ranges) {
+    int count = 0;
+    for (int i = 0; i + 1 < ranges.length; i += 2) {
+      count += Math.max(0, ranges[i + 1] - ranges[i]);
+    }
+
+    List<Integer> positions = new ArrayList<>(count);
+    for (int i = 0; i + 1 < ranges.length; i += 2) {
+      for (int position = ranges[i]; position < ranges[i + 1]; position++) {
+        positions.add(Integer.valueOf(position));
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * Collapse a list of positions into ranges of consecutive positions
+   * 
+   * @param positions the positions
+   * @return the ranges: pairs of start (inclusive) and end (exclusive)
+   *         positions
+   */
+  static int[] positionsToRanges(List<Integer> positions) {
+    int[] ranges = new int[2 * positions.size()];
+    int count = 0;
+    for (Integer position : positions) {
+      int p = position.intValue();
+      if ((count > 0) && (ranges[count - 1] == p)) {
+        ranges[count - 1] = p + 1;
+      } else {
+        ranges[count++] = p;
+        ranges[count++] = p + 1;
+      }
+    }
+    return (count == ranges.length) ? ranges : Arrays.copyOf(ranges, count);
   }
 
   @Override
@@ -110,7 +194,7 @@ public class ProblemReport {
     builder.append(", actualValue="); //$NON-NLS-1$
     builder.append(actualValue);
     builder.append(", positionMarkers="); //$NON-NLS-1$
-    builder.append(positionMarkers);
+    builder.append(getPositionMarkers());
     builder.append("]"); //$NON-NLS-1$
     return builder.toString();
   }
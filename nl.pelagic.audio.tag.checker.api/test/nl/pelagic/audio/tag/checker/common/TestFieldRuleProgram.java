@@ -0,0 +1,76 @@
+package nl.pelagic.audio.tag.checker.common;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import nl.pelagic.audio.tag.checker.api.FieldRule;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestFieldRuleProgram {
+  private static class RecordingRule implements FieldRule {
+    private final String name;
+    private final Set<GenericTagFieldName> fieldNames;
+    private final List<String> calls;
+
+    RecordingRule(String name, Set<GenericTagFieldName> fieldNames, List<String> calls) {
+      super();
+      this.name = name;
+      this.fieldNames = fieldNames;
+      this.calls = calls;
+    }
+
+    @Override
+    public Set<GenericTagFieldName> getFieldNames() {
+      return fieldNames;
+    }
+
+    @Override
+    public void check(GenericTag genericTag, GenericTagFieldName fieldName, FieldValueScanner value) {
+      calls.add(name + ":" + fieldName + ":" + value.getValue());
+    }
+  }
+
+  @Test
+  public void testRun_Empty() {
+    FieldRuleProgram program = new FieldRuleProgram(null);
+    assertThat(Integer.valueOf(program.size()), equalTo(Integer.valueOf(0)));
+    program.run(null);
+    program.run(new GenericTag());
+
+    program = new FieldRuleProgram(Collections.<FieldRule> emptyList());
+    assertThat(Integer.valueOf(program.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testRun() {
+    List<String> calls = new LinkedList<>();
+    RecordingRule all = new RecordingRule("all", EnumSet.allOf(GenericTagFieldName.class), calls);
+    RecordingRule title = new RecordingRule("title", EnumSet.of(GenericTagFieldName.ALBUMTITLE), calls);
+    RecordingRule none = new RecordingRule("none", EnumSet.noneOf(GenericTagFieldName.class), calls);
+
+    FieldRuleProgram program = new FieldRuleProgram(Arrays.<FieldRule> asList(title, all, none));
+    assertThat(Integer.valueOf(program.size()), equalTo(Integer.valueOf(3)));
+
+    GenericTag tag = new GenericTag();
+    tag.addField(null, GenericTagFieldName.ALBUMTITLE, "ALBUM", "b");
+    tag.addField(null, GenericTagFieldName.ALBUMTITLE, "TITLE", "a");
+    tag.addField(null, GenericTagFieldName.ALBUMYEAR, "YEAR", "2013");
+
+    program.run(tag);
+    assertThat(calls, equalTo(Arrays.asList("title:ALBUMTITLE:a", "all:ALBUMTITLE:a", "title:ALBUMTITLE:b",
+        "all:ALBUMTITLE:b", "all:ALBUMYEAR:2013")));
+  }
+}
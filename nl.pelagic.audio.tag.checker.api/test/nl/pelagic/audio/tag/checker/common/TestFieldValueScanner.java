@@ -0,0 +1,182 @@
+package nl.pelagic.audio.tag.checker.common;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import nl.pelagic.audio.tag.checker.common.FieldValueScanner.NumericShape;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestFieldValueScanner {
+  /** the characters of the generated values */
+  private static final char[] alphabet = {
+      ' ', ' ', ' ', '\t', '\n', 0x0b, '\f', '\r', 0x01, 0x1f, 'a', 'b', '0', '1', '9', '9', '/', '/', 0x7f, 0xe9,
+      0xa0, 0x263a
+  };
+
+  /** the unwanted characters expression of the former unwanted characters checker */
+  private static final Pattern patternUnchar = Pattern.compile(".*?([^ -~]+)");
+
+  private static List<Integer> expand(int[] ranges) {
+    if (ranges == null) {
+      return null;
+    }
+
+    List<Integer> positions = new ArrayList<>();
+    for (int i = 0; i < ranges.length; i += 2) {
+      for (int position = ranges[i]; position < ranges[i + 1]; position++) {
+        positions.add(Integer.valueOf(position));
+      }
+    }
+    return positions;
+  }
+
+  private static List<Integer> find(Pattern pattern, String s) {
+    Matcher matcher = pattern.matcher(s);
+    if (!matcher.find()) {
+      return null;
+    }
+
+    List<Integer> positions = new ArrayList<>();
+    do {
+      for (int i = matcher.start(1); i < matcher.end(1); i++) {
+        positions.add(Integer.valueOf(i));
+      }
+    }
+    while (matcher.find());
+    return positions;
+  }
+
+  private static void matchAdd(Pattern pattern, String s, List<Integer> positions) {
+    Matcher matcher = pattern.matcher(s);
+    if (matcher.matches()) {
+      for (int i = matcher.start(1); i < matcher.end(1); i++) {
+        positions.add(Integer.valueOf(i));
+      }
+    }
+  }
+
+  /**
+   * Verify the scanner against the regular expressions it replaces
+   *
+   * @param value the value
+   */
+  private static void verify(String value) {
+    FieldValueScanner scanner = new FieldValueScanner(value);
+    String simpleValue = value.replaceAll("\\s", " ");
+    String trimmedValue = simpleValue.trim();
+
+    assertThat(value, scanner.getValue(), equalTo(value));
+    assertThat(value, scanner.getSimpleValue(), equalTo(simpleValue));
+    assertThat(value, scanner.getTrimmedValue(), equalTo(trimmedValue));
+    assertThat(value, Boolean.valueOf(scanner.hasLeadingOrTrailingWhitespace()),
+        equalTo(Boolean.valueOf(!simpleValue.equals(trimmedValue))));
+
+    /* a value of whitespace only has only a leading range, instead of a duplicate trailing range */
+    if (!trimmedValue.isEmpty()) {
+      List<Integer> positions = new ArrayList<>();
+      matchAdd(RegularExpressions.patternLeadingWhitespace, simpleValue, positions);
+      matchAdd(RegularExpressions.patternTrailingWhitespace, simpleValue, positions);
+      assertThat(value, expand(scanner.getLeadingAndTrailingWhitespaceRanges()), equalTo(positions));
+    }
+
+    assertThat(value, expand(scanner.getMultipleWhitespaceRanges()),
+        equalTo(find(RegularExpressions.patternMultipleWhitespace, trimmedValue)));
+    assertThat(value, scanner.getCollapsedValue(), equalTo(trimmedValue.replaceAll("\\s+", " ")));
+    assertThat(value, expand(scanner.getUnwantedCharacterRanges()), equalTo(find(patternUnchar, value)));
+
+    NumericShape shape = scanner.getNumericShape();
+    assertThat(value, Boolean.valueOf(shape == NumericShape.DISC_NUMBER),
+        equalTo(Boolean.valueOf(RegularExpressions.patternDiscNumber.matcher(trimmedValue).matches())));
+    assertThat(value, Boolean.valueOf(shape == NumericShape.NUMBER),
+        equalTo(Boolean.valueOf(RegularExpressions.patternSimpleNumber.matcher(trimmedValue).matches())));
+    assertThat(value, Boolean.valueOf((shape == NumericShape.NUMBER) && (scanner.getNumberDigits() == 4)),
+        equalTo(Boolean.valueOf(RegularExpressions.patternYear.matcher(trimmedValue).matches())));
+
+    if (shape == NumericShape.DISC_NUMBER) {
+      int slash = trimmedValue.indexOf('/');
+      assertThat(value, Integer.valueOf(scanner.getSlashPosition()), equalTo(Integer.valueOf(slash)));
+      assertThat(value, Long.valueOf(scanner.getNumber()),
+          equalTo(Long.valueOf(trimmedValue.substring(0, slash).trim())));
+      assertThat(value, Long.valueOf(scanner.getTotal()),
+          equalTo(Long.valueOf(trimmedValue.substring(slash + 1).trim())));
+    } else if (shape == NumericShape.NUMBER) {
+      assertThat(value, Long.valueOf(scanner.getNumber()), equalTo(Long.valueOf(trimmedValue)));
+    }
+  }
+
+  @Test
+  public void testScan_Examples() {
+    String[] values = {
+        "", " ", "   ", "\t", "a", " a", "a ", " a ", "  \t  leading whitespace", "trailing whitespace  \t  ",
+        "  multiple  internal  whitespace  ", "a\u0001  b", "\u0001  a", "a  \u0001", "a \u0001 b", "1", " 12 ",
+        "2013", "0000", "111", "11111", "-1", "1/2", "1 /2", "1/ 2", " 1 / 2 ", "12/18", "1/", "/1", "1//2",
+        "1 2", "1/2/3", "1\u0001/2", "1/\u00012", "1/2\u0001", "\u00011/2", "\u00e9t\u00e9", "caf\u00e9  \u263a"
+    };
+    for (String value : values) {
+      verify(value);
+    }
+  }
+
+  @Test
+  public void testScan_Random() {
+    Random random = new Random(20131018);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      sb.setLength(0);
+      int length = random.nextInt(12);
+      for (int j = 0; j < length; j++) {
+        sb.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      verify(sb.toString());
+    }
+  }
+
+  @Test
+  public void testGetLeadingAndTrailingWhitespaceRanges() {
+    assertThat(new FieldValueScanner("").getLeadingAndTrailingWhitespaceRanges(), equalTo(new int[0]));
+    assertThat(new FieldValueScanner("a").getLeadingAndTrailingWhitespaceRanges(), equalTo(new int[0]));
+    assertThat(new FieldValueScanner("   ").getLeadingAndTrailingWhitespaceRanges(), equalTo(new int[] {
+        0, 3
+    }));
+    assertThat(new FieldValueScanner(" \ta\r\n").getLeadingAndTrailingWhitespaceRanges(), equalTo(new int[] {
+        0, 2, 3, 5
+    }));
+  }
+
+  @Test
+  public void testGetMultipleWhitespaceRanges() {
+    assertThat(new FieldValueScanner("  a b  ").getMultipleWhitespaceRanges(), nullValue());
+    assertThat(new FieldValueScanner("  a  b\t\tc ").getMultipleWhitespaceRanges(), equalTo(new int[] {
+        1, 3, 4, 6
+    }));
+  }
+
+  @Test
+  public void testGetUnwantedCharacterRanges() {
+    assertThat(new FieldValueScanner("abc ~").getUnwantedCharacterRanges(), nullValue());
+    assertThat(new FieldValueScanner("\u00e9t\u00e9\t").getUnwantedCharacterRanges(), equalTo(new int[] {
+        0, 1, 2, 4
+    }));
+  }
+
+  @Test
+  public void testNumbers_Saturated() {
+    FieldValueScanner scanner = new FieldValueScanner("123456789012345678901234567890/1");
+    assertThat(scanner.getNumericShape(), equalTo(NumericShape.DISC_NUMBER));
+    assertThat(Long.valueOf(scanner.getNumber()), equalTo(Long.valueOf(Long.MAX_VALUE)));
+    assertThat(Integer.valueOf(scanner.getNumberDigits()), equalTo(Integer.valueOf(30)));
+    assertThat(Long.valueOf(scanner.getTotal()), equalTo(Long.valueOf(1)));
+    assertThat(Integer.valueOf(scanner.getSlashPosition()), equalTo(Integer.valueOf(30)));
+  }
+}
@@ -39,6 +39,13 @@ public class TestAudioTagCheckerConfiguration {
     assertThat(Boolean.valueOf(config.isRegexInAllDirs()),
         equalTo(Boolean.valueOf(AudioTagCheckerConfiguration.DEFAULT_REGEXINALLDIRS)));
     assertThat(config.getRegexPattern(), nullValue());
+    assertThat(Integer.valueOf(config.getWorkers()),
+        equalTo(Integer.valueOf(AudioTagCheckerConfiguration.DEFAULT_WORKERS)));
+    assertThat(config.getCacheFile(), nullValue());
+    assertThat(Boolean.valueOf(config.isForceRecheck()),
+        equalTo(Boolean.valueOf(AudioTagCheckerConfiguration.DEFAULT_FORCERECHECK)));
+    assertThat(Boolean.valueOf(config.isFusedChecks()),
+        equalTo(Boolean.valueOf(AudioTagCheckerConfiguration.DEFAULT_FUSEDCHECKS)));
     assertThat(config.getCheckPath(), nullValue());
     assertThat(config.getEnabledTagCheckers(), nullValue());
     assertThat(config.getDisabledTagCheckers(), nullValue());
@@ -77,6 +84,31 @@ public class TestAudioTagCheckerConfiguration {
         equalTo(Boolean.valueOf(!AudioTagCheckerConfiguration.DEFAULT_REGEXINALLDIRS)));
   }
 
+  @Test
+  public void testSetCacheFile() {
+    File cacheFile = new File("cache");
+    config.setCacheFile(cacheFile);
+    assertThat(config.getCacheFile(), equalTo(cacheFile));
+  }
+
+  @Test
+  public void testSetForceRecheck() {
+    config.setForceRecheck(true);
+    assertThat(Boolean.valueOf(config.isForceRecheck()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSetFusedChecks() {
+    config.setFusedChecks(true);
+    assertThat(Boolean.valueOf(config.isFusedChecks()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSetWorkers() {
+    config.setWorkers(3);
+    assertThat(Integer.valueOf(config.getWorkers()), equalTo(Integer.valueOf(3)));
+  }
+
   @Test
   public void testSetRegexPattern() {
     assertThat(config.getRegexPattern(), nullValue());
@@ -0,0 +1,81 @@
+package nl.pelagic.audio.tag.checker.types;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls"
+})
+public class TestFieldValues {
+
+  @Test
+  public void testPutGetRemove() {
+    FieldValues values = new FieldValues();
+    Map<String, Set<String>> expected = new TreeMap<>();
+    for (String value : new String[] {
+        "d", "b", "e", "a", "c"
+    }) {
+      Set<String> names = new NameSet("name-" + value);
+      assertThat(values.put(value, names), nullValue());
+      expected.put(value, names);
+    }
+    assertThat(values, equalTo(expected));
+    assertThat(values.keySet().toArray(), equalTo(expected.keySet().toArray()));
+
+    Set<String> names = new NameSet("other");
+    assertThat(values.put("c", names), sameInstance(expected.get("c")));
+    assertThat(values.get("c"), sameInstance(names));
+    assertThat(Boolean.valueOf(values.containsKey("c")), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(values.containsKey("f")), equalTo(Boolean.FALSE));
+    assertThat(values.get(null), nullValue());
+    assertThat(values.get("f"), nullValue());
+
+    assertThat(values.remove("c"), sameInstance(names));
+    assertThat(values.remove("c"), nullValue());
+    assertThat(values.remove("a"), sameInstance(expected.get("a")));
+    assertThat(values.keySet().toArray(), equalTo(new Object[] {
+        "b", "d", "e"
+    }));
+
+    values.clear();
+    assertThat(Integer.valueOf(values.size()), equalTo(Integer.valueOf(0)));
+    assertThat(Boolean.valueOf(values.isEmpty()), equalTo(Boolean.TRUE));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testPut_Null() {
+    new FieldValues().put(null, new NameSet());
+  }
+
+  @Test
+  public void testEntrySet() {
+    FieldValues values = new FieldValues();
+    values.put("a", new NameSet("1"));
+    values.put("b", new NameSet("2"));
+    values.put("c", new NameSet("3"));
+
+    Iterator<Map.Entry<String, Set<String>>> it = values.entrySet().iterator();
+    Map.Entry<String, Set<String>> entry = it.next();
+    assertThat(entry.getKey(), equalTo("a"));
+    Set<String> names = new NameSet("4");
+    entry.setValue(names);
+    assertThat(values.get("a"), sameInstance(names));
+
+    assertThat(it.next().getKey(), equalTo("b"));
+    it.remove();
+    assertThat(it.next().getKey(), equalTo("c"));
+    assertThat(Boolean.valueOf(it.hasNext()), equalTo(Boolean.FALSE));
+    assertThat(values.keySet().toArray(), equalTo(new Object[] {
+        "a", "c"
+    }));
+  }
+}
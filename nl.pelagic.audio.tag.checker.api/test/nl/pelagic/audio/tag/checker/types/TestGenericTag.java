@@ -7,6 +7,7 @@ import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -497,4 +498,104 @@ public class TestGenericTag {
     assertThat(reports, notNullValue());
     assertThat(Integer.valueOf(reports.size()), equalTo(Integer.valueOf(1)));
   }
+
+  @Test
+  public void testAddRangeReport() {
+    GenericTag gt = new GenericTag();
+
+    gt.addRangeReport(null, "msg", null, null, null);
+    gt.addRangeReport(GenericTagFieldName.ALBUMARTIST, null, null, null, null);
+    assertThat(Integer.valueOf(gt.getReports().size()), equalTo(Integer.valueOf(0)));
+
+    gt.addRangeReport(GenericTagFieldName.ALBUMARTIST, "msg", "a  b", new int[] {
+        1, 3
+    }, "a b");
+    List<ProblemReport> reports = gt.getReports().get(GenericTagFieldName.ALBUMARTIST);
+    assertThat(Integer.valueOf(reports.size()), equalTo(Integer.valueOf(1)));
+    ProblemReport pr = reports.get(0);
+    assertThat(pr.getMessage(), equalTo("msg"));
+    assertThat(pr.getActualValue(), equalTo("a  b"));
+    assertThat(pr.getExpectedValue(), equalTo("a b"));
+    assertThat(pr.getPositionMarkers(), equalTo(Arrays.asList(Integer.valueOf(1), Integer.valueOf(2))));
+  }
+
+  @Test
+  public void testAddFieldInPlace() {
+    GenericTag gt = new GenericTag();
+
+    NameValuePair prev = new NameValuePair();
+    gt.addFieldInPlace(prev, GenericTagFieldName.ALBUMTITLE, "name", "aa");
+    assertThat(prev.getName(), equalTo("name"));
+    assertThat(prev.getValue(), equalTo("aa"));
+
+    gt.addFieldInPlace(prev, GenericTagFieldName.ALBUMTITLE, "name", "bb");
+    assertThat(prev.getName(), equalTo("name"));
+    assertThat(prev.getValue(), equalTo("aa - bb"));
+
+    Map<String, Set<String>> first = gt.getFields().get(GenericTagFieldName.ALBUMTITLE);
+    assertThat(Integer.valueOf(first.size()), equalTo(Integer.valueOf(1)));
+    assertThat(first.get("aa - bb").toArray(), equalTo(new Object[] {
+      "name"
+    }));
+
+    gt.addFieldInPlace(prev, GenericTagFieldName.ALBUMTITLE, "name", null);
+    assertThat(prev.getName(), nullValue());
+    assertThat(prev.getValue(), nullValue());
+
+    gt.addFieldInPlace(prev, GenericTagFieldName.ALBUMTITLE, "name", "cc");
+    assertThat(prev.getValue(), equalTo("cc"));
+    assertThat(first.keySet().toArray(), equalTo(new Object[] {
+        "aa - bb", "cc"
+    }));
+  }
+
+  @Test
+  public void testAddField_Interned() {
+    GenericTag gt1 = new GenericTag();
+    GenericTag gt2 = new GenericTag();
+
+    String album = "album";
+    gt1.addField(null, GenericTagFieldName.ALBUMTITLE, new String("name"), new String(album));
+    gt2.addField(null, GenericTagFieldName.ALBUMTITLE, new String("name"), new String(album));
+    String title = "title";
+    gt1.addField(null, GenericTagFieldName.TRACKTITLE, "name", new String(title));
+    gt2.addField(null, GenericTagFieldName.TRACKTITLE, "name", new String(title));
+
+    String album1 = gt1.getFields().get(GenericTagFieldName.ALBUMTITLE).keySet().iterator().next();
+    String album2 = gt2.getFields().get(GenericTagFieldName.ALBUMTITLE).keySet().iterator().next();
+    assertThat(Boolean.valueOf(album1 == album2), equalTo(Boolean.TRUE));
+
+    String name1 = gt1.getFields().get(GenericTagFieldName.ALBUMTITLE).get(album).iterator().next();
+    String name2 = gt2.getFields().get(GenericTagFieldName.ALBUMTITLE).get(album).iterator().next();
+    assertThat(Boolean.valueOf(name1 == name2), equalTo(Boolean.TRUE));
+
+    /* track values are not interned */
+    String title1 = gt1.getFields().get(GenericTagFieldName.TRACKTITLE).keySet().iterator().next();
+    String title2 = gt2.getFields().get(GenericTagFieldName.TRACKTITLE).keySet().iterator().next();
+    assertThat(Boolean.valueOf(title1 == title2), equalTo(Boolean.FALSE));
+  }
+
+  @Test
+  public void testGetFields_Order() {
+    GenericTag gt = new GenericTag();
+    gt.addField(null, GenericTagFieldName.TRACKTITLE, "name", "title");
+    gt.addField(null, GenericTagFieldName.ALBUMTITLE, "name2", "b");
+    gt.addField(null, GenericTagFieldName.ALBUMTITLE, "name1", "a");
+    gt.addField(null, GenericTagFieldName.ALBUMTITLE, "name0", "a");
+    gt.addReport(GenericTagFieldName.TRACKTITLE, "msg", null, null, null);
+    gt.addReport(GenericTagFieldName.ALBUMDISCNUMBER, "msg", null, null, null);
+
+    assertThat(gt.getFields().keySet().toArray(), equalTo(new Object[] {
+        GenericTagFieldName.ALBUMTITLE, GenericTagFieldName.TRACKTITLE
+    }));
+    assertThat(gt.getFields().get(GenericTagFieldName.ALBUMTITLE).keySet().toArray(), equalTo(new Object[] {
+        "a", "b"
+    }));
+    assertThat(gt.getFields().get(GenericTagFieldName.ALBUMTITLE).get("a").toArray(), equalTo(new Object[] {
+        "name0", "name1"
+    }));
+    assertThat(gt.getReports().keySet().toArray(), equalTo(new Object[] {
+        GenericTagFieldName.ALBUMDISCNUMBER, GenericTagFieldName.TRACKTITLE
+    }));
+  }
 }
@@ -0,0 +1,98 @@
+package nl.pelagic.audio.tag.checker.types;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls"
+})
+public class TestNameSet {
+
+  @Test
+  public void testNameSet() {
+    NameSet set = new NameSet();
+    assertThat(Integer.valueOf(set.size()), equalTo(Integer.valueOf(0)));
+
+    set = new NameSet("b");
+    assertThat(set.toArray(), equalTo(new Object[] {
+      "b"
+    }));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNameSet_Null() {
+    new NameSet(null);
+  }
+
+  @Test
+  public void testAddRemove() {
+    NameSet set = new NameSet();
+    for (String name : Arrays.asList("d", "b", "e", "a", "c", "b")) {
+      set.add(name);
+    }
+    assertThat(set.toArray(), equalTo(new Object[] {
+        "a", "b", "c", "d", "e"
+    }));
+    assertThat(Boolean.valueOf(set.add("c")), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(set.contains("c")), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(set.contains("f")), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(set.contains(null)), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(set.contains(Integer.valueOf(1))), equalTo(Boolean.FALSE));
+
+    assertThat(Boolean.valueOf(set.remove("c")), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(set.remove("c")), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(set.remove("a")), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(set.remove("e")), equalTo(Boolean.TRUE));
+    assertThat(set.toArray(), equalTo(new Object[] {
+        "b", "d"
+    }));
+
+    set.clear();
+    assertThat(Integer.valueOf(set.size()), equalTo(Integer.valueOf(0)));
+    set.add("x");
+    assertThat(set.toArray(), equalTo(new Object[] {
+      "x"
+    }));
+  }
+
+  @Test
+  public void testIterator() {
+    NameSet set = new NameSet();
+    set.addAll(Arrays.asList("a", "b", "c"));
+
+    Iterator<String> it = set.iterator();
+    assertThat(it.next(), equalTo("a"));
+    assertThat(it.next(), equalTo("b"));
+    it.remove();
+    assertThat(it.next(), equalTo("c"));
+    assertThat(Boolean.valueOf(it.hasNext()), equalTo(Boolean.FALSE));
+    assertThat(set.toArray(), equalTo(new Object[] {
+        "a", "c"
+    }));
+
+    boolean thrown = false;
+    try {
+      it.next();
+    }
+    catch (NoSuchElementException e) {
+      thrown = true;
+    }
+    assertThat(Boolean.valueOf(thrown), equalTo(Boolean.TRUE));
+
+    it = set.iterator();
+    thrown = false;
+    try {
+      it.remove();
+    }
+    catch (IllegalStateException e) {
+      thrown = true;
+    }
+    assertThat(Boolean.valueOf(thrown), equalTo(Boolean.TRUE));
+  }
+}
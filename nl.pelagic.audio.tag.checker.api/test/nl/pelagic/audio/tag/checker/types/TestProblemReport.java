@@ -8,6 +8,7 @@ import static org.junit.Assert.assertThat;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -102,6 +103,39 @@ public class TestProblemReport {
     assertThat(pr.getPositionMarkers(), equalTo(markers));
   }
 
+  @Test
+  public void testSetPositionMarkerRanges() {
+    ProblemReport pr = new ProblemReport();
+    assertThat(pr.getPositionMarkerRanges(), nullValue());
+
+    pr.setPositionMarkerRanges(new int[] {
+        1, 3, 5, 6
+    });
+    assertThat(pr.getPositionMarkerRanges(), equalTo(new int[] {
+        1, 3, 5, 6
+    }));
+    assertThat(pr.getPositionMarkers(), equalTo(Arrays.asList(Integer.valueOf(1), Integer.valueOf(2),
+        Integer.valueOf(5))));
+
+    /* the markers are now a list */
+    assertThat(pr.getPositionMarkerRanges(), equalTo(new int[] {
+        1, 3, 5, 6
+    }));
+
+    pr.setPositionMarkers(Arrays.asList(Integer.valueOf(7), Integer.valueOf(8), Integer.valueOf(0),
+        Integer.valueOf(1)));
+    assertThat(pr.getPositionMarkerRanges(), equalTo(new int[] {
+        7, 9, 0, 2
+    }));
+
+    pr.setPositionMarkers(new ArrayList<Integer>());
+    assertThat(pr.getPositionMarkerRanges(), equalTo(new int[0]));
+
+    pr.setPositionMarkerRanges(null);
+    assertThat(pr.getPositionMarkers(), nullValue());
+    assertThat(pr.getPositionMarkerRanges(), nullValue());
+  }
+
   @Test
   public void testToString() {
     ProblemReport pr = new ProblemReport();
@@ -1,18 +1,22 @@
 package nl.pelagic.audio.tag.checker.basic;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.regex.Matcher;
 
+import nl.pelagic.audio.tag.checker.api.FieldRule;
+import nl.pelagic.audio.tag.checker.api.FieldRuleTagChecker;
 import nl.pelagic.audio.tag.checker.api.TagChecker;
 import nl.pelagic.audio.tag.checker.basic.i18n.Messages;
-import nl.pelagic.audio.tag.checker.common.RegularExpressions;
+import nl.pelagic.audio.tag.checker.common.FieldRuleProgram;
+import nl.pelagic.audio.tag.checker.common.FieldValueScanner;
+import nl.pelagic.audio.tag.checker.common.FieldValueScanner.NumericShape;
 import nl.pelagic.audio.tag.checker.types.GenericTag;
 import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
 import aQute.bnd.annotation.component.Component;
@@ -38,19 +42,223 @@ import aQute.bnd.annotation.component.Component;
  * <li>Total number of track on the album is a number</li>
  * <li>Album year is a 4-digit year between 1500 and this year</li>
  * </ul>
+ * 
+ * The checks of the values are declared as field rules, so that they can be
+ * fused with the rules of other tag checkers.
  */
-@Component
-public class BasicTagChecker implements TagChecker {
+@Component(provide = TagChecker.class)
+public class BasicTagChecker implements FieldRuleTagChecker {
 
   /** The primary generic tag field names */
   private GenericTagFieldName[] primaries = GenericTagFieldName.getPrimaries(false);
 
+  /**
+   * The current year, and the time at which it ends
+   */
+  private static class CurrentYear {
+    /** the year */
+    final int year;
+
+    /** the time (in milliseconds since the epoch) at which the year ends */
+    final long end;
+
+    /**
+     * Constructor
+     *
+     * @param year the year
+     * @param end the time (in milliseconds since the epoch) at which the year
+     *          ends
+     */
+    CurrentYear(int year, long end) {
+      super();
+      this.year = year;
+      this.end = end;
+    }
+  }
+
+  /** The current year, recomputed when the year has ended */
+  private static volatile CurrentYear currentYear = null;
+
+  /**
+   * @return the current year, without creating a calendar for every check
+   */
+  static int getCurrentYear() {
+    long now = System.currentTimeMillis();
+    CurrentYear cy = currentYear;
+    if ((cy == null) || (now >= cy.end)) {
+      Calendar calendar = Calendar.getInstance();
+      calendar.setTimeInMillis(now);
+      int year = calendar.get(Calendar.YEAR);
+      calendar.clear();
+      calendar.set(year + 1, Calendar.JANUARY, 1);
+      cy = new CurrentYear(year, calendar.getTimeInMillis());
+      currentYear = cy;
+    }
+    return cy.year;
+  }
+
+  /**
+   * @param fieldNames the generic tag field names
+   * @return the primary and pseudo-primary fields among the field names
+   */
+  private static Set<GenericTagFieldName> primaries(GenericTagFieldName... fieldNames) {
+    Set<GenericTagFieldName> result = EnumSet.noneOf(GenericTagFieldName.class);
+    for (GenericTagFieldName fieldName : fieldNames) {
+      if (fieldName.isPrimary(true)) {
+        result.add(fieldName);
+      }
+    }
+    return Collections.unmodifiableSet(result);
+  }
+
+  /**
+   * No empty values, no leading/trailing whitespace and no multiple
+   * consecutive whitespace characters
+   */
+  private static final FieldRule whitespaceRule = new FieldRule() {
+    private final Set<GenericTagFieldName> fieldNames = primaries(GenericTagFieldName.values());
+
+    @Override
+    public Set<GenericTagFieldName> getFieldNames() {
+      return fieldNames;
+    }
+
+    @Override
+    public void check(GenericTag genericTag, GenericTagFieldName fieldName, FieldValueScanner value) {
+      /* no empty fields */
+      if (value.getValue().isEmpty()) {
+        genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.3"), null, null, null); //$NON-NLS-1$
+      }
+
+      /*
+       * Compare against the trimmed value, with all whitespace characters being
+       * simple spaces (needed for the position markers), for avoidance of
+       * duplicate reports
+       */
+      String trimmedValue = value.getTrimmedValue();
+
+      /* no leading/trailing whitespace */
+      if (value.hasLeadingOrTrailingWhitespace()) {
+        genericTag.addRangeReport(fieldName, Messages.getString("BasicTagChecker.4"), value.getSimpleValue(), //$NON-NLS-1$
+            value.getLeadingAndTrailingWhitespaceRanges(), trimmedValue);
+      }
+
+      /*
+       * No multiple consecutive whitespace characters. Use trimmed value to
+       * prevent duplicate reports when the value has (multiple) leading and/or
+       * trailing whitespace
+       */
+      int[] multipleWhitespaceRanges = value.getMultipleWhitespaceRanges();
+      if (multipleWhitespaceRanges != null) {
+        genericTag.addRangeReport(fieldName, Messages.getString("BasicTagChecker.5"), trimmedValue, //$NON-NLS-1$
+            multipleWhitespaceRanges, value.getCollapsedValue());
+      }
+    }
+  };
+
+  /** Correct x/y disc number */
+  private static final FieldRule discNumberRule = new FieldRule() {
+    private final Set<GenericTagFieldName> fieldNames = primaries(GenericTagFieldName.ALBUMDISCNUMBER);
+
+    @Override
+    public Set<GenericTagFieldName> getFieldNames() {
+      return fieldNames;
+    }
+
+    @Override
+    public void check(GenericTag genericTag, GenericTagFieldName fieldName, FieldValueScanner value) {
+      String trimmedValue = value.getTrimmedValue();
+      if (value.getNumericShape() == NumericShape.DISC_NUMBER) {
+        long currentDisc = value.getNumber();
+        long totalDiscs = value.getTotal();
+        if (currentDisc > totalDiscs) {
+          genericTag.addRangeReport(fieldName, Messages.getString("BasicTagChecker.14"), trimmedValue, //$NON-NLS-1$
+              new int[] {
+                  0, value.getSlashPosition()
+              }, String.format(Messages.getString("BasicTagChecker.15"), Long.valueOf(totalDiscs), //$NON-NLS-1$
+                  Long.valueOf(totalDiscs)));
+        }
+      } else {
+        genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.6"), trimmedValue, null, //$NON-NLS-1$
+            Messages.getString("BasicTagChecker.7")); //$NON-NLS-1$
+      }
+    }
+  };
+
+  /** Correct track number and correct total tracks number */
+  private static final FieldRule numberRule = new FieldRule() {
+    private final Set<GenericTagFieldName> fieldNames = primaries(GenericTagFieldName.TRACKNUMBER,
+        GenericTagFieldName.ALBUMTOTALTRACKS);
+
+    @Override
+    public Set<GenericTagFieldName> getFieldNames() {
+      return fieldNames;
+    }
+
+    @Override
+    public void check(GenericTag genericTag, GenericTagFieldName fieldName, FieldValueScanner value) {
+      if (value.getNumericShape() != NumericShape.NUMBER) {
+        genericTag.addReport(fieldName,
+            Messages.getString("BasicTagChecker.8"), value.getTrimmedValue(), null, Messages.getString("BasicTagChecker.9")); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+  };
+
+  /** Correct 4 digit year in the range [1500, now] */
+  private static final FieldRule yearRule = new FieldRule() {
+    private final Set<GenericTagFieldName> fieldNames = primaries(GenericTagFieldName.ALBUMYEAR);
+
+    @Override
+    public Set<GenericTagFieldName> getFieldNames() {
+      return fieldNames;
+    }
+
+    @Override
+    public void check(GenericTag genericTag, GenericTagFieldName fieldName, FieldValueScanner value) {
+      String trimmedValue = value.getTrimmedValue();
+
+      /* correct 4 digit year */
+      if ((value.getNumericShape() != NumericShape.NUMBER) || (value.getNumberDigits() != 4)) {
+        genericTag.addReport(fieldName,
+            Messages.getString("BasicTagChecker.10"), trimmedValue, null, Messages.getString("BasicTagChecker.11")); //$NON-NLS-1$ //$NON-NLS-2$
+        return;
+      }
+
+      /* correct year in range [1500, now] */
+      int yearNow = getCurrentYear();
+      long year = value.getNumber();
+      int yearLow = 1500;
+      if ((year < yearLow) || (year > yearNow)) {
+        genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.12"), trimmedValue, null, //$NON-NLS-1$
+            Messages.getString("BasicTagChecker.13") + " [" + yearLow + ", " //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+                + yearNow + "]"); //$NON-NLS-1$
+      }
+    }
+  };
+
+  /** The field rules, in evaluation order */
+  private static final List<FieldRule> fieldRules = Collections.unmodifiableList(Arrays.asList(whitespaceRule,
+      discNumberRule, numberRule, yearRule));
+
+  /** The compiled field rules, for when the checks are not fused */
+  private static final FieldRuleProgram fieldRuleProgram = new FieldRuleProgram(fieldRules);
+
   @Override
   public void check(GenericTag genericTag) {
     if (genericTag == null) {
       return;
     }
 
+    checkTag(genericTag);
+    fieldRuleProgram.run(genericTag);
+  }
+
+  @Override
+  public void checkTag(GenericTag genericTag) {
+    if (genericTag == null) {
+      return;
+    }
+
     /* no artwork */
     if (genericTag.hasArtwork()) {
       genericTag.addReport(GenericTagFieldName.ARTWORK, Messages.getString("BasicTagChecker.0"), null, null, null); //$NON-NLS-1$
@@ -75,142 +283,18 @@ public class BasicTagChecker implements TagChecker {
     }
     missingPrimaries.clear();
 
+    /* no empty primary and pseudo-primary fields, their values are checked by the field rules */
     for (Entry<GenericTagFieldName, Map<String, Set<String>>> entry : fields.entrySet()) {
       GenericTagFieldName fieldName = entry.getKey();
-
-      /* skip non-primary fields */
-      if (!fieldName.isPrimary(true)) {
-        continue;
-      }
-
-      /* only primary and pseudo-primary fields from here */
-
       Map<String, Set<String>> valueNameMap = entry.getValue();
-
-      /* no empty fields */
-      if ((valueNameMap == null) || valueNameMap.isEmpty()) {
+      if (fieldName.isPrimary(true) && ((valueNameMap == null) || valueNameMap.isEmpty())) {
         genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.2"), null, null, null); //$NON-NLS-1$
-        continue;
-      }
-
-      for (String value : valueNameMap.keySet()) {
-        /* no empty fields */
-        if (value.isEmpty()) {
-          genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.3"), null, null, null); //$NON-NLS-1$
-        }
-
-        /*
-         * make sure all whitespace characters are simple spaces, needed for the
-         * position markers
-         */
-        String simpleValue = value.replaceAll("\\s", " "); //$NON-NLS-1$ //$NON-NLS-2$
-
-        /*
-         * trim the value, for efficient compares and avoidance of duplicate
-         * reports
-         */
-        String trimmedValue = simpleValue.trim();
-
-        /* no leading/trailing whitespace */
-        if (!simpleValue.equals(trimmedValue)) {
-          List<Integer> positionMarkers = new ArrayList<>();
-
-          Matcher matcher = RegularExpressions.patternLeadingWhitespace.matcher(simpleValue);
-          if (matcher.matches()) {
-            int i = matcher.start(1);
-            while (i < matcher.end(1)) {
-              positionMarkers.add(Integer.valueOf(i));
-              i++;
-            }
-          }
-
-          matcher = RegularExpressions.patternTrailingWhitespace.matcher(simpleValue);
-          if (matcher.matches()) {
-            int i = matcher.start(1);
-            while (i < matcher.end(1)) {
-              positionMarkers.add(Integer.valueOf(i));
-              i++;
-            }
-          }
-
-          genericTag.addReport(fieldName,
-              Messages.getString("BasicTagChecker.4"), simpleValue, positionMarkers, trimmedValue); //$NON-NLS-1$
-        }
-
-        /*
-         * No multiple consecutive whitespace characters. Use trimmed value to
-         * prevent duplicate reports when the value has (multiple) leading
-         * and/or trailing whitespace
-         */
-        {
-          Matcher matcher = RegularExpressions.patternMultipleWhitespace.matcher(trimmedValue);
-          if (matcher.find()) {
-            List<Integer> positionMarkers = new ArrayList<>();
-            do {
-              int i = matcher.start(1);
-              int end = matcher.end(1);
-              while (i < end) {
-                positionMarkers.add(Integer.valueOf(i));
-                i++;
-              }
-            }
-            while (matcher.find());
-
-            genericTag
-                .addReport(
-                    fieldName,
-                    Messages.getString("BasicTagChecker.5"), trimmedValue, positionMarkers, trimmedValue.replaceAll("\\s+", " ")); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
-          }
-        }
-
-        /* correct x/y disc number */
-        if (fieldName.equals(GenericTagFieldName.ALBUMDISCNUMBER)) {
-          if (RegularExpressions.patternDiscNumber.matcher(trimmedValue).matches()) {
-            String[] split = trimmedValue.split("/"); //$NON-NLS-1$
-            int currentDisc = Integer.parseInt(split[0]);
-            int totalDiscs = Integer.parseInt(split[1]);
-            if (currentDisc > totalDiscs) {
-              List<Integer> positionMarkers = new ArrayList<>();
-              int pos = trimmedValue.indexOf('/');
-              for (int i = 0; i < pos; i++) {
-                positionMarkers.add(Integer.valueOf(i));
-              }
-              genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.14"), trimmedValue, positionMarkers, //$NON-NLS-1$
-                  String.format(Messages.getString("BasicTagChecker.15"), Integer.valueOf(totalDiscs), //$NON-NLS-1$
-                      Integer.valueOf(totalDiscs)));
-            }
-          } else {
-            genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.6"), trimmedValue, null, //$NON-NLS-1$
-                Messages.getString("BasicTagChecker.7")); //$NON-NLS-1$
-          }
-        }
-
-        /* correct track number and correct total tracks number */
-        if ((fieldName.equals(GenericTagFieldName.TRACKNUMBER) || fieldName
-            .equals(GenericTagFieldName.ALBUMTOTALTRACKS))
-            && !RegularExpressions.patternSimpleNumber.matcher(trimmedValue).matches()) {
-          genericTag.addReport(fieldName,
-              Messages.getString("BasicTagChecker.8"), trimmedValue, null, Messages.getString("BasicTagChecker.9")); //$NON-NLS-1$ //$NON-NLS-2$
-        }
-
-        if (fieldName.equals(GenericTagFieldName.ALBUMYEAR)) {
-          /* correct 4 digit year */
-          if (!RegularExpressions.patternYear.matcher(trimmedValue).matches()) {
-            genericTag.addReport(fieldName,
-                Messages.getString("BasicTagChecker.10"), trimmedValue, null, Messages.getString("BasicTagChecker.11")); //$NON-NLS-1$ //$NON-NLS-2$
-          } else {
-            /* correct year in range [1500, now] */
-            int yearNow = Calendar.getInstance().get(Calendar.YEAR);
-            int year = Integer.parseInt(trimmedValue);
-            int yearLow = 1500;
-            if ((year < yearLow) || (year > yearNow)) {
-              genericTag.addReport(fieldName, Messages.getString("BasicTagChecker.12"), trimmedValue, null, //$NON-NLS-1$
-                  Messages.getString("BasicTagChecker.13") + " [" + yearLow + ", " //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
-                      + yearNow + "]"); //$NON-NLS-1$
-            }
-          }
-        }
       }
     }
   }
+
+  @Override
+  public List<FieldRule> getFieldRules() {
+    return fieldRules;
+  }
 }
@@ -15,6 +15,7 @@ import java.util.Map;
 import java.util.Set;
 
 import nl.pelagic.audio.tag.checker.basic.i18n.Messages;
+import nl.pelagic.audio.tag.checker.common.FieldRuleProgram;
 import nl.pelagic.audio.tag.checker.types.GenericTag;
 import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
 import nl.pelagic.audio.tag.checker.types.ProblemReport;
@@ -48,6 +49,30 @@ public class TestBasicTagChecker {
     basicTagChecker.check(null);
   }
 
+  @Test
+  public void testCheckTag_FieldRules() {
+    String[][] values = {
+        {
+            "11", "1/1", "title", "1", "2013", "genre", "artist", "track", "album artist"
+        }, {
+            " 11", "3 / 2", "  multiple  internal  whitespace  ", "x", "13", "", "\tartist ", "a  b", null
+        }, {
+            "", "1", "title", "01", "9999", "genre", "artist", "", ""
+        }
+    };
+
+    for (String[] v : values) {
+      GenericTag tag = TypeUtilsForTests.setupTag(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8]);
+      GenericTag fusedTag = TypeUtilsForTests.setupTag(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8]);
+
+      basicTagChecker.check(tag);
+      basicTagChecker.checkTag(fusedTag);
+      new FieldRuleProgram(basicTagChecker.getFieldRules()).run(fusedTag);
+
+      assertThat(fusedTag.getReports().toString(), equalTo(tag.getReports().toString()));
+    }
+  }
+
   @Test
   public void testCheck_MissingPrimaries() {
     GenericTag tag = new GenericTag();
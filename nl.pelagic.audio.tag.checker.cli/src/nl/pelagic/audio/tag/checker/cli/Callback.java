@@ -2,6 +2,7 @@ package nl.pelagic.audio.tag.checker.cli;
 
 import java.io.File;
 import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -213,8 +214,8 @@ public class Callback implements AudioTagCheckerCallback {
 
     Collections.sort(positionMarkers);
 
-    char[] s =
-        String.format("%" + (positionMarkers.get(positionMarkers.size() - 1).intValue() + 1) + "s", "").toCharArray(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    char[] s = new char[positionMarkers.get(positionMarkers.size() - 1).intValue() + 1];
+    Arrays.fill(s, ' ');
     for (Integer positionMarker : positionMarkers) {
       s[positionMarker.intValue()] = '^';
     }
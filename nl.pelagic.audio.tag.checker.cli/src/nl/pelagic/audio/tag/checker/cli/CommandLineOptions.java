@@ -6,6 +6,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import nl.pelagic.audio.tag.checker.cli.i18n.Messages;
+import nl.pelagic.audio.tag.checker.types.AudioTagCheckerConfiguration;
 
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineParser;
@@ -94,6 +95,70 @@ public class CommandLineOptions {
     return regexCaseSensitive;
   }
 
+  /** the cache file */
+  private File cacheFile = null;
+
+  /**
+   * @return the cacheFile
+   */
+  public File getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * @param cacheFile the cacheFile to set
+   */
+  @Option(name = "-C", aliases = {
+    "--cache"
+  }, metaVar = "file", usage = "The file in which the results of the checks are cached. Files that didn't change"
+      + " (same path, size and modification time) are not read and checked again, their cached results are reported"
+      + " (when the same tag checkers are used). Not specifying this option disables the cache.")
+  public void setCacheFile(File cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  /** the force mode */
+  @Option(name = "-F", aliases = {
+    "--force"
+  }, handler = BooleanOptionHandler.class, usage = "Check all files, also those with cached results"
+      + " (the cache is updated).")
+  private boolean force = false;
+
+  /**
+   * @return the force
+   */
+  public boolean isForce() {
+    return force;
+  }
+
+  /**
+   * @param force the force to set
+   */
+  public void setForce(boolean force) {
+    this.force = force;
+  }
+
+  /** the fused mode */
+  @Option(name = "-u", aliases = {
+    "--fused"
+  }, handler = BooleanOptionHandler.class, usage = "Fuse the checks of the field values of all tag checkers that"
+      + " support it into one pass over each value.")
+  private boolean fused = false;
+
+  /**
+   * @return the fused
+   */
+  public boolean isFused() {
+    return fused;
+  }
+
+  /**
+   * @param fused the fused to set
+   */
+  public void setFused(boolean fused) {
+    this.fused = fused;
+  }
+
   /** the set of disabled tag checkers */
   @Option(name = "-d", aliases = {
     "--disable"
@@ -145,6 +210,49 @@ public class CommandLineOptions {
     this.help = help;
   }
 
+  /** the report format */
+  @Option(name = "-f", aliases = {
+    "--format"
+  }, metaVar = "text|ndjson|csv", usage = "The format in which the results are reported. The text format is meant"
+      + " for humans; the ndjson and csv formats write a record per problem report (and per file that could not be"
+      + " checked) to the output, for processing by other programs (default = text)")
+  private ReportFormat format = ReportFormat.TEXT;
+
+  /**
+   * @return the format
+   */
+  public ReportFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * @param format the format to set
+   */
+  public void setFormat(ReportFormat format) {
+    this.format = format;
+  }
+
+  /** the number of files that are checked concurrently */
+  private int jobs = AudioTagCheckerConfiguration.DEFAULT_WORKERS;
+
+  /**
+   * @return the jobs
+   */
+  public int getJobs() {
+    return jobs;
+  }
+
+  /**
+   * @param jobs the jobs to set
+   */
+  @Option(name = "-j", aliases = {
+    "--jobs"
+  }, metaVar = "4", usage = "The number of files that are checked concurrently. The results are always reported"
+      + " in the same (sorted) order (default = number of processors)")
+  public void setJobs(int jobs) {
+    this.jobs = jobs;
+  }
+
   /** listCheckers all tag converters */
   @Option(name = "-l", aliases = {
     "--listCheckers"
@@ -178,6 +286,27 @@ public class CommandLineOptions {
     return nonRecursive;
   }
 
+  /** the report output */
+  @Option(name = "-o", aliases = {
+    "--output"
+  }, metaVar = "file", usage = "The file (or pipe) to write the ndjson or csv records to. Not specifying this"
+      + " option, or specifying -, writes them to standard output.")
+  private File output = null;
+
+  /**
+   * @return the output
+   */
+  public File getOutput() {
+    return output;
+  }
+
+  /**
+   * @param output the output to set
+   */
+  public void setOutput(File output) {
+    this.output = output;
+  }
+
   /** the verbose mode */
   @Option(name = "-v", aliases = {
     "--verbose"
@@ -1,8 +1,11 @@
 package nl.pelagic.audio.tag.checker.cli;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,6 +23,7 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import nl.pelagic.audio.tag.checker.api.AudioTagChecker;
+import nl.pelagic.audio.tag.checker.api.AudioTagCheckerCallback;
 import nl.pelagic.audio.tag.checker.api.TagChecker;
 import nl.pelagic.audio.tag.checker.api.TagConverter;
 import nl.pelagic.audio.tag.checker.cli.i18n.Messages;
@@ -350,9 +354,15 @@ public class Main implements Runnable, ShutdownHookParticipant {
     out.printf("%-30s = %s%n", Messages.getString("Main.15"), options.getRegex()); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.16"), Boolean.valueOf(options.isRegexInAllDirs())); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.17"), Boolean.valueOf(options.isRegexCaseSensitive())); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.39"), options.getCacheFile()); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.40"), Boolean.valueOf(options.isForce())); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.43"), Boolean.valueOf(options.isFused())); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.18"), options.getDisabledTagCheckers()); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.19"), options.getEnabledTagCheckers()); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.20"), Boolean.valueOf(options.isHelp())); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.37"), Integer.valueOf(options.getJobs())); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.47"), options.getFormat()); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.48"), options.getOutput()); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.21"), Boolean.valueOf(options.isListCheckers())); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.22"), Boolean.valueOf(options.isNonRecursive())); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.23"), Boolean.valueOf(options.isVerbose())); //$NON-NLS-1$ //$NON-NLS-2$
@@ -364,6 +374,10 @@ public class Main implements Runnable, ShutdownHookParticipant {
     out.printf("%-30s = %s%n", Messages.getString("Main.28"), config.getRegexPattern()); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.29"), config.getDisabledTagCheckers()); //$NON-NLS-1$ //$NON-NLS-2$
     out.printf("%-30s = %s%n", Messages.getString("Main.30"), config.getEnabledTagCheckers()); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.38"), Integer.valueOf(config.getWorkers())); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.41"), config.getCacheFile()); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.42"), Boolean.valueOf(config.isForceRecheck())); //$NON-NLS-1$ //$NON-NLS-2$
+    out.printf("%-30s = %s%n", Messages.getString("Main.44"), Boolean.valueOf(config.isFusedChecks())); //$NON-NLS-1$ //$NON-NLS-2$
 
     out.println();
   }
@@ -474,6 +488,28 @@ public class Main implements Runnable, ShutdownHookParticipant {
     }
   }
 
+  /**
+   * Create the writer for the ndjson or csv records
+   * 
+   * @param options the command line options
+   * @param out the stream to write to when no output file was specified
+   * @return the report writer
+   * @throws IOException when the output file could not be opened
+   */
+  static ReportWriter createReportWriter(CommandLineOptions options, PrintStream out) throws IOException {
+    File output = options.getOutput();
+    ReportWriter reportWriter;
+    if ((output == null) || "-".equals(output.getPath())) { //$NON-NLS-1$
+      reportWriter = new ReportWriter(options.getFormat(), new OutputStreamWriter(out, StandardCharsets.UTF_8), false);
+    } else {
+      reportWriter =
+          new ReportWriter(options.getFormat(), new OutputStreamWriter(new FileOutputStream(output),
+              StandardCharsets.UTF_8), true);
+    }
+    reportWriter.setWritePassed(options.isVerbose() || options.isExtraVerbose());
+    return reportWriter;
+  }
+
   /**
    * Stay alive, if needed (which is when the component has a SETTING_STAYALIVE
    * property set to true).
@@ -590,9 +626,23 @@ public class Main implements Runnable, ShutdownHookParticipant {
      */
 
     /* callback */
-    Callback callback = new Callback();
-    callback.setVerbose(commandLineOptions.isVerbose());
-    callback.setExtraVerbose(commandLineOptions.isExtraVerbose());
+    AudioTagCheckerCallback callback;
+    ReportWriter reportWriter = null;
+    if (commandLineOptions.getFormat() == ReportFormat.TEXT) {
+      Callback textCallback = new Callback();
+      textCallback.setVerbose(commandLineOptions.isVerbose());
+      textCallback.setExtraVerbose(commandLineOptions.isExtraVerbose());
+      callback = textCallback;
+    } else {
+      try {
+        reportWriter = createReportWriter(commandLineOptions, out);
+      }
+      catch (IOException e) {
+        err.printf(Messages.getString("Main.45"), commandLineOptions.getOutput(), e.getLocalizedMessage()); //$NON-NLS-1$
+        return false;
+      }
+      callback = reportWriter;
+    }
 
     /* disabled / enabled checkers */
     Set<String> disabledTagCheckers = new TreeSet<>(commandLineOptions.getDisabledTagCheckers());
@@ -615,6 +665,10 @@ public class Main implements Runnable, ShutdownHookParticipant {
 
     config.setDisabledTagCheckers((disabledTagCheckers.isEmpty()) ? null : disabledTagCheckers);
     config.setEnabledTagCheckers((enabledTagCheckers.isEmpty()) ? null : enabledTagCheckers);
+    config.setWorkers(commandLineOptions.getJobs());
+    config.setCacheFile(commandLineOptions.getCacheFile());
+    config.setForceRecheck(commandLineOptions.isForce());
+    config.setFusedChecks(commandLineOptions.isFused());
 
     /*
      * Run
@@ -648,6 +702,16 @@ public class Main implements Runnable, ShutdownHookParticipant {
       result = result && resultInLoop;
     }
 
+    if (reportWriter != null) {
+      try {
+        reportWriter.close();
+      }
+      catch (IOException e) {
+        err.printf(Messages.getString("Main.46"), commandLineOptions.getOutput(), e.getLocalizedMessage()); //$NON-NLS-1$
+        result = false;
+      }
+    }
+
     if (commandLineOptions.isVerbose()) {
       err.println();
     }
@@ -0,0 +1,15 @@
+package nl.pelagic.audio.tag.checker.cli;
+
+/**
+ * The formats in which the results of the checks can be reported
+ */
+public enum ReportFormat {
+  /** Human-readable text, see {@link Callback} */
+  TEXT,
+
+  /** Newline-delimited JSON: one JSON object per line, see {@link ReportWriter} */
+  NDJSON,
+
+  /** Comma-separated values, with a header line, see {@link ReportWriter} */
+  CSV;
+}
@@ -0,0 +1,424 @@
+package nl.pelagic.audio.tag.checker.cli;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map.Entry;
+
+import nl.pelagic.audio.tag.checker.api.AudioTagCheckerCallback;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+import nl.pelagic.audio.tag.checker.types.ProblemReport;
+
+import org.jaudiotagger.tag.Tag;
+
+/**
+ * <p>
+ * This class implements machine-readable reporting of the results of the
+ * checks, in the {@link ReportFormat#NDJSON} or {@link ReportFormat#CSV}
+ * format. Every record is written as a single line, with the columns:
+ * </p>
+ * <ul>
+ * <li>file: the path of the file</li>
+ * <li>status: one of {@value #STATUS_UNSUPPORTED_EXTENSION},
+ * {@value #STATUS_NOT_READABLE}, {@value #STATUS_NO_TAG},
+ * {@value #STATUS_TAG_NOT_CONVERTED}, {@value #STATUS_FAILED} and
+ * {@value #STATUS_PASSED}</li>
+ * <li>field: the generic tag field of a problem report</li>
+ * <li>message: the message of a problem report, the reason why a file is not
+ * readable or the class of a tag that could not be converted</li>
+ * <li>actual: the actual value of a problem report</li>
+ * <li>expected: the expected value of a problem report</li>
+ * <li>markers: the position markers of a problem report, as ranges of start
+ * (inclusive) and end (exclusive) positions in the actual value; [[0,2],[5,6]]
+ * in JSON, 0-2;5-6 in CSV</li>
+ * </ul>
+ * <p>
+ * A file with failed checks results in a record per problem report. Passed
+ * files are only written when so requested. Columns without a value are left
+ * out (JSON) or empty (CSV).
+ * </p>
+ * <p>
+ * Records are formatted into a single reused buffer and written to a buffered
+ * writer, so that they're written to the underlying file or pipe in large
+ * batches. The first write error stops the writing and is thrown by
+ * {@link #close()}.
+ * </p>
+ */
+public class ReportWriter implements AudioTagCheckerCallback, Closeable {
+  /** the size of the write buffer */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  /** the status of a file with an unsupported extension */
+  public static final String STATUS_UNSUPPORTED_EXTENSION = "unsupportedExtension"; //$NON-NLS-1$
+
+  /** the status of a file that is not readable */
+  public static final String STATUS_NOT_READABLE = "notReadable"; //$NON-NLS-1$
+
+  /** the status of a file without a tag */
+  public static final String STATUS_NO_TAG = "noTag"; //$NON-NLS-1$
+
+  /** the status of a file with a tag that could not be converted */
+  public static final String STATUS_TAG_NOT_CONVERTED = "tagNotConverted"; //$NON-NLS-1$
+
+  /** the status of a file with failed checks */
+  public static final String STATUS_FAILED = "failed"; //$NON-NLS-1$
+
+  /** the status of a file that passed the checks */
+  public static final String STATUS_PASSED = "passed"; //$NON-NLS-1$
+
+  /** the names of the columns */
+  static final String[] COLUMNS = {
+      "file", "status", "field", "message", "actual", "expected", "markers" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+  };
+
+  /** the hexadecimal digits */
+  private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+  /** the format */
+  private final ReportFormat format;
+
+  /** the writer */
+  private final Writer writer;
+
+  /** true when the underlying writer must be closed on close */
+  private final boolean closeWriter;
+
+  /** true when passed files must be written */
+  private boolean writePassed = false;
+
+  /** the record buffer */
+  private final StringBuilder record = new StringBuilder(256);
+
+  /** the first write error, null when none */
+  private IOException error = null;
+
+  /** true when closed */
+  private boolean closed = false;
+
+  /**
+   * Constructor
+   * 
+   * @param format the format, either {@link ReportFormat#NDJSON} or
+   *          {@link ReportFormat#CSV}
+   * @param writer the writer to write to, is buffered by this class
+   * @param closeWriter true when the writer must be closed on close, false
+   *          when it must only be flushed (for standard out)
+   */
+  public ReportWriter(ReportFormat format, Writer writer, boolean closeWriter) {
+    super();
+    if ((format != ReportFormat.NDJSON) && (format != ReportFormat.CSV)) {
+      throw new IllegalArgumentException(String.valueOf(format));
+    }
+    this.format = format;
+    this.writer = new BufferedWriter(writer, BUFFER_SIZE);
+    this.closeWriter = closeWriter;
+
+    if (format == ReportFormat.CSV) {
+      for (int i = 0; i < COLUMNS.length; i++) {
+        if (i > 0) {
+          record.append(',');
+        }
+        record.append(COLUMNS[i]);
+      }
+      record.append('\n');
+      write();
+    }
+  }
+
+  /**
+   * @return the writePassed
+   */
+  public boolean isWritePassed() {
+    return writePassed;
+  }
+
+  /**
+   * @param writePassed the writePassed to set
+   */
+  public void setWritePassed(boolean writePassed) {
+    this.writePassed = writePassed;
+  }
+
+  /**
+   * @return the first write error, null when none
+   */
+  public IOException getError() {
+    return error;
+  }
+
+  /*
+   * Formatting
+   */
+
+  /**
+   * Append a JSON string
+   * 
+   * @param sb the buffer to append to
+   * @param s the string
+   */
+  static void appendJsonString(StringBuilder sb, String s) {
+    sb.append('"');
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\""); //$NON-NLS-1$
+          break;
+
+        case '\\':
+          sb.append("\\\\"); //$NON-NLS-1$
+          break;
+
+        case '\n':
+          sb.append("\\n"); //$NON-NLS-1$
+          break;
+
+        case '\r':
+          sb.append("\\r"); //$NON-NLS-1$
+          break;
+
+        case '\t':
+          sb.append("\\t"); //$NON-NLS-1$
+          break;
+
+        default:
+          if ((c < 0x20) || (c == 0x2028) || (c == 0x2029)) {
+            sb.append("\\u").append(HEX[(c >> 12) & 0xf]).append(HEX[(c >> 8) & 0xf]) //$NON-NLS-1$
+                .append(HEX[(c >> 4) & 0xf]).append(HEX[c & 0xf]);
+          } else {
+            sb.append(c);
+          }
+          break;
+      }
+    }
+    sb.append('"');
+  }
+
+  /**
+   * Append a CSV value, quoted when needed
+   * 
+   * @param sb the buffer to append to
+   * @param s the value
+   */
+  static void appendCsvValue(StringBuilder sb, String s) {
+    boolean quote = false;
+    int length = s.length();
+    for (int i = 0; (i < length) && !quote; i++) {
+      char c = s.charAt(i);
+      quote = (c == ',') || (c == '"') || (c == '\n') || (c == '\r');
+    }
+
+    if (!quote) {
+      sb.append(s);
+      return;
+    }
+
+    sb.append('"');
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c == '"') {
+        sb.append('"');
+      }
+      sb.append(c);
+    }
+    sb.append('"');
+  }
+
+  /**
+   * Append position marker ranges
+   * 
+   * @param sb the buffer to append to
+   * @param ranges the ranges: pairs of start (inclusive) and end (exclusive)
+   *          positions
+   * @param format the format
+   */
+  static void appendMarkers(StringBuilder sb, int[] ranges, ReportFormat format) {
+    boolean json = format == ReportFormat.NDJSON;
+    if (json) {
+      sb.append('[');
+    }
+    for (int i = 0; (i + 1) < ranges.length; i += 2) {
+      if (i > 0) {
+        sb.append(json ? ',' : ';');
+      }
+      if (json) {
+        sb.append('[').append(ranges[i]).append(',').append(ranges[i + 1]).append(']');
+      } else {
+        sb.append(ranges[i]).append('-').append(ranges[i + 1]);
+      }
+    }
+    if (json) {
+      sb.append(']');
+    }
+  }
+
+  /**
+   * Format a record into the record buffer
+   * 
+   * @param file the file
+   * @param status the status
+   * @param field the field (can be null)
+   * @param message the message (can be null)
+   * @param actual the actual value (can be null)
+   * @param expected the expected value (can be null)
+   * @param markers the position marker ranges (can be null)
+   */
+  void formatRecord(File file, String status, GenericTagFieldName field, String message, String actual,
+      String expected, int[] markers) {
+    String[] values = {
+        (file == null) ? null : file.getPath(), status, (field == null) ? null : field.name(), message, actual,
+        expected
+    };
+
+    record.setLength(0);
+    if (format == ReportFormat.NDJSON) {
+      record.append('{');
+      boolean first = true;
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == null) {
+          continue;
+        }
+        if (!first) {
+          record.append(',');
+        }
+        first = false;
+        appendJsonString(record, COLUMNS[i]);
+        record.append(':');
+        appendJsonString(record, values[i]);
+      }
+      if (markers != null) {
+        record.append(',');
+        appendJsonString(record, COLUMNS[COLUMNS.length - 1]);
+        record.append(':');
+        appendMarkers(record, markers, format);
+      }
+      record.append('}');
+    } else {
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          record.append(',');
+        }
+        if (values[i] != null) {
+          appendCsvValue(record, values[i]);
+        }
+      }
+      record.append(',');
+      if (markers != null) {
+        appendMarkers(record, markers, format);
+      }
+    }
+    record.append('\n');
+  }
+
+  /**
+   * Write a record
+   * 
+   * @param file the file
+   * @param status the status
+   * @param field the field (can be null)
+   * @param message the message (can be null)
+   * @param actual the actual value (can be null)
+   * @param expected the expected value (can be null)
+   * @param markers the position marker ranges (can be null)
+   */
+  void writeRecord(File file, String status, GenericTagFieldName field, String message, String actual,
+      String expected, int[] markers) {
+    if ((error != null) || closed) {
+      return;
+    }
+
+    formatRecord(file, status, field, message, actual, expected, markers);
+    write();
+  }
+
+  /**
+   * Write the record buffer
+   */
+  private void write() {
+    try {
+      writer.append(record);
+    }
+    catch (IOException e) {
+      error = e;
+    }
+  }
+
+  /*
+   * Interface Methods
+   */
+
+  @Override
+  public void unsupportedExtension(File file) {
+    writeRecord(file, STATUS_UNSUPPORTED_EXTENSION, null, null, null, null, null);
+  }
+
+  @Override
+  public void notReadable(File file, Exception e) {
+    writeRecord(file, STATUS_NOT_READABLE, null, (e == null) ? null : e.getLocalizedMessage(), null, null, null);
+  }
+
+  @Override
+  public void noTag(File file) {
+    writeRecord(file, STATUS_NO_TAG, null, null, null, null, null);
+  }
+
+  @Override
+  public void tagNotConverted(File file, Tag tag) {
+    writeRecord(file, STATUS_TAG_NOT_CONVERTED, null, (tag == null) ? null : tag.getClass().getName(), null, null,
+        null);
+  }
+
+  @Override
+  public void checksFailed(GenericTag tag) {
+    File file = tag.getBackingFile();
+    for (Entry<GenericTagFieldName, List<ProblemReport>> entry : tag.getReports().entrySet()) {
+      for (ProblemReport report : entry.getValue()) {
+        writeRecord(file, STATUS_FAILED, entry.getKey(), report.getMessage(), report.getActualValue(),
+            report.getExpectedValue(), report.getPositionMarkerRanges());
+      }
+    }
+  }
+
+  @Override
+  public void checksPassed(GenericTag tag) {
+    if (writePassed) {
+      writeRecord(tag.getBackingFile(), STATUS_PASSED, null, null, null, null, null);
+    }
+  }
+
+  /*
+   * Closeable
+   */
+
+  /**
+   * Flush all records and close (or flush) the underlying writer
+   * 
+   * @throws IOException the first write error, or an error during flushing or
+   *           closing
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      if (error != null) {
+        throw error;
+      }
+
+      writer.flush();
+    }
+    finally {
+      if (closeWriter) {
+        writer.close();
+      }
+    }
+  }
+}
@@ -10,6 +10,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.List;
 
+import nl.pelagic.audio.tag.checker.types.AudioTagCheckerConfiguration;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -53,18 +55,65 @@ public class TestCommandLineOptions {
     assertThat(tcs, notNullValue());
     assertThat(Integer.valueOf(tcs.size()), equalTo(Integer.valueOf(0)));
     assertThat(Boolean.valueOf(cli.isHelp()), equalTo(Boolean.FALSE));
+    assertThat(cli.getCacheFile(), nullValue());
+    assertThat(Boolean.valueOf(cli.isForce()), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(cli.isFused()), equalTo(Boolean.FALSE));
+    assertThat(cli.getFormat(), equalTo(ReportFormat.TEXT));
+    assertThat(cli.getOutput(), nullValue());
+    assertThat(Integer.valueOf(cli.getJobs()), equalTo(Integer.valueOf(AudioTagCheckerConfiguration.DEFAULT_WORKERS)));
     assertThat(Boolean.valueOf(cli.isListCheckers()), equalTo(Boolean.FALSE));
     assertThat(Boolean.valueOf(cli.isNonRecursive()), equalTo(Boolean.FALSE));
     assertThat(Boolean.valueOf(cli.isVerbose()), equalTo(Boolean.FALSE));
     assertThat(Boolean.valueOf(cli.isExtraVerbose()), equalTo(Boolean.FALSE));
   }
 
+  @Test
+  public void testSetCacheFile() {
+    File cacheFile = new File("cache");
+    cli.setCacheFile(cacheFile);
+    assertThat(cli.getCacheFile(), equalTo(cacheFile));
+  }
+
+  @Test
+  public void testSetForce() {
+    cli.setForce(true);
+    assertThat(Boolean.valueOf(cli.isForce()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testSetFormat() throws CmdLineException {
+    cli.setFormat(ReportFormat.CSV);
+    assertThat(cli.getFormat(), equalTo(ReportFormat.CSV));
+
+    new CmdLineParser(cli).parseArgument("--format", "ndjson");
+    assertThat(cli.getFormat(), equalTo(ReportFormat.NDJSON));
+  }
+
+  @Test
+  public void testSetOutput() {
+    File output = new File("output.csv");
+    cli.setOutput(output);
+    assertThat(cli.getOutput(), equalTo(output));
+  }
+
+  @Test
+  public void testSetFused() {
+    cli.setFused(true);
+    assertThat(Boolean.valueOf(cli.isFused()), equalTo(Boolean.TRUE));
+  }
+
   @Test
   public void testSetHelp() {
     cli.setHelp(true);
     assertThat(Boolean.valueOf(cli.isHelp()), equalTo(Boolean.TRUE));
   }
 
+  @Test
+  public void testSetJobs() {
+    cli.setJobs(3);
+    assertThat(Integer.valueOf(cli.getJobs()), equalTo(Integer.valueOf(3)));
+  }
+
   @Test
   public void testSetListCheckers() {
     cli.setListCheckers(true);
@@ -0,0 +1,148 @@
+package nl.pelagic.audio.tag.checker.cli;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+
+import org.jaudiotagger.tag.flac.FlacTag;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestReportWriter {
+  private static GenericTag createTag() {
+    GenericTag tag = new GenericTag();
+    tag.setBackingFile(new File("dir/file.flac"));
+    tag.addRangeReport(GenericTagFieldName.ALBUMTITLE, "Multiple \"whitespace\"", "a  b,\tc", new int[] {
+        1, 3, 5, 6
+    }, "a b");
+    tag.addReport(GenericTagFieldName.FILE, "Missing", null, null, null);
+    return tag;
+  }
+
+  private static void writeAll(ReportWriter reportWriter) {
+    reportWriter.unsupportedExtension(new File("a.txt"));
+    reportWriter.notReadable(new File("b.flac"), new IOException("broken"));
+    reportWriter.noTag(new File("c.flac"));
+    reportWriter.tagNotConverted(new File("d.flac"), new FlacTag());
+    reportWriter.checksFailed(createTag());
+    GenericTag passed = new GenericTag();
+    passed.setBackingFile(new File("e.flac"));
+    reportWriter.checksPassed(passed);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReportWriter_Text() {
+    new ReportWriter(ReportFormat.TEXT, new StringWriter(), true);
+  }
+
+  @Test
+  public void testNdjson() throws IOException {
+    StringWriter sw = new StringWriter();
+    ReportWriter reportWriter = new ReportWriter(ReportFormat.NDJSON, sw, true);
+    reportWriter.setWritePassed(true);
+    writeAll(reportWriter);
+
+    /* nothing is written before the buffer is flushed */
+    assertThat(sw.toString(), equalTo(""));
+    reportWriter.close();
+
+    String sep = File.separator.replace("\\", "\\\\");
+    String[] expected = {
+        "{\"file\":\"a.txt\",\"status\":\"unsupportedExtension\"}",
+        "{\"file\":\"b.flac\",\"status\":\"notReadable\",\"message\":\"broken\"}",
+        "{\"file\":\"c.flac\",\"status\":\"noTag\"}",
+        "{\"file\":\"d.flac\",\"status\":\"tagNotConverted\",\"message\":\"" + FlacTag.class.getName() + "\"}",
+        "{\"file\":\"dir" + sep + "file.flac\",\"status\":\"failed\",\"field\":\"ALBUMTITLE\","
+            + "\"message\":\"Multiple \\\"whitespace\\\"\",\"actual\":\"a  b,\\tc\",\"expected\":\"a b\","
+            + "\"markers\":[[1,3],[5,6]]}",
+        "{\"file\":\"dir" + sep + "file.flac\",\"status\":\"failed\",\"field\":\"FILE\",\"message\":\"Missing\"}",
+        "{\"file\":\"e.flac\",\"status\":\"passed\"}"
+    };
+    assertThat(Arrays.asList(sw.toString().split("\n")), equalTo(Arrays.asList(expected)));
+  }
+
+  @Test
+  public void testCsv() throws IOException {
+    StringWriter sw = new StringWriter();
+    ReportWriter reportWriter = new ReportWriter(ReportFormat.CSV, sw, true);
+    writeAll(reportWriter);
+    reportWriter.close();
+
+    String sep = File.separator;
+    String[] expected = {
+        "file,status,field,message,actual,expected,markers", "a.txt,unsupportedExtension,,,,,",
+        "b.flac,notReadable,,broken,,,", "c.flac,noTag,,,,,",
+        "d.flac,tagNotConverted,," + FlacTag.class.getName() + ",,,",
+        "dir" + sep + "file.flac,failed,ALBUMTITLE,\"Multiple \"\"whitespace\"\"\",\"a  b,\tc\",a b,1-3;5-6",
+        "dir" + sep + "file.flac,failed,FILE,Missing,,,"
+    };
+    assertThat(Arrays.asList(sw.toString().split("\n")), equalTo(Arrays.asList(expected)));
+  }
+
+  @Test
+  public void testAppendJsonString() {
+    StringBuilder sb = new StringBuilder();
+    ReportWriter.appendJsonString(sb, "a\"b\\c\n\r\t\u0001\u2028\u00e9");
+    assertThat(sb.toString(), equalTo("\"a\\\"b\\\\c\\n\\r\\t\\u0001\\u2028\u00e9\""));
+  }
+
+  @Test
+  public void testAppendCsvValue() {
+    StringBuilder sb = new StringBuilder();
+    ReportWriter.appendCsvValue(sb, "plain value");
+    sb.append('|');
+    ReportWriter.appendCsvValue(sb, "line\nbreak");
+    sb.append('|');
+    ReportWriter.appendCsvValue(sb, "carriage\rreturn");
+    assertThat(sb.toString(), equalTo("plain value|\"line\nbreak\"|\"carriage\rreturn\""));
+  }
+
+  @Test
+  public void testClose_Error() {
+    Writer failing = new Writer() {
+      @Override
+      public void write(char[] cbuf, int off, int len) throws IOException {
+        throw new IOException("write failed");
+      }
+
+      @Override
+      public void flush() throws IOException {
+        /* nothing */
+      }
+
+      @Override
+      public void close() throws IOException {
+        /* nothing */
+      }
+    };
+
+    ReportWriter reportWriter = new ReportWriter(ReportFormat.NDJSON, failing, false);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < ReportWriter.BUFFER_SIZE; i++) {
+      sb.append('x');
+    }
+    reportWriter.notReadable(new File(sb.toString()), null);
+    assertThat(reportWriter.getError(), notNullValue());
+
+    IOException error = null;
+    try {
+      reportWriter.close();
+    }
+    catch (IOException e) {
+      error = e;
+    }
+    assertThat(error, notNullValue());
+    assertThat(error.getMessage(), equalTo("write failed"));
+  }
+}
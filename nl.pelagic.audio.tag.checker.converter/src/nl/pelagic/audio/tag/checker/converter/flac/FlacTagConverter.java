@@ -6,7 +6,7 @@ import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import nl.pelagic.audio.tag.checker.api.TagConverter;
 import nl.pelagic.audio.tag.checker.common.RegularExpressions;
@@ -32,7 +32,8 @@ public class FlacTagConverter implements TagConverter {
 
   /**
    * A set of unknown tag field names that were encountered during lifetime of
-   * the converter
+   * the converter. The sets are sorted and thread-safe since tags can be
+   * converted concurrently.
    */
   private final Map<Class<? extends Object>, Set<String>> unknownTagFieldNames = new HashMap<>();
 
@@ -40,7 +41,7 @@ public class FlacTagConverter implements TagConverter {
    * Fast access set into unknownTagFieldNames (we only convert a single tag
    * class)
    */
-  private TreeSet<String> fastUnknownTagFieldNames = new TreeSet<>();
+  private final Set<String> fastUnknownTagFieldNames = new ConcurrentSkipListSet<>();
 
   /**
    * Constructor
@@ -143,7 +144,7 @@ public class FlacTagConverter implements TagConverter {
       }
 
       if (value != null) {
-        previousTagNameValuePair = genericTag.addField(previousTagNameValuePair, genericTagFieldName, name, value);
+        genericTag.addFieldInPlace(previousTagNameValuePair, genericTagFieldName, name, value);
       }
     }
 
@@ -156,7 +157,7 @@ public class FlacTagConverter implements TagConverter {
       } else {
         newValue = (discNumber == null ? "" : discNumber) + (discTotal == null ? "" : "/" + discTotal); //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
       }
-      genericTag.addField(previousTagNameValuePair, GenericTagFieldName.ALBUMDISCNUMBER, "DISCNUMBER", newValue); //$NON-NLS-1$
+      genericTag.addFieldInPlace(previousTagNameValuePair, GenericTagFieldName.ALBUMDISCNUMBER, "DISCNUMBER", newValue); //$NON-NLS-1$
     }
 
     return true;
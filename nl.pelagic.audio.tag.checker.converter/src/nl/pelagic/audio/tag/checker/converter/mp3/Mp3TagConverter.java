@@ -6,7 +6,7 @@ import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -45,7 +45,8 @@ public class Mp3TagConverter implements TagConverter {
 
   /**
    * A set of unknown tag field names that were encountered during lifetime of
-   * the converter
+   * the converter. The sets are sorted and thread-safe since tags can be
+   * converted concurrently.
    */
   private final Map<Class<? extends Object>, Set<String>> unknownTagFieldNames = new HashMap<>();
 
@@ -57,9 +58,9 @@ public class Mp3TagConverter implements TagConverter {
     supportedTagClasses.add(ID3v23Tag.class);
     supportedTagClasses.add(ID3v24Tag.class);
 
-    unknownTagFieldNames.put(ID3v22Tag.class, new TreeSet<String>());
-    unknownTagFieldNames.put(ID3v23Tag.class, new TreeSet<String>());
-    unknownTagFieldNames.put(ID3v24Tag.class, new TreeSet<String>());
+    unknownTagFieldNames.put(ID3v22Tag.class, new ConcurrentSkipListSet<String>());
+    unknownTagFieldNames.put(ID3v23Tag.class, new ConcurrentSkipListSet<String>());
+    unknownTagFieldNames.put(ID3v24Tag.class, new ConcurrentSkipListSet<String>());
   }
 
   @Override
@@ -175,11 +176,9 @@ public class Mp3TagConverter implements TagConverter {
           if (RegularExpressions.patternMp3TrackNumber.matcher(value).matches()) {
             String[] s = value.split("/"); //$NON-NLS-1$
 
-            previousTagNameValuePair =
-                genericTag.addField(previousTagNameValuePair, GenericTagFieldName.TRACKNUMBER, name, s[0]);
+            genericTag.addFieldInPlace(previousTagNameValuePair, GenericTagFieldName.TRACKNUMBER, name, s[0]);
             if (s.length > 1) {
-              previousTagNameValuePair =
-                  genericTag.addField(previousTagNameValuePair, GenericTagFieldName.ALBUMTOTALTRACKS, name, s[1]);
+              genericTag.addFieldInPlace(previousTagNameValuePair, GenericTagFieldName.ALBUMTOTALTRACKS, name, s[1]);
             }
             previousTagNameValuePair.setName(name);
             previousTagNameValuePair.setValue(value);
@@ -207,7 +206,7 @@ public class Mp3TagConverter implements TagConverter {
           break;
       }
 
-      previousTagNameValuePair = genericTag.addField(previousTagNameValuePair, genericTagFieldName, name, value);
+      genericTag.addFieldInPlace(previousTagNameValuePair, genericTagFieldName, name, value);
     }
 
     return true;
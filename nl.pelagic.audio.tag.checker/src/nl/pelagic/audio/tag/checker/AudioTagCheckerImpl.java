@@ -3,12 +3,21 @@ package nl.pelagic.audio.tag.checker;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import nl.pelagic.audio.tag.checker.api.AudioTagChecker;
 import nl.pelagic.audio.tag.checker.api.AudioTagCheckerCallback;
@@ -16,12 +25,13 @@ import nl.pelagic.audio.tag.checker.api.TagChecker;
 import nl.pelagic.audio.tag.checker.api.TagConverter;
 import nl.pelagic.audio.tag.checker.types.AudioTagCheckerConfiguration;
 import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.jaudiotagger.reader.TagReader;
 import nl.pelagic.shutdownhook.api.ShutdownHookParticipant;
+import nl.pelagic.util.file.DirectoryEntry;
+import nl.pelagic.util.file.DirectoryEntryFilter;
 import nl.pelagic.util.file.ExtensionUtils;
 import nl.pelagic.util.file.FilenameFilterWithRegex;
 
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
 import org.jaudiotagger.audio.SupportedFileFormat;
 import org.jaudiotagger.tag.Tag;
 
@@ -92,10 +102,156 @@ public class AudioTagCheckerImpl implements AudioTagChecker, ShutdownHookPartici
     tagCheckers.remove(tagChecker);
   }
 
+  /*
+   * Concurrency
+   */
+
+  /** the prefix of the names of the worker threads */
+  static final String THREAD_NAME_PREFIX = "audiotagchecker-"; //$NON-NLS-1$
+
+  /** the maximum number of pending (not yet reported) files, per worker */
+  static final int PENDING_PER_WORKER = 16;
+
+  /**
+   * The results of the files that are checked concurrently. The results are
+   * reported to the callback in the order in which the files were submitted,
+   * from the thread that submits the files.
+   */
+  class OrderedResults {
+    /** the executor that runs the checks */
+    private final ExecutorService executor;
+
+    /** the maximum number of pending files */
+    private final int maxPending;
+
+    /** the callback to report the results to */
+    private final AudioTagCheckerCallback callback;
+
+    /** the pending files, in the order in which they were submitted */
+    private final Deque<Future<DeferredCallback>> pending = new LinkedList<>();
+
+    /**
+     * Constructor
+     * 
+     * @param executor the executor that runs the checks
+     * @param maxPending the maximum number of pending files
+     * @param callback the callback to report the results to
+     */
+    OrderedResults(ExecutorService executor, int maxPending, AudioTagCheckerCallback callback) {
+      super();
+      this.executor = executor;
+      this.maxPending = Math.max(1, maxPending);
+      this.callback = callback;
+    }
+
+    /**
+     * Submit a file to be checked, and report the results that are available.
+     * Blocks while the maximum number of files is pending.
+     * 
+     * @param configuration the configuration
+     * @param file the file to check, with its attributes
+     * @param cache the cache of the results of the checks (can be null)
+     * @param program the tag checkers to run
+     */
+    void submit(final AudioTagCheckerConfiguration configuration, final DirectoryEntry file,
+        final TagCheckCache cache, final TagCheckerProgram program) {
+      pending.add(executor.submit(new Callable<DeferredCallback>() {
+        @Override
+        public DeferredCallback call() {
+          DeferredCallback deferredCallback = new DeferredCallback();
+          if (run.get()) {
+            processFile(configuration, file, deferredCallback, cache, program);
+          }
+          return deferredCallback;
+        }
+      }));
+
+      deliver(false);
+    }
+
+    /**
+     * Report results, in order, to the callback. Pending files are cancelled
+     * when we must stop running.
+     * 
+     * @param all true to wait for and report all pending results, false to
+     *          only report the results that are available (and the results
+     *          that are needed to get below the maximum number of pending
+     *          files)
+     */
+    void deliver(boolean all) {
+      while (!pending.isEmpty()) {
+        Future<DeferredCallback> future = pending.peek();
+        if (!run.get()) {
+          cancel();
+          return;
+        }
+
+        if (!all && !future.isDone() && (pending.size() < maxPending)) {
+          return;
+        }
+
+        DeferredCallback deferredCallback;
+        try {
+          deferredCallback = future.get();
+        }
+        catch (InterruptedException e) {
+          /* can't be covered by a test */
+          Thread.currentThread().interrupt();
+          cancel();
+          return;
+        }
+        catch (ExecutionException e) {
+          cancel();
+          Throwable cause = e.getCause();
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          /* can't be covered by a test */
+          throw new IllegalStateException(cause);
+        }
+
+        pending.poll();
+        deferredCallback.deliver(callback);
+      }
+    }
+
+    /**
+     * Cancel all pending files
+     */
+    void cancel() {
+      for (Future<DeferredCallback> future : pending) {
+        future.cancel(false);
+      }
+      pending.clear();
+    }
+  }
+
   /*
    * Internal Methods
    */
 
+  /**
+   * @param filenameFilter the filename filter
+   * @return the filename filter as a directory entry filter, which uses the
+   *         attributes of the listed entries when the filename filter supports
+   *         that
+   */
+  static DirectoryEntryFilter toDirectoryEntryFilter(final FilenameFilter filenameFilter) {
+    if (filenameFilter instanceof DirectoryEntryFilter) {
+      return (DirectoryEntryFilter) filenameFilter;
+    }
+
+    return new DirectoryEntryFilter() {
+      @Override
+      public boolean accept(DirectoryEntry entry) {
+        return filenameFilter.accept(entry.getFile().getParentFile(), entry.getName());
+      }
+    };
+  }
+
   /**
    * <p>
    * Process a certain directory/file, and below (if so indicated).
@@ -114,6 +270,33 @@ public class AudioTagCheckerImpl implements AudioTagChecker, ShutdownHookPartici
    */
   void process(AudioTagCheckerConfiguration configuration, File file, FilenameFilter filenameFilter,
       boolean scanDeeper, AudioTagCheckerCallback callback) {
+    process(configuration, DirectoryEntry.read(file), filenameFilter, scanDeeper, callback, null, null,
+        TagCheckerProgram.compile(tagCheckers, configuration));
+  }
+
+  /**
+   * <p>
+   * Process a certain directory/file, and below (if so indicated).
+   * </p>
+   * <p>
+   * This is a recursive method. Files are checked directly when results is
+   * null, otherwise they're submitted to results to be checked concurrently.
+   * </p>
+   * 
+   * @param configuration the configuration
+   * @param file the directory/file to process, with its attributes
+   * @param filenameFilter the filename filter to use
+   * @param scanDeeper if true then also process files and directories below the
+   *          current directory (unless inhibited by the global recursiveScan
+   *          setting in the configuration)
+   * @param callback the callback to use
+   * @param results the ordered results of the concurrent checks (can be null)
+   * @param cache the cache of the results of the checks (can be null)
+   * @param program the tag checkers to run
+   */
+  void process(AudioTagCheckerConfiguration configuration, DirectoryEntry file, FilenameFilter filenameFilter,
+      boolean scanDeeper, AudioTagCheckerCallback callback, OrderedResults results, TagCheckCache cache,
+      TagCheckerProgram program) {
     assert (configuration != null);
     assert (filenameFilter != null);
     assert (callback != null);
@@ -129,22 +312,20 @@ public class AudioTagCheckerImpl implements AudioTagChecker, ShutdownHookPartici
         return;
       }
 
-      /* list all (filtered) files in the directory */
-      File[] directoryFiles = file.listFiles(filenameFilter);
-      if (directoryFiles.length == 0) {
+      /* list all (filtered) files in the directory, sorted */
+      DirectoryEntry[] directoryFiles = DirectoryEntry.list(file.getFile(), toDirectoryEntryFilter(filenameFilter));
+      if ((directoryFiles == null) || (directoryFiles.length == 0)) {
         /* no files: return */
         return;
       }
 
-      /* sort the files */
-      Arrays.sort(directoryFiles);
-
       /* process all the files and directories in this directory */
-      for (File directoryFile : directoryFiles) {
+      for (DirectoryEntry directoryFile : directoryFiles) {
         if (!run.get()) {
           return;
         }
-        process(configuration, directoryFile, filenameFilter, configuration.isRecursiveScan(), callback);
+        process(configuration, directoryFile, filenameFilter, configuration.isRecursiveScan(), callback, results,
+            cache, program);
       }
 
       return;
@@ -154,22 +335,56 @@ public class AudioTagCheckerImpl implements AudioTagChecker, ShutdownHookPartici
      * We're not dealing with a directory; it must be a file
      */
 
+    if (results != null) {
+      results.submit(configuration, file, cache, program);
+      return;
+    }
+
+    processFile(configuration, file, callback, cache, program);
+  }
+
+  /**
+   * Read, convert and check the tag of a file, or report its cached result
+   * when the file didn't change. This method can be called concurrently.
+   * 
+   * @param configuration the configuration
+   * @param entry the file to process, with its attributes
+   * @param callback the callback to use
+   * @param cache the cache of the results of the checks (can be null)
+   * @param program the tag checkers to run
+   */
+  void processFile(AudioTagCheckerConfiguration configuration, DirectoryEntry entry,
+      AudioTagCheckerCallback callback, TagCheckCache cache, TagCheckerProgram program) {
+    File file = entry.getFile();
     String extension = ExtensionUtils.split(file.getName(), false)[1].toLowerCase(Locale.getDefault());
     if (extension.isEmpty() || !supportedExtensions.contains(extension)) {
       callback.unsupportedExtension(file);
       return;
     }
 
-    AudioFile af;
+    /* report the cached result of an unchanged file, without reading it */
+    TagCheckCache.Key key = (cache == null) ? null : TagCheckCache.getKey(entry);
+    if (key != null) {
+      GenericTag cachedTag = cache.get(key, file);
+      if (cachedTag != null) {
+        report(cachedTag, callback);
+        return;
+      }
+
+      /* forget the previous result, it's recorded again when checked */
+      cache.remove(key);
+    }
+
+    /* only read the metadata of the file */
+    Tag tag;
     try {
-      af = AudioFileIO.read(file);
+      tag = TagReader.read(file);
     }
     catch (Exception e) {
       callback.notReadable(file, e);
       return;
     }
 
-    Tag tag = af.getTag();
     if (tag == null) {
       /* can't be covered by a test */
       callback.noTag(file);
@@ -199,25 +414,25 @@ public class AudioTagCheckerImpl implements AudioTagChecker, ShutdownHookPartici
     }
 
     /*
-     * Run all tag checkers
+     * Run all (enabled) tag checkers
      */
 
-    for (TagChecker tagChecker : tagCheckers) {
-      if (configuration.isTagCheckerDisabled(tagChecker) || !configuration.isTagCheckerEnabled(tagChecker)) {
-        /*
-         * do not run this tag checker when it's disabled or when it's not
-         * enabled
-         */
-        continue;
-      }
+    program.check(genericTag);
 
-      tagChecker.check(genericTag);
+    if (key != null) {
+      cache.put(key, genericTag);
     }
 
-    /*
-     * Report results
-     */
+    report(genericTag, callback);
+  }
 
+  /**
+   * Report the results of the checks of a tag
+   * 
+   * @param genericTag the checked tag
+   * @param callback the callback to use
+   */
+  static void report(GenericTag genericTag, AudioTagCheckerCallback callback) {
     if (genericTag.getReports().size() != 0) {
       callback.checksFailed(genericTag);
       return;
@@ -226,6 +441,34 @@ public class AudioTagCheckerImpl implements AudioTagChecker, ShutdownHookPartici
     callback.checksPassed(genericTag);
   }
 
+  /**
+   * Create the cache of the results of the checks, as configured
+   * 
+   * @param configuration the configuration
+   * @return the loaded cache, null when no cache is configured
+   */
+  TagCheckCache createCache(AudioTagCheckerConfiguration configuration) {
+    File cacheFile = configuration.getCacheFile();
+    if (cacheFile == null) {
+      return null;
+    }
+
+    List<Class<?>> classes = new LinkedList<>();
+    for (TagConverter tagConverter : tagConverters) {
+      classes.add(tagConverter.getClass());
+    }
+    for (TagChecker tagChecker : tagCheckers) {
+      if (!configuration.isTagCheckerDisabled(tagChecker) && configuration.isTagCheckerEnabled(tagChecker)) {
+        classes.add(tagChecker.getClass());
+      }
+    }
+
+    TagCheckCache cache =
+        new TagCheckCache(cacheFile, TagCheckCache.getFingerprint(classes), configuration.isForceRecheck());
+    cache.load();
+    return cache;
+  }
+
   /*
    * Interface Methods
    */
@@ -244,11 +487,60 @@ public class AudioTagCheckerImpl implements AudioTagChecker, ShutdownHookPartici
     FilenameFilter filenameFilter =
         new FilenameFilterWithRegex(config.isRegexInAllDirs() ? null : scanPath, config.getRegexPattern());
 
-    process(config, scanPath, filenameFilter, true, callback);
+    TagCheckCache cache = createCache(config);
+    try {
+      check(config, scanPath, filenameFilter, callback, cache);
+    }
+    finally {
+      if (cache != null) {
+        cache.save();
+      }
+    }
 
     return true;
   }
 
+  /**
+   * Check a path, sequentially or concurrently, as configured
+   * 
+   * @param config the configuration
+   * @param scanPath the path to check
+   * @param filenameFilter the filename filter to use
+   * @param callback the callback to use
+   * @param cache the cache of the results of the checks (can be null)
+   */
+  void check(AudioTagCheckerConfiguration config, File scanPath, FilenameFilter filenameFilter,
+      AudioTagCheckerCallback callback, TagCheckCache cache) {
+    /* determine the tag checkers to run (and fuse them) once per check */
+    TagCheckerProgram program = TagCheckerProgram.compile(tagCheckers, config);
+
+    int workers = config.getWorkers();
+    if (workers < 2) {
+      process(config, DirectoryEntry.read(scanPath), filenameFilter, true, callback, null, cache, program);
+      return;
+    }
+
+    final AtomicInteger threadCount = new AtomicInteger(0);
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory);
+    try {
+      OrderedResults results = new OrderedResults(executor, PENDING_PER_WORKER * workers, callback);
+      process(config, DirectoryEntry.read(scanPath), filenameFilter, true, callback, results, cache, program);
+      results.deliver(true);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
   /*
    * ShutdownHookParticipant
    */
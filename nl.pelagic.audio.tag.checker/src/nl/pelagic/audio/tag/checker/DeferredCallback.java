@@ -0,0 +1,130 @@
+package nl.pelagic.audio.tag.checker;
+
+import java.io.File;
+
+import nl.pelagic.audio.tag.checker.api.AudioTagCheckerCallback;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+
+import org.jaudiotagger.tag.Tag;
+
+/**
+ * A callback that records the result of the check of a single file, so that
+ * the result can be reported to the actual callback later on.
+ */
+class DeferredCallback implements AudioTagCheckerCallback {
+  /** the recorded callback methods */
+  enum Method {
+    /** {@link AudioTagCheckerCallback#unsupportedExtension(File)} */
+    UNSUPPORTED_EXTENSION,
+
+    /** {@link AudioTagCheckerCallback#notReadable(File, Exception)} */
+    NOT_READABLE,
+
+    /** {@link AudioTagCheckerCallback#noTag(File)} */
+    NO_TAG,
+
+    /** {@link AudioTagCheckerCallback#tagNotConverted(File, Tag)} */
+    TAG_NOT_CONVERTED,
+
+    /** {@link AudioTagCheckerCallback#checksFailed(GenericTag)} */
+    CHECKS_FAILED,
+
+    /** {@link AudioTagCheckerCallback#checksPassed(GenericTag)} */
+    CHECKS_PASSED
+  }
+
+  /** the recorded callback method, null when nothing was recorded */
+  private Method method = null;
+
+  /** the recorded file */
+  private File file = null;
+
+  /** the recorded exception */
+  private Exception exception = null;
+
+  /** the recorded tag */
+  private Tag tag = null;
+
+  /** the recorded generic tag */
+  private GenericTag genericTag = null;
+
+  /**
+   * Report the recorded result to a callback
+   *
+   * @param callback the callback
+   */
+  void deliver(AudioTagCheckerCallback callback) {
+    if (method == null) {
+      return;
+    }
+
+    switch (method) {
+      case UNSUPPORTED_EXTENSION:
+        callback.unsupportedExtension(file);
+        break;
+
+      case NOT_READABLE:
+        callback.notReadable(file, exception);
+        break;
+
+      case NO_TAG:
+        callback.noTag(file);
+        break;
+
+      case TAG_NOT_CONVERTED:
+        callback.tagNotConverted(file, tag);
+        break;
+
+      case CHECKS_FAILED:
+        callback.checksFailed(genericTag);
+        break;
+
+      case CHECKS_PASSED:
+      default:
+        callback.checksPassed(genericTag);
+        break;
+    }
+  }
+
+  /*
+   * AudioTagCheckerCallback
+   */
+
+  @Override
+  public void unsupportedExtension(File file) {
+    this.method = Method.UNSUPPORTED_EXTENSION;
+    this.file = file;
+  }
+
+  @Override
+  public void notReadable(File file, Exception e) {
+    this.method = Method.NOT_READABLE;
+    this.file = file;
+    this.exception = e;
+  }
+
+  @Override
+  public void noTag(File file) {
+    this.method = Method.NO_TAG;
+    this.file = file;
+  }
+
+  @Override
+  public void tagNotConverted(File file, Tag tag) {
+    this.method = Method.TAG_NOT_CONVERTED;
+    this.file = file;
+    this.tag = tag;
+  }
+
+  @Override
+  public void checksFailed(GenericTag tag) {
+    this.method = Method.CHECKS_FAILED;
+    this.genericTag = tag;
+  }
+
+  @Override
+  public void checksPassed(GenericTag tag) {
+    this.method = Method.CHECKS_PASSED;
+    this.genericTag = tag;
+  }
+}
@@ -0,0 +1,419 @@
+package nl.pelagic.audio.tag.checker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.pelagic.audio.tag.checker.i18n.Messages;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+import nl.pelagic.audio.tag.checker.types.ProblemReport;
+import nl.pelagic.util.file.DirectoryEntry;
+
+/**
+ * <p>
+ * The persistent cache of the results of the tag checks.
+ * </p>
+ * <p>
+ * For every file that was checked it records the size and modification time
+ * of the file and the reports of the checks, keyed by the canonical path of
+ * the file. The whole cache is only valid for the fingerprint (the tag
+ * converters and tag checkers that were used) with which it was written.
+ * </p>
+ * <p>
+ * The cache is a binary file, written with a {@link DataOutputStream}:
+ *
+ * <pre>
+ * UTF    header
+ * UTF    fingerprint
+ * int    number of files
+ * per file:
+ *   string path
+ *   long   size
+ *   long   modification time
+ *   int    number of fields with reports
+ *   per field:
+ *     UTF    generic tag field name
+ *     int    number of reports
+ *     per report:
+ *       string message, string expected value, string actual value
+ *       int    number of position marker range ints (-1 for none), the
+ *              ranges (start inclusive, end exclusive)
+ * </pre>
+ *
+ * where a string is its length in bytes (-1 for null) followed by its UTF-8
+ * bytes.
+ * </p>
+ */
+class TagCheckCache {
+  /** the header of the cache */
+  static final String HEADER = "audiotagchecker cache 2"; //$NON-NLS-1$
+
+  /** the logger */
+  private static final Logger logger = Logger.getLogger(TagCheckCache.class.getName());
+
+  /**
+   * The cached result of a file
+   */
+  static class Entry {
+    /** the size of the file */
+    final long size;
+
+    /** the modification time of the file */
+    final long lastModified;
+
+    /** the reports of the checks */
+    final SortedMap<GenericTagFieldName, List<ProblemReport>> reports;
+
+    /**
+     * Constructor
+     *
+     * @param size the size of the file
+     * @param lastModified the modification time of the file
+     * @param reports the reports of the checks
+     */
+    Entry(long size, long lastModified, SortedMap<GenericTagFieldName, List<ProblemReport>> reports) {
+      super();
+      this.size = size;
+      this.lastModified = lastModified;
+      this.reports = reports;
+    }
+  }
+
+  /**
+   * The identity of a file, determined before its tag is read
+   */
+  static class Key {
+    /** the canonical path of the file */
+    final String path;
+
+    /** the size of the file */
+    final long size;
+
+    /** the modification time of the file */
+    final long lastModified;
+
+    /**
+     * Constructor
+     *
+     * @param path the canonical path of the file
+     * @param size the size of the file
+     * @param lastModified the modification time of the file
+     */
+    Key(String path, long size, long lastModified) {
+      super();
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /** the cache file */
+  private final File cacheFile;
+
+  /** the fingerprint of the tag converters and tag checkers */
+  private final String fingerprint;
+
+  /** true when cached results must not be used */
+  private final boolean force;
+
+  /** the cached results, by canonical path */
+  final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /** the canonical paths of the files that were looked up */
+  final Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * Constructor
+   *
+   * @param cacheFile the cache file
+   * @param fingerprint the fingerprint of the tag converters and tag checkers
+   * @param force true when cached results must not be used (the cache is
+   *          still updated)
+   */
+  TagCheckCache(File cacheFile, String fingerprint, boolean force) {
+    super();
+    this.cacheFile = cacheFile;
+    this.fingerprint = fingerprint;
+    this.force = force;
+  }
+
+  /**
+   * Build the fingerprint of the tag converters and tag checkers that are used
+   *
+   * @param classes the classes of the tag converters and tag checkers
+   * @return the fingerprint: the sorted class names
+   */
+  static String getFingerprint(List<Class<?>> classes) {
+    List<String> names = new ArrayList<>(classes.size());
+    for (Class<?> clazz : classes) {
+      names.add(clazz.getName());
+    }
+    Collections.sort(names);
+
+    StringBuilder sb = new StringBuilder();
+    for (String name : names) {
+      if (sb.length() != 0) {
+        sb.append(',');
+      }
+      sb.append(name);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Determine the identity of a file
+   *
+   * @param file the file
+   * @return the identity, null when the canonical path of the file could not
+   *         be determined
+   */
+  static Key getKey(File file) {
+    return getKey(DirectoryEntry.read(file));
+  }
+
+  /**
+   * Determine the identity of a file from its (listed) attributes
+   *
+   * @param entry the file, with its attributes
+   * @return the identity, null when the canonical path of the file could not
+   *         be determined
+   */
+  static Key getKey(DirectoryEntry entry) {
+    try {
+      return new Key(entry.getFile().getCanonicalPath(), entry.length(), entry.lastModified());
+    }
+    catch (IOException e) {
+      /* can't be covered by a test */
+      return null;
+    }
+  }
+
+  /**
+   * Write a string that may be null or longer than 64K
+   *
+   * @param out the output stream
+   * @param s the string
+   * @throws IOException upon write errors
+   */
+  static void writeString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read a string that was written by {@link #writeString}
+   *
+   * @param in the input stream
+   * @return the string
+   * @throws IOException upon read errors
+   */
+  static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Load the cache. A missing cache, or a cache that was written with a
+   * different fingerprint, results in an empty cache. An unreadable or corrupt
+   * cache is discarded.
+   */
+  void load() {
+    entries.clear();
+    visited.clear();
+
+    if (!cacheFile.isFile()) {
+      return;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      String header = in.readUTF();
+      if (!HEADER.equals(header)) {
+        throw new IOException(String.format(Messages.getString("TagCheckCache.0"), header)); //$NON-NLS-1$
+      }
+
+      if (!fingerprint.equals(in.readUTF())) {
+        return;
+      }
+
+      int files = in.readInt();
+      for (int file = 0; file < files; file++) {
+        String path = readString(in);
+        long size = in.readLong();
+        long lastModified = in.readLong();
+
+        SortedMap<GenericTagFieldName, List<ProblemReport>> reports = new TreeMap<>();
+        int fields = in.readInt();
+        for (int field = 0; field < fields; field++) {
+          GenericTagFieldName name = GenericTagFieldName.valueOf(in.readUTF());
+          int count = in.readInt();
+          List<ProblemReport> fieldReports = new ArrayList<>(count);
+          for (int report = 0; report < count; report++) {
+            String message = readString(in);
+            String expected = readString(in);
+            String actual = readString(in);
+            ProblemReport problemReport = new ProblemReport(message, expected, actual, null);
+            int markers = in.readInt();
+            if (markers >= 0) {
+              int[] positionMarkerRanges = new int[markers];
+              for (int marker = 0; marker < markers; marker++) {
+                positionMarkerRanges[marker] = in.readInt();
+              }
+              problemReport.setPositionMarkerRanges(positionMarkerRanges);
+            }
+            fieldReports.add(problemReport);
+          }
+          reports.put(name, fieldReports);
+        }
+
+        entries.put(path, new Entry(size, lastModified, reports));
+      }
+    }
+    catch (IOException | IllegalArgumentException e) {
+      logger.log(Level.WARNING, String.format(Messages.getString("TagCheckCache.1"), cacheFile.getPath()), e); //$NON-NLS-1$
+      entries.clear();
+    }
+  }
+
+  /**
+   * Save the cache, atomically replacing the existing cache. Cached results of
+   * files that were not looked up and that no longer exist are not saved.
+   *
+   * @return true when successful
+   */
+  boolean save() {
+    SortedMap<String, Entry> sorted = new TreeMap<>(entries);
+    for (String path : entries.keySet()) {
+      if (!visited.contains(path) && !new File(path).isFile()) {
+        sorted.remove(path);
+      }
+    }
+
+    File tmpFile = new File(cacheFile.getAbsoluteFile().getParentFile(), cacheFile.getName() + ".tmp"); //$NON-NLS-1$
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+        out.writeUTF(HEADER);
+        out.writeUTF(fingerprint);
+        out.writeInt(sorted.size());
+
+        for (Map.Entry<String, Entry> file : sorted.entrySet()) {
+          Entry entry = file.getValue();
+          writeString(out, file.getKey());
+          out.writeLong(entry.size);
+          out.writeLong(entry.lastModified);
+          out.writeInt(entry.reports.size());
+
+          for (Map.Entry<GenericTagFieldName, List<ProblemReport>> field : entry.reports.entrySet()) {
+            out.writeUTF(field.getKey().name());
+            out.writeInt(field.getValue().size());
+
+            for (ProblemReport report : field.getValue()) {
+              writeString(out, report.getMessage());
+              writeString(out, report.getExpectedValue());
+              writeString(out, report.getActualValue());
+              int[] positionMarkerRanges = report.getPositionMarkerRanges();
+              if (positionMarkerRanges == null) {
+                out.writeInt(-1);
+                continue;
+              }
+              out.writeInt(positionMarkerRanges.length);
+              for (int marker : positionMarkerRanges) {
+                out.writeInt(marker);
+              }
+            }
+          }
+        }
+      }
+
+      Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      logger.log(Level.SEVERE, String.format(Messages.getString("TagCheckCache.2"), cacheFile.getPath()), e); //$NON-NLS-1$
+      tmpFile.delete();
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Get the cached result of a file
+   *
+   * @param key the identity of the file
+   * @param file the file
+   * @return the cached result as a tag with only its backing file and reports
+   *         set, null when the file changed, was not checked before or when
+   *         cached results must not be used
+   */
+  GenericTag get(Key key, File file) {
+    visited.add(key.path);
+    if (force) {
+      return null;
+    }
+
+    Entry entry = entries.get(key.path);
+    if ((entry == null) || (entry.size != key.size) || (entry.lastModified != key.lastModified)) {
+      return null;
+    }
+
+    GenericTag genericTag = new GenericTag();
+    genericTag.setBackingFile(file);
+    for (Map.Entry<GenericTagFieldName, List<ProblemReport>> field : entry.reports.entrySet()) {
+      genericTag.addReports(field.getKey(), field.getValue());
+    }
+    return genericTag;
+  }
+
+  /**
+   * Record the result of a file
+   *
+   * @param key the identity of the file, determined before its tag was read
+   * @param genericTag the checked tag
+   */
+  void put(Key key, GenericTag genericTag) {
+    visited.add(key.path);
+    entries.put(key.path, new Entry(key.size, key.lastModified,
+        new TreeMap<GenericTagFieldName, List<ProblemReport>>(genericTag.getReports())));
+  }
+
+  /**
+   * Forget the result of a file, so that it is checked the next time
+   *
+   * @param key the identity of the file
+   */
+  void remove(Key key) {
+    visited.add(key.path);
+    entries.remove(key.path);
+  }
+}
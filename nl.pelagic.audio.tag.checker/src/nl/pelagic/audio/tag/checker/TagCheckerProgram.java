@@ -0,0 +1,104 @@
+package nl.pelagic.audio.tag.checker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import nl.pelagic.audio.tag.checker.api.FieldRule;
+import nl.pelagic.audio.tag.checker.api.FieldRuleTagChecker;
+import nl.pelagic.audio.tag.checker.api.TagChecker;
+import nl.pelagic.audio.tag.checker.common.FieldRuleProgram;
+import nl.pelagic.audio.tag.checker.types.AudioTagCheckerConfiguration;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+
+/**
+ * The tag checkers that are run during a check, determined once per check.
+ * When the checks are fused, the field rules of the tag checkers that declare
+ * them are compiled into a single program that is evaluated in one traversal
+ * of the values of a tag; the other tag checkers are run as usual.
+ */
+class TagCheckerProgram {
+  /** the enabled tag checkers, in the order in which they are run */
+  private final TagChecker[] tagCheckers;
+
+  /** true (per tag checker) when the tag checker is fused */
+  private final boolean[] fused;
+
+  /** the compiled field rules of the fused tag checkers */
+  private final FieldRuleProgram fieldRuleProgram;
+
+  /**
+   * Constructor
+   *
+   * @param tagCheckers the enabled tag checkers, in the order in which they are
+   *          run
+   * @param fused true (per tag checker) when the tag checker is fused
+   * @param fieldRules the field rules of the fused tag checkers
+   */
+  private TagCheckerProgram(TagChecker[] tagCheckers, boolean[] fused, List<FieldRule> fieldRules) {
+    super();
+    this.tagCheckers = tagCheckers;
+    this.fused = fused;
+    this.fieldRuleProgram = new FieldRuleProgram(fieldRules);
+  }
+
+  /**
+   * Compile the tag checkers that are run during a check
+   *
+   * @param tagCheckers all tag checkers
+   * @param configuration the configuration
+   * @return the compiled program
+   */
+  static TagCheckerProgram compile(Collection<TagChecker> tagCheckers, AudioTagCheckerConfiguration configuration) {
+    List<TagChecker> enabled = new ArrayList<>(tagCheckers.size());
+    for (TagChecker tagChecker : tagCheckers) {
+      if (configuration.isTagCheckerDisabled(tagChecker) || !configuration.isTagCheckerEnabled(tagChecker)) {
+        /*
+         * do not run this tag checker when it's disabled or when it's not
+         * enabled
+         */
+        continue;
+      }
+      enabled.add(tagChecker);
+    }
+
+    TagChecker[] enabledArray = enabled.toArray(new TagChecker[enabled.size()]);
+    boolean[] fused = new boolean[enabledArray.length];
+    List<FieldRule> fieldRules = new ArrayList<>();
+    if (configuration.isFusedChecks()) {
+      for (int i = 0; i < enabledArray.length; i++) {
+        if (enabledArray[i] instanceof FieldRuleTagChecker) {
+          fused[i] = true;
+          fieldRules.addAll(((FieldRuleTagChecker) enabledArray[i]).getFieldRules());
+        }
+      }
+    }
+
+    return new TagCheckerProgram(enabledArray, fused, fieldRules);
+  }
+
+  /**
+   * @return the number of compiled field rules
+   */
+  int getFieldRuleCount() {
+    return fieldRuleProgram.size();
+  }
+
+  /**
+   * Run all tag checkers on a tag. This method can be called concurrently (for
+   * different tags).
+   *
+   * @param genericTag the tag to check
+   */
+  void check(GenericTag genericTag) {
+    for (int i = 0; i < tagCheckers.length; i++) {
+      if (fused[i]) {
+        ((FieldRuleTagChecker) tagCheckers[i]).checkTag(genericTag);
+      } else {
+        tagCheckers[i].check(genericTag);
+      }
+    }
+
+    fieldRuleProgram.run(genericTag);
+  }
+}
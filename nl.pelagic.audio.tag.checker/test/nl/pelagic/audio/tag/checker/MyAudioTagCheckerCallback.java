@@ -20,27 +20,32 @@ public class MyAudioTagCheckerCallback implements AudioTagCheckerCallback {
   public List<File> tagNotConverteds = new LinkedList<>();
   public List<GenericTag> checksFaileds = new LinkedList<>();
   public List<GenericTag> checksPasseds = new LinkedList<>();
+  public List<File> files = new LinkedList<>();
 
   public ShutdownHookParticipant atc = null;
   public int shutdownAfterNumberOfCalls = 0;
 
   @Override
   public void unsupportedExtension(File file) {
+    files.add(file);
     unsupportedExtensions.add(file);
   }
 
   @Override
   public void notReadable(File file, Exception e) {
+    files.add(file);
     notReadables.add(file);
   }
 
   @Override
   public void noTag(File file) {
+    files.add(file);
     noTags.add(file);
   }
 
   @Override
   public void tagNotConverted(File file, Tag tag) {
+    files.add(file);
     tagNotConverteds.add(file);
     if (atc != null) {
       shutdownAfterNumberOfCalls--;
@@ -52,11 +57,13 @@ public class MyAudioTagCheckerCallback implements AudioTagCheckerCallback {
 
   @Override
   public void checksFailed(GenericTag tag) {
+    files.add(tag.getBackingFile());
     checksFaileds.add(tag);
   }
 
   @Override
   public void checksPassed(GenericTag tag) {
+    files.add(tag.getBackingFile());
     checksPasseds.add(tag);
   }
 }
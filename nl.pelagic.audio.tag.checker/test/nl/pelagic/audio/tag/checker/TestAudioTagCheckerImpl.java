@@ -432,4 +432,108 @@ public class TestAudioTagCheckerImpl {
     assertThat(Integer.valueOf(callback.checksPasseds.size()), equalTo(Integer.valueOf(0)));
   }
 
+  @Test
+  public void testCheck_Workers() throws IOException {
+    config.setRecursiveScan(true);
+    config.setCheckPath(new File(testresourcesFiletest).getParentFile());
+    config.setWorkers(1);
+
+    boolean r = atc.check(config, callback);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+    List<File> expected = callback.files;
+    assertThat(Integer.valueOf(expected.size()), equalTo(Integer.valueOf(9)));
+
+    for (int workers = 2; workers <= 4; workers++) {
+      callback = new MyAudioTagCheckerCallback();
+      config.setWorkers(workers);
+
+      r = atc.check(config, callback);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(callback.files, equalTo(expected));
+    }
+  }
+
+  @Test
+  public void testCheck_Workers_Aborted() throws IOException {
+    callback.atc = atc;
+    callback.shutdownAfterNumberOfCalls = 2;
+    config.setRecursiveScan(true);
+    config.setCheckPath(new File(testresourcesDirtest));
+    config.setWorkers(2);
+
+    boolean r = atc.check(config, callback);
+    assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+
+    assertThat(Integer.valueOf(callback.tagNotConverteds.size()), equalTo(Integer.valueOf(2)));
+    assertThat(callback.tagNotConverteds.get(0), equalTo(new File(testresourcesDirtest, "laser.flac")));
+    assertThat(callback.tagNotConverteds.get(1), equalTo(new File(testresourcesDirtest, "subdir/laser.flac")));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCheck_Workers_CheckerFails() throws IOException {
+    MyTagChecker failingTagChecker = new MyTagChecker() {
+      @Override
+      public void check(GenericTag genericTag) {
+        throw new IllegalStateException("checker failed");
+      }
+    };
+    atc.removeTagChecker(mytch);
+    atc.addTagChecker(failingTagChecker);
+    mytc.retval = true;
+    config.setRecursiveScan(true);
+    config.setCheckPath(new File(testresourcesDirtest));
+    config.setWorkers(2);
+
+    atc.check(config, callback);
+  }
+
+  @Test
+  public void testCheck_Cache() throws IOException {
+    File cacheFile = File.createTempFile("TestAudioTagCheckerImpl", ".cache");
+    cacheFile.deleteOnExit();
+    try {
+      List<ProblemReport> reports = new LinkedList<>();
+      reports.add(new ProblemReport("message", "expected", "actual", null));
+      mytch.key = GenericTagFieldName.TRACKTITLE;
+      mytch.value = reports;
+      mytc.retval = true;
+      config.setRecursiveScan(true);
+      config.setCheckPath(new File(testresourcesDirtest));
+      config.setCacheFile(cacheFile);
+      config.setWorkers(2);
+
+      boolean r = atc.check(config, callback);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(callback.checksFaileds.size()), equalTo(Integer.valueOf(3)));
+
+      /* unchanged files are reported from the cache, without converting them */
+      mytc.retval = false;
+      callback = new MyAudioTagCheckerCallback();
+      r = atc.check(config, callback);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(callback.tagNotConverteds.size()), equalTo(Integer.valueOf(0)));
+      assertThat(Integer.valueOf(callback.checksFaileds.size()), equalTo(Integer.valueOf(3)));
+      GenericTag tag = callback.checksFaileds.get(0);
+      assertThat(tag.getBackingFile(), equalTo(new File(testresourcesDirtest, "laser.flac")));
+      assertThat(tag.getReports().get(GenericTagFieldName.TRACKTITLE).toString(), equalTo(reports.toString()));
+
+      /* a forced recheck doesn't use the cache */
+      config.setForceRecheck(true);
+      callback = new MyAudioTagCheckerCallback();
+      r = atc.check(config, callback);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(callback.tagNotConverteds.size()), equalTo(Integer.valueOf(3)));
+
+      /* and replaces the cached results */
+      config.setForceRecheck(false);
+      callback = new MyAudioTagCheckerCallback();
+      r = atc.check(config, callback);
+      assertThat(Boolean.valueOf(r), equalTo(Boolean.TRUE));
+      assertThat(Integer.valueOf(callback.tagNotConverteds.size()), equalTo(Integer.valueOf(3)));
+      assertThat(Integer.valueOf(callback.checksFaileds.size()), equalTo(Integer.valueOf(0)));
+    }
+    finally {
+      cacheFile.delete();
+    }
+  }
 }
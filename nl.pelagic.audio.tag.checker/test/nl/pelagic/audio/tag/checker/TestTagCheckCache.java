@@ -0,0 +1,165 @@
+package nl.pelagic.audio.tag.checker;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+import nl.pelagic.audio.tag.checker.types.ProblemReport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls"
+})
+public class TestTagCheckCache {
+  private File cacheFile = null;
+  private File file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheFile = File.createTempFile("TestTagCheckCache", ".cache");
+    cacheFile.deleteOnExit();
+    file = File.createTempFile("TestTagCheckCache", ".flac");
+    file.deleteOnExit();
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+    file = null;
+    cacheFile.delete();
+    new File(cacheFile.getPath() + ".tmp").delete();
+    cacheFile = null;
+  }
+
+  private static GenericTag createTag(File file, String actual) {
+    GenericTag genericTag = new GenericTag();
+    genericTag.setBackingFile(file);
+    genericTag.addReport(GenericTagFieldName.TRACKTITLE, "message", actual, Arrays.asList(Integer.valueOf(1),
+        Integer.valueOf(3)), null);
+    genericTag.addReport(GenericTagFieldName.TRACKTITLE, "other message", null, null, "expected");
+    genericTag.addReport(GenericTagFieldName.ALBUMTITLE, "album", "a\tb\nc", null, "abc");
+    return genericTag;
+  }
+
+  @Test
+  public void testGetFingerprint() {
+    List<Class<?>> classes = new LinkedList<>();
+    assertThat(TagCheckCache.getFingerprint(classes), equalTo(""));
+
+    classes.add(String.class);
+    classes.add(Integer.class);
+    assertThat(TagCheckCache.getFingerprint(classes), equalTo("java.lang.Integer,java.lang.String"));
+  }
+
+  @Test
+  public void testSaveLoad() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 70000; i++) {
+      sb.append((char) ('a' + (i % 26)));
+    }
+    GenericTag genericTag = createTag(file, sb.toString());
+
+    TagCheckCache cache = new TagCheckCache(cacheFile, "fingerprint", false);
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(0)));
+
+    TagCheckCache.Key key = TagCheckCache.getKey(file);
+    assertThat(cache.get(key, file), nullValue());
+    cache.put(key, genericTag);
+    assertThat(Boolean.valueOf(cache.save()), equalTo(Boolean.TRUE));
+
+    cache = new TagCheckCache(cacheFile, "fingerprint", false);
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(1)));
+
+    GenericTag cachedTag = cache.get(key, file);
+    assertThat(cachedTag, notNullValue());
+    assertThat(cachedTag.getBackingFile(), equalTo(file));
+    assertThat(cachedTag.getReports().toString(), equalTo(genericTag.getReports().toString()));
+
+    /* a changed file is not reported from the cache */
+    assertThat(cache.get(new TagCheckCache.Key(key.path, key.size + 1, key.lastModified), file), nullValue());
+    assertThat(cache.get(new TagCheckCache.Key(key.path, key.size, key.lastModified + 1), file), nullValue());
+
+    /* nor when forced */
+    cache = new TagCheckCache(cacheFile, "fingerprint", true);
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(1)));
+    assertThat(cache.get(key, file), nullValue());
+
+    /* nor with another fingerprint */
+    cache = new TagCheckCache(cacheFile, "other fingerprint", false);
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testSave_Prune() throws IOException {
+    File removedFile = new File(file.getPath() + ".removed");
+
+    TagCheckCache cache = new TagCheckCache(cacheFile, "fingerprint", false);
+    cache.put(TagCheckCache.getKey(file), createTag(file, "actual"));
+    cache.put(TagCheckCache.getKey(removedFile), createTag(removedFile, "actual"));
+    assertThat(Boolean.valueOf(cache.save()), equalTo(Boolean.TRUE));
+
+    /* files that were looked up are kept, even when they don't exist */
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(2)));
+
+    /* files that were not looked up are removed when they don't exist */
+    assertThat(Boolean.valueOf(cache.save()), equalTo(Boolean.TRUE));
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(1)));
+    assertThat(cache.get(TagCheckCache.getKey(file), file), notNullValue());
+  }
+
+  @Test
+  public void testRemove() {
+    TagCheckCache cache = new TagCheckCache(cacheFile, "fingerprint", false);
+    TagCheckCache.Key key = TagCheckCache.getKey(file);
+    cache.put(key, createTag(file, "actual"));
+    assertThat(cache.get(key, file), notNullValue());
+
+    cache.remove(key);
+    assertThat(cache.get(key, file), nullValue());
+  }
+
+  @Test
+  public void testLoad_Corrupt() throws IOException {
+    try (FileWriter writer = new FileWriter(cacheFile)) {
+      writer.write("not a cache");
+    }
+
+    TagCheckCache cache = new TagCheckCache(cacheFile, "fingerprint", false);
+    cache.put(TagCheckCache.getKey(file), createTag(file, "actual"));
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test
+  public void testLoad_Truncated() throws IOException {
+    TagCheckCache cache = new TagCheckCache(cacheFile, "fingerprint", false);
+    cache.put(TagCheckCache.getKey(file), createTag(file, "actual"));
+    assertThat(Boolean.valueOf(cache.save()), equalTo(Boolean.TRUE));
+
+    byte[] data = Files.readAllBytes(cacheFile.toPath());
+    Files.write(cacheFile.toPath(), Arrays.copyOf(data, data.length - 10));
+
+    cache.load();
+    assertThat(Integer.valueOf(cache.entries.size()), equalTo(Integer.valueOf(0)));
+  }
+}
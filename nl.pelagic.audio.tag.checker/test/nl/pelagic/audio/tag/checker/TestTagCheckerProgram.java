@@ -0,0 +1,116 @@
+package nl.pelagic.audio.tag.checker;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import nl.pelagic.audio.tag.checker.api.FieldRule;
+import nl.pelagic.audio.tag.checker.api.FieldRuleTagChecker;
+import nl.pelagic.audio.tag.checker.api.TagChecker;
+import nl.pelagic.audio.tag.checker.common.FieldValueScanner;
+import nl.pelagic.audio.tag.checker.types.AudioTagCheckerConfiguration;
+import nl.pelagic.audio.tag.checker.types.GenericTag;
+import nl.pelagic.audio.tag.checker.types.GenericTagFieldName;
+
+import org.junit.Test;
+
+@SuppressWarnings({
+    "nls", "javadoc", "static-method"
+})
+public class TestTagCheckerProgram {
+  private static class MyFieldRuleTagChecker implements FieldRuleTagChecker {
+    final List<String> calls = new LinkedList<>();
+
+    private final FieldRule rule = new FieldRule() {
+      @Override
+      public Set<GenericTagFieldName> getFieldNames() {
+        return EnumSet.of(GenericTagFieldName.ALBUMTITLE);
+      }
+
+      @Override
+      public void check(GenericTag genericTag, GenericTagFieldName fieldName, FieldValueScanner value) {
+        calls.add("rule:" + value.getValue());
+      }
+    };
+
+    @Override
+    public void check(GenericTag genericTag) {
+      calls.add("check");
+    }
+
+    @Override
+    public void checkTag(GenericTag genericTag) {
+      calls.add("checkTag");
+    }
+
+    @Override
+    public List<FieldRule> getFieldRules() {
+      return Collections.singletonList(rule);
+    }
+  }
+
+  private static GenericTag createTag() {
+    GenericTag tag = new GenericTag();
+    tag.addField(null, GenericTagFieldName.ALBUMTITLE, "ALBUM", "album");
+    return tag;
+  }
+
+  @Test
+  public void testCompile_NotFused() {
+    MyFieldRuleTagChecker fieldRuleTagChecker = new MyFieldRuleTagChecker();
+    MyTagChecker tagChecker = new MyTagChecker();
+    tagChecker.key = GenericTagFieldName.FILE;
+    AudioTagCheckerConfiguration config = new AudioTagCheckerConfiguration();
+
+    TagCheckerProgram program =
+        TagCheckerProgram.compile(Arrays.<TagChecker> asList(fieldRuleTagChecker, tagChecker), config);
+    assertThat(Integer.valueOf(program.getFieldRuleCount()), equalTo(Integer.valueOf(0)));
+
+    GenericTag tag = createTag();
+    program.check(tag);
+    assertThat(fieldRuleTagChecker.calls, equalTo(Arrays.asList("check")));
+    assertThat(Boolean.valueOf(tag.getReports().containsKey(GenericTagFieldName.FILE)), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testCompile_Fused() {
+    MyFieldRuleTagChecker fieldRuleTagChecker = new MyFieldRuleTagChecker();
+    MyTagChecker tagChecker = new MyTagChecker();
+    tagChecker.key = GenericTagFieldName.FILE;
+    AudioTagCheckerConfiguration config = new AudioTagCheckerConfiguration();
+    config.setFusedChecks(true);
+
+    TagCheckerProgram program =
+        TagCheckerProgram.compile(Arrays.<TagChecker> asList(fieldRuleTagChecker, tagChecker), config);
+    assertThat(Integer.valueOf(program.getFieldRuleCount()), equalTo(Integer.valueOf(1)));
+
+    GenericTag tag = createTag();
+    program.check(tag);
+    assertThat(fieldRuleTagChecker.calls, equalTo(Arrays.asList("checkTag", "rule:album")));
+    assertThat(Boolean.valueOf(tag.getReports().containsKey(GenericTagFieldName.FILE)), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testCompile_Disabled() {
+    MyFieldRuleTagChecker fieldRuleTagChecker = new MyFieldRuleTagChecker();
+    AudioTagCheckerConfiguration config = new AudioTagCheckerConfiguration();
+    config.setFusedChecks(true);
+    Set<String> disabled = new HashSet<>();
+    disabled.add(MyFieldRuleTagChecker.class.getName());
+    config.setDisabledTagCheckers(disabled);
+
+    TagCheckerProgram program =
+        TagCheckerProgram.compile(Arrays.<TagChecker> asList(fieldRuleTagChecker), config);
+    assertThat(Integer.valueOf(program.getFieldRuleCount()), equalTo(Integer.valueOf(0)));
+
+    program.check(createTag());
+    assertThat(Integer.valueOf(fieldRuleTagChecker.calls.size()), equalTo(Integer.valueOf(0)));
+  }
+}
@@ -0,0 +1,428 @@
+package nl.pelagic.jaudiotagger.reader;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import nl.pelagic.jaudiotagger.reader.i18n.Messages;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.audio.flac.metadatablock.MetadataBlockDataPicture;
+import org.jaudiotagger.tag.InvalidFrameException;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagException;
+import org.jaudiotagger.tag.TagNotFoundException;
+import org.jaudiotagger.tag.flac.FlacTag;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.id3.ID3v11Tag;
+import org.jaudiotagger.tag.id3.ID3v1Tag;
+import org.jaudiotagger.tag.id3.ID3v22Tag;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.jaudiotagger.tag.vorbiscomment.VorbisCommentReader;
+import org.jaudiotagger.tag.vorbiscomment.VorbisCommentTag;
+
+/**
+ * <p>
+ * A fast tag reader that only reads the metadata of a music file: the metadata
+ * blocks of a flac file or the ID3 tags of an mp3 file. Unlike
+ * {@link AudioFileIO#read(File)} it doesn't analyse the audio, so a file with
+ * a readable tag but with invalid audio is not detected.
+ * </p>
+ * <p>
+ * The metadata is read through a window on the file that is filled by large
+ * positioned reads, so that usually a single read is enough. The tags that are
+ * produced are the same as the tags produced by jaudiotagger.
+ * </p>
+ */
+public class TagReader {
+  /** the (lowercase) extension of flac files */
+  public static final String FLAC_EXTENSION = "flac"; //$NON-NLS-1$
+
+  /** the (lowercase) extension of mp3 files */
+  public static final String MP3_EXTENSION = "mp3"; //$NON-NLS-1$
+
+  /** the (minimum) size of the window on a file */
+  static final int WINDOW_SIZE = 64 * 1024;
+
+  /** the marker at the start of a flac stream */
+  static final byte[] FLAC_MARKER = {
+      'f', 'L', 'a', 'C'
+  };
+
+  /** the marker at the start of an ID3v2 tag */
+  static final byte[] ID3V2_MARKER = {
+      'I', 'D', '3'
+  };
+
+  /** the size of an ID3v2 header (and footer) */
+  static final int ID3V2_HEADER_SIZE = 10;
+
+  /** the offset of the major version in an ID3v2 header */
+  static final int ID3V2_MAJOR_VERSION_OFFSET = 3;
+
+  /** the offset of the flags in an ID3v2 header */
+  static final int ID3V2_FLAGS_OFFSET = 5;
+
+  /** the offset of the (syncsafe) size in an ID3v2 header */
+  static final int ID3V2_SIZE_OFFSET = 6;
+
+  /** the ID3v2 header flag that signals the presence of a footer */
+  static final int ID3V2_FLAG_FOOTER = 0x10;
+
+  /** the size of an ID3v1 tag */
+  static final int ID3V1_TAG_SIZE = 128;
+
+  /** the size of the header of a flac metadata block */
+  static final int BLOCK_HEADER_SIZE = 4;
+
+  /** the flag in the header of a flac metadata block that signals the last block */
+  static final int BLOCK_FLAG_LAST = 0x80;
+
+  /** the metadata block type of the VORBIS_COMMENT block */
+  static final int BLOCK_TYPE_VORBIS_COMMENT = 4;
+
+  /** the metadata block type of the PICTURE block */
+  static final int BLOCK_TYPE_PICTURE = 6;
+
+  /**
+   * A read-only window on a file
+   */
+  static class Window implements Closeable {
+    /** the channel of the file */
+    private final FileChannel channel;
+
+    /** the size of the file */
+    private final long size;
+
+    /** the buffer with the contents of the window */
+    private ByteBuffer buffer = null;
+
+    /** the position in the file of the start of the window */
+    private long start = 0;
+
+    /**
+     * Constructor
+     *
+     * @param file the file
+     * @throws IOException when the file could not be opened
+     */
+    Window(File file) throws IOException {
+      super();
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      this.size = channel.size();
+    }
+
+    /**
+     * @return the size of the file
+     */
+    long size() {
+      return size;
+    }
+
+    /**
+     * Get a region of the file. The window is moved to the region when the
+     * region is not within the window.
+     *
+     * @param position the position in the file of the start of the region
+     * @param length the length of the region
+     * @return null when the region is not within the file, a buffer with the
+     *         contents of the region otherwise
+     * @throws IOException upon read errors
+     */
+    ByteBuffer get(long position, int length) throws IOException {
+      if ((position < 0) || (length < 0) || ((position + length) > size)) {
+        return null;
+      }
+
+      if ((buffer == null) || (position < start) || ((position + length) > (start + buffer.limit()))) {
+        int capacity = (int) Math.min(Math.max(length, WINDOW_SIZE), size - position);
+        if ((buffer == null) || (buffer.capacity() < capacity)) {
+          buffer = ByteBuffer.allocate(capacity);
+        } else {
+          buffer.clear();
+          buffer.limit(capacity);
+        }
+
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, position + buffer.position()) < 0) {
+            /* can't be covered by a test */
+            throw new EOFException();
+          }
+        }
+        buffer.flip();
+        start = position;
+      }
+
+      ByteBuffer region = buffer.duplicate();
+      region.position((int) (position - start));
+      region.limit(region.position() + length);
+      return region.slice();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Determine whether a buffer starts with a marker
+   *
+   * @param buffer the buffer (can be null)
+   * @param marker the marker
+   * @return true when the buffer starts with the marker
+   */
+  static boolean isMarker(ByteBuffer buffer, byte[] marker) {
+    if ((buffer == null) || (buffer.remaining() < marker.length)) {
+      return false;
+    }
+
+    for (int i = 0; i < marker.length; i++) {
+      if (buffer.get(buffer.position() + i) != marker[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Get the size of the ID3v2 tag at the start of a file, including its header
+   * and footer
+   *
+   * @param window the window on the file
+   * @return 0 when the file doesn't start with an ID3v2 tag, the size of the
+   *         tag otherwise
+   * @throws IOException upon read errors
+   */
+  static long getId3v2TagSize(Window window) throws IOException {
+    ByteBuffer header = window.get(0, ID3V2_HEADER_SIZE);
+    if (!isMarker(header, ID3V2_MARKER)) {
+      return 0;
+    }
+
+    byte majorVersion = header.get(ID3V2_MAJOR_VERSION_OFFSET);
+    if ((majorVersion != ID3v22Tag.MAJOR_VERSION) && (majorVersion != ID3v23Tag.MAJOR_VERSION)
+        && (majorVersion != ID3v24Tag.MAJOR_VERSION)) {
+      return 0;
+    }
+
+    long size = ID3V2_HEADER_SIZE;
+    for (int i = ID3V2_SIZE_OFFSET; i < ID3V2_HEADER_SIZE; i++) {
+      size += (header.get(i) & 0x7fL) << (7 * (ID3V2_HEADER_SIZE - 1 - i));
+    }
+    if ((header.get(ID3V2_FLAGS_OFFSET) & ID3V2_FLAG_FOOTER) != 0) {
+      size += ID3V2_HEADER_SIZE;
+    }
+
+    return size;
+  }
+
+  /**
+   * Read the ID3v2 tag at the start of a file
+   *
+   * @param window the window on the file
+   * @param name the name of the file, for logging
+   * @return null when the file doesn't start with an ID3v2 tag, the tag
+   *         otherwise
+   * @throws IOException upon read errors
+   * @throws TagException when the tag is invalid or truncated
+   */
+  static AbstractID3v2Tag readId3v2Tag(Window window, String name) throws IOException, TagException {
+    long size = getId3v2TagSize(window);
+    if (size == 0) {
+      return null;
+    }
+
+    ByteBuffer tag = (size > Integer.MAX_VALUE) ? null : window.get(0, (int) size);
+    if (tag == null) {
+      throw new TagException(String.format(Messages.getString("TagReader.1"), name)); //$NON-NLS-1$
+    }
+
+    byte majorVersion = tag.get(ID3V2_MAJOR_VERSION_OFFSET);
+    if (majorVersion == ID3v24Tag.MAJOR_VERSION) {
+      return new ID3v24Tag(tag, name);
+    }
+    if (majorVersion == ID3v23Tag.MAJOR_VERSION) {
+      return new ID3v23Tag(tag, name);
+    }
+    return new ID3v22Tag(tag, name);
+  }
+
+  /**
+   * Read the ID3v1 tag at the end of a file
+   *
+   * @param window the window on the file
+   * @return null when the file doesn't end with an ID3v1 tag, the tag
+   *         otherwise
+   * @throws IOException upon read errors
+   */
+  static ID3v1Tag readId3v1Tag(Window window) throws IOException {
+    ByteBuffer buffer = window.get(window.size() - ID3V1_TAG_SIZE, ID3V1_TAG_SIZE);
+    if (buffer == null) {
+      return null;
+    }
+
+    try {
+      ID3v11Tag tag = new ID3v11Tag();
+      tag.read(buffer);
+      return tag;
+    }
+    catch (TagNotFoundException e) {
+      /* not an ID3v1.1 tag, try an ID3v1 tag */
+    }
+
+    buffer.rewind();
+    try {
+      ID3v1Tag tag = new ID3v1Tag();
+      tag.read(buffer);
+      return tag;
+    }
+    catch (TagNotFoundException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Read the ID3v2 tag of an mp3 file. Only the tag is read.
+   *
+   * @param mp3 the mp3 file
+   * @return null when the file doesn't start with an ID3v2 tag, the tag
+   *         otherwise
+   * @throws IOException upon read errors
+   * @throws TagException when the tag is invalid or truncated
+   */
+  public static AbstractID3v2Tag readId3v2Tag(File mp3) throws IOException, TagException {
+    try (Window window = new Window(mp3)) {
+      return readId3v2Tag(window, mp3.getName());
+    }
+  }
+
+  /**
+   * Read the tag of an mp3 file: its ID3v2 tag, or its ID3v1 tag when it
+   * doesn't have an ID3v2 tag.
+   *
+   * @param mp3 the mp3 file
+   * @return null when the file has no tag, the tag otherwise
+   * @throws CannotReadException when the file is empty
+   * @throws IOException upon read errors
+   * @throws TagException when the ID3v2 tag is invalid or truncated
+   */
+  public static Tag readMp3Tag(File mp3) throws CannotReadException, IOException, TagException {
+    try (Window window = new Window(mp3)) {
+      if (window.size() == 0) {
+        throw new CannotReadException(String.format(Messages.getString("TagReader.2"), mp3.getPath())); //$NON-NLS-1$
+      }
+
+      AbstractID3v2Tag tag = readId3v2Tag(window, mp3.getName());
+      if (tag != null) {
+        return tag;
+      }
+
+      return readId3v1Tag(window);
+    }
+  }
+
+  /**
+   * Read the tag of a flac file. Only the metadata blocks are read, an ID3v2
+   * tag in front of the flac stream is skipped. Pictures that can't be read
+   * are ignored, like jaudiotagger does.
+   *
+   * @param flac the flac file
+   * @return the tag (never null)
+   * @throws CannotReadException when the file is not a flac file or when its
+   *           metadata is truncated or invalid
+   * @throws IOException upon read errors
+   */
+  public static FlacTag readFlacTag(File flac) throws CannotReadException, IOException {
+    try (Window window = new Window(flac)) {
+      long position = getId3v2TagSize(window);
+      if (!isMarker(window.get(position, FLAC_MARKER.length), FLAC_MARKER)) {
+        throw new CannotReadException(String.format(Messages.getString("TagReader.0"), flac.getPath())); //$NON-NLS-1$
+      }
+      position += FLAC_MARKER.length;
+
+      VorbisCommentTag vorbisCommentTag = null;
+      List<MetadataBlockDataPicture> images = new ArrayList<>();
+      boolean lastBlock = false;
+      while (!lastBlock) {
+        ByteBuffer header = window.get(position, BLOCK_HEADER_SIZE);
+        if (header == null) {
+          throw new CannotReadException(String.format(Messages.getString("TagReader.1"), flac.getPath())); //$NON-NLS-1$
+        }
+        position += BLOCK_HEADER_SIZE;
+
+        lastBlock = (header.get(0) & BLOCK_FLAG_LAST) != 0;
+        int blockType = header.get(0) & ~BLOCK_FLAG_LAST;
+        int blockLength = ((header.get(1) & 0xff) << 16) | ((header.get(2) & 0xff) << 8) | (header.get(3) & 0xff);
+
+        if ((blockType == BLOCK_TYPE_VORBIS_COMMENT) || (blockType == BLOCK_TYPE_PICTURE)) {
+          ByteBuffer data = window.get(position, blockLength);
+          if (data == null) {
+            throw new CannotReadException(String.format(Messages.getString("TagReader.1"), flac.getPath())); //$NON-NLS-1$
+          }
+
+          if (blockType == BLOCK_TYPE_VORBIS_COMMENT) {
+            byte[] rawData = new byte[blockLength];
+            data.get(rawData);
+            vorbisCommentTag = new VorbisCommentReader().read(rawData, false);
+          } else {
+            try {
+              images.add(new MetadataBlockDataPicture(data));
+            }
+            catch (IOException | InvalidFrameException e) {
+              /* ignore the picture */
+            }
+          }
+        }
+        position += blockLength;
+      }
+
+      if (vorbisCommentTag == null) {
+        vorbisCommentTag = VorbisCommentTag.createNewTag();
+      }
+
+      return new FlacTag(vorbisCommentTag, images);
+    }
+  }
+
+  /**
+   * Read the tag of a music file. Flac and mp3 files (determined by their
+   * extension) are read by {@link #readFlacTag(File)} and
+   * {@link #readMp3Tag(File)}, other files are read by jaudiotagger.
+   *
+   * @param file the music file
+   * @return null when the file has no tag, the tag otherwise
+   * @throws CannotReadException when the file can't be read
+   * @throws IOException upon read errors
+   * @throws TagException when the tag is invalid
+   * @throws ReadOnlyFileException see {@link AudioFileIO#read(File)}
+   * @throws InvalidAudioFrameException see {@link AudioFileIO#read(File)}
+   */
+  public static Tag read(File file) throws CannotReadException, IOException, TagException, ReadOnlyFileException,
+      InvalidAudioFrameException {
+    String name = file.getName();
+    int dot = name.lastIndexOf('.');
+    String extension = (dot < 0) ? "" : name.substring(dot + 1).toLowerCase(Locale.ENGLISH); //$NON-NLS-1$
+
+    if (FLAC_EXTENSION.equals(extension)) {
+      return readFlacTag(file);
+    }
+    if (MP3_EXTENSION.equals(extension)) {
+      return readMp3Tag(file);
+    }
+
+    return AudioFileIO.read(file).getTag();
+  }
+}
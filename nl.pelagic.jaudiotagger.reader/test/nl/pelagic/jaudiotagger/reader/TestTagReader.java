@@ -0,0 +1,175 @@
+package nl.pelagic.jaudiotagger.reader;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagException;
+import org.jaudiotagger.tag.flac.FlacTag;
+import org.jaudiotagger.tag.id3.ID3v1Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls"
+})
+public class TestTagReader {
+  private static final File testresources = new File("testresources");
+
+  private File tmpFile = null;
+
+  @Before
+  public void setUp() throws IOException {
+    tmpFile = File.createTempFile("TestTagReader", ".mp3");
+    tmpFile.deleteOnExit();
+  }
+
+  @After
+  public void tearDown() {
+    tmpFile.delete();
+    tmpFile = null;
+  }
+
+  private void write(byte[] data) throws IOException {
+    try (FileOutputStream os = new FileOutputStream(tmpFile)) {
+      os.write(data);
+    }
+  }
+
+  @Test
+  public void testWindow() throws IOException {
+    byte[] data = new byte[TagReader.WINDOW_SIZE + 1000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    write(data);
+
+    try (TagReader.Window window = new TagReader.Window(tmpFile)) {
+      assertThat(Long.valueOf(window.size()), equalTo(Long.valueOf(data.length)));
+      assertThat(window.get(-1, 10), nullValue());
+      assertThat(window.get(0, -1), nullValue());
+      assertThat(window.get(data.length - 10, 11), nullValue());
+
+      long[] positions = {
+          10, TagReader.WINDOW_SIZE - 5, 3, data.length - 10
+      };
+      for (long position : positions) {
+        ByteBuffer region = window.get(position, 10);
+        assertThat(Integer.valueOf(region.remaining()), equalTo(Integer.valueOf(10)));
+        byte[] bytes = new byte[10];
+        region.get(bytes);
+        assertThat(bytes, equalTo(Arrays.copyOfRange(data, (int) position, (int) position + 10)));
+      }
+    }
+  }
+
+  @Test
+  public void testReadFlacTag() throws Exception {
+    File flac = new File(testresources, "laser.flac");
+    FlacTag tag = TagReader.readFlacTag(flac);
+    FlacTag expected = (FlacTag) AudioFileIO.read(flac).getTag();
+
+    assertThat(tag.getVorbisCommentTag().getVendor(), equalTo(expected.getVorbisCommentTag().getVendor()));
+    assertThat(Integer.valueOf(tag.getFieldCount()), equalTo(Integer.valueOf(expected.getFieldCount())));
+    assertThat(tag.getFirst(FieldKey.TITLE), equalTo(expected.getFirst(FieldKey.TITLE)));
+    assertThat(tag.getFirst(FieldKey.ARTIST), equalTo(expected.getFirst(FieldKey.ARTIST)));
+    assertThat(Integer.valueOf(tag.getImages().size()), equalTo(Integer.valueOf(expected.getImages().size())));
+    assertThat(tag.getVorbisCommentTag().toString(), equalTo(expected.getVorbisCommentTag().toString()));
+  }
+
+  @Test
+  public void testReadFlacTag_ID3v2() throws Exception {
+    File flac = new File(testresources, "laser_mp3_tag.flac");
+    FlacTag tag = TagReader.readFlacTag(flac);
+    FlacTag expected = (FlacTag) AudioFileIO.read(flac).getTag();
+
+    assertThat(tag.getVorbisCommentTag().toString(), equalTo(expected.getVorbisCommentTag().toString()));
+  }
+
+  @Test(expected = CannotReadException.class)
+  public void testReadFlacTag_NotFlac() throws Exception {
+    TagReader.readFlacTag(new File(testresources, "laser.mp3"));
+  }
+
+  @Test(expected = CannotReadException.class)
+  public void testReadFlacTag_Truncated() throws Exception {
+    byte[] data = Files.readAllBytes(new File(testresources, "laser.flac").toPath());
+    write(Arrays.copyOf(data, 100));
+    TagReader.readFlacTag(tmpFile);
+  }
+
+  @Test
+  public void testReadMp3Tag_ID3v2() throws Exception {
+    Tag tag = TagReader.readMp3Tag(new File(testresources, "laser.mp3"));
+    assertThat(tag, instanceOf(ID3v24Tag.class));
+    assertThat(tag.getFirst(FieldKey.TITLE), equalTo("Laser mp3"));
+  }
+
+  @Test
+  public void testReadMp3Tag_EmptyID3v2() throws Exception {
+    Tag tag = TagReader.readMp3Tag(new File(testresources, "laser_no_tag.mp3"));
+    assertThat(tag, instanceOf(ID3v24Tag.class));
+    assertThat(Boolean.valueOf(tag.isEmpty()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testReadMp3Tag_ID3v1() throws Exception {
+    File mp3 = new File(testresources, "laser_id3v1.mp3");
+    assertThat(TagReader.readId3v2Tag(mp3), nullValue());
+
+    Tag tag = TagReader.readMp3Tag(mp3);
+    assertThat(tag, instanceOf(ID3v1Tag.class));
+    assertThat(tag.getFirst(FieldKey.TITLE), equalTo("Laser mp3"));
+  }
+
+  @Test
+  public void testReadMp3Tag_NoTag() throws Exception {
+    write(new byte[2 * TagReader.ID3V1_TAG_SIZE]);
+    assertThat(TagReader.readMp3Tag(tmpFile), nullValue());
+  }
+
+  @Test(expected = CannotReadException.class)
+  public void testReadMp3Tag_Empty() throws Exception {
+    write(new byte[0]);
+    TagReader.readMp3Tag(tmpFile);
+  }
+
+  @Test(expected = TagException.class)
+  public void testReadMp3Tag_Truncated() throws Exception {
+    byte[] data = Files.readAllBytes(new File(testresources, "laser.mp3").toPath());
+    write(Arrays.copyOf(data, 100));
+    TagReader.readMp3Tag(tmpFile);
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    assertThat(TagReader.read(new File(testresources, "laser.flac")), instanceOf(FlacTag.class));
+    assertThat(TagReader.read(new File(testresources, "laser.mp3")), instanceOf(ID3v24Tag.class));
+  }
+
+  @Test(expected = CannotReadException.class)
+  public void testRead_Unsupported() throws Exception {
+    File unsupported = File.createTempFile("TestTagReader", ".unsupported");
+    unsupported.deleteOnExit();
+    try {
+      TagReader.read(unsupported);
+    }
+    finally {
+      unsupported.delete();
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package nl.pelagic.jaudiotagger.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Utilities for flac files
+ */
+public class FlacUtils {
+  /** the marker at the start of a flac stream */
+  static final byte[] FLAC_MARKER = {
+      'f', 'L', 'a', 'C'
+  };
+
+  /** the marker at the start of an ID3v2 tag */
+  static final byte[] ID3V2_MARKER = {
+      'I', 'D', '3'
+  };
+
+  /** the size of an ID3v2 header (and footer) */
+  static final int ID3V2_HEADER_SIZE = 10;
+
+  /** the ID3v2 header flag that signals the presence of a footer */
+  static final int ID3V2_FLAG_FOOTER = 0x10;
+
+  /** the metadata block type of the STREAMINFO block */
+  static final int BLOCK_TYPE_STREAMINFO = 0;
+
+  /** the length of the STREAMINFO block */
+  static final int STREAMINFO_LENGTH = 34;
+
+  /** the offset of the MD5 signature in the STREAMINFO block */
+  static final int STREAMINFO_MD5_OFFSET = 18;
+
+  /** the length of the MD5 signature in the STREAMINFO block */
+  static final int STREAMINFO_MD5_LENGTH = 16;
+
+  /**
+   * the offset in the STREAMINFO block of the sample rate, channels, bits per
+   * sample and total samples fields
+   */
+  static final int STREAMINFO_SAMPLES_OFFSET = 10;
+
+  /**
+   * Read a number of bytes and compare them to a marker
+   *
+   * @param raf the file to read from
+   * @param marker the marker
+   * @return true when the bytes are equal to the marker
+   * @throws IOException upon read errors
+   */
+  static boolean readMarker(RandomAccessFile raf, byte[] marker) throws IOException {
+    byte[] buffer = new byte[marker.length];
+    if (raf.read(buffer) != buffer.length) {
+      return false;
+    }
+
+    for (int i = 0; i < marker.length; i++) {
+      if (buffer[i] != marker[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * <p>
+   * Read the STREAMINFO metadata block of a flac file. Only the start of the
+   * file is read.
+   * </p>
+   * <p>
+   * An ID3v2 tag in front of the flac stream is skipped.
+   * </p>
+   *
+   * @param flac the flac file
+   * @return null when the file is not a flac file, the STREAMINFO block
+   *         otherwise
+   * @throws IOException upon read errors
+   */
+  static byte[] readStreamInfo(File flac) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(flac, "r")) { //$NON-NLS-1$
+      /* skip an ID3v2 tag */
+      if (readMarker(raf, ID3V2_MARKER)) {
+        byte[] header = new byte[ID3V2_HEADER_SIZE - ID3V2_MARKER.length];
+        raf.readFully(header);
+        long size = ((header[3] & 0x7f) << 21) | ((header[4] & 0x7f) << 14) | ((header[5] & 0x7f) << 7) | (header[6] & 0x7f);
+        if ((header[2] & ID3V2_FLAG_FOOTER) != 0) {
+          size += ID3V2_HEADER_SIZE;
+        }
+        raf.seek(ID3V2_HEADER_SIZE + size);
+      } else {
+        raf.seek(0);
+      }
+
+      if (!readMarker(raf, FLAC_MARKER)) {
+        return null;
+      }
+
+      /* the STREAMINFO block must be the first metadata block */
+      byte[] blockHeader = new byte[4];
+      raf.readFully(blockHeader);
+      int blockType = blockHeader[0] & 0x7f;
+      int blockLength = ((blockHeader[1] & 0xff) << 16) | ((blockHeader[2] & 0xff) << 8) | (blockHeader[3] & 0xff);
+      if ((blockType != BLOCK_TYPE_STREAMINFO) || (blockLength != STREAMINFO_LENGTH)) {
+        return null;
+      }
+
+      byte[] streamInfo = new byte[STREAMINFO_LENGTH];
+      raf.readFully(streamInfo);
+      return streamInfo;
+    }
+  }
+
+  /**
+   * <p>
+   * Get the MD5 signature of the (unencoded) audio of a flac file from its
+   * STREAMINFO metadata block. Only the start of the file is read.
+   * </p>
+   * <p>
+   * An ID3v2 tag in front of the flac stream is skipped.
+   * </p>
+   *
+   * @param flac the flac file
+   * @return null when the file is not a flac file or when the MD5 signature is
+   *         not set (all zeroes), the MD5 signature as a lowercase hexadecimal
+   *         string of 32 characters otherwise
+   * @throws IOException upon read errors
+   */
+  public static String getAudioMd5(File flac) throws IOException {
+    byte[] streamInfo = readStreamInfo(flac);
+    if (streamInfo == null) {
+      return null;
+    }
+
+    boolean set = false;
+    StringBuilder sb = new StringBuilder(2 * STREAMINFO_MD5_LENGTH);
+    for (int i = STREAMINFO_MD5_OFFSET; i < (STREAMINFO_MD5_OFFSET + STREAMINFO_MD5_LENGTH); i++) {
+      set = set || (streamInfo[i] != 0);
+      sb.append(String.format("%02x", Integer.valueOf(streamInfo[i] & 0xff))); //$NON-NLS-1$
+    }
+
+    return set ? sb.toString() : null;
+  }
+
+  /**
+   * @param streamInfo the STREAMINFO block
+   * @return the sample rate, in Hz
+   */
+  static int sampleRate(byte[] streamInfo) {
+    int o = STREAMINFO_SAMPLES_OFFSET;
+    return ((streamInfo[o] & 0xff) << 12) | ((streamInfo[o + 1] & 0xff) << 4) | ((streamInfo[o + 2] >> 4) & 0x0f);
+  }
+
+  /**
+   * @param streamInfo the STREAMINFO block
+   * @return the total number of samples (per channel), zero when unknown
+   */
+  static long totalSamples(byte[] streamInfo) {
+    int o = STREAMINFO_SAMPLES_OFFSET;
+    return ((long) (streamInfo[o + 3] & 0x0f) << 32) | ((long) (streamInfo[o + 4] & 0xff) << 24)
+        | ((streamInfo[o + 5] & 0xff) << 16) | ((streamInfo[o + 6] & 0xff) << 8) | (streamInfo[o + 7] & 0xff);
+  }
+
+  /**
+   * <p>
+   * Get the size of the decoded audio of a flac file (total samples x
+   * channels x bytes per sample) from its STREAMINFO metadata block. Only the
+   * start of the file is read.
+   * </p>
+   * <p>
+   * An ID3v2 tag in front of the flac stream is skipped.
+   * </p>
+   *
+   * @param flac the flac file
+   * @return -1 when the file is not a flac file or when the total number of
+   *         samples is unknown (zero), the size of the decoded audio in bytes
+   *         otherwise
+   * @throws IOException upon read errors
+   */
+  public static long getDecodedSize(File flac) throws IOException {
+    byte[] streamInfo = readStreamInfo(flac);
+    if (streamInfo == null) {
+      return -1;
+    }
+
+    int o = STREAMINFO_SAMPLES_OFFSET;
+    int channels = ((streamInfo[o + 2] >> 1) & 0x07) + 1;
+    int bitsPerSample = (((streamInfo[o + 2] & 0x01) << 4) | ((streamInfo[o + 3] >> 4) & 0x0f)) + 1;
+    long totalSamples = totalSamples(streamInfo);
+    if (totalSamples == 0) {
+      return -1;
+    }
+
+    return totalSamples * channels * ((bitsPerSample + 7) / 8);
+  }
+
+  /**
+   * <p>
+   * Get the total number of samples (per channel) of a flac file from its
+   * STREAMINFO metadata block. Only the start of the file is read.
+   * </p>
+   * <p>
+   * An ID3v2 tag in front of the flac stream is skipped.
+   * </p>
+   *
+   * @param flac the flac file
+   * @return -1 when the file is not a flac file or when the total number of
+   *         samples is unknown (zero), the total number of samples otherwise
+   * @throws IOException upon read errors
+   */
+  public static long getTotalSamples(File flac) throws IOException {
+    byte[] streamInfo = readStreamInfo(flac);
+    if (streamInfo == null) {
+      return -1;
+    }
+
+    long totalSamples = totalSamples(streamInfo);
+    return (totalSamples == 0) ? -1 : totalSamples;
+  }
+
+  /**
+   * <p>
+   * Get the sample rate of a flac file from its STREAMINFO metadata block.
+   * Only the start of the file is read.
+   * </p>
+   * <p>
+   * An ID3v2 tag in front of the flac stream is skipped.
+   * </p>
+   *
+   * @param flac the flac file
+   * @return -1 when the file is not a flac file, the sample rate in Hz
+   *         otherwise
+   * @throws IOException upon read errors
+   */
+  public static int getSampleRate(File flac) throws IOException {
+    byte[] streamInfo = readStreamInfo(flac);
+    if (streamInfo == null) {
+      return -1;
+    }
+
+    return sampleRate(streamInfo);
+  }
+}
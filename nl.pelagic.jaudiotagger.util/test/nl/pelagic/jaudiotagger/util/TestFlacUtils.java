@@ -0,0 +1,150 @@
+package nl.pelagic.jaudiotagger.util;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls"
+})
+public class TestFlacUtils {
+  private File tmpFile = null;
+
+  @Before
+  public void setUp() throws IOException {
+    tmpFile = File.createTempFile("TestFlacUtils", ".flac");
+    tmpFile.deleteOnExit();
+  }
+
+  @After
+  public void tearDown() {
+    tmpFile.delete();
+    tmpFile = null;
+  }
+
+  private static byte[] streamInfo(int md5Byte) {
+    byte[] data = new byte[4 + FlacUtils.STREAMINFO_LENGTH];
+    data[0] = (byte) (0x80 | FlacUtils.BLOCK_TYPE_STREAMINFO);
+    data[3] = FlacUtils.STREAMINFO_LENGTH;
+    for (int i = 0; i < FlacUtils.STREAMINFO_MD5_LENGTH; i++) {
+      data[4 + FlacUtils.STREAMINFO_MD5_OFFSET + i] = (byte) (md5Byte + i);
+    }
+    return data;
+  }
+
+  private void write(byte[]... parts) throws IOException {
+    try (FileOutputStream os = new FileOutputStream(tmpFile)) {
+      for (byte[] part : parts) {
+        os.write(part);
+      }
+    }
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testGetAudioMd5_NotFound() throws IOException {
+    FlacUtils.getAudioMd5(new File("some file that does not exist.flac"));
+  }
+
+  @Test
+  public void testGetAudioMd5_Empty() throws IOException {
+    write();
+    assertThat(FlacUtils.getAudioMd5(tmpFile), nullValue());
+  }
+
+  @Test
+  public void testGetAudioMd5_NotFlac() throws IOException {
+    write("this is not a flac file at all, really not".getBytes("UTF-8"));
+    assertThat(FlacUtils.getAudioMd5(tmpFile), nullValue());
+  }
+
+  @Test
+  public void testGetAudioMd5_NoStreamInfo() throws IOException {
+    byte[] block = streamInfo(1);
+    block[0] = 4;
+    write(FlacUtils.FLAC_MARKER, block);
+    assertThat(FlacUtils.getAudioMd5(tmpFile), nullValue());
+  }
+
+  @Test
+  public void testGetAudioMd5_NotSet() throws IOException {
+    byte[] block = streamInfo(1);
+    Arrays.fill(block, 4 + FlacUtils.STREAMINFO_MD5_OFFSET, 4 + FlacUtils.STREAMINFO_MD5_OFFSET
+        + FlacUtils.STREAMINFO_MD5_LENGTH, (byte) 0);
+    write(FlacUtils.FLAC_MARKER, block);
+    assertThat(FlacUtils.getAudioMd5(tmpFile), nullValue());
+  }
+
+  @Test
+  public void testGetAudioMd5_Normal() throws IOException {
+    write(FlacUtils.FLAC_MARKER, streamInfo(0xf8));
+    assertThat(FlacUtils.getAudioMd5(tmpFile), equalTo("f8f9fafbfcfdfeff0001020304050607"));
+  }
+
+  @Test
+  public void testGetAudioMd5_ID3v2() throws IOException {
+    ByteArrayOutputStream id3 = new ByteArrayOutputStream();
+    id3.write(FlacUtils.ID3V2_MARKER);
+    id3.write(new byte[] {
+        4, 0, FlacUtils.ID3V2_FLAG_FOOTER, 0, 0, 1, 0
+    });
+    id3.write(new byte[128 + FlacUtils.ID3V2_HEADER_SIZE]);
+
+    write(id3.toByteArray(), FlacUtils.FLAC_MARKER, streamInfo(0x10));
+    assertThat(FlacUtils.getAudioMd5(tmpFile), equalTo("101112131415161718191a1b1c1d1e1f"));
+  }
+
+  @Test
+  public void testGetDecodedSize_NotFlac() throws IOException {
+    write("this is not a flac file at all, really not".getBytes("UTF-8"));
+    assertThat(Long.valueOf(FlacUtils.getDecodedSize(tmpFile)), equalTo(Long.valueOf(-1)));
+  }
+
+  @Test
+  public void testGetDecodedSize_Unknown() throws IOException {
+    write(FlacUtils.FLAC_MARKER, streamInfo(1));
+    assertThat(Long.valueOf(FlacUtils.getDecodedSize(tmpFile)), equalTo(Long.valueOf(-1)));
+  }
+
+  @Test
+  public void testGetDecodedSize_Normal() throws IOException {
+    /* 44100 Hz, 2 channels, 16 bits per sample, 441000 samples (10 seconds) */
+    byte[] block = streamInfo(1);
+    byte[] samples = {
+        0x0a, (byte) 0xc4, 0x42, (byte) 0xf0, 0x00, 0x06, (byte) 0xba, (byte) 0xa8
+    };
+    System.arraycopy(samples, 0, block, 4 + FlacUtils.STREAMINFO_SAMPLES_OFFSET, samples.length);
+    write(FlacUtils.FLAC_MARKER, block);
+    assertThat(Long.valueOf(FlacUtils.getDecodedSize(tmpFile)), equalTo(Long.valueOf(441000 * 2 * 2)));
+  }
+
+  @Test
+  public void testGetTotalSamples_SampleRate() throws IOException {
+    write("this is not a flac file at all, really not".getBytes("UTF-8"));
+    assertThat(Long.valueOf(FlacUtils.getTotalSamples(tmpFile)), equalTo(Long.valueOf(-1)));
+    assertThat(Integer.valueOf(FlacUtils.getSampleRate(tmpFile)), equalTo(Integer.valueOf(-1)));
+
+    write(FlacUtils.FLAC_MARKER, streamInfo(1));
+    assertThat(Long.valueOf(FlacUtils.getTotalSamples(tmpFile)), equalTo(Long.valueOf(-1)));
+
+    /* 44100 Hz, 2 channels, 16 bits per sample, 441000 samples (10 seconds) */
+    byte[] block = streamInfo(1);
+    byte[] samples = {
+        0x0a, (byte) 0xc4, 0x42, (byte) 0xf0, 0x00, 0x06, (byte) 0xba, (byte) 0xa8
+    };
+    System.arraycopy(samples, 0, block, 4 + FlacUtils.STREAMINFO_SAMPLES_OFFSET, samples.length);
+    write(FlacUtils.FLAC_MARKER, block);
+    assertThat(Long.valueOf(FlacUtils.getTotalSamples(tmpFile)), equalTo(Long.valueOf(441000)));
+    assertThat(Integer.valueOf(FlacUtils.getSampleRate(tmpFile)), equalTo(Integer.valueOf(44100)));
+  }
+}
@@ -39,6 +39,30 @@ public class CommandLineOptions {
   /** The default simulation mode */
   public static final boolean simulateDefault = false;
 
+  /** The default incremental mode */
+  public static final boolean incrementalDefault = false;
+
+  /** The default move detection mode */
+  public static final boolean detectMovesDefault = false;
+
+  /** The default planned mode */
+  public static final boolean planDefault = false;
+
+  /** The default daemon mode */
+  public static final boolean daemonDefault = false;
+
+  /** The default statistics mode */
+  public static final boolean statsDefault = false;
+
+  /** The default ReplayGain mode */
+  public static final boolean replayGainDefault = false;
+
+  /** The default debounce period of the daemon mode, in seconds */
+  public static final int DEFAULT_DEBOUNCE = 10;
+
+  /** The default full reconciliation interval of the daemon mode, in minutes */
+  public static final int DEFAULT_RECONCILE = 360;
+
   /*
    * Configuration variables
    */
@@ -60,6 +84,33 @@ public class CommandLineOptions {
   /** the lame options */
   private String lameOptions = Flac2Mp3Configuration.DEFAULT_LAME_OPTIONS;
 
+  /** the additional mp3 base directories */
+  private List<File> targetMp3BaseDirs = new LinkedList<>();
+
+  /** the lame options of the additional mp3 base directories */
+  private List<String> targetLameOptions = new LinkedList<>();
+
+  /** the number of concurrent conversions */
+  private int jobs = Flac2Mp3Configuration.DEFAULT_CONCURRENCY;
+
+  /** the minimum number of concurrent conversions, 0 for a fixed number */
+  private int minJobs = 0;
+
+  /** the duration (in seconds) above which a flac file is converted in segments */
+  private int segmentThreshold = Flac2Mp3Configuration.DEFAULT_SEGMENT_THRESHOLD;
+
+  /** the number of segments of a segmented conversion */
+  private int segments = Flac2Mp3Configuration.DEFAULT_SEGMENTS;
+
+  /** the transport of the decoded audio from flac to lame */
+  private Flac2Mp3Configuration.Transport transport = Flac2Mp3Configuration.DEFAULT_TRANSPORT;
+
+  /** the debounce period of the daemon mode, in seconds */
+  private int debounce = DEFAULT_DEBOUNCE;
+
+  /** the full reconciliation interval of the daemon mode, in minutes */
+  private int reconcile = DEFAULT_RECONCILE;
+
   /**
    * Default constructor
    */
@@ -79,6 +130,12 @@ public class CommandLineOptions {
   /** the file list */
   private File fileList = null;
 
+  /** the plan file */
+  private File planFile = null;
+
+  /** the statistics file */
+  private File statsFile = null;
+
   /** the flac sub-directory */
   @Argument(metaVar = "entryToConvert", required = false, index = 0, usage = "A file or directory in the flac tree."
       + " Can be specified multiple times. Optional, by default the same as the flac tree base directory")
@@ -109,6 +166,45 @@ public class CommandLineOptions {
   }, handler = BooleanOptionHandler.class, usage = "Simulation; do not write to the filesystem")
   private boolean simulate = simulateDefault;
 
+  /** the incremental mode */
+  @Option(name = "-i", aliases = {
+    "--incremental"
+  }, handler = BooleanOptionHandler.class, usage = "Incremental: skip directories in the flac tree that didn't change"
+      + " since they were last synchronised (uses an index in the mp3 tree base directory)")
+  private boolean incremental = incrementalDefault;
+
+  /** the move detection mode */
+  @Option(name = "--detect-moves", handler = BooleanOptionHandler.class, usage = "Detect moved, renamed and duplicate"
+      + " flac files by their audio: move or duplicate their existing mp3 files instead of converting them again")
+  private boolean detectMoves = detectMovesDefault;
+
+  /** the planned mode */
+  @Option(name = "-p", aliases = {
+    "--plan"
+  }, handler = BooleanOptionHandler.class, usage = "Plan: first determine all removals, directory creations, cover"
+      + " copies and conversions, then execute them in parallel while reporting progress (in verbose mode)."
+      + " Can't be combined with --detect-moves")
+  private boolean plan = planDefault;
+
+  /** the daemon mode */
+  @Option(name = "-d", aliases = {
+    "--daemon"
+  }, handler = BooleanOptionHandler.class, usage = "Daemon: after synchronising, keep watching the flac tree and"
+      + " synchronise the directories that change. Explicitly specified directories and files are then converted"
+      + " while the flac tree is watched, ahead of the queued conversions of the daemon")
+  private boolean daemon = daemonDefault;
+
+  /** the statistics mode */
+  @Option(name = "--stats", handler = BooleanOptionHandler.class, usage = "Statistics: print a summary of the"
+      + " durations of the conversion stages and of the number of bytes converted at the end of the run")
+  private boolean stats = statsDefault;
+
+  /** the ReplayGain mode */
+  @Option(name = "--replaygain", handler = BooleanOptionHandler.class, usage = "ReplayGain: analyse the loudness of"
+      + " the audio while converting and write the track gain and peak into the mp3 files, and the album gain and"
+      + " peak when all flac files of a directory are converted")
+  private boolean replayGain = replayGainDefault;
+
   /** the help mode */
   @Option(name = "-h", aliases = {
     "--help"
@@ -154,6 +250,26 @@ public class CommandLineOptions {
     this.fileList = fileList.getCanonicalFile();
   }
 
+  /**
+   * @param planFile the planFile to set
+   * @throws IOException when the file could not be resolved
+   */
+  @Option(name = "--plan-file", metaVar = "/some/plan/file", usage = "Plan: write the plan to the specified file,"
+      + " implies --plan. In simulation mode only the plan is written (no default)")
+  public void setPlanFile(File planFile) throws IOException {
+    this.planFile = planFile.getCanonicalFile();
+  }
+
+  /**
+   * @param statsFile the statsFile to set
+   * @throws IOException when the file could not be resolved
+   */
+  @Option(name = "--stats-file", metaVar = "/some/stats/file.json", usage = "Statistics: write the statistics of"
+      + " the run to the specified file, in JSON (no default)")
+  public void setStatsFile(File statsFile) throws IOException {
+    this.statsFile = statsFile.getCanonicalFile();
+  }
+
   /**
    * @param flacExecutable the flacExecutable to set
    */
@@ -190,6 +306,96 @@ public class CommandLineOptions {
     this.lameOptions = lameOptions;
   }
 
+  /**
+   * @param targetMp3BaseDir the additional mp3 base directory to add
+   * @throws IOException when the directory could not be resolved
+   */
+  @Option(name = "--target", metaVar = "/mp3/other/base/directory", usage = "An additional mp3 tree base directory"
+      + " that is converted from the same decode of each flac file. Can be specified multiple times. Can't be"
+      + " combined with --plan or --detect-moves (no default)")
+  public void addTargetMp3BaseDir(File targetMp3BaseDir) throws IOException {
+    targetMp3BaseDirs.add(targetMp3BaseDir.getCanonicalFile());
+  }
+
+  /**
+   * @param targetLameOptions the lame options of the next additional mp3 base
+   *          directory to add
+   */
+  @Option(name = "--target-lame-options", metaVar = "\"-V 2\"", usage = "The lame options of an additional mp3 tree,"
+      + " in the order of the --target options. Can be specified multiple times (default = the --lame-options)")
+  public void addTargetLameOptions(String targetLameOptions) {
+    this.targetLameOptions.add(targetLameOptions);
+  }
+
+  /**
+   * @param jobs the jobs to set
+   */
+  @Option(name = "-j", aliases = {
+    "--jobs"
+  }, metaVar = "4", usage = "The number of concurrent conversions. When larger than 1 then directories are also"
+      + " synchronised in parallel and the synchronisation no longer stops on the first failure (default = 1)")
+  public void setJobs(int jobs) {
+    this.jobs = jobs;
+  }
+
+  /**
+   * @param minJobs the minJobs to set
+   */
+  @Option(name = "--min-jobs", metaVar = "1", usage = "Adapt the number of concurrent conversions to the load on the"
+      + " processors and the disks, between this minimum and the number set by --jobs. Every change is logged"
+      + " (default = 0, a fixed number of concurrent conversions)")
+  public void setMinJobs(int minJobs) {
+    this.minJobs = minJobs;
+  }
+
+  /**
+   * @param segmentThreshold the segmentThreshold to set
+   */
+  @Option(name = "--segment-threshold", metaVar = "3600", usage = "Convert flac files that are longer than this"
+      + " number of seconds in segments that are encoded concurrently and then joined (lame --nores is used for"
+      + " the segments) (default = 0, disabled)")
+  public void setSegmentThreshold(int segmentThreshold) {
+    this.segmentThreshold = segmentThreshold;
+  }
+
+  /**
+   * @param segments the segments to set
+   */
+  @Option(name = "--segments", metaVar = "4", usage = "The number of segments into which a flac file that is"
+      + " longer than --segment-threshold is split, at most --jobs (default = number of processors, at least 2)")
+  public void setSegments(int segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * @param transport the transport to set
+   */
+  @Option(name = "--transport", metaVar = "jvm|os", usage = "The transport of the decoded audio from flac to lame:"
+      + " jvm copies it through this program, os connects flac to lame with a named pipe so that the audio doesn't"
+      + " pass through this program (needs a POSIX shell and mkfifo, falls back to jvm otherwise) (default = jvm)")
+  public void setTransport(Flac2Mp3Configuration.Transport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * @param debounce the debounce to set
+   */
+  @Option(name = "--debounce", metaVar = "10", usage = "Daemon: the number of seconds a changed"
+      + " directory must be quiet before it is synchronised (default = " + DEFAULT_DEBOUNCE + ")")
+  public void setDebounce(int debounce) {
+    this.debounce = debounce;
+  }
+
+  /**
+   * @param reconcile the reconcile to set
+   */
+  @Option(name = "--reconcile", metaVar = "360", usage = "Daemon: the number of minutes between"
+      + " synchronisations of the whole flac tree, to catch missed changes. 0 disables them (default = "
+      + DEFAULT_RECONCILE + ")")
+  public void setReconcile(int reconcile) {
+    this.reconcile = reconcile;
+  }
+
   /**
    * @param help the help to set
    */
@@ -224,6 +430,20 @@ public class CommandLineOptions {
     return fileList;
   }
 
+  /**
+   * @return the planFile
+   */
+  public File getPlanFile() {
+    return planFile;
+  }
+
+  /**
+   * @return the statsFile
+   */
+  public File getStatsFile() {
+    return statsFile;
+  }
+
   /**
    * @return the flacExecutable
    */
@@ -252,6 +472,77 @@ public class CommandLineOptions {
     return lameOptions;
   }
 
+  /**
+   * @return the canonical additional mp3 base directories
+   */
+  public List<File> getTargetMp3BaseDirs() {
+    return targetMp3BaseDirs;
+  }
+
+  /**
+   * @return the lame options of the additional mp3 base directories, one entry
+   *         per additional mp3 base directory
+   */
+  public List<String> getTargetLameOptions() {
+    List<String> result = new LinkedList<>(targetLameOptions);
+    while (result.size() < targetMp3BaseDirs.size()) {
+      result.add(lameOptions);
+    }
+    while (result.size() > targetMp3BaseDirs.size()) {
+      result.remove(result.size() - 1);
+    }
+    return result;
+  }
+
+  /**
+   * @return the jobs
+   */
+  public int getJobs() {
+    return jobs;
+  }
+
+  /**
+   * @return the minJobs
+   */
+  public int getMinJobs() {
+    return minJobs;
+  }
+
+  /**
+   * @return the segmentThreshold
+   */
+  public int getSegmentThreshold() {
+    return segmentThreshold;
+  }
+
+  /**
+   * @return the segments
+   */
+  public int getSegments() {
+    return segments;
+  }
+
+  /**
+   * @return the transport
+   */
+  public Flac2Mp3Configuration.Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * @return the debounce
+   */
+  public int getDebounce() {
+    return debounce;
+  }
+
+  /**
+   * @return the reconcile
+   */
+  public int getReconcile() {
+    return reconcile;
+  }
+
   /**
    * @return the entriesToConvert
    */
@@ -287,6 +578,48 @@ public class CommandLineOptions {
     return simulate;
   }
 
+  /**
+   * @return the incremental
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * @return the detectMoves
+   */
+  public boolean isDetectMoves() {
+    return detectMoves;
+  }
+
+  /**
+   * @return the plan
+   */
+  public boolean isPlan() {
+    return plan;
+  }
+
+  /**
+   * @return the daemon
+   */
+  public boolean isDaemon() {
+    return daemon;
+  }
+
+  /**
+   * @return the stats
+   */
+  public boolean isStats() {
+    return stats;
+  }
+
+  /**
+   * @return the replayGain
+   */
+  public boolean isReplayGain() {
+    return replayGain;
+  }
+
   /**
    * @return the help
    */
@@ -0,0 +1,277 @@
+package nl.pelagic.musicTree.flac2mp3.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Watches a flac tree for changes and reports the directories in which the
+ * changes occurred, once they've been quiet for the debounce period (an album
+ * is usually written file by file).
+ * </p>
+ * <p>
+ * A directory is reported when a file or directory in it is created, modified
+ * or deleted. A new directory is reported itself instead of its parent
+ * directory (and is watched from then on). A directory that no longer exists is
+ * reported as its nearest existing parent directory. Directories below another
+ * reported directory are not reported.
+ * </p>
+ * <p>
+ * When events were lost (or a new directory could not be watched) an overflow
+ * is signalled, upon which the whole tree must be synchronised.
+ * </p>
+ */
+class FlacTreeWatcher implements Closeable {
+  /** the flac base directory */
+  private final Path baseDir;
+
+  /** the debounce period, in nanoseconds */
+  private final long debounce;
+
+  /** the watch service */
+  private final WatchService watchService;
+
+  /** the watched directories, by watch key */
+  private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
+  /** the changed directories with the (nanoTime) deadlines of their quiet periods */
+  private final Map<Path, Long> changedDirs = new HashMap<>();
+
+  /** true when events were lost */
+  private boolean overflow = false;
+
+  /**
+   * Constructor. Starts watching the flac tree.
+   *
+   * @param flacBaseDir the flac base directory
+   * @param debounceMillis the debounce period, in milliseconds
+   * @throws IOException when the flac tree could not be watched
+   */
+  FlacTreeWatcher(File flacBaseDir, long debounceMillis) throws IOException {
+    super();
+    this.baseDir = flacBaseDir.toPath();
+    this.debounce = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+    this.watchService = baseDir.getFileSystem().newWatchService();
+
+    try {
+      watch(baseDir);
+    }
+    catch (IOException e) {
+      watchService.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Watch a directory and all directories below it
+   *
+   * @param dir the directory
+   * @throws IOException when the directory could not be watched
+   */
+  private void watch(Path dir) throws IOException {
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+        WatchKey key = d.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        watchedDirs.put(key, d);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * @return the number of watched directories
+   */
+  int getWatchedDirCount() {
+    return watchedDirs.size();
+  }
+
+  /**
+   * @return true when events were lost since the previous call, in which case
+   *         the whole tree must be synchronised
+   */
+  boolean takeOverflow() {
+    boolean result = overflow;
+    overflow = false;
+    return result;
+  }
+
+  /**
+   * Wait for events and collect the directories that changed and have been
+   * quiet for the debounce period.
+   *
+   * @param maxWaitMillis the maximum time to wait for events, in milliseconds
+   * @return the directories that changed, ordered and without directories below
+   *         another directory in the result. Empty when none.
+   * @throws InterruptedException when interrupted while waiting
+   */
+  Set<File> poll(long maxWaitMillis) throws InterruptedException {
+    long wait = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    long now = System.nanoTime();
+    for (Long deadline : changedDirs.values()) {
+      wait = Math.min(wait, Math.max(0, deadline.longValue() - now));
+    }
+
+    WatchKey key = watchService.poll(wait, TimeUnit.NANOSECONDS);
+    while (key != null) {
+      processEvents(key);
+      key = watchService.poll();
+    }
+
+    return takeQuietDirs(System.nanoTime());
+  }
+
+  /**
+   * Process the events of a watch key
+   *
+   * @param key the watch key
+   */
+  private void processEvents(WatchKey key) {
+    Path dir = watchedDirs.get(key);
+    long deadline = System.nanoTime() + debounce;
+
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if ((event.kind() == OVERFLOW) || (dir == null)) {
+        overflow = true;
+        continue;
+      }
+
+      Path changed = dir.resolve((Path) event.context());
+      if ((event.kind() == ENTRY_CREATE) && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+        try {
+          watch(changed);
+        }
+        catch (IOException e) {
+          /* can't be covered by a test */
+          overflow = true;
+        }
+        changedDirs.put(changed, Long.valueOf(deadline));
+      } else {
+        changedDirs.put(dir, Long.valueOf(deadline));
+      }
+    }
+
+    if (!key.reset()) {
+      /* the directory is no longer accessible */
+      watchedDirs.remove(key);
+    }
+  }
+
+  /**
+   * Take the changed directories that have been quiet for the debounce period.
+   * A directory is not taken while a directory above or below it is not yet
+   * quiet.
+   *
+   * @param now the current time (nanoTime)
+   * @return the quiet directories, see {@link #poll(long)}
+   */
+  Set<File> takeQuietDirs(long now) {
+    if (changedDirs.isEmpty()) {
+      return new TreeSet<>();
+    }
+
+    List<Path> busy = new ArrayList<>();
+    for (Entry<Path, Long> entry : changedDirs.entrySet()) {
+      if ((entry.getValue().longValue() - now) > 0) {
+        busy.add(entry.getKey());
+      }
+    }
+
+    Set<Path> quiet = new LinkedHashSet<>();
+    Iterator<Entry<Path, Long>> it = changedDirs.entrySet().iterator();
+    while (it.hasNext()) {
+      Path dir = it.next().getKey();
+      if (busy.contains(dir) || isRelated(dir, busy)) {
+        continue;
+      }
+
+      quiet.add(existingDir(dir));
+      it.remove();
+    }
+
+    return coalesce(quiet);
+  }
+
+  /**
+   * @param dir the directory
+   * @param dirs the other directories
+   * @return true when the directory is above or below one of the other
+   *         directories
+   */
+  static boolean isRelated(Path dir, Collection<Path> dirs) {
+    for (Path other : dirs) {
+      if (dir.startsWith(other) || other.startsWith(dir)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param dir the directory
+   * @return the directory, or its nearest existing parent directory in the
+   *         flac tree when it doesn't exist
+   */
+  Path existingDir(Path dir) {
+    Path result = dir;
+    while (!result.equals(baseDir) && !Files.isDirectory(result) && (result.getParent() != null)) {
+      result = result.getParent();
+    }
+    return result;
+  }
+
+  /**
+   * @param dirs the directories
+   * @return the directories (ordered) without those that are below another
+   *         directory
+   */
+  static Set<File> coalesce(Collection<Path> dirs) {
+    Set<File> result = new TreeSet<>();
+    for (Path dir : dirs) {
+      boolean below = false;
+      for (Path other : dirs) {
+        if (!dir.equals(other) && dir.startsWith(other)) {
+          below = true;
+          break;
+        }
+      }
+      if (!below) {
+        result.add(dir.toFile());
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchedDirs.clear();
+    changedDirs.clear();
+    watchService.close();
+  }
+}
@@ -6,9 +6,14 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -57,6 +62,9 @@ public class Main implements Runnable, ShutdownHookParticipant {
   /** the program name */
   static final String PROGRAM_NAME = "flac2mp3"; //$NON-NLS-1$
 
+  /** the file name of the run journal in the mp3 base directory */
+  static final String JOURNAL_FILE_NAME = ".flac2mp3.journal"; //$NON-NLS-1$
+
   /** the application logger */
   private final Logger applicationLogger;
 
@@ -270,7 +278,8 @@ public class Main implements Runnable, ShutdownHookParticipant {
   }
 
   /**
-   * Convert a flac file into an mp3 file.
+   * Convert a flac file into an mp3 file, in every mp3 tree of the music tree
+   * configuration that has no up-to-date mp3 file for it.
    *
    * @param err the stream to print to
    * @param flac2Mp3Configuration the conversion configuration. When null then
@@ -289,26 +298,45 @@ public class Main implements Runnable, ShutdownHookParticipant {
     assert (fileToConvert != null);
     assert (fileToConvert.isFile());
 
-    File mp3File = MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, fileToConvert);
-    if (mp3File == null) {
-      err.printf(Messages.getString("Main.12"), fileToConvert.getPath(), //$NON-NLS-1$
-          musicTreeConfiguration.getMp3BaseDir().getPath());
-      return false;
+    List<File> mp3BaseDirs = musicTreeConfiguration.getMp3BaseDirs();
+    List<File> mp3Files = new ArrayList<>(mp3BaseDirs.size());
+    boolean doConversion = false;
+    for (int target = 0; target < mp3BaseDirs.size(); target++) {
+      File mp3File = MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, fileToConvert, target);
+      if (mp3File == null) {
+        err.printf(Messages.getString("Main.12"), fileToConvert.getPath(), //$NON-NLS-1$
+            mp3BaseDirs.get(target).getPath());
+        return false;
+      }
+
+      if (!mp3File.exists() || (fileToConvert.lastModified() > mp3File.lastModified())) {
+        mp3Files.add(mp3File);
+        doConversion = true;
+      } else {
+        mp3Files.add(null);
+      }
     }
 
-    boolean doConversion = !mp3File.exists() || (fileToConvert.lastModified() > mp3File.lastModified());
     if (!doConversion) {
       return true;
     }
 
+    /* queued, so that the conversion is ordered by its priority */
     boolean converted = false;
     try {
-      converted = flacToMp3.convert(flac2Mp3Configuration, fileToConvert, mp3File, simulate);
+      converted =
+          flacToMp3.convertTargetsAsync(flac2Mp3Configuration, fileToConvert, mp3Files, simulate).get()
+              .booleanValue();
       if (!converted) {
         err.printf(Messages.getString("Main.1"), fileToConvert.getPath()); //$NON-NLS-1$
       }
     }
-    catch (IOException e) {
+    catch (ExecutionException e) {
+      converted = false;
+      err.printf(Messages.getString("Main.2"), fileToConvert.getPath(), e.getCause().getLocalizedMessage()); //$NON-NLS-1$
+    }
+    catch (InterruptedException e) {
+      /* can't be covered by a test */
       converted = false;
       err.printf(Messages.getString("Main.2"), fileToConvert.getPath(), e.getLocalizedMessage()); //$NON-NLS-1$
     }
@@ -337,6 +365,105 @@ public class Main implements Runnable, ShutdownHookParticipant {
     }
   }
 
+  /**
+   * Create the conversion configuration from the command line options
+   *
+   * @param commandLineOptions the command line options
+   * @param musicTreeConfiguration the music tree configuration
+   * @param priority the priority of the conversions
+   * @return the conversion configuration
+   */
+  static Flac2Mp3Configuration createFlac2Mp3Configuration(CommandLineOptions commandLineOptions,
+      MusicTreeConfiguration musicTreeConfiguration, int priority) {
+    Flac2Mp3Configuration flac2Mp3Configuration = new Flac2Mp3Configuration();
+    flac2Mp3Configuration.setFlacExecutable(commandLineOptions.getFlacExecutable().getPath());
+    flac2Mp3Configuration.setLameExecutable(commandLineOptions.getLameExecutable().getPath());
+    flac2Mp3Configuration.setFlacOptions(commandLineOptions.getFlacOptions());
+    flac2Mp3Configuration.setLameOptions(commandLineOptions.getLameOptions());
+    flac2Mp3Configuration.setTargetLameOptions(commandLineOptions.getTargetLameOptions());
+    flac2Mp3Configuration.setConcurrency(commandLineOptions.getJobs());
+    if (commandLineOptions.getMinJobs() > 0) {
+      flac2Mp3Configuration.setAdaptiveConcurrency(true);
+      flac2Mp3Configuration.setMinConcurrency(commandLineOptions.getMinJobs());
+    }
+    flac2Mp3Configuration.setTransport(commandLineOptions.getTransport());
+    flac2Mp3Configuration.setSegmentThreshold(commandLineOptions.getSegmentThreshold());
+    flac2Mp3Configuration.setSegments(commandLineOptions.getSegments());
+    flac2Mp3Configuration.setReplayGain(commandLineOptions.isReplayGain());
+    flac2Mp3Configuration.setJournal(new File(musicTreeConfiguration.getMp3BaseDir(), JOURNAL_FILE_NAME));
+    flac2Mp3Configuration.setPriority(priority);
+    return flac2Mp3Configuration;
+  }
+
+  /** the maximum time to wait for changes before checking for a stop in daemon mode, in milliseconds */
+  static final long DAEMON_POLL_INTERVAL = 1000;
+
+  /**
+   * Keep watching the flac tree and synchronise the directories that change,
+   * until stopped. The whole tree is synchronised periodically, and when
+   * changes were missed.
+   *
+   * @param err the stream to print to
+   * @param flac2Mp3Configuration the conversion configuration
+   * @param musicTreeConfiguration the music tree configuration
+   * @param simulate true to simulate conversion
+   * @param debounceMillis the time a changed directory must be quiet before it
+   *          is synchronised, in milliseconds
+   * @param reconcileMillis the time between synchronisations of the whole
+   *          tree, in milliseconds. 0 to disable them.
+   * @return true when successful, false when the flac tree could not be
+   *         watched
+   */
+  boolean daemon(PrintStream err, Flac2Mp3Configuration flac2Mp3Configuration,
+      MusicTreeConfiguration musicTreeConfiguration, boolean simulate, long debounceMillis, long reconcileMillis) {
+    assert (err != null);
+    assert (flac2Mp3Configuration != null);
+    assert (musicTreeConfiguration != null);
+
+    File flacBaseDir = musicTreeConfiguration.getFlacBaseDir();
+    try (FlacTreeWatcher watcher = new FlacTreeWatcher(flacBaseDir, debounceMillis)) {
+      err.printf(Messages.getString("Main.13"), flacBaseDir.getPath()); //$NON-NLS-1$
+
+      long reconcile = TimeUnit.MILLISECONDS.toNanos(reconcileMillis);
+      long nextReconcile = System.nanoTime() + reconcile;
+      while (!stop.get()) {
+        long wait = DAEMON_POLL_INTERVAL;
+        if (reconcile > 0) {
+          wait = Math.min(wait, Math.max(0, TimeUnit.NANOSECONDS.toMillis(nextReconcile - System.nanoTime())));
+        }
+
+        Set<File> dirsToSync = watcher.poll(wait);
+
+        boolean overflow = watcher.takeOverflow();
+        if (overflow || ((reconcile > 0) && ((System.nanoTime() - nextReconcile) >= 0))) {
+          dirsToSync = new TreeSet<>();
+          dirsToSync.add(flacBaseDir);
+          nextReconcile = System.nanoTime() + reconcile;
+        }
+
+        for (File dirToSync : dirsToSync) {
+          if (stop.get()) {
+            break;
+          }
+
+          if (!syncer.syncFlac2Mp3(flac2Mp3Configuration, musicTreeConfiguration, dirToSync, extensionsList,
+              coversList, simulate)) {
+            err.printf(Messages.getString("Main.14"), dirToSync.getPath()); //$NON-NLS-1$
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      err.printf(Messages.getString("Main.15"), flacBaseDir.getPath(), e.getLocalizedMessage()); //$NON-NLS-1$
+      return false;
+    }
+    catch (InterruptedException e) {
+      /* swallow, stop */
+    }
+
+    return true;
+  }
+
   /*
    * ShutdownHookParticipant
    */
@@ -359,7 +486,7 @@ public class Main implements Runnable, ShutdownHookParticipant {
    * @param err the stream to print errors to
    * @return true when successful
    */
-  boolean doMain(PrintStream err) {
+  boolean doMain(final PrintStream err) {
     if (args == null) {
       /*
        * the launcher didn't set our command line options so set empty arguments
@@ -413,8 +540,13 @@ public class Main implements Runnable, ShutdownHookParticipant {
      * Setup & validate the music tree configuration
      */
 
-    MusicTreeConfiguration musicTreeConfiguration =
+    final MusicTreeConfiguration musicTreeConfiguration =
         new MusicTreeConfiguration(commandLineOptions.getFlacBaseDir(), commandLineOptions.getMp3BaseDir());
+    musicTreeConfiguration.setIncremental(commandLineOptions.isIncremental());
+    musicTreeConfiguration.setDetectMoves(commandLineOptions.isDetectMoves());
+    musicTreeConfiguration.setPlanned(commandLineOptions.isPlan() || (commandLineOptions.getPlanFile() != null));
+    musicTreeConfiguration.setPlanFile(commandLineOptions.getPlanFile());
+    musicTreeConfiguration.setTargetMp3BaseDirs(commandLineOptions.getTargetMp3BaseDirs());
 
     List<String> errors = musicTreeConfiguration.validate(true);
     if (errors != null) {
@@ -425,14 +557,11 @@ public class Main implements Runnable, ShutdownHookParticipant {
     }
 
     /*
-     * Setup & validate the flac2mp3 configuration
+     * Setup & validate the flac2mp3 configuration of background work
      */
 
-    Flac2Mp3Configuration flac2Mp3Configuration = new Flac2Mp3Configuration();
-    flac2Mp3Configuration.setFlacExecutable(commandLineOptions.getFlacExecutable().getPath());
-    flac2Mp3Configuration.setLameExecutable(commandLineOptions.getLameExecutable().getPath());
-    flac2Mp3Configuration.setFlacOptions(commandLineOptions.getFlacOptions());
-    flac2Mp3Configuration.setLameOptions(commandLineOptions.getLameOptions());
+    final Flac2Mp3Configuration flac2Mp3Configuration =
+        createFlac2Mp3Configuration(commandLineOptions, musicTreeConfiguration, Flac2Mp3Configuration.DEFAULT_PRIORITY);
 
     errors = flac2Mp3Configuration.validate();
     if (errors != null) {
@@ -455,7 +584,16 @@ public class Main implements Runnable, ShutdownHookParticipant {
       readFileList(err, fileList, entriesToConvert);
     }
 
-    if (entriesToConvert.isEmpty()) {
+    /*
+     * explicitly requested entries jump the queue ahead of background work,
+     * while syncing the whole tree is background work itself
+     */
+    boolean explicitEntries = !entriesToConvert.isEmpty();
+    Flac2Mp3Configuration entriesConfiguration = flac2Mp3Configuration;
+    if (explicitEntries) {
+      entriesConfiguration =
+          createFlac2Mp3Configuration(commandLineOptions, musicTreeConfiguration, Flac2Mp3Configuration.USER_PRIORITY);
+    } else {
       /*
        * no entries to convert, so default to the flac base directory: sync the
        * whole tree
@@ -467,6 +605,33 @@ public class Main implements Runnable, ShutdownHookParticipant {
      * Run
      */
 
+    long start = System.nanoTime();
+
+    /* first finish the conversions that were interrupted in a previous run */
+    boolean resumed = flacToMp3.resume(flac2Mp3Configuration, commandLineOptions.isSimulate());
+
+    /*
+     * in daemon mode with explicitly requested entries the daemon (background
+     * work) is started first, so that the entries are queued while the work of
+     * the daemon is queued too
+     */
+    final boolean simulate = commandLineOptions.isSimulate();
+    final long debounceMillis = TimeUnit.SECONDS.toMillis(commandLineOptions.getDebounce());
+    final long reconcileMillis = TimeUnit.MINUTES.toMillis(commandLineOptions.getReconcile());
+    final AtomicBoolean daemonResult = new AtomicBoolean(true);
+    Thread daemonThread = null;
+    if (commandLineOptions.isDaemon() && explicitEntries) {
+      daemonThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          daemonResult.set(daemon(err, flac2Mp3Configuration, musicTreeConfiguration, simulate, debounceMillis,
+              reconcileMillis));
+        }
+      }, PROGRAM_NAME + "-daemon"); //$NON-NLS-1$
+      daemonThread.setDaemon(true);
+      daemonThread.start();
+    }
+
     boolean result = true;
     for (String entryToConvert : entriesToConvert) {
       if (stop.get()) {
@@ -479,13 +644,11 @@ public class Main implements Runnable, ShutdownHookParticipant {
         if (entryToConvertFile.isDirectory()) {
           result =
               result
-                  && syncer.syncFlac2Mp3(flac2Mp3Configuration, musicTreeConfiguration, entryToConvertFile,
-                      extensionsList, coversList, commandLineOptions.isSimulate());
+                  && syncer.syncFlac2Mp3(entriesConfiguration, musicTreeConfiguration, entryToConvertFile,
+                      extensionsList, coversList, simulate);
         } else if (entryToConvertFile.isFile()) {
           result =
-              result
-                  && convertFile(err, flac2Mp3Configuration, musicTreeConfiguration, commandLineOptions.isSimulate(),
-                      entryToConvertFile);
+              result && convertFile(err, entriesConfiguration, musicTreeConfiguration, simulate, entryToConvertFile);
         } else {
           /* can't be covered by a test */
           err.printf(Messages.getString("Main.3"), entryToConvert); //$NON-NLS-1$
@@ -495,6 +658,39 @@ public class Main implements Runnable, ShutdownHookParticipant {
       }
     }
 
+    if (daemonThread != null) {
+      boolean complete = false;
+      while (!complete) {
+        try {
+          daemonThread.join();
+          complete = true;
+        }
+        catch (InterruptedException e) {
+          /* swallow & can't be covered by a test */
+        }
+      }
+      result = daemonResult.get() && result;
+    } else if (commandLineOptions.isDaemon() && !stop.get()) {
+      result = daemon(err, flac2Mp3Configuration, musicTreeConfiguration, simulate, debounceMillis, reconcileMillis)
+          && result;
+    }
+
+    result = resumed && result;
+
+    /*
+     * Statistics
+     */
+
+    long elapsed = System.nanoTime() - start;
+    if (commandLineOptions.isStats()) {
+      StatisticsReport.printSummary(err, flacToMp3.getStatistics(), elapsed);
+    }
+
+    File statsFile = commandLineOptions.getStatsFile();
+    if (statsFile != null) {
+      result = StatisticsReport.writeJson(err, statsFile, flacToMp3.getStatistics(), elapsed) && result;
+    }
+
     return result;
   }
 
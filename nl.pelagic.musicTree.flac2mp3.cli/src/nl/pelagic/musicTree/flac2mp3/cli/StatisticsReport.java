@@ -0,0 +1,175 @@
+package nl.pelagic.musicTree.flac2mp3.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics;
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics.Counter;
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics.Histogram;
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics.Stage;
+import nl.pelagic.musicTree.flac2mp3.cli.i18n.Messages;
+
+/**
+ * <p>
+ * Reports the conversion statistics of a run: as a summary table for humans,
+ * and as JSON for tools.
+ * </p>
+ * <p>
+ * The JSON has the elapsed (wall clock) time of the run and an object per
+ * stage and per counter with the count, total, p50, p95, p99 and max of the
+ * recorded values:
+ * </p>
+ *
+ * <pre>
+ * {"elapsedNanos":123,"stageNanos":{"READ_TAG":{"count":1,...},...},"counterBytes":{"FLAC_BYTES":{...},...}}
+ * </pre>
+ */
+class StatisticsReport {
+  /** the reported percentiles */
+  static final int[] PERCENTILES = {
+      50, 95, 99
+  };
+
+  /** the number of nanoseconds in a millisecond */
+  private static final double NANOS_PER_MS = 1000000.0;
+
+  /** the number of bytes in a KB */
+  private static final double KB = 1024.0;
+
+  /** the number of bytes in a MB */
+  private static final double MB = 1024.0 * 1024.0;
+
+  /**
+   * @param histogram the histogram
+   * @param unit the unit in which to print the values
+   * @return the count, total and percentiles of the histogram, formatted as
+   *         the columns of a summary line
+   */
+  static String formatHistogram(Histogram histogram, double unit) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%8d %12.1f", Integer.valueOf(histogram.getCount()), //$NON-NLS-1$
+        Double.valueOf(histogram.getTotal() / unit)));
+    for (int percentile : PERCENTILES) {
+      sb.append(String.format(" %10.1f", Double.valueOf(histogram.getPercentile(percentile) / unit))); //$NON-NLS-1$
+    }
+    sb.append(String.format(" %10.1f", Double.valueOf(histogram.getMax() / unit))); //$NON-NLS-1$
+    return sb.toString();
+  }
+
+  /**
+   * @param bytes a number of bytes
+   * @param elapsedNanos the elapsed time, in nanoseconds
+   * @return the number of MB per second, 0 when no time elapsed
+   */
+  static double throughput(long bytes, long elapsedNanos) {
+    if (elapsedNanos <= 0) {
+      return 0.0;
+    }
+    return (bytes / MB) / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * Print the summary of the statistics
+   *
+   * @param out the stream to print to
+   * @param statistics the statistics
+   * @param elapsedNanos the elapsed (wall clock) time of the run, in
+   *          nanoseconds
+   */
+  static void printSummary(PrintStream out, ConversionStatistics statistics, long elapsedNanos) {
+    out.printf(Messages.getString("StatisticsReport.0"), //$NON-NLS-1$
+        Double.valueOf(elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+
+    out.printf(Messages.getString("StatisticsReport.1")); //$NON-NLS-1$
+    for (Stage stage : Stage.values()) {
+      out.printf("%-16s %s%n", stage.name(), formatHistogram(statistics.get(stage), NANOS_PER_MS)); //$NON-NLS-1$
+    }
+
+    out.printf(Messages.getString("StatisticsReport.2")); //$NON-NLS-1$
+    for (Counter counter : Counter.values()) {
+      out.printf("%-16s %s%n", counter.name(), formatHistogram(statistics.get(counter), KB)); //$NON-NLS-1$
+    }
+
+    out.printf(Messages.getString("StatisticsReport.3"), //$NON-NLS-1$
+        Double.valueOf(throughput(statistics.get(Counter.FLAC_BYTES).getTotal(), elapsedNanos)),
+        Double.valueOf(throughput(statistics.get(Counter.MP3_BYTES).getTotal(), elapsedNanos)));
+  }
+
+  /**
+   * Append a histogram as a JSON object
+   *
+   * @param sb the buffer to append to
+   * @param histogram the histogram
+   */
+  static void appendJson(StringBuilder sb, Histogram histogram) {
+    sb.append("{\"count\":").append(histogram.getCount()); //$NON-NLS-1$
+    sb.append(",\"total\":").append(histogram.getTotal()); //$NON-NLS-1$
+    for (int percentile : PERCENTILES) {
+      sb.append(",\"p").append(percentile).append("\":").append(histogram.getPercentile(percentile)); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    sb.append(",\"max\":").append(histogram.getMax()); //$NON-NLS-1$
+    sb.append('}');
+  }
+
+  /**
+   * @param statistics the statistics
+   * @param elapsedNanos the elapsed (wall clock) time of the run, in
+   *          nanoseconds
+   * @return the statistics as JSON
+   */
+  static String toJson(ConversionStatistics statistics, long elapsedNanos) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"elapsedNanos\":").append(elapsedNanos); //$NON-NLS-1$
+
+    sb.append(",\"stageNanos\":{"); //$NON-NLS-1$
+    for (Stage stage : Stage.values()) {
+      if (stage.ordinal() > 0) {
+        sb.append(',');
+      }
+      sb.append('"').append(stage.name()).append("\":"); //$NON-NLS-1$
+      appendJson(sb, statistics.get(stage));
+    }
+    sb.append('}');
+
+    sb.append(",\"counterBytes\":{"); //$NON-NLS-1$
+    for (Counter counter : Counter.values()) {
+      if (counter.ordinal() > 0) {
+        sb.append(',');
+      }
+      sb.append('"').append(counter.name()).append("\":"); //$NON-NLS-1$
+      appendJson(sb, statistics.get(counter));
+    }
+    sb.append("}}"); //$NON-NLS-1$
+
+    return sb.toString();
+  }
+
+  /**
+   * Write the statistics as JSON to a file
+   *
+   * @param err the stream to print errors to
+   * @param file the file
+   * @param statistics the statistics
+   * @param elapsedNanos the elapsed (wall clock) time of the run, in
+   *          nanoseconds
+   * @return true when successful
+   */
+  static boolean writeJson(PrintStream err, File file, ConversionStatistics statistics, long elapsedNanos) {
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) { //$NON-NLS-1$
+      writer.write(toJson(statistics, elapsedNanos));
+      writer.write('\n');
+    }
+    catch (IOException e) {
+      err.printf(Messages.getString("StatisticsReport.4"), file.getPath(), e.getLocalizedMessage()); //$NON-NLS-1$
+      return false;
+    }
+
+    return true;
+  }
+}
@@ -48,6 +48,14 @@ public class TestCommandLineOptions {
     assertThat(cli.getLameExecutable(), equalTo(new File(Flac2Mp3Configuration.DEFAULT_LAME_EXECUTABLE)));
     assertThat(cli.getFlacOptions(), equalTo(Flac2Mp3Configuration.DEFAULT_FLAC_OPTIONS));
     assertThat(cli.getLameOptions(), equalTo(Flac2Mp3Configuration.DEFAULT_LAME_OPTIONS));
+    assertThat(Integer.valueOf(cli.getJobs()), equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_CONCURRENCY)));
+    assertThat(Integer.valueOf(cli.getMinJobs()), equalTo(Integer.valueOf(0)));
+    assertThat(Integer.valueOf(cli.getSegmentThreshold()),
+        equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_SEGMENT_THRESHOLD)));
+    assertThat(Integer.valueOf(cli.getSegments()), equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_SEGMENTS)));
+    assertThat(cli.getTransport(), equalTo(Flac2Mp3Configuration.DEFAULT_TRANSPORT));
+    assertThat(Integer.valueOf(cli.getTargetMp3BaseDirs().size()), equalTo(Integer.valueOf(0)));
+    assertThat(Integer.valueOf(cli.getTargetLameOptions().size()), equalTo(Integer.valueOf(0)));
     List<String> entries = cli.getEntriesToConvert();
     assertThat(entries, notNullValue());
     assertThat(Integer.valueOf(entries.size()), equalTo(Integer.valueOf(0)));
@@ -55,6 +63,16 @@ public class TestCommandLineOptions {
     assertThat(Boolean.valueOf(cli.isHelp()), equalTo(Boolean.FALSE));
     assertThat(Boolean.valueOf(cli.isQuiet()), equalTo(Boolean.valueOf(CommandLineOptions.quietDefault)));
     assertThat(Boolean.valueOf(cli.isSimulate()), equalTo(Boolean.valueOf(CommandLineOptions.simulateDefault)));
+    assertThat(Boolean.valueOf(cli.isIncremental()), equalTo(Boolean.valueOf(CommandLineOptions.incrementalDefault)));
+    assertThat(Boolean.valueOf(cli.isDetectMoves()), equalTo(Boolean.valueOf(CommandLineOptions.detectMovesDefault)));
+    assertThat(Boolean.valueOf(cli.isPlan()), equalTo(Boolean.valueOf(CommandLineOptions.planDefault)));
+    assertThat(cli.getPlanFile(), nullValue());
+    assertThat(Boolean.valueOf(cli.isDaemon()), equalTo(Boolean.valueOf(CommandLineOptions.daemonDefault)));
+    assertThat(Integer.valueOf(cli.getDebounce()), equalTo(Integer.valueOf(CommandLineOptions.DEFAULT_DEBOUNCE)));
+    assertThat(Integer.valueOf(cli.getReconcile()), equalTo(Integer.valueOf(CommandLineOptions.DEFAULT_RECONCILE)));
+    assertThat(Boolean.valueOf(cli.isStats()), equalTo(Boolean.valueOf(CommandLineOptions.statsDefault)));
+    assertThat(cli.getStatsFile(), nullValue());
+    assertThat(Boolean.valueOf(cli.isReplayGain()), equalTo(Boolean.valueOf(CommandLineOptions.replayGainDefault)));
     assertThat(Boolean.valueOf(cli.isVerbose()), equalTo(Boolean.valueOf(CommandLineOptions.verboseDefault)));
     assertThat(Boolean.valueOf(cli.isExtraVerbose()), equalTo(Boolean.valueOf(CommandLineOptions.extraVerboseDefault)));
   }
@@ -101,6 +119,84 @@ public class TestCommandLineOptions {
     assertThat(cli.getLameOptions(), equalTo(options));
   }
 
+  @Test
+  public void testSetJobs() {
+    cli.setJobs(3);
+    assertThat(Integer.valueOf(cli.getJobs()), equalTo(Integer.valueOf(3)));
+  }
+
+  @Test
+  public void testSetMinJobs() throws CmdLineException {
+    cli.setMinJobs(2);
+    assertThat(Integer.valueOf(cli.getMinJobs()), equalTo(Integer.valueOf(2)));
+
+    CmdLineParser parser = new CmdLineParser(cli);
+    parser.parseArgument("--min-jobs", "1");
+    assertThat(Integer.valueOf(cli.getMinJobs()), equalTo(Integer.valueOf(1)));
+  }
+
+  @Test
+  public void testSetSegments() throws CmdLineException {
+    cli.setSegmentThreshold(1800);
+    cli.setSegments(3);
+    assertThat(Integer.valueOf(cli.getSegmentThreshold()), equalTo(Integer.valueOf(1800)));
+    assertThat(Integer.valueOf(cli.getSegments()), equalTo(Integer.valueOf(3)));
+
+    CmdLineParser parser = new CmdLineParser(cli);
+    parser.parseArgument("--segment-threshold", "3600", "--segments", "2");
+    assertThat(Integer.valueOf(cli.getSegmentThreshold()), equalTo(Integer.valueOf(3600)));
+    assertThat(Integer.valueOf(cli.getSegments()), equalTo(Integer.valueOf(2)));
+  }
+
+  @Test
+  public void testReplayGain() throws CmdLineException {
+    CmdLineParser parser = new CmdLineParser(cli);
+    parser.parseArgument("--replaygain");
+    assertThat(Boolean.valueOf(cli.isReplayGain()), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testAddTargetMp3BaseDir() throws CmdLineException, IOException {
+    CmdLineParser parser = new CmdLineParser(cli);
+    parser.parseArgument("--lame-options", "-b 128", "--target", "target1", "--target-lame-options", "-V 2",
+        "--target", "target2");
+    List<File> targets = cli.getTargetMp3BaseDirs();
+    assertThat(Integer.valueOf(targets.size()), equalTo(Integer.valueOf(2)));
+    assertThat(targets.get(0), equalTo(new File("target1").getCanonicalFile()));
+    assertThat(targets.get(1), equalTo(new File("target2").getCanonicalFile()));
+    List<String> options = cli.getTargetLameOptions();
+    assertThat(Integer.valueOf(options.size()), equalTo(Integer.valueOf(2)));
+    assertThat(options.get(0), equalTo("-V 2"));
+    assertThat(options.get(1), equalTo("-b 128"));
+
+    /* superfluous lame options */
+    cli.addTargetLameOptions("-V 4");
+    cli.addTargetLameOptions("-V 6");
+    assertThat(Integer.valueOf(cli.getTargetLameOptions().size()), equalTo(Integer.valueOf(2)));
+  }
+
+  @Test
+  public void testSetTransport() throws CmdLineException {
+    cli.setTransport(Flac2Mp3Configuration.Transport.OS);
+    assertThat(cli.getTransport(), equalTo(Flac2Mp3Configuration.Transport.OS));
+
+    CmdLineParser parser = new CmdLineParser(cli);
+    parser.parseArgument("--transport", "jvm");
+    assertThat(cli.getTransport(), equalTo(Flac2Mp3Configuration.Transport.JVM));
+  }
+
+  @Test
+  public void testSetDebounce() {
+    cli.setDebounce(3);
+    assertThat(Integer.valueOf(cli.getDebounce()), equalTo(Integer.valueOf(3)));
+  }
+
+  @Test
+  public void testSetReconcile() {
+    cli.setReconcile(0);
+    assertThat(Integer.valueOf(cli.getReconcile()), equalTo(Integer.valueOf(0)));
+  }
+
   @Test
   public void testSetFileList() throws IOException {
     String list = "some file list.lst";
@@ -109,6 +205,20 @@ public class TestCommandLineOptions {
     assertThat(cli.getFileList(), equalTo(dirFile.getCanonicalFile()));
   }
 
+  @Test
+  public void testSetPlanFile() throws IOException {
+    File planFile = new File("some plan file");
+    cli.setPlanFile(planFile);
+    assertThat(cli.getPlanFile(), equalTo(planFile.getCanonicalFile()));
+  }
+
+  @Test
+  public void testSetStatsFile() throws IOException {
+    File statsFile = new File("some stats file.json");
+    cli.setStatsFile(statsFile);
+    assertThat(cli.getStatsFile(), equalTo(statsFile.getCanonicalFile()));
+  }
+
   @Test
   public void testSetHelp() {
     boolean value = true;
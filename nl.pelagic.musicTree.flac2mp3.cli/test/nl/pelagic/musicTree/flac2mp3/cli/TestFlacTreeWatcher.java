@@ -0,0 +1,147 @@
+package nl.pelagic.musicTree.flac2mp3.cli;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls", "static-method"
+})
+public class TestFlacTreeWatcher {
+  private static final long DEBOUNCE = 200;
+
+  private Path baseDir = null;
+  private Path albumDir = null;
+  private FlacTreeWatcher watcher = null;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = Files.createTempDirectory("flactree").toRealPath();
+    albumDir = Files.createDirectories(baseDir.resolve("artist/album"));
+    Files.createFile(albumDir.resolve("01.flac"));
+    watcher = new FlacTreeWatcher(baseDir.toFile(), DEBOUNCE);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    watcher.close();
+    Files.walkFileTree(baseDir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Poll until directories are reported, or until 10 seconds have passed
+   */
+  private Set<File> pollChanged() throws InterruptedException {
+    long end = System.currentTimeMillis() + 10000;
+    Set<File> result = new TreeSet<>();
+    while (result.isEmpty() && (System.currentTimeMillis() < end)) {
+      result = watcher.poll(100);
+    }
+    return result;
+  }
+
+  private static Set<File> files(Path... paths) {
+    Set<File> result = new TreeSet<>();
+    for (Path path : paths) {
+      result.add(path.toFile());
+    }
+    return result;
+  }
+
+  @Test
+  public void testWatcher_Initial() throws InterruptedException {
+    assertThat(Integer.valueOf(watcher.getWatchedDirCount()), equalTo(Integer.valueOf(3)));
+    assertThat(Integer.valueOf(watcher.poll(10).size()), equalTo(Integer.valueOf(0)));
+    assertThat(Boolean.valueOf(watcher.takeOverflow()), equalTo(Boolean.FALSE));
+  }
+
+  @Test(timeout = 20000)
+  public void testPoll_FileChanges() throws IOException, InterruptedException {
+    Files.createFile(albumDir.resolve("02.flac"));
+    Files.write(albumDir.resolve("01.flac"), new byte[] {
+      1
+    });
+    long start = System.nanoTime();
+
+    assertThat(pollChanged(), equalTo(files(albumDir)));
+    assertThat(Boolean.valueOf((System.nanoTime() - start) >= (DEBOUNCE * 1000000)), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(watcher.poll(10).size()), equalTo(Integer.valueOf(0)));
+  }
+
+  @Test(timeout = 20000)
+  public void testPoll_NewDirectory() throws IOException, InterruptedException {
+    Path newAlbumDir = Files.createDirectory(baseDir.resolve("artist/newAlbum"));
+
+    assertThat(pollChanged(), equalTo(files(newAlbumDir)));
+    assertThat(Integer.valueOf(watcher.getWatchedDirCount()), equalTo(Integer.valueOf(4)));
+
+    /* the new directory is watched */
+    Files.createFile(newAlbumDir.resolve("01.flac"));
+    assertThat(pollChanged(), equalTo(files(newAlbumDir)));
+  }
+
+  @Test(timeout = 20000)
+  public void testPoll_DeletedDirectory() throws IOException, InterruptedException {
+    Files.delete(albumDir.resolve("01.flac"));
+    Files.delete(albumDir);
+
+    assertThat(pollChanged(), equalTo(files(baseDir.resolve("artist"))));
+  }
+
+  @Test
+  public void testExistingDir() {
+    assertThat(watcher.existingDir(albumDir), equalTo(albumDir));
+    assertThat(watcher.existingDir(albumDir.resolve("gone/really")), equalTo(albumDir));
+    assertThat(watcher.existingDir(baseDir), equalTo(baseDir));
+  }
+
+  @Test
+  public void testCoalesce() {
+    Path a = baseDir.resolve("a");
+    Path ab = baseDir.resolve("a/b");
+    Path abc = baseDir.resolve("a/b/c");
+    Path ac = baseDir.resolve("ac");
+
+    assertThat(FlacTreeWatcher.coalesce(Arrays.asList(abc, ac, ab)), equalTo(files(ab, ac)));
+    assertThat(FlacTreeWatcher.coalesce(Arrays.asList(a, abc)), equalTo(files(a)));
+    assertThat(FlacTreeWatcher.coalesce(new HashSet<Path>()), equalTo(files()));
+  }
+
+  @Test
+  public void testIsRelated() {
+    Path a = baseDir.resolve("a");
+    Path ab = baseDir.resolve("a/b");
+    Path ac = baseDir.resolve("ac");
+
+    assertThat(Boolean.valueOf(FlacTreeWatcher.isRelated(a, Arrays.asList(ab))), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(FlacTreeWatcher.isRelated(ab, Arrays.asList(a))), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(FlacTreeWatcher.isRelated(a, Arrays.asList(ac))), equalTo(Boolean.FALSE));
+  }
+}
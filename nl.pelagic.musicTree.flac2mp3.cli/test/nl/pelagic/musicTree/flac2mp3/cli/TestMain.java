@@ -5,15 +5,18 @@ import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics;
 import nl.pelagic.audio.conversion.flac2mp3.api.Flac2Mp3Configuration;
 import nl.pelagic.audio.conversion.flac2mp3.testhelpers.MyFlacToMp3;
 import nl.pelagic.audio.musicTree.configuration.api.MusicTreeConfiguration;
 import nl.pelagic.audio.musicTree.syncer.testhelpers.MySyncer;
+import nl.pelagic.audio.musicTree.util.MusicTreeHelpers;
 import nl.pelagic.musicTree.flac2mp3.cli.i18n.Messages;
 import nl.pelagic.shell.script.listener.testhelpers.MyShellScriptListener;
 
@@ -276,6 +279,30 @@ public class TestMain {
     assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(0)));
   }
 
+  @Test
+  public void testConvertFile_Targets() {
+    File fbd = new File(testdatadir, "Music");
+    File mbd = new File(testdatadir, "from.flac");
+    Flac2Mp3Configuration flac2Mp3Configuration = new Flac2Mp3Configuration();
+    MusicTreeConfiguration musicTreeConfiguration = new MusicTreeConfiguration(fbd, mbd);
+    musicTreeConfiguration.setTargetMp3BaseDirs(Arrays.asList(new File(testdatadir, "from.flac.target")));
+    File fileToConvert = new File(fbd, "dummy2.flac");
+    File fileToConvertTo = new File(mbd, "Music/dummy2.mp3");
+    boolean modified = fileToConvertTo.setLastModified(fileToConvert.lastModified());
+    assertThat(Boolean.valueOf(modified), equalTo(Boolean.TRUE));
+
+    flacToMp3.retval = true;
+
+    boolean result = main.convertFile(out, flac2Mp3Configuration, musicTreeConfiguration, true, fileToConvert);
+
+    assertThat(Boolean.valueOf(result), equalTo(Boolean.TRUE));
+
+    assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(0)));
+    assertThat(Integer.valueOf(flacToMp3.countDecodes), equalTo(Integer.valueOf(1)));
+    assertThat(flacToMp3.lastMp3s,
+        equalTo(Arrays.asList(null, MusicTreeHelpers.flacFileToMp3File(musicTreeConfiguration, fileToConvert, 1))));
+  }
+
   @Test
   public void testStayAlive_Not() {
     MyBundleContext bundleContext = new MyBundleContext();
@@ -532,6 +559,81 @@ public class TestMain {
     assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(0)));
   }
 
+  @Test
+  public void testDoMain_Resume() {
+    Map<String, Object> parameters = new HashMap<>();
+    String[] args =
+        {
+            "-f",
+            new File(testdatadir, "Music").getAbsolutePath(),
+            "-m",
+            new File(testdatadir, "from.flac").getAbsolutePath(),
+            "-s",
+            new File(testdatadir, "Music/dummy1.flac").getAbsolutePath()
+        };
+
+    parameters.put(Main.LAUNCHER_ARGUMENTS, args);
+    main.setDone(new Object(), parameters);
+
+    MyBundleContext bc = new MyBundleContext();
+
+    flacToMp3.retval = true;
+
+    main.activate(bc);
+    boolean result = main.doMain(out);
+    main.deactivate();
+
+    assertThat(Boolean.valueOf(result), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(flacToMp3.countResume), equalTo(Integer.valueOf(1)));
+    assertThat(Integer.valueOf(flacToMp3.lastPriority), equalTo(Integer.valueOf(Flac2Mp3Configuration.USER_PRIORITY)));
+    assertThat(Integer.valueOf(flacToMp3.resumeConfiguration.getPriority()),
+        equalTo(Integer.valueOf(Flac2Mp3Configuration.DEFAULT_PRIORITY)));
+    assertThat(flacToMp3.resumeConfiguration.getJournal(), equalTo(new File(new File(testdatadir, "from.flac")
+        .getAbsoluteFile(), Main.JOURNAL_FILE_NAME)));
+  }
+
+  @Test
+  public void testDoMain_File_Stats() {
+    File statsFile = new File("testresources/stats.json");
+    Map<String, Object> parameters = new HashMap<>();
+    String[] args =
+        {
+            "-f",
+            new File(testdatadir, "Music").getAbsolutePath(),
+            "-m",
+            new File(testdatadir, "from.flac").getAbsolutePath(),
+            "--stats",
+            "--stats-file",
+            statsFile.getPath(),
+            new File(testdatadir, "Music/dummy1.flac").getAbsolutePath()
+        };
+
+    parameters.put(Main.LAUNCHER_ARGUMENTS, args);
+    main.setDone(new Object(), parameters);
+
+    MyBundleContext bc = new MyBundleContext();
+
+    flacToMp3.retval = true;
+
+    try {
+      main.activate(bc);
+      boolean result = main.doMain(out);
+      main.deactivate();
+
+      assertThat(Boolean.valueOf(result), equalTo(Boolean.TRUE));
+
+      int lines =
+          1 + 1 + ConversionStatistics.Stage.values().length + 1 + ConversionStatistics.Counter.values().length + 1;
+      assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(lines)));
+      assertThat(out.strings.get(4).startsWith("ENCODE                  1 "), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(statsFile.isFile()), equalTo(Boolean.TRUE));
+    }
+    finally {
+      statsFile.delete();
+      new File(testdatadir, "from.flac/Music/dummy1.mp3").delete();
+    }
+  }
+
   @Test
   public void testDoMain_File_Ok() {
     Map<String, Object> parameters = new HashMap<>();
@@ -557,4 +659,92 @@ public class TestMain {
     main.run();
     main.deactivate();
   }
+
+  @Test(timeout = 10000)
+  public void testDoMain_Daemon_File() {
+    Map<String, Object> parameters = new HashMap<>();
+    String[] args =
+        {
+            "-f",
+            new File(testdatadir, "Music").getAbsolutePath(),
+            "-m",
+            new File(testdatadir, "from.flac").getAbsolutePath(),
+            "-s",
+            "--daemon",
+            new File(testdatadir, "Music/dummy1.flac").getAbsolutePath()
+        };
+
+    parameters.put(Main.LAUNCHER_ARGUMENTS, args);
+    main.setDone(new Object(), parameters);
+
+    MyBundleContext bc = new MyBundleContext();
+
+    flacToMp3.retval = true;
+
+    Thread stopper = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(500);
+        }
+        catch (InterruptedException e) {
+          e.printStackTrace();
+        }
+        main.shutdownHook();
+      }
+    };
+    stopper.start();
+
+    main.activate(bc);
+    boolean result = main.doMain(out);
+    main.deactivate();
+
+    /* the file is converted while the daemon watches, with the user priority */
+    assertThat(Boolean.valueOf(result), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(flacToMp3.countAll), equalTo(Integer.valueOf(1)));
+    assertThat(Integer.valueOf(flacToMp3.lastPriority), equalTo(Integer.valueOf(Flac2Mp3Configuration.USER_PRIORITY)));
+    assertThat(out.strings.get(0),
+        equalTo(String.format(Messages.getString("Main.13"), new File(testdatadir, "Music").getAbsolutePath())));
+  }
+
+  @Test
+  public void testDaemon_NotWatchable() {
+    File fbd = new File(testdatadir, "MusicReallyDoesNotExist");
+    MusicTreeConfiguration musicTreeConfiguration = new MusicTreeConfiguration(fbd, new File(testdatadir, "from.flac"));
+
+    boolean result = main.daemon(out, new Flac2Mp3Configuration(), musicTreeConfiguration, true, 10, 0);
+
+    assertThat(Boolean.valueOf(result), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(1)));
+    assertThat(out.strings.get(0).startsWith(String.format(Messages.getString("Main.15"), fbd.getPath(), "").trim()),
+        equalTo(Boolean.TRUE));
+  }
+
+  @Test(timeout = 10000)
+  public void testDaemon_Stop() {
+    File fbd = new File(testdatadir, "Music");
+    MusicTreeConfiguration musicTreeConfiguration = new MusicTreeConfiguration(fbd, new File(testdatadir, "from.flac"));
+
+    Thread stopper = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(500);
+        }
+        catch (InterruptedException e) {
+          e.printStackTrace();
+        }
+        main.shutdownHook();
+      }
+    };
+    stopper.start();
+
+    /* reconcile continuously, the syncer fails */
+    boolean result = main.daemon(out, new Flac2Mp3Configuration(), musicTreeConfiguration, true, 10, 1);
+
+    assertThat(Boolean.valueOf(result), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(out.strings.size() > 1), equalTo(Boolean.TRUE));
+    assertThat(out.strings.get(0), equalTo(String.format(Messages.getString("Main.13"), fbd.getPath())));
+    assertThat(out.strings.get(1), equalTo(String.format(Messages.getString("Main.14"), fbd.getPath())));
+  }
 }
@@ -0,0 +1,107 @@
+package nl.pelagic.musicTree.flac2mp3.cli;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import nl.pelagic.audio.conversion.flac2mp3.api.ConversionStatistics;
+import nl.pelagic.musicTree.flac2mp3.cli.i18n.Messages;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls", "static-method"
+})
+public class TestStatisticsReport {
+
+  private MyPrintStream out = null;
+  private String outfile = "testresources/out";
+  private File jsonFile = new File("testresources/stats.json");
+  private ConversionStatistics statistics = null;
+
+  @Before
+  public void setUp() throws FileNotFoundException {
+    out = new MyPrintStream(outfile);
+    statistics = new ConversionStatistics();
+    statistics.record(ConversionStatistics.Stage.ENCODE, TimeUnit.MILLISECONDS.toNanos(100));
+    statistics.record(ConversionStatistics.Stage.ENCODE, TimeUnit.MILLISECONDS.toNanos(300));
+    statistics.record(ConversionStatistics.Counter.FLAC_BYTES, 2 * 1024 * 1024);
+    statistics.record(ConversionStatistics.Counter.MP3_BYTES, 1024 * 1024);
+  }
+
+  @After
+  public void tearDown() {
+    statistics = null;
+    out.close();
+    out = null;
+    new File(outfile).delete();
+    jsonFile.delete();
+  }
+
+  @Test
+  public void testFormatHistogram() {
+    assertThat(StatisticsReport.formatHistogram(statistics.get(ConversionStatistics.Stage.ENCODE), 1000000.0),
+        equalTo("       2        400.0      100.0      300.0      300.0      300.0"));
+  }
+
+  @Test
+  public void testThroughput() {
+    assertThat(Double.valueOf(StatisticsReport.throughput(1024 * 1024, 0)), equalTo(Double.valueOf(0.0)));
+    assertThat(Double.valueOf(StatisticsReport.throughput(4 * 1024 * 1024, TimeUnit.SECONDS.toNanos(2))),
+        equalTo(Double.valueOf(2.0)));
+  }
+
+  @Test
+  public void testPrintSummary() {
+    StatisticsReport.printSummary(out, statistics, TimeUnit.SECONDS.toNanos(2));
+
+    int lines = 1 + 1 + ConversionStatistics.Stage.values().length + 1 + ConversionStatistics.Counter.values().length + 1;
+    assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(lines)));
+    assertThat(out.strings.get(0), equalTo(String.format(Messages.getString("StatisticsReport.0"), Double.valueOf(2.0))));
+    assertThat(out.strings.get(1), equalTo(String.format(Messages.getString("StatisticsReport.1"))));
+    assertThat(out.strings.get(4).startsWith("ENCODE           "), equalTo(Boolean.TRUE));
+    assertThat(out.strings.get(lines - 1),
+        equalTo(String.format(Messages.getString("StatisticsReport.3"), Double.valueOf(1.0), Double.valueOf(0.5))));
+  }
+
+  @Test
+  public void testToJson() {
+    String json = StatisticsReport.toJson(statistics, 42);
+
+    assertThat(json.startsWith("{\"elapsedNanos\":42,\"stageNanos\":{\"READ_TAG\":{\"count\":0,"), equalTo(Boolean.TRUE));
+    assertThat(json.contains("\"ENCODE\":{\"count\":2,\"total\":400000000,\"p50\":100000000,\"p95\":300000000,"
+        + "\"p99\":300000000,\"max\":300000000}"), equalTo(Boolean.TRUE));
+    assertThat(json.contains(",\"counterBytes\":{\"FLAC_BYTES\":{\"count\":1,\"total\":2097152,"), equalTo(Boolean.TRUE));
+    assertThat(json.endsWith("}}}"), equalTo(Boolean.TRUE));
+  }
+
+  @Test
+  public void testWriteJson() throws IOException {
+    boolean result = StatisticsReport.writeJson(out, jsonFile, statistics, 42);
+
+    assertThat(Boolean.valueOf(result), equalTo(Boolean.TRUE));
+    assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(0)));
+    assertThat(new String(Files.readAllBytes(jsonFile.toPath()), StandardCharsets.UTF_8),
+        equalTo(StatisticsReport.toJson(statistics, 42) + "\n"));
+  }
+
+  @Test
+  public void testWriteJson_Error() {
+    File file = new File("testresources/directoryReallyDoesNotExist/stats.json");
+
+    boolean result = StatisticsReport.writeJson(out, file, statistics, 42);
+
+    assertThat(Boolean.valueOf(result), equalTo(Boolean.FALSE));
+    assertThat(Integer.valueOf(out.strings.size()), equalTo(Integer.valueOf(1)));
+    assertThat(out.strings.get(0).startsWith(String.format(Messages.getString("StatisticsReport.4"), file.getPath(), "")
+        .trim()), equalTo(Boolean.TRUE));
+  }
+}
@@ -0,0 +1,206 @@
+package nl.pelagic.util.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * An entry of a directory with its attributes (type, size and modification
+ * time), which are read once, when the entry is created.
+ * </p>
+ * <p>
+ * Listing a directory with {@link #list(File, DirectoryEntryFilter)} reads the
+ * directory once and the attributes of every entry once, instead of a system
+ * call for every {@link File#isDirectory()}, {@link File#exists()},
+ * {@link File#length()} and {@link File#lastModified()} on the listed names,
+ * which matters on network file systems.
+ * </p>
+ * <p>
+ * The attributes of symbolic links are those of their targets, like those of
+ * {@link File}: a broken symbolic link is listed, but doesn't exist.
+ * </p>
+ */
+public class DirectoryEntry implements Comparable<DirectoryEntry> {
+  /** the file of the entry */
+  private final File file;
+
+  /** the name of the entry */
+  private final String name;
+
+  /** true when the entry existed when it was created */
+  private final boolean exists;
+
+  /** true when the entry is a directory */
+  private final boolean directory;
+
+  /** true when the entry is a regular file */
+  private final boolean regularFile;
+
+  /** the size of the entry, in bytes */
+  private final long size;
+
+  /** the modification time of the entry, in milliseconds since the epoch */
+  private final long lastModified;
+
+  /**
+   * Constructor
+   * 
+   * @param file the file of the entry
+   * @param attributes the attributes of the entry, null when the entry doesn't
+   *          exist
+   */
+  DirectoryEntry(File file, BasicFileAttributes attributes) {
+    super();
+    this.file = file;
+    this.name = file.getName();
+    this.exists = attributes != null;
+    this.directory = exists && attributes.isDirectory();
+    this.regularFile = exists && attributes.isRegularFile();
+    this.size = exists ? attributes.size() : 0L;
+    this.lastModified = exists ? attributes.lastModifiedTime().toMillis() : 0L;
+  }
+
+  /**
+   * Read the attributes of a file
+   * 
+   * @param path the path of the file
+   * @return the attributes, null when the file doesn't exist (or its
+   *         attributes could not be read)
+   */
+  static BasicFileAttributes readAttributes(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Create an entry for a file, reading its attributes
+   * 
+   * @param file the file
+   * @return the entry
+   */
+  public static DirectoryEntry read(File file) {
+    return new DirectoryEntry(file, readAttributes(file.toPath()));
+  }
+
+  /**
+   * List the entries of a directory, reading the attributes of every entry
+   * once. Like {@link File#list(java.io.FilenameFilter)}, but the entries are
+   * sorted by name.
+   * 
+   * @param directory the directory
+   * @param filter the filter (can be null to accept all entries)
+   * @return the (accepted) entries, sorted by name. null when the directory
+   *         could not be listed.
+   */
+  public static DirectoryEntry[] list(File directory, DirectoryEntryFilter filter) {
+    if (directory == null) {
+      return null;
+    }
+
+    List<DirectoryEntry> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath())) {
+      for (Path path : stream) {
+        DirectoryEntry entry =
+            new DirectoryEntry(new File(directory, path.getFileName().toString()), readAttributes(path));
+        if ((filter == null) || filter.accept(entry)) {
+          entries.add(entry);
+        }
+      }
+    }
+    catch (IOException | DirectoryIteratorException e) {
+      return null;
+    }
+
+    DirectoryEntry[] result = entries.toArray(new DirectoryEntry[entries.size()]);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @return the file of the entry
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return the name of the entry
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return true when the entry existed when it was created
+   */
+  public boolean exists() {
+    return exists;
+  }
+
+  /**
+   * @return true when the entry is a directory
+   */
+  public boolean isDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return true when the entry is a regular file
+   */
+  public boolean isFile() {
+    return regularFile;
+  }
+
+  /**
+   * @return the size of the entry, in bytes
+   */
+  public long length() {
+    return size;
+  }
+
+  /**
+   * @return the modification time of the entry, in milliseconds since the
+   *         epoch
+   */
+  public long lastModified() {
+    return lastModified;
+  }
+
+  @Override
+  public int compareTo(DirectoryEntry other) {
+    return name.compareTo(other.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return file.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof DirectoryEntry)) {
+      return false;
+    }
+    return file.equals(((DirectoryEntry) obj).file);
+  }
+
+  @Override
+  public String toString() {
+    return file.getPath();
+  }
+}
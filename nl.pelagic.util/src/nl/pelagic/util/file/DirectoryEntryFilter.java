@@ -0,0 +1,14 @@
+package nl.pelagic.util.file;
+
+/**
+ * A filter for directory entries, the counterpart of
+ * {@link java.io.FilenameFilter} for {@link DirectoryEntry}, which can use the
+ * attributes of the entries without reading them again.
+ */
+public interface DirectoryEntryFilter {
+  /**
+   * @param entry the entry
+   * @return true when the entry is accepted
+   */
+  boolean accept(DirectoryEntry entry);
+}
@@ -29,8 +29,12 @@ import java.util.regex.Pattern;
  * </pre>
  * 
  * </p>
+ * <p>
+ * As a {@link DirectoryEntryFilter} the filter uses the attributes of the
+ * listed entries instead of reading them again.
+ * </p>
  */
-public class FilenameFilterWithRegex implements FilenameFilter {
+public class FilenameFilterWithRegex implements FilenameFilter, DirectoryEntryFilter {
   /**
    * A filename filter that accepts everything.
    */
@@ -166,4 +170,16 @@ public class FilenameFilterWithRegex implements FilenameFilter {
   public boolean accept(File dir, String name) {
     return worker.accept(dir, name);
   }
+
+  @Override
+  public boolean accept(DirectoryEntry entry) {
+    if ((basePath == null) && (regexPattern != null)) {
+      /*
+       * B
+       */
+      return entry.isDirectory() || regexPattern.matcher(entry.getName()).matches();
+    }
+
+    return worker.accept(entry.getFile().getParentFile(), entry.getName());
+  }
 }
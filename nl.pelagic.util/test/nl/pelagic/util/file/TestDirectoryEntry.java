@@ -0,0 +1,131 @@
+package nl.pelagic.util.file;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import nl.pelagic.util.TestConstants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({
+    "javadoc", "nls", "static-method"
+})
+public class TestDirectoryEntry {
+  private File dir = null;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = new File(TestConstants.tmpTestBaseDir, "testDirectoryEntry");
+    FileUtils.delete(dir);
+    assertThat(Boolean.valueOf(dir.mkdirs()), equalTo(Boolean.TRUE));
+
+    assertThat(Boolean.valueOf(new File(dir, "b.dir").mkdir()), equalTo(Boolean.TRUE));
+    try (FileWriter writer = new FileWriter(new File(dir, "c.txt"))) {
+      writer.write("12345");
+    }
+    try (FileWriter writer = new FileWriter(new File(dir, "a.flac"))) {
+      writer.write("1");
+    }
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.delete(dir);
+  }
+
+  @Test
+  public void testList_Null() {
+    assertThat(DirectoryEntry.list(null, null), nullValue());
+    assertThat(DirectoryEntry.list(new File(dir, "does.not.exist"), null), nullValue());
+    assertThat(DirectoryEntry.list(new File(dir, "c.txt"), null), nullValue());
+  }
+
+  @Test
+  public void testList_Normal() {
+    DirectoryEntry[] entries = DirectoryEntry.list(dir, null);
+
+    assertThat(Integer.valueOf(entries.length), equalTo(Integer.valueOf(3)));
+    String[] names = {
+        "a.flac", "b.dir", "c.txt"
+    };
+    for (int i = 0; i < entries.length; i++) {
+      File file = new File(dir, names[i]);
+      DirectoryEntry entry = entries[i];
+      assertThat(entry.getName(), equalTo(names[i]));
+      assertThat(entry.getFile(), equalTo(file));
+      assertThat(entry.toString(), equalTo(file.getPath()));
+      assertThat(Boolean.valueOf(entry.exists()), equalTo(Boolean.TRUE));
+      assertThat(Boolean.valueOf(entry.isDirectory()), equalTo(Boolean.valueOf(file.isDirectory())));
+      assertThat(Boolean.valueOf(entry.isFile()), equalTo(Boolean.valueOf(file.isFile())));
+      assertThat(Long.valueOf(entry.lastModified()), equalTo(Long.valueOf(file.lastModified())));
+      if (!entry.isDirectory()) {
+        assertThat(Long.valueOf(entry.length()), equalTo(Long.valueOf(file.length())));
+      }
+      assertThat(entry, equalTo(DirectoryEntry.read(file)));
+      assertThat(Integer.valueOf(entry.hashCode()), equalTo(Integer.valueOf(file.hashCode())));
+    }
+    assertThat(Long.valueOf(entries[2].length()), equalTo(Long.valueOf(5)));
+  }
+
+  @Test
+  public void testList_Filter() {
+    DirectoryEntry[] entries = DirectoryEntry.list(dir, new DirectoryEntryFilter() {
+      @Override
+      public boolean accept(DirectoryEntry entry) {
+        return entry.isFile();
+      }
+    });
+
+    assertThat(Integer.valueOf(entries.length), equalTo(Integer.valueOf(2)));
+    assertThat(entries[0].getName(), equalTo("a.flac"));
+    assertThat(entries[1].getName(), equalTo("c.txt"));
+  }
+
+  @Test
+  public void testList_BrokenLink() throws IOException {
+    File link = new File(dir, "d.link");
+    try {
+      Files.createSymbolicLink(link.toPath(), new File(dir, "does.not.exist").toPath());
+    }
+    catch (UnsupportedOperationException e) {
+      /* can't be covered by a test */
+      return;
+    }
+
+    try {
+      DirectoryEntry[] entries = DirectoryEntry.list(dir, null);
+      assertThat(Integer.valueOf(entries.length), equalTo(Integer.valueOf(4)));
+      assertThat(entries[3].getName(), equalTo("d.link"));
+      assertThat(Boolean.valueOf(entries[3].exists()), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(entries[3].isDirectory()), equalTo(Boolean.FALSE));
+      assertThat(Boolean.valueOf(entries[3].isFile()), equalTo(Boolean.FALSE));
+    }
+    finally {
+      /* a broken link doesn't exist for FileUtils.delete */
+      Files.delete(link.toPath());
+    }
+  }
+
+  @Test
+  public void testRead_DoesNotExist() {
+    File file = new File(dir, "does.not.exist");
+    DirectoryEntry entry = DirectoryEntry.read(file);
+
+    assertThat(entry.getName(), equalTo("does.not.exist"));
+    assertThat(Boolean.valueOf(entry.exists()), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(entry.isDirectory()), equalTo(Boolean.FALSE));
+    assertThat(Boolean.valueOf(entry.isFile()), equalTo(Boolean.FALSE));
+    assertThat(Long.valueOf(entry.length()), equalTo(Long.valueOf(0)));
+    assertThat(Long.valueOf(entry.lastModified()), equalTo(Long.valueOf(0)));
+    assertThat(Boolean.valueOf(entry.equals(entry)), equalTo(Boolean.TRUE));
+    assertThat(Boolean.valueOf(entry.equals(file)), equalTo(Boolean.FALSE));
+  }
+}